@@ -217,10 +217,12 @@ private Node.Property[] getAllChildPropertyHeaders(Node parent) {
      */
     private void getAllChildPropertyHeadersRec(Node parent, int rows) {
         Children children = parent.getChildren();
-        int childCount = 0;
-        for (Node child : children.getNodes()) {            
-            if (++childCount > rows) {
-                break;
+        // only the nodes of the first rows are made, lazy children make the rest when shown
+        final int childCount = Math.min(rows, children.getNodesCount());
+        for (int i = 0; i < childCount; ++i) {
+            Node child = children.getNodeAt(i);
+            if (child == null) {
+                continue;
             }
             for (PropertySet ps : child.getPropertySets()) {
                 final Property[] props = ps.getProperties();
@@ -387,12 +389,13 @@ private void setupTable(final Node root) {
      * @return Array of rows and columns
      */ 
     private static Object[][] getRowValues(Node node, int maxRows) {
+        // only the nodes of the first rows are made, lazy children make the rest when shown
         Object[][] rowValues = new Object[Math.min(maxRows, node.getChildren().getNodesCount())][];        
-        int rowCount = 0;
-        for (Node child : node.getChildren().getNodes()) {
-            if (rowCount >= maxRows) {
-                break;
-            }                
+        for (int i = 0; i < rowValues.length; ++i) {
+            Node child = node.getChildren().getNodeAt(i);
+            if (child == null) {
+                continue;
+            }
             PropertySet[] propertySets = child.getPropertySets();
             /* This lock was added because we saw an exception whereby the 
              * properties[j] access below was out of bounds when I was quickly
@@ -403,18 +406,17 @@ private static Object[][] getRowValues(Node node, int maxRows) {
                 if (propertySets.length > 0) {
                     Property[] properties = propertySets[0].getProperties();
                 
-                    rowValues[rowCount] = new Object[properties.length];
+                    rowValues[i] = new Object[properties.length];
                     for (int j = 0; j < properties.length; ++j) {
                         try {
-                            rowValues[rowCount][j] = properties[j].getValue();
+                            rowValues[i][j] = properties[j].getValue();
                         } 
                         catch (IllegalAccessException | InvocationTargetException ignore) {
-                            rowValues[rowCount][j] = "n/a";
+                            rowValues[i][j] = "n/a";
                         }
                     }
                 }
             }                        
-            ++rowCount;
         }        
         return rowValues;
     }
@@ -0,0 +1,227 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.coreutils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Handler queuing the log records of the Autopsy loggers, for a single writer
+ * thread to write them to the log files, so the threads logging do not wait
+ * for the file I/O.
+ *
+ * The queue is bounded: when it is full, as when a hot path logs faster than
+ * the files are written, records are dropped rather than blocking the caller.
+ * Records below SEVERE are also rate limited per level. Dropped records are
+ * counted, and the writer logs how many were dropped once it catches up.
+ *
+ * Records with an exception go to the messages log with the exception summary
+ * only, and with the full trace to the traces log and console.
+ */
+class AsyncLogHandler extends Handler {
+
+    static final int QUEUE_CAPACITY = 8192;
+    // records per second per level, for levels below SEVERE
+    static final int MAX_RECORDS_PER_SECOND = 1000;
+    private static final long WRITER_IDLE_WAIT_NS = TimeUnit.MILLISECONDS.toNanos(200);
+    private final Handler normal;
+    private final Handler traces;
+    private final Handler console;
+    private final ConcurrentLinkedQueue<LogRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final List<RateLimit> rateLimits = new ArrayList<>();
+    private final Thread writer;
+
+    /**
+     * @param normal handler of the messages log
+     * @param traces handler of the traces log
+     * @param console console handler, or null not to log to the console
+     */
+    AsyncLogHandler(Handler normal, Handler traces, Handler console) {
+        this.normal = normal;
+        this.traces = traces;
+        this.console = console;
+        for (Level level : new Level[]{Level.FINEST, Level.FINER, Level.FINE, Level.CONFIG, Level.INFO, Level.WARNING}) {
+            rateLimits.add(new RateLimit(level));
+        }
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeRecords();
+            }
+        }, "autopsy-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        // write what is still queued when exiting
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+                flush();
+            }
+        }, "autopsy-log-flush"));
+    }
+
+    /**
+     * @return number of records dropped since startup, because the queue was
+     * full or the level was rate limited
+     */
+    long getDroppedCount() {
+        return dropped.get();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (!isLoggable(record)) {
+            return;
+        }
+        RateLimit limit = getRateLimit(record.getLevel());
+        if (limit != null && !limit.tryAcquire()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        if (queued.incrementAndGet() > QUEUE_CAPACITY) {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        // the caller is inferred from the stack, so it must be done on the logging thread
+        record.getSourceClassName();
+        queue.offer(record);
+        LockSupport.unpark(writer);
+    }
+
+    @Override
+    public void flush() {
+        normal.flush();
+        traces.flush();
+        if (console != null) {
+            console.flush();
+        }
+    }
+
+    @Override
+    public void close() throws SecurityException {
+        drain();
+        normal.close();
+        traces.close();
+    }
+
+    private RateLimit getRateLimit(Level level) {
+        if (level.intValue() >= Level.SEVERE.intValue()) {
+            return null;
+        }
+        for (RateLimit limit : rateLimits) {
+            if (limit.level.intValue() == level.intValue()) {
+                return limit;
+            }
+        }
+        // custom levels share the limit of the level below them
+        RateLimit found = null;
+        for (RateLimit limit : rateLimits) {
+            if (limit.level.intValue() < level.intValue()) {
+                found = limit;
+            }
+        }
+        return found;
+    }
+
+    private void writeRecords() {
+        long droppedReported = 0;
+        while (true) {
+            if (!drain()) {
+                long droppedNow = dropped.get();
+                if (droppedNow != droppedReported) {
+                    write(new LogRecord(Level.WARNING, "Dropped " + (droppedNow - droppedReported)
+                            + " log records, logged too fast"));
+                    droppedReported = droppedNow;
+                }
+                flush();
+                LockSupport.parkNanos(this, WRITER_IDLE_WAIT_NS);
+            }
+        }
+    }
+
+    /**
+     * Write the queued records
+     *
+     * @return true if there were records to write
+     */
+    private synchronized boolean drain() {
+        boolean wrote = false;
+        LogRecord record;
+        while ((record = queue.poll()) != null) {
+            queued.decrementAndGet();
+            write(record);
+            wrote = true;
+        }
+        return wrote;
+    }
+
+    private void write(LogRecord record) {
+        Throwable thrown = record.getThrown();
+        if (thrown == null) {
+            normal.publish(record);
+        } else {
+            LogRecord summary = new LogRecord(record.getLevel(), record.getMessage() + "\nException:  " + thrown.toString());
+            summary.setLoggerName(record.getLoggerName());
+            summary.setMillis(record.getMillis());
+            summary.setParameters(record.getParameters());
+            summary.setSourceClassName(record.getSourceClassName());
+            summary.setSourceMethodName(record.getSourceMethodName());
+            normal.publish(summary);
+        }
+        traces.publish(record);
+        if (console != null) {
+            console.publish(record);
+        }
+    }
+
+    /**
+     * Fixed one second window counter of the records of a level
+     */
+    private static class RateLimit {
+
+        private final Level level;
+        private final AtomicLong windowStart = new AtomicLong(0);
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        RateLimit(Level level) {
+            this.level = level;
+        }
+
+        boolean tryAcquire() {
+            long now = System.currentTimeMillis();
+            long start = windowStart.get();
+            if (now - start >= 1000 && windowStart.compareAndSet(start, now)) {
+                count.set(0);
+            }
+            return count.incrementAndGet() <= MAX_RECORDS_PER_SECOND;
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.sleuthkit.autopsy.coreutils;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.logging.*;
@@ -28,6 +29,7 @@
  * streams logging to autopsy.log (general high level messages),
  * autopsy_traces.log (also including exception traces).
  * In development build, those are also redirected to console / messages log.
+ * The records are written by a background thread, see AsyncLogHandler.
  *
  * Contains a utility method to log user actions to autopsy_actions.log via noteAction()
  * 
@@ -51,6 +53,9 @@ public class Logger extends java.util.logging.Logger {
     private static  final FileHandler normal = initNormal();
     private static final Handler console = new java.util.logging.ConsoleHandler();
     private static final java.util.logging.Logger actionsLogger = initActionsLogger();
+    //writes the records of all the loggers to the logs above, off the logging threads
+    private static final AsyncLogHandler async = new AsyncLogHandler(normal, traces,
+            Version.getBuildType() == Version.Type.DEVELOPMENT ? console : null);
    
 
     /**
@@ -76,6 +81,8 @@ public class Logger extends java.util.logging.Logger {
     private static FileHandler initTraces() {
 
         try {
+            //the user directory may be new, e.g. when running the unit tests
+            new File(LOG_DIR).mkdirs();
 
             FileHandler f = new FileHandler(LOG_DIR + tracesLog, LOG_SIZE, LOG_FILE_COUNT);
             f.setEncoding(LOG_ENCODING);
@@ -115,14 +122,10 @@ private static java.util.logging.Logger initActionsLogger() {
     //</editor-fold>
     private Logger(java.util.logging.Logger log) {
         super(log.getName(), log.getResourceBundleName());
-        //do forward to messages, so that IDE window shows them
-        if (Version.getBuildType() == Version.Type.DEVELOPMENT) {
-            addHandler(console);
-        }
         setUseParentHandlers(false); //do not forward to parent logger, sharing static handlers anyway
         //addHandler(new AutopsyExceptionHandler());
-        addHandler(normal);
-        addHandler(traces);
+        //to autopsy.log, autopsy_traces.log, and in development build to console
+        addHandler(async);
     }
 
 
@@ -136,6 +139,16 @@ public static void noteAction(Class<?> actionClass) {
         actionsLogger.log(Level.INFO, "Action performed: {0}", actionClass.getName());
     }
 
+    /**
+     * Get the number of log records dropped since startup, because they were
+     * logged faster than they could be written to the logs
+     *
+     * @return number of dropped log records
+     */
+    public static long getDroppedRecordCount() {
+        return async.getDroppedCount();
+    }
+
     /**
      * Factory method to retrieve a org.sleuthkit.autopsy.coreutils.Logger
      * instance The logger logs by default to autopsy.log and
@@ -161,19 +174,4 @@ public static Logger getLogger(String name) {
     public static Logger getLogger(String name, String resourceBundleName) {
         return new Logger(Logger.getLogger(name, resourceBundleName));
     }
-
-    @Override
-    public void log(Level level, String message, Throwable thrown) {
-        super.log(level, message + "\nException:  " + thrown.toString());
-        removeHandler(normal);
-        super.log(level, message, thrown);
-        addHandler(normal);
-    }
-
-    @Override
-    public void throwing(String sourceClass, String sourceMethod, Throwable thrown) {
-        removeHandler(normal);
-        super.throwing(sourceClass, sourceMethod, thrown);
-        addHandler(normal);
-    }
 }
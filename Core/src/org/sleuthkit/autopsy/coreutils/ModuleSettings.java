@@ -22,17 +22,34 @@
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 /**
  * This class contains the framework to read, add, update, and remove
  * from the property files located at %USERDIR%/Config/x.properties
+ *
+ * The settings of a module are kept in memory once read. The file is checked
+ * for changes made outside of Autopsy at most every CHECK_INTERVAL_MS.
+ * Changes are written in the background WRITE_DELAY_MS after the first
+ * change, so a series of changes is written once, by replacing the file with
+ * a complete new copy. Use flush() to write the pending changes right away.
+ * Changes that could not be written are kept, and written again every
+ * RETRY_DELAY_MS until written.
  */
 public class ModuleSettings {
 
@@ -40,6 +57,29 @@ public class ModuleSettings {
     private final static String moduleDirPath = PlatformUtil.getUserConfigDirectory();
     public static final String DEFAULT_CONTEXT = "GeneralContext";
     public static final String MAIN_SETTINGS = "Case";
+    static final long CHECK_INTERVAL_MS = 1000;
+    private static final long WRITE_DELAY_MS = 500;
+    private static final long RETRY_DELAY_MS = 10000;
+    // module name -> its settings, as last read or changed
+    private static final Map<String, CachedSettings> cache = new HashMap<>();
+    private static final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "module-settings-writer");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    static {
+        // write the pending changes when exiting
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, "module-settings-flush"));
+    }
 
     /** the constructor */
     private ModuleSettings() {}
@@ -49,8 +89,9 @@ private ModuleSettings() {}
      * @param moduleName - The name of the config file to make
      * @return True if successfully created, false if already exists or an error is thrown. 
      */
-    public static boolean makeConfigFile(String moduleName){
+    public static synchronized boolean makeConfigFile(String moduleName){
         if(!configExists(moduleName)){
+            cache.remove(moduleName);
             File propPath = new File(moduleDirPath + File.separator + moduleName + ".properties");
             File parent = new File(propPath.getParent());
             if(! parent.exists()){
@@ -83,8 +124,8 @@ public static boolean configExists(String moduleName){
         return f.exists();
     }
     
-    public static boolean settingExists(String moduleName, String settingName){
-        if(! configExists(moduleName)){
+    public static synchronized boolean settingExists(String moduleName, String settingName){
+        if(!cache.containsKey(moduleName) && ! configExists(moduleName)){
             return false;
         }
         try{
@@ -117,11 +158,8 @@ private static String getPropertyPath(String moduleName){
      * @return - the value associated with the setting.
      * @throws IOException 
      */
-    public static String getConfigSetting(String moduleName, String settingName) {
-        if (!configExists(moduleName)) {
-            makeConfigFile(moduleName);
-            Logger.getLogger(ModuleSettings.class.getName()).log(Level.INFO, "File did not exist. Created file [" + moduleName + ".properties]");
-        }
+    public static synchronized String getConfigSetting(String moduleName, String settingName) {
+        ensureConfigFile(moduleName);
 
         try {
             Properties props = fetchProperties(moduleName);
@@ -141,12 +179,9 @@ public static String getConfigSetting(String moduleName, String settingName) {
      * @return - the map of all key:value pairs representing the settings of the config.
      * @throws IOException 
      */
-    public static Map< String, String> getConfigSettings(String moduleName) {
+    public static synchronized Map< String, String> getConfigSettings(String moduleName) {
 
-        if (!configExists(moduleName)) {
-            makeConfigFile(moduleName);
-            Logger.getLogger(ModuleSettings.class.getName()).log(Level.INFO, "File did not exist. Created file [" + moduleName + ".properties]");
-        }
+        ensureConfigFile(moduleName);
         try {
             Properties props = fetchProperties(moduleName);
 
@@ -170,10 +205,7 @@ public static Map< String, String> getConfigSettings(String moduleName) {
      * @param settings - The mapping of all key:value pairs of settings to add to the config.
      */
     public static synchronized void setConfigSettings(String moduleName, Map<String, String> settings) {
-        if (!configExists(moduleName)) {
-            makeConfigFile(moduleName);
-            Logger.getLogger(ModuleSettings.class.getName()).log(Level.INFO, "File did not exist. Created file [" + moduleName + ".properties]");
-        }
+        ensureConfigFile(moduleName);
         try {
             Properties props = fetchProperties(moduleName);
 
@@ -181,10 +213,7 @@ public static synchronized void setConfigSettings(String moduleName, Map<String,
                 props.setProperty(kvp.getKey(), kvp.getValue());
             }
 
-            File path = new File(getPropertyPath(moduleName));
-            FileOutputStream fos = new FileOutputStream(path);
-            props.store(fos, "Changed config settings(batch)");
-            fos.close();
+            scheduleWrite(moduleName, "Changed config settings(batch)");
         } catch (IOException e) {
             Logger.getLogger(ModuleSettings.class.getName()).log(Level.WARNING, "Property file exists for [" + moduleName + "] at [" + getPropertyPath(moduleName) + "] but could not be loaded.", e);
         }
@@ -197,20 +226,14 @@ public static synchronized void setConfigSettings(String moduleName, Map<String,
      * @param settingVal - the value to set the setting to.
      */
     public static synchronized void setConfigSetting(String moduleName, String settingName, String settingVal) {
-        if (!configExists(moduleName)) {
-            makeConfigFile(moduleName);
-            Logger.getLogger(ModuleSettings.class.getName()).log(Level.INFO, "File did not exist. Created file [" + moduleName + ".properties]");
-        }
+        ensureConfigFile(moduleName);
 
         try {
             Properties props = fetchProperties(moduleName);
 
             props.setProperty(settingName, settingVal);
 
-            File path = new File(getPropertyPath(moduleName));
-            FileOutputStream fos = new FileOutputStream(path);
-            props.store(fos, "Changed config settings(single)");
-            fos.close();
+            scheduleWrite(moduleName, "Changed config settings(single)");
         } catch (IOException e) {
             Logger.getLogger(ModuleSettings.class.getName()).log(Level.WARNING, "Property file exists for [" + moduleName + "] at [" + getPropertyPath(moduleName) + "] but could not be loaded.", e);
         }
@@ -227,10 +250,7 @@ public static synchronized void removeProperty(String moduleName, String key){
             Properties props = fetchProperties(moduleName);
             
             props.remove(key);
-            File path = new File(getPropertyPath(moduleName));
-            FileOutputStream fos = new FileOutputStream(path);
-            props.store(fos, "Removed " + key);
-            fos.close();
+            scheduleWrite(moduleName, "Removed " + key);
             }
         }
         catch(IOException e ){
@@ -239,18 +259,141 @@ public static synchronized void removeProperty(String moduleName, String key){
     }
     
     /**
-     * Returns the properties file as specified by moduleName. 
+     * Writes the pending changes of the settings to the properties files.
+     */
+    public static synchronized void flush() {
+        for (String moduleName : new ArrayList<>(cache.keySet())) {
+            write(moduleName);
+        }
+    }
+
+    /**
+     * Makes the config file of the module if it does not exist yet. 
+     * @param moduleName
+     */
+    private static void ensureConfigFile(String moduleName) {
+        if (!cache.containsKey(moduleName) && !configExists(moduleName)) {
+            makeConfigFile(moduleName);
+            Logger.getLogger(ModuleSettings.class.getName()).log(Level.INFO, "File did not exist. Created file [" + moduleName + ".properties]");
+        }
+    }
+
+    /**
+     * Returns the properties of the module, read from its file if not cached
+     * or if the file changed since it was read. The returned properties are
+     * the cached ones, changes to them must be followed by scheduleWrite().
      * @param moduleName
      * @return Properties file as specified by moduleName.
      * @throws IOException 
      */
     private static Properties fetchProperties(String moduleName)throws IOException{
-        InputStream inputStream = new FileInputStream(getPropertyPath(moduleName));
+        CachedSettings cached = cache.get(moduleName);
+        final long now = System.currentTimeMillis();
+        if (cached != null && (cached.dirty || now - cached.lastChecked < CHECK_INTERVAL_MS)) {
+            return cached.props;
+        }
+        File file = new File(moduleDirPath + File.separator + moduleName + ".properties");
+        if (cached != null) {
+            cached.lastChecked = now;
+            if (file.lastModified() == cached.lastModified && file.length() == cached.length) {
+                return cached.props;
+            }
+            cache.remove(moduleName);
+        }
+        if (!file.exists()) {
+            throw new FileNotFoundException(file.getPath());
+        }
         Properties props = new Properties();
-        props.load(inputStream);
-        inputStream.close();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            props.load(inputStream);
+        }
+        cache.put(moduleName, new CachedSettings(props, file.lastModified(), file.length(), now));
         return props;
     }
+
+    /**
+     * Schedules the write of the changed properties of the module, if not
+     * scheduled yet.
+     * @param moduleName
+     * @param comment comment written in the file
+     */
+    private static void scheduleWrite(final String moduleName, String comment) {
+        CachedSettings cached = cache.get(moduleName);
+        cached.comment = comment;
+        if (!cached.dirty) {
+            cached.dirty = true;
+            writer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    write(moduleName);
+                }
+            }, WRITE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Schedules another write of the module after a failed one, if not
+     * scheduled yet.
+     * @param moduleName
+     * @param cached settings of the module
+     */
+    private static void scheduleRetry(final String moduleName, final CachedSettings cached) {
+        if (cached.retryScheduled) {
+            return;
+        }
+        cached.retryScheduled = true;
+        writer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (ModuleSettings.class) {
+                    cached.retryScheduled = false;
+                    write(moduleName);
+                }
+            }
+        }, RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the properties of the module if changed, to a temporary file
+     * then moved over the properties file, so the file is never left partly
+     * written. If the write fails, the changes are kept and the write is
+     * tried again later.
+     * @param moduleName
+     */
+    private static synchronized void write(String moduleName) {
+        CachedSettings cached = cache.get(moduleName);
+        if (cached == null || !cached.dirty) {
+            return;
+        }
+        cached.dirty = false;
+        File file = new File(moduleDirPath + File.separator + moduleName + ".properties");
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            try (FileOutputStream fos = new FileOutputStream(temp)) {
+                cached.props.store(fos, cached.comment);
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            cached.lastModified = file.lastModified();
+            cached.length = file.length();
+            cached.lastChecked = System.currentTimeMillis();
+            if (cached.failedWrites > 0) {
+                Logger.getLogger(ModuleSettings.class.getName()).log(Level.INFO, "Wrote config file [" + moduleName + "] after " + cached.failedWrites + " failed attempts");
+                cached.failedWrites = 0;
+            }
+        } catch (IOException e) {
+            temp.delete();
+            // keep the changes rather than reread the file, and try again
+            cached.dirty = true;
+            if (cached.failedWrites++ == 0) {
+                Logger.getLogger(ModuleSettings.class.getName()).log(Level.WARNING, "Could not write config file [" + moduleName + "] at [" + file.getPath() + "], will retry", e);
+            }
+            scheduleRetry(moduleName, cached);
+        }
+    }
     
     /**
      * Gets the property file as specified.
@@ -266,4 +409,28 @@ public static File getPropertyFile(String moduleName) {
         return new File(getPropertyPath(moduleName));
         }
     }
+
+    /**
+     * Settings of a module, with the state of the file they were read from.
+     */
+    private static class CachedSettings {
+
+        private final Properties props;
+        private long lastModified;
+        private long length;
+        private long lastChecked;
+        // changed since written
+        private boolean dirty = false;
+        // failed writes since last written
+        private int failedWrites = 0;
+        private boolean retryScheduled = false;
+        private String comment;
+
+        CachedSettings(Properties props, long lastModified, long length, long lastChecked) {
+            this.props = props;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.lastChecked = lastChecked;
+        }
+    }
 }
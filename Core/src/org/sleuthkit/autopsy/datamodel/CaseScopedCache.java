@@ -0,0 +1,96 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.datamodel;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import org.sleuthkit.autopsy.casemodule.Case;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Holds a value loaded from a case, such as an in-memory index of the case,
+ * until the current case changes.
+ *
+ * The value is loaded on first use in a case. A load that fails is not kept,
+ * the next use loads again.
+ *
+ * @param <T> type of the value
+ */
+public abstract class CaseScopedCache<T> {
+
+    private T value = null;
+    private SleuthkitCase valueCase = null;
+    private boolean listening = false;
+
+    /**
+     * Load the value of a case
+     *
+     * @param skCase case to load the value of
+     * @return the value, may be null
+     * @throws TskCoreException if the value could not be loaded
+     */
+    protected abstract T load(SleuthkitCase skCase) throws TskCoreException;
+
+    /**
+     * Get the value of the case, loading it if not loaded yet
+     *
+     * @param skCase case to get the value of
+     * @return the value
+     * @throws TskCoreException if the value could not be loaded
+     */
+    public synchronized T get(SleuthkitCase skCase) throws TskCoreException {
+        if (!listening) {
+            //drop the value of a closed case
+            Case.addPropertyChangeListener(new PropertyChangeListener() {
+                @Override
+                public void propertyChange(PropertyChangeEvent evt) {
+                    if (evt.getPropertyName().equals(Case.CASE_CURRENT_CASE)) {
+                        clear();
+                    }
+                }
+            });
+            listening = true;
+        }
+        if (valueCase != skCase) {
+            clear();
+            value = load(skCase);
+            valueCase = skCase;
+        }
+        return value;
+    }
+
+    /**
+     * Get the value of the case if it is loaded, without loading it
+     *
+     * @param skCase case to get the value of
+     * @return the value, or null if not loaded
+     */
+    public synchronized T getIfLoaded(SleuthkitCase skCase) {
+        return valueCase == skCase ? value : null;
+    }
+
+    /**
+     * Drop the value, e.g. when the case is closed
+     */
+    public synchronized void clear() {
+        value = null;
+        valueCase = null;
+    }
+}
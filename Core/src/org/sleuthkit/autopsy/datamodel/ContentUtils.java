@@ -39,6 +39,7 @@
 import org.sleuthkit.datamodel.LayoutFile;
 import org.sleuthkit.datamodel.LocalFile;
 import org.sleuthkit.datamodel.ReadContentInputStream;
+import org.sleuthkit.datamodel.TskCoreException;
 import org.sleuthkit.datamodel.TskException;
 import org.sleuthkit.datamodel.VirtualDirectory;
 
@@ -201,6 +202,45 @@ public static void writeToFile(Content content, java.io.File outputFile) throws
         writeToFile(content, outputFile, null, null, false);
     }
 
+    /**
+     * Read bytes of content into a buffer, as many as requested unless the
+     * content ends first. Content.read() may read fewer bytes than requested,
+     * and always writes them at the start of the buffer it is given, so the
+     * bytes read after a short read are copied into place.
+     *
+     * @param content content to read
+     * @param buf buffer to read into
+     * @param bufOffset offset in the buffer to write the bytes at
+     * @param offset offset in the content to read from
+     * @param length number of bytes to read
+     * @return number of bytes read, less than length only at the end of the
+     * content
+     * @throws TskCoreException if the content could not be read
+     */
+    public static int readFully(Content content, byte[] buf, int bufOffset, long offset, int length) throws TskCoreException {
+        int read = 0;
+        byte[] chunk = null;
+        while (read < length) {
+            int count;
+            if (read == 0 && bufOffset == 0) {
+                count = content.read(buf, offset, length);
+            } else {
+                if (chunk == null) {
+                    chunk = new byte[length - read];
+                }
+                count = content.read(chunk, offset + read, length - read);
+                if (count > 0) {
+                    System.arraycopy(chunk, 0, buf, bufOffset + read, count);
+                }
+            }
+            if (count <= 0) {
+                break;
+            }
+            read += count;
+        }
+        return read;
+    }
+
     /**
      * Helper to ignore the '.' and '..' directories
      */
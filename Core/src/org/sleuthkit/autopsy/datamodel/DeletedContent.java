@@ -18,12 +18,9 @@
  */
 package org.sleuthkit.autopsy.datamodel;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
-import javax.swing.JOptionPane;
-import javax.swing.SwingUtilities;
 import org.openide.nodes.AbstractNode;
 import org.openide.nodes.ChildFactory;
 import org.openide.nodes.Children;
@@ -31,6 +28,7 @@
 import org.openide.nodes.Sheet;
 import org.openide.util.lookup.Lookups;
 import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.coreutils.MessageNotifyUtil;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.Content;
 import org.sleuthkit.datamodel.ContentVisitor;
@@ -162,7 +160,7 @@ public class DeletedContentNode extends DisplayableItemNode {
             private final Logger logger = Logger.getLogger(DeletedContentNode.class.getName());
 
             DeletedContentNode(SleuthkitCase skCase, DeletedContent.DeletedContentFilter filter) {
-                super(Children.create(new DeletedContentChildren(filter, skCase), true), Lookups.singleton(filter.getDisplayName()));
+                super(new DeletedContentChildren(filter, skCase), Lookups.singleton(filter.getDisplayName()));
                 super.setName(filter.getName());
                 this.skCase = skCase;
                 this.filter = filter;
@@ -210,36 +208,31 @@ public boolean isLeafTypeNode() {
             }
         }
 
-        class DeletedContentChildren extends ChildFactory<AbstractFile> {
+        class DeletedContentChildren extends PagedFileChildren {
 
-            private SleuthkitCase skCase;
             private DeletedContent.DeletedContentFilter filter;
             private final Logger logger = Logger.getLogger(DeletedContentChildren.class.getName());
-            
-        private static final int MAX_OBJECTS = 10001;
+            //more files are listed, with a warning
+            private static final int MAX_OBJECTS_WITHOUT_WARNING = 10000;
 
             DeletedContentChildren(DeletedContent.DeletedContentFilter filter, SleuthkitCase skCase) {
-                this.skCase = skCase;
+                super(skCase);
                 this.filter = filter;
             }
 
             @Override
-            protected boolean createKeys(List<AbstractFile> list) {
-                List<AbstractFile> queryList = runFsQuery();
-                if (queryList.size() == MAX_OBJECTS) {
-                    SwingUtilities.invokeLater(new Runnable() {
-                        @Override
-                        public void run() {
-                            JOptionPane.showMessageDialog(null, "There are more Deleted Files than can be displayed. Only the first " 
-                                                                + (MAX_OBJECTS - 1) 
-                                                                + " Deleted Files will be shown.");
-                        }
-                    });
+            protected long[] getIds() throws TskCoreException {
+                return queryIds(skCase, makeQuery());
+            }
+
+            @Override
+            protected void addNotify() {
+                super.addNotify();
+                final int count = getCount();
+                if (count > MAX_OBJECTS_WITHOUT_WARNING) {
+                    MessageNotifyUtil.Notify.info("Deleted Files: " + count + " files found",
+                            "Large number of files may impact performance on some operations");
                 }
-                
-                queryList.remove(queryList.size() - 1);
-                list.addAll(queryList);
-                return true;
             }
 
             private String makeQuery() {
@@ -272,35 +265,25 @@ private String makeQuery() {
 
                     default:
                         logger.log(Level.SEVERE, "Unsupported filter type to get deleted content: " + filter);
-
+                        return null;
                 }
 
-                query += " LIMIT " + MAX_OBJECTS;
                 return query;
             }
 
-            private List<AbstractFile> runFsQuery() {
-                List<AbstractFile> ret = new ArrayList<AbstractFile>();
-
-                String query = makeQuery();
-                try {
-                    ret = skCase.findAllFilesWhere(query);
-                } catch (TskCoreException e) {
-                    logger.log(Level.SEVERE, "Error getting files for the deleted content view using: " + query, e);
-                }
-
-                return ret;
-
-            }
-
             /**
              * Get children count without actually loading all nodes
              *
              * @return
              */
-            long calculateItems() {
+            @Override
+            protected long calculateItems() {
+                final String query = makeQuery();
+                if (query == null) {
+                    return 0;
+                }
                 try {
-                    return skCase.countFilesWhere(makeQuery());
+                    return skCase.countFilesWhere(query);
                 } catch (TskCoreException ex) {
                     logger.log(Level.SEVERE, "Error getting deleted files search view count", ex);
                     return 0;
@@ -308,7 +291,7 @@ long calculateItems() {
             }
 
             @Override
-            protected Node createNodeForKey(AbstractFile key) {
+            protected Node createNodeForFile(AbstractFile key) {
                 return key.accept(new ContentVisitor.Default<AbstractNode>() {
                     public FileNode visit(AbstractFile f) {
                         return new FileNode(f, false);
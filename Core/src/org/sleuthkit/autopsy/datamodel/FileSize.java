@@ -18,7 +18,6 @@
  */
 package org.sleuthkit.autopsy.datamodel;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
@@ -164,7 +163,7 @@ public class FileSizeNode extends DisplayableItemNode {
             private final Logger logger = Logger.getLogger(FileSizeNode.class.getName());
 
             FileSizeNode(SleuthkitCase skCase, FileSizeFilter filter) {
-                super(Children.create(new FileSizeChildren(filter, skCase), true), Lookups.singleton(filter.getDisplayName()));
+                super(new FileSizeChildren(filter, skCase), Lookups.singleton(filter.getDisplayName()));
                 super.setName(filter.getName());
                 this.skCase = skCase;
                 this.filter = filter;
@@ -212,25 +211,19 @@ public boolean isLeafTypeNode() {
             }
         }
 
-        class FileSizeChildren extends ChildFactory<AbstractFile> {
+        class FileSizeChildren extends PagedFileChildren {
 
-            private SleuthkitCase skCase;
             private FileSizeFilter filter;
             private final Logger logger = Logger.getLogger(FileSizeChildren.class.getName());
 
             FileSizeChildren(FileSizeFilter filter, SleuthkitCase skCase) {
-                this.skCase = skCase;
+                super(skCase);
                 this.filter = filter;
             }
 
             @Override
-            protected boolean createKeys(List<AbstractFile> list) {
-                List<AbstractFile> l = runFsQuery();
-                if (l == null) {
-                    return false;
-                }
-                list.addAll(l);
-                return true;
+            protected long[] getIds() throws TskCoreException {
+                return queryIds(skCase, makeQuery());
             }
 
             private String makeQuery() {
@@ -257,32 +250,19 @@ private String makeQuery() {
                 return query;
             }
 
-            private List<AbstractFile> runFsQuery() {
-                List<AbstractFile> ret = new ArrayList<AbstractFile>();
-
-                String query = makeQuery();
-                if (query == null) {
-                    return null;
-                }
-                
-                try {
-                    ret = skCase.findAllFilesWhere(query);
-                } catch (TskCoreException e) {
-                    logger.log(Level.SEVERE, "Error getting files for the file size view using: " + query, e);
-                }
-
-                return ret;
-
-            }
-
             /**
              * Get children count without actually loading all nodes
              *
              * @return
              */
-            long calculateItems() {
+            @Override
+            protected long calculateItems() {
+                final String query = makeQuery();
+                if (query == null) {
+                    return 0;
+                }
                 try {
-                    return skCase.countFilesWhere(makeQuery());
+                    return skCase.countFilesWhere(query);
                 } catch (TskCoreException ex) {
                     logger.log(Level.SEVERE, "Error getting files by size search view count", ex);
                     return 0;
@@ -290,7 +270,7 @@ long calculateItems() {
             }
 
             @Override
-            protected Node createNodeForKey(AbstractFile key) {
+            protected Node createNodeForFile(AbstractFile key) {
                 return key.accept(new ContentVisitor.Default<AbstractNode>() {
                     public FileNode visit(AbstractFile f) {
                         return new FileNode(f, false);
@@ -18,12 +18,9 @@
  */
 package org.sleuthkit.autopsy.datamodel;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.logging.Level;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.openide.nodes.AbstractNode;
-import org.openide.nodes.ChildFactory;
 import org.openide.nodes.Node;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.Content;
@@ -38,24 +35,23 @@
 import org.sleuthkit.datamodel.TskData;
 
 /**
- * Children factory for a specific file type - does the database query. 
+ * Children factory for a specific file type - does the database query, the
+ * files are loaded a page at a time.
  */
-class FileTypeChildren extends ChildFactory<Content> {
+class FileTypeChildren extends PagedFileChildren {
 
-    private SleuthkitCase skCase;
     private FileTypeExtensionFilters.SearchFilterInterface filter;
     private static final Logger logger = Logger.getLogger(FileTypeChildren.class.getName());
     //private final static int MAX_OBJECTS = 2000;
 
     public FileTypeChildren(FileTypeExtensionFilters.SearchFilterInterface filter, SleuthkitCase skCase) {
+        super(skCase);
         this.filter = filter;
-        this.skCase = skCase;
     }
 
     @Override
-    protected boolean createKeys(List<Content> list) {
-        list.addAll(runQuery());
-        return true;
+    protected long[] getIds() throws TskCoreException {
+        return queryIds(skCase, createQuery());
     }
     
     private String createQuery(){
@@ -68,25 +64,13 @@ private String createQuery(){
 //        query += " LIMIT " + MAX_OBJECTS;
         return query;
     }
-
-    
-    private List<AbstractFile> runQuery(){
-        List<AbstractFile> list = new ArrayList<>();
-        try {
-            list = skCase.findAllFilesWhere(createQuery());
-        } catch (TskCoreException ex) {
-            logger.log(Level.SEVERE, "Couldn't get search results", ex);
-        }
-
-        return list;
-        
-    }
     
     /**
      * Get children count without actually loading all nodes
      * @return 
      */
-    long calculateItems() {
+    @Override
+    protected long calculateItems() {
         try {
             return skCase.countFilesWhere(createQuery());
         } catch (TskCoreException ex) {
@@ -96,7 +80,7 @@ long calculateItems() {
     }
 
     @Override
-    protected Node createNodeForKey(Content key) {
+    protected Node createNodeForFile(AbstractFile key) {
         return key.accept(new ContentVisitor.Default<AbstractNode>() {
             @Override
             public FileNode visit(File f) {
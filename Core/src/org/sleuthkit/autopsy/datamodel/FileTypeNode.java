@@ -18,7 +18,6 @@
  */
 package org.sleuthkit.autopsy.datamodel;
 
-import org.openide.nodes.Children;
 import org.openide.nodes.Sheet;
 import org.openide.util.lookup.Lookups;
 import org.sleuthkit.datamodel.SleuthkitCase;
@@ -32,7 +31,7 @@ public class FileTypeNode extends DisplayableItemNode {
     SleuthkitCase skCase;
 
     FileTypeNode(FileTypeExtensionFilters.SearchFilterInterface filter, SleuthkitCase skCase) {
-        super(Children.create(new FileTypeChildren(filter, skCase), true), Lookups.singleton(filter.getDisplayName()));
+        super(new FileTypeChildren(filter, skCase), Lookups.singleton(filter.getDisplayName()));
         
         this.filter = filter;
         this.skCase = skCase;
@@ -18,10 +18,13 @@
  */
 package org.sleuthkit.autopsy.datamodel;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -35,10 +38,15 @@
 import org.openide.nodes.Node;
 import org.openide.nodes.Sheet;
 import org.openide.util.Exceptions;
+import org.openide.util.WeakListeners;
 import org.openide.util.lookup.Lookups;
+import org.sleuthkit.autopsy.ingest.IngestManager;
+import org.sleuthkit.autopsy.ingest.IngestManager.IngestModuleEvent;
+import org.sleuthkit.autopsy.ingest.ModuleDataEvent;
 import org.sleuthkit.datamodel.BlackboardArtifact;
 import org.sleuthkit.datamodel.BlackboardAttribute;
 import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
 import org.sleuthkit.datamodel.TskException;
 
 /**
@@ -50,11 +58,82 @@ public class HashsetHits implements AutopsyVisitableItem {
     private static final String DISPLAY_NAME = BlackboardArtifact.ARTIFACT_TYPE.TSK_HASHSET_HIT.getDisplayName();
     private static final Logger logger = Logger.getLogger(HashsetHits.class.getName());
     private SleuthkitCase skCase;
-    private Map<String, Set<Long>> hashSetHitsMap;
+    private final Map<String, Set<Long>> hashSetHitsMap;
+    // the map is loaded from the database once, then updated with the
+    // artifacts of the hash set hit data events
+    private boolean loaded = false;
+    // held so the weak listener registered with the ingest manager stays registered
+    private final PropertyChangeListener ingestListener;
 
     public HashsetHits(SleuthkitCase skCase) {
         this.skCase = skCase;
         hashSetHitsMap = new LinkedHashMap<String, Set<Long>>();
+        ingestListener = new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if (evt.getPropertyName().equals(IngestModuleEvent.DATA.toString())) {
+                    final ModuleDataEvent event = (ModuleDataEvent) evt.getOldValue();
+                    if (event.getArtifactType() == BlackboardArtifact.ARTIFACT_TYPE.TSK_HASHSET_HIT) {
+                        addArtifacts(event.getArtifacts());
+                    }
+                }
+            }
+        };
+        IngestManager.addPropertyChangeListener(WeakListeners.propertyChange(ingestListener, null));
+    }
+
+    private void addArtifact(String setName, long artifactId) {
+        if (!hashSetHitsMap.containsKey(setName)) {
+            hashSetHitsMap.put(setName, new HashSet<Long>());
+        }
+        hashSetHitsMap.get(setName).add(artifactId);
+    }
+
+    /**
+     * Load the map from the database, if not loaded yet
+     */
+    private synchronized void loadArtifacts() {
+        if (!loaded) {
+            initArtifacts();
+            loaded = true;
+        }
+    }
+
+    /**
+     * Add new hash set hits to the map, without querying all the hits again
+     *
+     * @param newArtifacts new hash set hit artifacts, or null if not known
+     */
+    private synchronized void addArtifacts(Collection<BlackboardArtifact> newArtifacts) {
+        if (!loaded) {
+            // loaded with the new hits when the tree is first shown
+            return;
+        }
+        if (newArtifacts == null) {
+            // the event does not say which hits are new
+            loaded = false;
+            return;
+        }
+        final int setNameId = BlackboardAttribute.ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID();
+        for (BlackboardArtifact artifact : newArtifacts) {
+            try {
+                for (BlackboardAttribute attribute : artifact.getAttributes()) {
+                    if (attribute.getAttributeTypeID() == setNameId) {
+                        addArtifact(attribute.getValueString(), artifact.getArtifactID());
+                    }
+                }
+            } catch (TskCoreException ex) {
+                logger.log(Level.WARNING, "Error getting the attributes of hash set hit artifact: " + artifact.getArtifactID(), ex);
+            }
+        }
+    }
+
+    private synchronized List<String> getSetNames() {
+        return new ArrayList<String>(hashSetHitsMap.keySet());
+    }
+
+    private synchronized Set<Long> getSetHits(String setName) {
+        return hashSetHitsMap.get(setName);
     }
 
     @SuppressWarnings("deprecation")
@@ -73,10 +152,7 @@ private void initArtifacts() {
             while (rs.next()) {
                 String value = rs.getString("value_text");
                 long artifactId = rs.getLong("artifact_id");
-                if (!hashSetHitsMap.containsKey(value)) {
-                    hashSetHitsMap.put(value, new HashSet<Long>());
-                }
-                hashSetHitsMap.get(value).add(artifactId);
+                addArtifact(value, artifactId);
 
             }
            
@@ -109,7 +185,7 @@ public HashsetHitsRootNode() {
             super.setName(HASHSET_HITS);
             super.setDisplayName(DISPLAY_NAME);
             this.setIconBaseWithExtension("org/sleuthkit/autopsy/images/hashset_hits.png");
-            initArtifacts();
+            loadArtifacts();
         }
 
         @Override
@@ -144,13 +220,16 @@ private class HashsetHitsRootChildren extends ChildFactory<String> {
 
         @Override
         protected boolean createKeys(List<String> list) {
-            list.addAll(hashSetHitsMap.keySet());
+            list.addAll(getSetNames());
             return true;
         }
 
         @Override
         protected Node createNodeForKey(String key) {
-            return new HashsetHitsSetNode(key, hashSetHitsMap.get(key));
+            Set<Long> children = getSetHits(key);
+            synchronized (HashsetHits.this) {
+                return new HashsetHitsSetNode(key, children);
+            }
         }
     }
 
@@ -207,7 +286,11 @@ private HashsetHitsSetChildren(Set<Long> children) {
 
         @Override
         protected boolean createKeys(List<BlackboardArtifact> list) {
-            for (long l : children) {
+            List<Long> ids;
+            synchronized (HashsetHits.this) {
+                ids = new ArrayList<>(children);
+            }
+            for (long l : ids) {
                 try {
                     //TODO: bulk artifact gettings
                     list.add(skCase.getBlackboardArtifact(l));
@@ -18,9 +18,12 @@
  */
 package org.sleuthkit.autopsy.datamodel;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -33,7 +36,11 @@
 import org.openide.nodes.Node;
 import org.openide.nodes.Sheet;
 import org.openide.util.Exceptions;
+import org.openide.util.WeakListeners;
 import org.openide.util.lookup.Lookups;
+import org.sleuthkit.autopsy.ingest.IngestManager;
+import org.sleuthkit.autopsy.ingest.IngestManager.IngestModuleEvent;
+import org.sleuthkit.autopsy.ingest.ModuleDataEvent;
 import org.sleuthkit.datamodel.BlackboardArtifact;
 import org.sleuthkit.datamodel.BlackboardAttribute;
 import org.sleuthkit.datamodel.SleuthkitCase;
@@ -53,21 +60,39 @@ public class KeywordHits implements AutopsyVisitableItem {
     public static final String SIMPLE_LITERAL_SEARCH = "Single Literal Keyword Search";
     public static final String SIMPLE_REGEX_SEARCH = "Single Regular Expression Search";
     // Map from String (list name) to Map from string (keyword) to set<long> (artifact ids)
-    private Map<String, Map<String, Set<Long>>> topLevelMap;
-    private Map<String, Map<String, Set<Long>>> listsMap;
+    private final Map<String, Map<String, Set<Long>>> topLevelMap;
+    private final Map<String, Map<String, Set<Long>>> listsMap;
     // Map from String (literal keyword) to set<long> (artifact ids)
-    private Map<String, Set<Long>> literalMap;
+    private final Map<String, Set<Long>> literalMap;
     // Map from String (regex keyword) to set<long> (artifact ids);
-    private Map<String, Set<Long>> regexMap;
-    Map<Long, Map<Long, String>> artifacts;
+    private final Map<String, Set<Long>> regexMap;
+    // ids of the artifacts in the maps
+    private final Set<Long> indexedArtifacts;
+    // the maps are loaded from the database once, then updated with the
+    // artifacts of the keyword hit data events
+    private boolean loaded = false;
+    // held so the weak listener registered with the ingest manager stays registered
+    private final PropertyChangeListener ingestListener;
 
     public KeywordHits(SleuthkitCase skCase) {
         this.skCase = skCase;
-        artifacts = new LinkedHashMap<Long, Map<Long, String>>();
         listsMap = new LinkedHashMap<String, Map<String, Set<Long>>>();
         literalMap = new LinkedHashMap<String, Set<Long>>();
         regexMap = new LinkedHashMap<String, Set<Long>>();
         topLevelMap = new LinkedHashMap<String, Map<String, Set<Long>>>();
+        indexedArtifacts = new HashSet<Long>();
+        ingestListener = new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if (evt.getPropertyName().equals(IngestModuleEvent.DATA.toString())) {
+                    final ModuleDataEvent event = (ModuleDataEvent) evt.getOldValue();
+                    if (event.getArtifactType() == BlackboardArtifact.ARTIFACT_TYPE.TSK_KEYWORD_HIT) {
+                        addArtifacts(event.getArtifacts());
+                    }
+                }
+            }
+        };
+        IngestManager.addPropertyChangeListener(WeakListeners.propertyChange(ingestListener, null));
     }
 
     private void initMaps() {
@@ -77,40 +102,96 @@ private void initMaps() {
         listsMap.clear();
         regexMap.clear();
         literalMap.clear();
-        for (Map.Entry<Long, Map<Long, String>> art : artifacts.entrySet()) {
-            long id = art.getKey();
-            Map<Long, String> attributes = art.getValue();
-            // I think we can use attributes.remove(...) here?
-            String listName = attributes.get(Long.valueOf(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID()));
-            String word = attributes.get(Long.valueOf(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_KEYWORD.getTypeID()));
-            String reg = attributes.get(Long.valueOf(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_KEYWORD_REGEXP.getTypeID()));
-            if (listName != null) {
-                if (!listsMap.containsKey(listName)) {
-                    listsMap.put(listName, new LinkedHashMap<String, Set<Long>>());
-                }
-                if (!listsMap.get(listName).containsKey(word)) {
-                    listsMap.get(listName).put(word, new HashSet<Long>());
-                }
-                listsMap.get(listName).get(word).add(id);
-            } else if (reg != null) {
-                if (!regexMap.containsKey(reg)) {
-                    regexMap.put(reg, new HashSet<Long>());
-                }
-                regexMap.get(reg).add(id);
-            } else {
-                if (!literalMap.containsKey(word)) {
-                    literalMap.put(word, new HashSet<Long>());
-                }
-                literalMap.get(word).add(id);
+        indexedArtifacts.clear();
+    }
+
+    private void addArtifact(long id, Map<Long, String> attributes) {
+        if (!indexedArtifacts.add(id)) {
+            return;
+        }
+        String listName = attributes.get(Long.valueOf(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID()));
+        String word = attributes.get(Long.valueOf(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_KEYWORD.getTypeID()));
+        String reg = attributes.get(Long.valueOf(BlackboardAttribute.ATTRIBUTE_TYPE.TSK_KEYWORD_REGEXP.getTypeID()));
+        if (listName != null) {
+            if (!listsMap.containsKey(listName)) {
+                listsMap.put(listName, new LinkedHashMap<String, Set<Long>>());
+                topLevelMap.put(listName, listsMap.get(listName));
             }
-            topLevelMap.putAll(listsMap);
+            if (!listsMap.get(listName).containsKey(word)) {
+                listsMap.get(listName).put(word, new HashSet<Long>());
+            }
+            listsMap.get(listName).get(word).add(id);
+        } else if (reg != null) {
+            if (!regexMap.containsKey(reg)) {
+                regexMap.put(reg, new HashSet<Long>());
+            }
+            regexMap.get(reg).add(id);
+        } else {
+            if (!literalMap.containsKey(word)) {
+                literalMap.put(word, new HashSet<Long>());
+            }
+            literalMap.get(word).add(id);
+        }
+    }
+
+    /**
+     * Load the maps from the database, if not loaded yet
+     */
+    private synchronized void loadArtifacts() {
+        if (!loaded) {
+            initMaps();
+            initArtifacts();
+            loaded = true;
+        }
+    }
 
+    /**
+     * Add new keyword hits to the maps, without querying all the hits again
+     *
+     * @param newArtifacts new keyword hit artifacts, or null if not known
+     */
+    private synchronized void addArtifacts(Collection<BlackboardArtifact> newArtifacts) {
+        if (!loaded) {
+            // loaded with the new hits when the tree is first shown
+            return;
         }
+        if (newArtifacts == null) {
+            // the event does not say which hits are new
+            loaded = false;
+            return;
+        }
+        for (BlackboardArtifact artifact : newArtifacts) {
+            // events can repeat the artifacts of earlier events
+            if (indexedArtifacts.contains(artifact.getArtifactID())) {
+                continue;
+            }
+            Map<Long, String> attributes = new LinkedHashMap<Long, String>();
+            try {
+                for (BlackboardAttribute attribute : artifact.getAttributes()) {
+                    String value = attribute.getValueString();
+                    if (value != null && !value.equals("")) {
+                        attributes.put(Long.valueOf(attribute.getAttributeTypeID()), value);
+                    }
+                }
+            } catch (TskCoreException ex) {
+                logger.log(Level.WARNING, "Error getting the attributes of keyword hit artifact: " + artifact.getArtifactID(), ex);
+                continue;
+            }
+            addArtifact(artifact.getArtifactID(), attributes);
+        }
+    }
+
+    private synchronized List<String> getTopLevelKeys() {
+        return new ArrayList<String>(topLevelMap.keySet());
+    }
+
+    private synchronized Map<String, Set<Long>> getTopLevelMap(String key) {
+        return topLevelMap.get(key);
     }
 
     @SuppressWarnings("deprecation")
     private void initArtifacts() {
-        artifacts.clear();
+        Map<Long, Map<Long, String>> artifacts = new LinkedHashMap<Long, Map<Long, String>>();
         ResultSet rs = null;
         try {
             int setId = BlackboardAttribute.ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID();
@@ -150,6 +231,10 @@ private void initArtifacts() {
                 }
             }
         }
+
+        for (Map.Entry<Long, Map<Long, String>> art : artifacts.entrySet()) {
+            addArtifact(art.getKey(), art.getValue());
+        }
     }
 
     @Override
@@ -165,8 +250,7 @@ public KeywordHitsRootNode() {
             super.setDisplayName(KEYWORD_HITS);
             this.setIconBaseWithExtension("org/sleuthkit/autopsy/images/keyword_hits.png");
             //long start = System.currentTimeMillis();
-            initArtifacts();
-            initMaps();
+            loadArtifacts();
             //long finish = System.currentTimeMillis();
             //logger.info("Process took " + (finish-start) + " ms" );
         }
@@ -203,13 +287,13 @@ private class KeywordHitsRootChildren extends ChildFactory<String> {
 
         @Override
         protected boolean createKeys(List<String> list) {
-            list.addAll(topLevelMap.keySet());
+            list.addAll(getTopLevelKeys());
             return true;
         }
 
         @Override
         protected Node createNodeForKey(String key) {
-            return new KeywordHitsListNode(key, topLevelMap.get(key));
+            return new KeywordHitsListNode(key, getTopLevelMap(key));
         }
     }
 
@@ -222,8 +306,10 @@ public KeywordHitsListNode(String name, Map<String, Set<Long>> children) {
             super(Children.create(new KeywordHitsListChildren(children), true), Lookups.singleton(name));
             super.setName(name);
             int totalDescendants = 0;
-            for (Set<Long> grandChildren : children.values()) {
-                totalDescendants += grandChildren.size();
+            synchronized (KeywordHits.this) {
+                for (Set<Long> grandChildren : children.values()) {
+                    totalDescendants += grandChildren.size();
+                }
             }
             super.setDisplayName(name + " (" + totalDescendants + ")");
             this.setIconBaseWithExtension("org/sleuthkit/autopsy/images/keyword_hits.png");
@@ -276,13 +362,17 @@ private KeywordHitsListChildren(Map<String, Set<Long>> children) {
 
         @Override
         protected boolean createKeys(List<String> list) {
-            list.addAll(children.keySet());
+            synchronized (KeywordHits.this) {
+                list.addAll(children.keySet());
+            }
             return true;
         }
 
         @Override
         protected Node createNodeForKey(String key) {
-            return new KeywordHitsKeywordNode(key, children.get(key));
+            synchronized (KeywordHits.this) {
+                return new KeywordHitsKeywordNode(key, children.get(key));
+            }
         }
     }
 
@@ -352,8 +442,12 @@ private KeywordHitsKeywordChildren(Set<Long> children) {
 
         @Override
         protected boolean createKeys(List<BlackboardArtifact> list) {
+            List<Long> ids;
+            synchronized (KeywordHits.this) {
+                ids = new ArrayList<>(children);
+            }
             List<BlackboardArtifact> tempList = new ArrayList<>();
-            for (long l : children) {
+            for (long l : ids) {
                 try {
                     //TODO: bulk artifact gettings
                     tempList.add(skCase.getBlackboardArtifact(l));
@@ -0,0 +1,287 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.datamodel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Level;
+import org.openide.nodes.Children;
+import org.openide.nodes.Node;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Lazy children for the views listing the files matching a query, such as
+ * the file type, size, deleted and recent files views, and the file search
+ * results.
+ *
+ * The keys are the positions of the matching files, sized with the count of
+ * calculateItems(), so no file is loaded to list the children. The ids of
+ * the matching files are queried in id order on a background thread when the
+ * children are first needed, and the files are loaded a page of ids at a
+ * time, with a single query, as the nodes of their rows are made. Only the
+ * most recently used pages are kept, pages of rows that scrolled out of view
+ * are dropped and loaded again if needed.
+ */
+public abstract class PagedFileChildren extends Children.Keys<Integer> {
+
+    private static final Logger logger = Logger.getLogger(PagedFileChildren.class.getName());
+    public static final int PAGE_SIZE = 500;
+    private static final int MAX_CACHED_PAGES = 10;
+    //id queries of all the views, one at a time, off the EDT
+    private static final ExecutorService idsQueryExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "paged-file-ids-query");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    protected final SleuthkitCase skCase;
+    //ids of the files being listed, being queried until the future is done
+    private Future<long[]> ids = null;
+    private volatile int count = 0;
+    private final Map<Integer, List<AbstractFile>> pages = new LinkedHashMap<Integer, List<AbstractFile>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<AbstractFile>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    protected PagedFileChildren(SleuthkitCase skCase) {
+        super(true);
+        this.skCase = skCase;
+    }
+
+    /**
+     * Get the ids of the files to list, called on a background thread
+     *
+     * @return ids of the files, in id order
+     * @throws TskCoreException if the ids could not be queried
+     */
+    protected abstract long[] getIds() throws TskCoreException;
+
+    /**
+     * Get children count without actually loading all nodes
+     *
+     * @return number of files to list
+     */
+    protected abstract long calculateItems();
+
+    /**
+     * Make the node of a listed file
+     *
+     * @param file file to make the node for
+     * @return node of the file
+     */
+    protected abstract Node createNodeForFile(AbstractFile file);
+
+    @Override
+    protected void addNotify() {
+        synchronized (this) {
+            pages.clear();
+            ids = idsQueryExecutor.submit(new Callable<long[]>() {
+                @Override
+                public long[] call() throws TskCoreException {
+                    return getIds();
+                }
+            });
+        }
+        count = (int) Math.min(calculateItems(), Integer.MAX_VALUE);
+        final int numKeys = count;
+        //positions, without a list of count Integers
+        setKeys(new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return index;
+            }
+
+            @Override
+            public int size() {
+                return numKeys;
+            }
+        });
+    }
+
+    /**
+     * @return number of files the children were sized with, when last shown
+     */
+    protected int getCount() {
+        return count;
+    }
+
+    @Override
+    protected void removeNotify() {
+        synchronized (this) {
+            if (ids != null) {
+                ids.cancel(false);
+                ids = null;
+            }
+            pages.clear();
+        }
+        setKeys(Collections.<Integer>emptyList());
+    }
+
+    @Override
+    protected Node[] createNodes(Integer position) {
+        final AbstractFile file;
+        try {
+            file = getFile(position);
+        } catch (TskCoreException ex) {
+            logger.log(Level.WARNING, "Error getting the file to list at position " + position, ex);
+            return new Node[0];
+        }
+        if (file == null) {
+            //no longer exists, or added since counted
+            return new Node[0];
+        }
+        return new Node[]{createNodeForFile(file)};
+    }
+
+    private AbstractFile getFile(int position) throws TskCoreException {
+        final Future<long[]> idsQuery;
+        synchronized (this) {
+            idsQuery = ids;
+        }
+        if (idsQuery == null) {
+            return null;
+        }
+        final long[] fileIds;
+        try {
+            //the rows are shown once the ids are queried
+            fileIds = idsQuery.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (CancellationException ex) {
+            //removed while querying the ids
+            return null;
+        } catch (ExecutionException ex) {
+            throw new TskCoreException("Error querying the ids of the files to list", ex);
+        }
+        if (position >= fileIds.length) {
+            return null;
+        }
+        final int pageIndex = position / PAGE_SIZE;
+        synchronized (this) {
+            if (ids != idsQuery) {
+                //removed or reloaded while querying the ids
+                return null;
+            }
+            List<AbstractFile> page = pages.get(pageIndex);
+            if (page == null) {
+                final int start = pageIndex * PAGE_SIZE;
+                page = getFiles(skCase, fileIds, start, Math.min(start + PAGE_SIZE, fileIds.length));
+                pages.put(pageIndex, page);
+            }
+            return page.get(position - pageIndex * PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Query the ids of the files matching a where clause
+     *
+     * @param skCase case to query
+     * @param where where clause on the files table, or null to match no file
+     * @return ids of the matching files, in id order
+     * @throws TskCoreException if the ids could not be queried
+     */
+    @SuppressWarnings("deprecation")
+    public static long[] queryIds(SleuthkitCase skCase, String where) throws TskCoreException {
+        if (where == null) {
+            return new long[0];
+        }
+        long[] found = new long[PAGE_SIZE];
+        int numFound = 0;
+        ResultSet rs = null;
+        try {
+            rs = skCase.runQuery("SELECT obj_id FROM tsk_files WHERE " + where + " ORDER BY obj_id");
+            while (rs.next()) {
+                if (numFound == found.length) {
+                    found = Arrays.copyOf(found, found.length * 2);
+                }
+                found[numFound++] = rs.getLong(1);
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Error querying the ids of the files matching: " + where, ex);
+        } finally {
+            if (rs != null) {
+                try {
+                    skCase.closeRunQuery(rs);
+                } catch (SQLException ex) {
+                    logger.log(Level.WARNING, "Error closing the file ids query", ex);
+                }
+            }
+        }
+        return Arrays.copyOf(found, numFound);
+    }
+
+    /**
+     * Make the comma separated list of a range of ids, for an IN clause
+     *
+     * @param ids ids
+     * @param start position of the first id of the range
+     * @param end position after the last id of the range
+     * @return ids of the range separated with commas
+     */
+    public static String joinIds(long[] ids, int start, int end) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = start; i < end; ++i) {
+            if (i > start) {
+                sb.append(',');
+            }
+            sb.append(ids[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Load the files of a range of ids with a single query
+     *
+     * @return files of the ids, in the order of the ids, null for the files
+     * that no longer exist
+     */
+    private static List<AbstractFile> getFiles(SleuthkitCase skCase, long[] ids, int start, int end) throws TskCoreException {
+        final Map<Long, AbstractFile> files = new HashMap<>();
+        for (AbstractFile file : skCase.findAllFilesWhere("obj_id IN (" + joinIds(ids, start, end) + ")")) {
+            files.put(file.getId(), file);
+        }
+        final AbstractFile[] page = new AbstractFile[end - start];
+        for (int i = start; i < end; ++i) {
+            page[i - start] = files.get(ids[i]);
+        }
+        return Arrays.asList(page);
+    }
+}
@@ -18,13 +18,10 @@
  */
 package org.sleuthkit.autopsy.datamodel;
 
-import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.List;
 import java.util.logging.Level;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.openide.nodes.AbstractNode;
-import org.openide.nodes.ChildFactory;
 import org.openide.nodes.Node;
 import org.sleuthkit.autopsy.datamodel.RecentFiles.RecentFilesFilter;
 import org.sleuthkit.datamodel.AbstractFile;
@@ -42,25 +39,23 @@
  *
  * @author dfickling
  */
-public class RecentFilesFilterChildren extends ChildFactory<Content> {
+public class RecentFilesFilterChildren extends PagedFileChildren {
 
-    private SleuthkitCase skCase;
     private RecentFilesFilter filter;
     private Calendar prevDay;
     private final static Logger logger = Logger.getLogger(RecentFilesFilterChildren.class.getName());
     //private final static int MAX_OBJECTS = 1000000;
 
     RecentFilesFilterChildren(RecentFilesFilter filter, SleuthkitCase skCase, Calendar lastDay) {
-        this.skCase = skCase;
+        super(skCase);
         this.filter = filter;
         this.prevDay = (Calendar) lastDay.clone();
         prevDay.add(Calendar.DATE, -filter.getDurationDays());
     }
 
     @Override
-    protected boolean createKeys(List<Content> list) {
-        list.addAll(runQuery());
-        return true;
+    protected long[] getIds() throws TskCoreException {
+        return queryIds(skCase, createQuery());
     }
 
     private String createQuery() {
@@ -79,26 +74,12 @@ private String createQuery() {
         return query;
     }
 
-    private List<AbstractFile> runQuery() {
-        List<AbstractFile> ret = new ArrayList<AbstractFile>();
-        try {
-            List<AbstractFile> found = skCase.findAllFilesWhere(createQuery());
-            for (AbstractFile c : found) {
-                    ret.add(c);
-            }
-
-        } catch (TskCoreException ex) {
-            logger.log(Level.WARNING, "Couldn't get search results", ex);
-        } 
-        return ret;
-
-    }
-    
      /**
      * Get children count without actually loading all nodes
      * @return 
      */
-    long calculateItems() {
+    @Override
+    protected long calculateItems() {
         try {
             return skCase.countFilesWhere(createQuery());
         } catch (TskCoreException ex) {
@@ -110,7 +91,7 @@ long calculateItems() {
  
 
     @Override
-    protected Node createNodeForKey(Content key) {
+    protected Node createNodeForFile(AbstractFile key) {
         return key.accept(new ContentVisitor.Default<AbstractNode>() {
             @Override
             public FileNode visit(File f) {
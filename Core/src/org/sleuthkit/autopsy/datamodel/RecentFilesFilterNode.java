@@ -22,7 +22,6 @@
 import java.util.Locale;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.openide.nodes.AbstractNode;
-import org.openide.nodes.Children;
 import org.openide.nodes.Sheet;
 import org.openide.util.lookup.Lookups;
 import org.sleuthkit.autopsy.datamodel.RecentFiles.RecentFilesFilter;
@@ -38,7 +37,7 @@ public class RecentFilesFilterNode extends DisplayableItemNode {
     private final static Logger logger = Logger.getLogger(RecentFilesFilterNode.class.getName());
 
     RecentFilesFilterNode(SleuthkitCase skCase, RecentFilesFilter filter, Calendar lastDay) {
-        super(Children.create(new RecentFilesFilterChildren(filter, skCase, lastDay), true), Lookups.singleton(filter.getDisplayName()));
+        super(new RecentFilesFilterChildren(filter, skCase, lastDay), Lookups.singleton(filter.getDisplayName()));
         super.setName(filter.getName());
         //super.setDisplayName(filter.getDisplayName());
         this.skCase = skCase;
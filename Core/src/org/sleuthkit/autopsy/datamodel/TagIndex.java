@@ -0,0 +1,232 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.datamodel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * In-memory index of the tags of a case, for the tag name lookups done for
+ * every row of the result viewers and reports.
+ *
+ * The index is loaded with a single query the first time it is used in a
+ * case, and is kept up to date by Tags.createTag() and Tags.createBookmark().
+ * It maps the ids of tagged artifacts and tagged files to the names of their
+ * tags, and the ids of the tag artifacts to their own names. Tag names are
+ * few, the names are shared between the entries, and the ids are kept
+ * unboxed in LongMaps.
+ */
+class TagIndex {
+
+    private static final Logger logger = Logger.getLogger(TagIndex.class.getName());
+    private static final CaseScopedCache<TagIndex> cache = new CaseScopedCache<TagIndex>() {
+        @Override
+        protected TagIndex load(SleuthkitCase skCase) throws TskCoreException {
+            return TagIndex.load(skCase);
+        }
+    };
+    //tagged artifact id -> names of its tags
+    private final LongMap<String[]> artifactTagNames = new LongMap<>();
+    //tagged file id -> names of its tags
+    private final LongMap<String[]> fileTagNames = new LongMap<>();
+    //tag artifact id -> its tag name
+    private final LongMap<String> tagNames = new LongMap<>();
+    private final Map<String, String> names = new HashMap<>();
+
+    private TagIndex() {
+    }
+
+    /**
+     * Get the index of the case, loading it if not loaded yet
+     *
+     * @param skCase case to get the index of
+     * @return the index
+     * @throws TskCoreException if the tags could not be loaded, the next call
+     * loads them again
+     */
+    static TagIndex getIndex(SleuthkitCase skCase) throws TskCoreException {
+        return cache.get(skCase);
+    }
+
+    /**
+     * Get the index of the case if it is loaded, for the new tags to be added
+     * to it. Tags created before the index is loaded are loaded with it.
+     *
+     * @param skCase case to get the index of
+     * @return the index, or null if not loaded
+     */
+    static TagIndex getLoadedIndex(SleuthkitCase skCase) {
+        return cache.getIfLoaded(skCase);
+    }
+
+    /**
+     * Get the tag names of an artifact
+     *
+     * @param artifactId id of the artifact
+     * @param artifactTypeId type of the artifact
+     * @return names of the tags of the artifact, or the name of the tag if the
+     * artifact is a tag
+     */
+    synchronized HashSet<String> getTagNamesForArtifact(long artifactId, int artifactTypeId) {
+        HashSet<String> found = new HashSet<>();
+        if (artifactTypeId == ARTIFACT_TYPE.TSK_TAG_FILE.getTypeID()
+                || artifactTypeId == ARTIFACT_TYPE.TSK_TAG_ARTIFACT.getTypeID()) {
+            String name = tagNames.get(artifactId);
+            if (name != null) {
+                found.add(name);
+            }
+        } else {
+            String[] tagged = artifactTagNames.get(artifactId);
+            if (tagged != null) {
+                found.addAll(Arrays.asList(tagged));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Get the tag names of a file
+     *
+     * @param fileId object id of the file
+     * @return names of the tags of the file
+     */
+    synchronized HashSet<String> getTagNamesForFile(long fileId) {
+        HashSet<String> found = new HashSet<>();
+        String[] tagged = fileTagNames.get(fileId);
+        if (tagged != null) {
+            found.addAll(Arrays.asList(tagged));
+        }
+        return found;
+    }
+
+    /**
+     * Get the tag name of a tag artifact
+     *
+     * @param tagArtifactId id of the TSK_TAG_FILE or TSK_TAG_ARTIFACT artifact
+     * @return the tag name, or null if not a tag
+     */
+    synchronized String getTagName(long tagArtifactId) {
+        return tagNames.get(tagArtifactId);
+    }
+
+    /**
+     * Add a file tag created in the case
+     *
+     * @param tagArtifactId id of the TSK_TAG_FILE artifact
+     * @param fileId object id of the tagged file
+     * @param tagName name of the tag
+     */
+    synchronized void addFileTag(long tagArtifactId, long fileId, String tagName) {
+        String name = intern(tagName);
+        tagNames.put(tagArtifactId, name);
+        addName(fileTagNames, fileId, name);
+    }
+
+    /**
+     * Add a result tag created in the case
+     *
+     * @param tagArtifactId id of the TSK_TAG_ARTIFACT artifact
+     * @param artifactId id of the tagged artifact
+     * @param tagName name of the tag
+     */
+    synchronized void addArtifactTag(long tagArtifactId, long artifactId, String tagName) {
+        String name = intern(tagName);
+        tagNames.put(tagArtifactId, name);
+        addName(artifactTagNames, artifactId, name);
+    }
+
+    private String intern(String tagName) {
+        String name = names.get(tagName);
+        if (name == null) {
+            name = tagName;
+            names.put(name, name);
+        }
+        return name;
+    }
+
+    private static void addName(LongMap<String[]> map, long id, String name) {
+        String[] current = map.get(id);
+        if (current == null) {
+            map.put(id, new String[]{name});
+            return;
+        }
+        for (String tagName : current) {
+            if (tagName.equals(name)) {
+                return;
+            }
+        }
+        String[] added = Arrays.copyOf(current, current.length + 1);
+        added[current.length] = name;
+        map.put(id, added);
+    }
+
+    @SuppressWarnings("deprecation")
+    private static TagIndex load(SleuthkitCase skCase) throws TskCoreException {
+        TagIndex index = new TagIndex();
+        ResultSet rs = null;
+        try {
+            rs = skCase.runQuery("SELECT art.artifact_id, art.artifact_type_id, art.obj_id, name.value_text, tagged.value_int64"
+                    + " FROM blackboard_artifacts AS art"
+                    + " JOIN blackboard_attributes AS name ON (name.artifact_id = art.artifact_id"
+                    + " AND name.attribute_type_id = " + ATTRIBUTE_TYPE.TSK_TAG_NAME.getTypeID() + ")"
+                    + " LEFT JOIN blackboard_attributes AS tagged ON (tagged.artifact_id = art.artifact_id"
+                    + " AND tagged.attribute_type_id = " + ATTRIBUTE_TYPE.TSK_TAGGED_ARTIFACT.getTypeID() + ")"
+                    + " WHERE art.artifact_type_id IN (" + ARTIFACT_TYPE.TSK_TAG_FILE.getTypeID()
+                    + ", " + ARTIFACT_TYPE.TSK_TAG_ARTIFACT.getTypeID() + ")");
+            while (rs.next()) {
+                long tagArtifactId = rs.getLong(1);
+                int typeId = rs.getInt(2);
+                String tagName = rs.getString(4);
+                if (tagName == null) {
+                    continue;
+                }
+                if (typeId == ARTIFACT_TYPE.TSK_TAG_FILE.getTypeID()) {
+                    index.addFileTag(tagArtifactId, rs.getLong(3), tagName);
+                } else {
+                    long taggedId = rs.getLong(5);
+                    if (rs.wasNull()) {
+                        continue;
+                    }
+                    index.addArtifactTag(tagArtifactId, taggedId, tagName);
+                }
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Failed to load the tags of the case", ex);
+        } finally {
+            if (rs != null) {
+                try {
+                    skCase.closeRunQuery(rs);
+                } catch (SQLException ex) {
+                    logger.log(Level.WARNING, "Failed to close the tags query", ex);
+                }
+            }
+        }
+        return index;
+    }
+}
@@ -44,9 +44,7 @@
 import org.sleuthkit.autopsy.coreutils.ModuleSettings;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.BlackboardArtifact;
-import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
 import org.sleuthkit.datamodel.BlackboardAttribute;
-import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
 import org.sleuthkit.datamodel.SleuthkitCase;
 import org.sleuthkit.datamodel.TskCoreException;
 
@@ -128,28 +126,23 @@ private void initData() {
                 tags.put(BlackboardArtifact.ARTIFACT_TYPE.TSK_TAG_FILE, new HashMap<String, List<BlackboardArtifact>>());
                 tags.put(BlackboardArtifact.ARTIFACT_TYPE.TSK_TAG_ARTIFACT, new HashMap<String, List<BlackboardArtifact>>());
 
-                //populate
+                //populate, with the tag names from the index rather than the attributes of each tag
+                final TagIndex index = TagIndex.getIndex(skCase);
                 for (BlackboardArtifact.ARTIFACT_TYPE artType : tags.keySet()) {
                     final Map<String, List<BlackboardArtifact>> artTags = tags.get(artType);
                     for (BlackboardArtifact artifact : skCase.getBlackboardArtifacts(artType)) {
-                        for (BlackboardAttribute attribute : artifact.getAttributes()) {
-                            if (attribute.getAttributeTypeID() == ATTRIBUTE_TYPE.TSK_TAG_NAME.getTypeID()) {
-                                String tagName = attribute.getValueString();
-                                if (artTags.containsKey(tagName)) {
-                                    List<BlackboardArtifact> artifacts = artTags.get(tagName);
-                                    artifacts.add(artifact);
-                                } else {
-                                    List<BlackboardArtifact> artifacts = new ArrayList<>();
-                                    artifacts.add(artifact);
-                                    artTags.put(tagName, artifacts);
-                                }
-                                break;
-                            }
+                        String tagName = index.getTagName(artifact.getArtifactID());
+                        if (tagName == null) {
+                            continue;
+                        }
+                        List<BlackboardArtifact> artifacts = artTags.get(tagName);
+                        if (artifacts == null) {
+                            artifacts = new ArrayList<>();
+                            artTags.put(tagName, artifacts);
                         }
+                        artifacts.add(artifact);
                     }
                 }
-
-
             } catch (TskCoreException ex) {
                 logger.log(Level.WARNING, "Count not initialize tag nodes", ex);
             }
@@ -445,6 +438,10 @@ public static void createTag(AbstractFile file, String tagName, String comment)
                 attrs.add(attr2);
             }
             bookArt.addAttributes(attrs);
+            TagIndex index = TagIndex.getLoadedIndex(Case.getCurrentCase().getSleuthkitCase());
+            if (index != null) {
+                index.addFileTag(bookArt.getArtifactID(), file.getId(), tagName);
+            }
             
             updateTagNamesAppSetting(tagName);            
         } 
@@ -485,6 +482,10 @@ public static void createTag(BlackboardArtifact artifact, String tagName, String
 
             attrs.add(attr3);
             bookArt.addAttributes(attrs);     
+            TagIndex index = TagIndex.getLoadedIndex(skCase);
+            if (index != null) {
+                index.addArtifactTag(bookArt.getArtifactID(), artifact.getArtifactID(), tagName);
+            }
             
             updateTagNamesAppSetting(tagName);
         } 
@@ -674,38 +675,44 @@ public static HashSet<String> getUniqueTagNamesForArtifact(BlackboardArtifact ar
 
     /**
      * Looks up the tag names associated with either a tagged artifact or a tag artifact.
+     * The tag names are looked up in the tag index of the case, loaded with a single
+     * query on first use.
      * 
      * @param artifactID The ID of the artifact
      * @param artifactTypeID The ID of the artifact type
      * @return A set of unique tag names
      */
     public static HashSet<String> getUniqueTagNamesForArtifact(long artifactID, int artifactTypeID) {
-        HashSet<String> tagNames = new HashSet<>();
-        
         try {
-            ArrayList<Long> tagArtifactIDs = new ArrayList<>();
-            if (artifactTypeID == ARTIFACT_TYPE.TSK_TAG_FILE.getTypeID() ||
-                artifactTypeID == ARTIFACT_TYPE.TSK_TAG_ARTIFACT.getTypeID()) {
-                tagArtifactIDs.add(artifactID);
-            } else {
-                List<BlackboardArtifact> tags = Case.getCurrentCase().getSleuthkitCase().getBlackboardArtifacts(ATTRIBUTE_TYPE.TSK_TAGGED_ARTIFACT, artifactID);
-                for (BlackboardArtifact tag : tags) {
-                    tagArtifactIDs.add(tag.getArtifactID());
-                }
-            }
-
-            for (Long tagArtifactID : tagArtifactIDs) {
-                String whereClause = "WHERE artifact_id = " + tagArtifactID + " AND attribute_type_id = " + ATTRIBUTE_TYPE.TSK_TAG_NAME.getTypeID();
-                List<BlackboardAttribute> attributes = Case.getCurrentCase().getSleuthkitCase().getMatchingAttributes(whereClause);
-                for (BlackboardAttribute attr : attributes) {
-                    tagNames.add(attr.getValueString());
-                }
-            }
-        } 
+            return TagIndex.getIndex(Case.getCurrentCase().getSleuthkitCase()).getTagNamesForArtifact(artifactID, artifactTypeID);
+        }
+        catch (IllegalStateException ex) {
+            // Case.getCurrentCase() throws IllegalStateException if there is no current autopsy case.
+            return new HashSet<>();
+        }
         catch (TskCoreException ex) {
             logger.log(Level.SEVERE, "Failed to get tags for artifact " + artifactID, ex);
+            return new HashSet<>();
         }
-        
-        return tagNames;
-    }    
+    }
+
+    /**
+     * Looks up the tag names associated with a tagged file.
+     * 
+     * @param file The file
+     * @return A set of unique tag names
+     */
+    public static HashSet<String> getUniqueTagNamesForFile(AbstractFile file) {
+        try {
+            return TagIndex.getIndex(Case.getCurrentCase().getSleuthkitCase()).getTagNamesForFile(file.getId());
+        }
+        catch (IllegalStateException ex) {
+            // Case.getCurrentCase() throws IllegalStateException if there is no current autopsy case.
+            return new HashSet<>();
+        }
+        catch (TskCoreException ex) {
+            logger.log(Level.SEVERE, "Failed to get tags for file " + file.getId(), ex);
+            return new HashSet<>();
+        }
+    }
 }
@@ -0,0 +1,313 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.filesearch;
+
+import java.nio.charset.Charset;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.datamodel.CaseScopedCache;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * In-memory index of the names of all files of a case, for substring name
+ * searches that would otherwise be a full scan of the files table with a
+ * "name like '%x%'" query.
+ *
+ * The names are packed into a single UTF-8 byte array, in file id order, each
+ * name followed by a zero byte. The array is scanned for the search string,
+ * which never contains a zero byte, so a match never runs into the next name.
+ * The ids are kept alongside as the variable length differences between
+ * consecutive ids, which are small as files have mostly consecutive ids, and
+ * decoded during the scan. A file costs the bytes of its name and about two
+ * bytes, which fits cases of millions of files.
+ *
+ * Only the ASCII letters are folded to lower case, as the LIKE operator of
+ * SQLite does, so that the index finds the same files as the LIKE query it
+ * replaces: non-ASCII names match only with the same case. The index is built
+ * on the first name search in a case. Files added to the case afterwards (with
+ * larger ids) are not in the index, searches cover them with a query limited
+ * to ids larger than getMaxId().
+ */
+class FileNameIndex {
+
+    private static final Logger logger = Logger.getLogger(FileNameIndex.class.getName());
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte END_OF_NAME = 0;
+    //stands for zero bytes of names and search strings, never in UTF-8 text
+    private static final byte ZERO_REPLACEMENT = (byte) 0xFF;
+    //estimated bytes per file besides its name: the end of name and the id
+    private static final int BYTES_PER_FILE = 3;
+    //a case too large to be indexed is kept as null, not to count its files again
+    private static final CaseScopedCache<FileNameIndex> cache = new CaseScopedCache<FileNameIndex>() {
+        @Override
+        protected FileNameIndex load(SleuthkitCase skCase) throws TskCoreException {
+            return build(skCase);
+        }
+    };
+    //the array may be longer than the names
+    private final byte[] names;
+    private final int namesLength;
+    //difference of each id with the previous one (of the first id with 0),
+    //in 7 bit groups, least significant first, high bit set on all but the last
+    private final byte[] idDeltas;
+    private final long maxId;
+
+    private FileNameIndex(byte[] names, int namesLength, byte[] idDeltas, long maxId) {
+        this.names = names;
+        this.namesLength = namesLength;
+        this.idDeltas = idDeltas;
+        this.maxId = maxId;
+    }
+
+    /**
+     * Get the index of the case, building it if not built yet. Building the
+     * index queries the names of all the files, call from a background
+     * thread.
+     *
+     * @param skCase case to get the index of
+     * @return the index, or null if the case is too large to be indexed, or
+     * the index could not be built, in which case the next call tries again
+     */
+    static FileNameIndex getIndex(SleuthkitCase skCase) {
+        try {
+            return cache.get(skCase);
+        } catch (TskCoreException ex) {
+            logger.log(Level.WARNING, "Could not build the file name index", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Get the largest index size, a quarter of the heap, so the index of a
+     * case is built whenever the heap of the application allows it rather
+     * than below a fixed number of files
+     *
+     * @return largest size of an index, in bytes
+     */
+    static long getMaxIndexSize() {
+        return Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    /**
+     * @return largest id of the indexed files, files with larger ids are not
+     * in the index
+     */
+    long getMaxId() {
+        return maxId;
+    }
+
+    /**
+     * Find the files with names containing a string, ignoring the case of
+     * ASCII letters
+     *
+     * @param substring string to search for
+     * @return ids of the matching files, in ascending order
+     */
+    long[] findIds(String substring) {
+        final byte[] pattern = foldCase(substring.getBytes(UTF_8));
+        if (pattern.length == 0) {
+            return new long[0];
+        }
+        long[] found = new long[16];
+        int numFound = 0;
+        final byte first = pattern[0];
+        long id = 0;
+        int deltaPos = 0;
+        int pos = 0;
+        while (pos < namesLength) {
+            //id of the name starting at pos
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = idDeltas[deltaPos++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            id += delta;
+
+            for (; names[pos] != END_OF_NAME; ++pos) {
+                if (names[pos] == first && matchesAt(pattern, pos)) {
+                    if (numFound == found.length) {
+                        found = Arrays.copyOf(found, found.length * 2);
+                    }
+                    found[numFound++] = id;
+                    //skip to the end of the name
+                    while (names[pos] != END_OF_NAME) {
+                        ++pos;
+                    }
+                    break;
+                }
+            }
+            ++pos;
+        }
+        return Arrays.copyOf(found, numFound);
+    }
+
+    private boolean matchesAt(byte[] pattern, int start) {
+        //the pattern has no zero byte, so the end of the name stops the match
+        for (int j = 1; j < pattern.length; ++j) {
+            if (names[start + j] != pattern[j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fold the ASCII upper case letters of UTF-8 bytes to lower case, in
+     * place. The bytes of multi-byte characters are all non-ASCII, so they
+     * are left as they are. Zero bytes, which mark the end of the names in
+     * the index, are replaced with a byte that is never in UTF-8 text.
+     *
+     * @param utf8 UTF-8 bytes
+     * @return the bytes
+     */
+    private static byte[] foldCase(byte[] utf8) {
+        for (int i = 0; i < utf8.length; ++i) {
+            if (utf8[i] >= 'A' && utf8[i] <= 'Z') {
+                utf8[i] += 'a' - 'A';
+            } else if (utf8[i] == 0) {
+                utf8[i] = ZERO_REPLACEMENT;
+            }
+        }
+        return utf8;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static FileNameIndex build(SleuthkitCase skCase) throws TskCoreException {
+        final long maxSize = getMaxIndexSize();
+        ResultSet rs = null;
+        try {
+            //LENGTH counts characters, close enough to the UTF-8 bytes of names
+            rs = skCase.runQuery("SELECT COUNT(*), SUM(LENGTH(name)) FROM tsk_files");
+            final long count = rs.next() ? rs.getLong(1) : 0;
+            final long nameLength = rs.getLong(2);
+            skCase.closeRunQuery(rs);
+            rs = null;
+            final long estimatedSize = nameLength + count * BYTES_PER_FILE;
+            if (estimatedSize > maxSize) {
+                logger.log(Level.INFO, "Not indexing the names of " + count + " files, about " + estimatedSize
+                        + " bytes, name searches will use queries");
+                return null;
+            }
+
+            final Builder builder = new Builder((int) count, (int) nameLength);
+            rs = skCase.runQuery("SELECT obj_id, name FROM tsk_files ORDER BY obj_id");
+            while (rs.next()) {
+                if (builder.getSize() > maxSize) {
+                    //many files added since counted
+                    logger.log(Level.INFO, "Not indexing the names of more than " + maxSize
+                            + " bytes, name searches will use queries");
+                    return null;
+                }
+                builder.add(rs.getLong(1), rs.getString(2));
+            }
+            return builder.build();
+        } catch (SQLException ex) {
+            throw new TskCoreException("Could not query the file names", ex);
+        } finally {
+            if (rs != null) {
+                try {
+                    skCase.closeRunQuery(rs);
+                } catch (SQLException ex) {
+                    logger.log(Level.WARNING, "Could not close the file names query", ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds an index from the names of the files, added in ascending id
+     * order
+     */
+    static class Builder {
+
+        private byte[] names;
+        private int namesLength = 0;
+        private byte[] idDeltas;
+        private int idDeltasLength = 0;
+        private long lastId = 0;
+        private boolean empty = true;
+
+        /**
+         * @param numFiles expected number of files
+         * @param nameLength expected total length of the names, the arrays
+         * grow as needed
+         */
+        Builder(int numFiles, int nameLength) {
+            numFiles = Math.max(numFiles, 1);
+            names = new byte[Math.max(nameLength, 0) + numFiles];
+            idDeltas = new byte[numFiles + numFiles / 4];
+        }
+
+        /**
+         * @return bytes of the index built so far
+         */
+        long getSize() {
+            return (long) namesLength + idDeltasLength;
+        }
+
+        /**
+         * @param id id of the file, larger than the ids added before
+         * @param name name of the file, null for no name
+         * @return this builder
+         */
+        Builder add(long id, String name) {
+            final byte[] nameBytes = name != null ? foldCase(name.getBytes(UTF_8)) : new byte[0];
+            names = ensureCapacity(names, namesLength + nameBytes.length + 1);
+            System.arraycopy(nameBytes, 0, names, namesLength, nameBytes.length);
+            namesLength += nameBytes.length;
+            names[namesLength++] = END_OF_NAME;
+
+            //at most 10 bytes of 7 bits for a long
+            idDeltas = ensureCapacity(idDeltas, idDeltasLength + 10);
+            long delta = id - lastId;
+            while ((delta & ~0x7FL) != 0) {
+                idDeltas[idDeltasLength++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            idDeltas[idDeltasLength++] = (byte) delta;
+            lastId = id;
+            empty = false;
+            return this;
+        }
+
+        FileNameIndex build() {
+            return new FileNameIndex(trim(names, namesLength), namesLength, trim(idDeltas, idDeltasLength), empty ? -1 : lastId);
+        }
+
+        private static byte[] ensureCapacity(byte[] array, int capacity) {
+            if (capacity <= array.length) {
+                return array;
+            }
+            //grow by half, the arrays of large cases are sized from the counts
+            return Arrays.copyOf(array, Math.max(array.length + array.length / 2, capacity));
+        }
+
+        private static byte[] trim(byte[] array, int length) {
+            //not copied for a little unused space, copying doubles the memory
+            return array.length - length > array.length / 8 ? Arrays.copyOf(array, length) : array;
+        }
+    }
+}
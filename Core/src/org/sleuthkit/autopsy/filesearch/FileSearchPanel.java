@@ -32,14 +32,15 @@
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
 import javax.swing.border.EmptyBorder;
 import org.openide.DialogDisplayer;
 import org.openide.NotifyDescriptor;
@@ -49,9 +50,7 @@
 import org.sleuthkit.autopsy.corecomponents.TableFilterNode;
 import org.sleuthkit.autopsy.coreutils.MessageNotifyUtil;
 import org.sleuthkit.autopsy.filesearch.FileSearchFilter.FilterValidationException;
-import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.SleuthkitCase;
-import org.sleuthkit.datamodel.TskCoreException;
 
 /**
  * FileSearchPanel that present search options
@@ -132,85 +131,118 @@ private boolean anyFiltersEnabled() {
     }
 
     /**
-     * Action when the "Search" button is pressed.
+     * Action when the "Search" button is pressed. The filters are read here,
+     * the search runs in the background, as building the file name index of
+     * a large case and querying the matches can take a while.
      *
      */
     private void search() {
-        // change the cursor to "waiting cursor" for this operation
-        this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
         try {
             if (this.anyFiltersEnabled()) {
-                String title = "File Search Results " + (++resultWindowCount);
-                String pathText = "Filename Search Results:";
-
-                // try to get the number of matches first
-                Case currentCase = Case.getCurrentCase(); // get the most updated case
-                long totalMatches = 0;
-                List<AbstractFile> contentList = null;
-                try {
-                    SleuthkitCase tskDb = currentCase.getSleuthkitCase();
-                    //ResultSet rs = tempDb.runQuery(this.getQuery("count(*) as TotalMatches"));
-                    contentList = tskDb.findAllFilesWhere(this.getQuery());
-
-                } catch (TskCoreException ex) {
-                    Logger logger = Logger.getLogger(this.getClass().getName());
-                    logger.log(Level.WARNING, "Error while trying to get the number of matches.", ex);
-                }
-                
-                if (contentList == null) {
-                    contentList = Collections.<AbstractFile>emptyList();
-                }
-
-                final TopComponent searchResultWin = DataResultTopComponent.createInstance(title, pathText,
-                        new TableFilterNode(new SearchNode(contentList), true), contentList.size());
-
-                searchResultWin.requestActive(); // make it the active top component
-
-                /**
-                 * If total matches more than 1000, pop up a dialog box that say
-                 * the performance maybe be slow and to increase the
-                 * performance, tell the users to refine their search.
-                 */
-                if (totalMatches > 10000) {
-                    // show info
-                    String msg = "File Search: " + totalMatches + " matches found";
-                    String details = "Large number of matches may impact performance on some operations";
-                    MessageNotifyUtil.Notify.info(msg, details);
-                }
+                final String title = "File Search Results " + (++resultWindowCount);
+                final String pathText = "Filename Search Results:";
+                final String nameSubstring = this.getNameSubstring();
+                final String query = this.getQuery();
+                final SleuthkitCase tskDb = Case.getCurrentCase().getSleuthkitCase(); // get the most updated case
+
+                // change the cursor to "waiting cursor" for this operation
+                this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+                searchButton.setEnabled(false);
+                new SwingWorker<FileSearchResults, Void>() {
+                    @Override
+                    protected FileSearchResults doInBackground() throws Exception {
+                        //only the ids of the matches are queried, the files are loaded as they are displayed
+                        return FileSearchResults.search(tskDb, nameSubstring, query);
+                    }
+
+                    @Override
+                    protected void done() {
+                        FileSearchResults results = null;
+                        try {
+                            results = get();
+                        } catch (InterruptedException | ExecutionException ex) {
+                            Logger logger = Logger.getLogger(FileSearchPanel.class.getName());
+                            logger.log(Level.WARNING, "Error while trying to get the number of matches.", ex);
+                        } finally {
+                            setCursor(null);
+                            searchButton.setEnabled(true);
+                        }
+                        if (results == null) {
+                            results = FileSearchResults.empty();
+                        }
+                        showResults(title, pathText, results);
+                    }
+                }.execute();
             } else {
                 throw new FilterValidationException("At least one filter must be selected.");
             }
         } catch (FilterValidationException ex) {
             NotifyDescriptor d = new NotifyDescriptor.Message("Validation Error: " + ex.getMessage());
             DialogDisplayer.getDefault().notify(d);
-        } finally {
-            this.setCursor(null);
         }
     }
 
-
+    private void showResults(String title, String pathText, FileSearchResults results) {
+        final long totalMatches = results.getCount();
+        final TopComponent searchResultWin = DataResultTopComponent.createInstance(title, pathText,
+                new TableFilterNode(new SearchNode(results), true), results.getCount());
+
+        searchResultWin.requestActive(); // make it the active top component
+
+        /**
+         * If total matches more than 1000, pop up a dialog box that say
+         * the performance maybe be slow and to increase the
+         * performance, tell the users to refine their search.
+         */
+        if (totalMatches > 10000) {
+            // show info
+            String msg = "File Search: " + totalMatches + " matches found";
+            String details = "Large number of matches may impact performance on some operations";
+            MessageNotifyUtil.Notify.info(msg, details);
+        }
+    }
 
     /**
      * Gets the SQL query to get the data from the database based on the
-     * criteria that user chooses on the FileSearch.
+     * criteria that user chooses on the FileSearch. The name filter is not
+     * included, names are matched with the file name index.
      *
-     * @return query the SQL query
+     * @return query the SQL query, or null if no filter other than the name
+     * filter is enabled
      * @throws
      * org.sleuthkit.autopsy.filesearch.FileSearchFilter.FilterValidationException
      * if an enabled filter is in an invalid state
      */
     private String getQuery() throws FilterValidationException {
-
         //String query = "select " + tempQuery + " from tsk_files where 1";
-        String query = " 1";
-
+        String query = null;
         for (FileSearchFilter f : this.getEnabledFilters()) {
-            query += " and (" + f.getPredicate() + ")";
+            if (f instanceof NameSearchFilter) {
+                continue;
+            }
+            query = (query == null ? "" : query + " and ") + "(" + f.getPredicate() + ")";
         }
 
         return query;
     }
 
+    /**
+     * Gets the string the file names must contain
+     *
+     * @return the name string, or null if the name filter is not enabled
+     * @throws
+     * org.sleuthkit.autopsy.filesearch.FileSearchFilter.FilterValidationException
+     * if the name filter is in an invalid state
+     */
+    private String getNameSubstring() throws FilterValidationException {
+        for (FileSearchFilter f : this.getEnabledFilters()) {
+            if (f instanceof NameSearchFilter) {
+                return ((NameSearchFilter) f).getNameSubstring();
+            }
+        }
+        return null;
+    }
+
     private Collection<FileSearchFilter> getFilters() {
         Collection<FileSearchFilter> filters = new ArrayList<FileSearchFilter>();
 
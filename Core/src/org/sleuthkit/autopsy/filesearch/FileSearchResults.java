@@ -0,0 +1,121 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.filesearch;
+
+import java.util.Arrays;
+import org.sleuthkit.autopsy.datamodel.PagedFileChildren;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Results of a file search, the ids of the matching files.
+ *
+ * Only the ids are queried by the search, so the number of matches is known
+ * right away. The files are loaded a page at a time by SearchChildren.
+ */
+class FileSearchResults {
+
+    //candidate files from the name index are filtered with the other filters
+    //in queries of this many ids, too many candidates are filtered with a
+    //single query instead
+    private static final int MAX_IDS_PER_QUERY = 500;
+    private static final int MAX_CANDIDATES_TO_FILTER = 100 * MAX_IDS_PER_QUERY;
+    private final SleuthkitCase skCase;
+    private final long[] ids;
+
+    private FileSearchResults(SleuthkitCase skCase, long[] ids) {
+        this.skCase = skCase;
+        this.ids = ids;
+    }
+
+    /**
+     * Search the files of a case
+     *
+     * @param skCase case to search
+     * @param nameSubstring string the file names must contain, or null not to
+     * filter by name
+     * @param predicate SQL expression of the other filters, or null if only
+     * the name filter is enabled
+     * @return results of the search
+     * @throws TskCoreException if the files could not be queried
+     */
+    static FileSearchResults search(SleuthkitCase skCase, String nameSubstring, String predicate) throws TskCoreException {
+        if (nameSubstring == null) {
+            return new FileSearchResults(skCase, PagedFileChildren.queryIds(skCase, predicate != null ? predicate : "1"));
+        }
+
+        final String namePredicate = NameSearchFilter.createPredicate(nameSubstring);
+        final String fullPredicate = "(" + namePredicate + ")" + (predicate != null ? " and " + predicate : "");
+        final FileNameIndex index = FileNameIndex.getIndex(skCase);
+        if (index == null) {
+            return new FileSearchResults(skCase, PagedFileChildren.queryIds(skCase, fullPredicate));
+        }
+
+        final long[] candidates = index.findIds(nameSubstring);
+        long[] ids;
+        int numIds = 0;
+        if (predicate == null) {
+            ids = candidates;
+            numIds = candidates.length;
+        } else if (candidates.length <= MAX_CANDIDATES_TO_FILTER) {
+            ids = new long[candidates.length];
+            for (int start = 0; start < candidates.length; start += MAX_IDS_PER_QUERY) {
+                final int end = Math.min(start + MAX_IDS_PER_QUERY, candidates.length);
+                final long[] batch = PagedFileChildren.queryIds(skCase, "obj_id in ("
+                        + PagedFileChildren.joinIds(candidates, start, end) + ") and " + predicate);
+                System.arraycopy(batch, 0, ids, numIds, batch.length);
+                numIds += batch.length;
+            }
+        } else {
+            //the name matches too many files to filter them by id
+            return new FileSearchResults(skCase, PagedFileChildren.queryIds(skCase, fullPredicate));
+        }
+
+        //files added to the case after the index was built
+        final long[] added = PagedFileChildren.queryIds(skCase, "obj_id > " + index.getMaxId() + " and " + fullPredicate);
+        ids = Arrays.copyOf(ids, numIds + added.length);
+        System.arraycopy(added, 0, ids, numIds, added.length);
+        return new FileSearchResults(skCase, ids);
+    }
+
+    /**
+     * @return results without matches
+     */
+    static FileSearchResults empty() {
+        return new FileSearchResults(null, new long[0]);
+    }
+
+    /**
+     * @return number of matching files
+     */
+    int getCount() {
+        return ids.length;
+    }
+
+    SleuthkitCase getCase() {
+        return skCase;
+    }
+
+    /**
+     * @return ids of the matching files, in id order, must not be modified
+     */
+    long[] getIds() {
+        return ids;
+    }
+}
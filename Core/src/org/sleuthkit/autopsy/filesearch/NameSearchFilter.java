@@ -44,16 +44,34 @@ public boolean isEnabled() {
 
     @Override
     public String getPredicate() throws FilterValidationException {
-        String keyword = this.getComponent().getSearchTextField().getText();
+        return createPredicate(getNameSubstring());
+    }
 
+    /**
+     * Gets the string the file names must contain
+     *
+     * @return the entered name string
+     * @throws FilterValidationException if no name was entered
+     */
+    String getNameSubstring() throws FilterValidationException {
+        String keyword = this.getComponent().getSearchTextField().getText();
         if (keyword.isEmpty()) {
             throw new FilterValidationException(EMPTY_NAME_MESSAGE);
         }
+        return keyword;
+    }
 
-        keyword.replace("'", "''"); // escape quotes in string        
-        //TODO: escaping might not be enough, would ideally be part of a prepared statement
-
-        return "name like '%" + keyword + "%'";
+    /**
+     * Make the predicate matching the file names that contain a string. The
+     * string is matched literally, quotes and like wildcards are escaped.
+     *
+     * @param keyword string the names must contain
+     * @return SQL boolean expression
+     */
+    static String createPredicate(String keyword) {
+        String escaped = keyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        escaped = escaped.replace("'", "''");
+        return "name like '%" + escaped + "%' escape '\\'";
     }
 
     @Override
@@ -20,42 +20,47 @@
 package org.sleuthkit.autopsy.filesearch;
 
 
-import java.util.List;
-import org.openide.nodes.Children;
 import org.openide.nodes.Node;
-import org.sleuthkit.datamodel.Directory;
 import org.sleuthkit.autopsy.datamodel.DirectoryNode;
-import org.sleuthkit.datamodel.File;
 import org.sleuthkit.autopsy.datamodel.FileNode;
+import org.sleuthkit.autopsy.datamodel.PagedFileChildren;
 import org.sleuthkit.autopsy.directorytree.DataResultFilterNode;
 import org.sleuthkit.autopsy.directorytree.DirectoryTreeTopComponent;
 import org.sleuthkit.datamodel.AbstractFile;
 
 
 /**
- * Makes nodes for search results.
+ * Makes nodes for search results, the files are loaded a page at a time.
  */
-class SearchChildren extends Children.Keys<AbstractFile> {
+class SearchChildren extends PagedFileChildren {
 
-    SearchChildren(boolean lazy, List<AbstractFile> fileList) {
-        super(lazy);
-        this.setKeys(fileList);
+    private final FileSearchResults results;
+
+    SearchChildren(FileSearchResults results) {
+        super(results.getCase());
+        this.results = results;
+    }
+
+    @Override
+    protected long[] getIds() {
+        return results.getIds();
     }
 
+    @Override
+    protected long calculateItems() {
+        return results.getCount();
+    }
 
     @Override
-    protected Node[] createNodes(AbstractFile t) {
-        Node[] node = new Node[1];
+    protected Node createNodeForFile(AbstractFile t) {
             if(t.isDir()){
-                node[0] = new DataResultFilterNode(new DirectoryNode(t, false), DirectoryTreeTopComponent.findInstance().getExplorerManager());
+                return new DataResultFilterNode(new DirectoryNode(t, false), DirectoryTreeTopComponent.findInstance().getExplorerManager());
 
                 //node[0] = new DirectoryNode((Directory)t);
-                return node;
             }
             else{
-                node[0] = new DataResultFilterNode(new FileNode(t, false), DirectoryTreeTopComponent.findInstance().getExplorerManager());
+                return new DataResultFilterNode(new FileNode(t, false), DirectoryTreeTopComponent.findInstance().getExplorerManager());
                 //node[0] = new FileNode((File)t);
-                return node;
             }
     }
 
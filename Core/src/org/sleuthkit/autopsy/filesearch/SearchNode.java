@@ -19,9 +19,7 @@
 
 package org.sleuthkit.autopsy.filesearch;
 
-import java.util.List;
 import org.openide.nodes.AbstractNode;
-import org.sleuthkit.datamodel.AbstractFile;
 
 /**
  *
@@ -29,11 +27,8 @@
  */
 class SearchNode extends AbstractNode {
 
-    private SearchChildren children;
-
-    SearchNode(List<AbstractFile> keys) {
-        super(new SearchChildren(true, keys));
-        this.children = (SearchChildren)this.getChildren();
+    SearchNode(FileSearchResults results) {
+        super(new SearchChildren(results));
     }
 
     @Override
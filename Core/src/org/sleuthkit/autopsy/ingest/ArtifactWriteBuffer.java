@@ -0,0 +1,177 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.BlackboardArtifact;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Buffers blackboard artifacts posted by ingest modules and writes them to
+ * the case database in batches.
+ *
+ * A batch is written when enough artifacts or attributes are pending, when
+ * the oldest pending artifact is older than MAX_PENDING_AGE_MS, or when a
+ * flush is requested (the ingest manager flushes when modules finish).
+ *
+ * The whole batch is written holding the case database write lock once, so
+ * the writers of the other threads wait for the batch rather than interleave
+ * with each of its writes. The datamodel has no transaction spanning several
+ * artifacts, so each artifact is still its own transaction: the artifact,
+ * then all its attributes together. A single ModuleDataEvent is fired per
+ * module and artifact type in the batch, rather than one per artifact, each
+ * making the viewers refresh.
+ */
+class ArtifactWriteBuffer {
+
+    private static final Logger logger = Logger.getLogger(ArtifactWriteBuffer.class.getName());
+    private static final int MAX_PENDING_ARTIFACTS = 1000;
+    private static final int MAX_PENDING_ATTRIBUTES = 10000;
+    private static final long MAX_PENDING_AGE_MS = 2000;
+    private final Object pendingLock = new Object();
+    //serializes flushes, so that batches are written and their events fired in order
+    private final Object flushLock = new Object();
+    private List<PendingArtifact> pending = new ArrayList<>();
+    private int pendingAttributes = 0;
+    private final ScheduledExecutorService flushTimer;
+
+    ArtifactWriteBuffer() {
+        flushTimer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "artifact-write-buffer-flush");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        flushTimer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                } catch (Exception ex) {
+                    logger.log(Level.WARNING, "Unexpected error writing buffered artifacts", ex);
+                }
+            }
+        }, MAX_PENDING_AGE_MS, MAX_PENDING_AGE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Add an artifact to be written. Writes the pending batch on the calling
+     * thread if the batch is full.
+     *
+     * @param moduleName name of the module posting the artifact
+     * @param type artifact type
+     * @param file file the artifact is about
+     * @param attributes artifact attributes
+     */
+    void add(String moduleName, ARTIFACT_TYPE type, AbstractFile file, Collection<BlackboardAttribute> attributes) {
+        boolean full;
+        synchronized (pendingLock) {
+            pending.add(new PendingArtifact(moduleName, type, file, attributes));
+            pendingAttributes += attributes.size();
+            full = pending.size() >= MAX_PENDING_ARTIFACTS || pendingAttributes >= MAX_PENDING_ATTRIBUTES;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Write all pending artifacts and fire the data events for them
+     */
+    void flush() {
+        synchronized (flushLock) {
+            final List<PendingArtifact> batch;
+            synchronized (pendingLock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                pendingAttributes = 0;
+            }
+
+            //new artifacts by module name and type, in the order they were added
+            final Map<String, Map<ARTIFACT_TYPE, List<BlackboardArtifact>>> written = new LinkedHashMap<>();
+            SleuthkitCase.dbWriteLock();
+            try {
+                for (PendingArtifact p : batch) {
+                    try {
+                        BlackboardArtifact bbart = p.file.newArtifact(p.type);
+                        bbart.addAttributes(p.attributes);
+
+                        Map<ARTIFACT_TYPE, List<BlackboardArtifact>> moduleArtifacts = written.get(p.moduleName);
+                        if (moduleArtifacts == null) {
+                            moduleArtifacts = new LinkedHashMap<>();
+                            written.put(p.moduleName, moduleArtifacts);
+                        }
+                        List<BlackboardArtifact> typeArtifacts = moduleArtifacts.get(p.type);
+                        if (typeArtifacts == null) {
+                            typeArtifacts = new ArrayList<>();
+                            moduleArtifacts.put(p.type, typeArtifacts);
+                        }
+                        typeArtifacts.add(bbart);
+                    } catch (TskCoreException ex) {
+                        logger.log(Level.SEVERE, "Error while trying to add an artifact of type " + p.type
+                                + " for file " + p.file.getName() + " from module " + p.moduleName, ex);
+                    }
+                }
+            } finally {
+                SleuthkitCase.dbWriteUnlock();
+            }
+
+            for (Map.Entry<String, Map<ARTIFACT_TYPE, List<BlackboardArtifact>>> moduleArtifacts : written.entrySet()) {
+                for (Map.Entry<ARTIFACT_TYPE, List<BlackboardArtifact>> typeArtifacts : moduleArtifacts.getValue().entrySet()) {
+                    IngestManager.fireModuleDataEvent(new ModuleDataEvent(moduleArtifacts.getKey(),
+                            typeArtifacts.getKey(), typeArtifacts.getValue()));
+                }
+            }
+        }
+    }
+
+    private static class PendingArtifact {
+
+        private final String moduleName;
+        private final ARTIFACT_TYPE type;
+        private final AbstractFile file;
+        private final Collection<BlackboardAttribute> attributes;
+
+        PendingArtifact(String moduleName, ARTIFACT_TYPE type, AbstractFile file, Collection<BlackboardAttribute> attributes) {
+            this.moduleName = moduleName;
+            this.type = type;
+            this.file = file;
+            this.attributes = attributes;
+        }
+    }
+}
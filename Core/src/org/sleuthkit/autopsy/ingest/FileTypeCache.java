@@ -0,0 +1,192 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+import org.openide.util.Lookup;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.datamodel.ContentUtils;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.BlackboardArtifact;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute;
+import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
+import org.sleuthkit.datamodel.TskCoreException;
+import org.sleuthkit.datamodel.TskData;
+
+/**
+ * Header bytes and detected type of the file being processed by the file
+ * ingest pipeline on the current thread, shared by all file modules.
+ *
+ * The header is read once per file, the first time it is needed, so modules
+ * checking file signatures do not each read the start of the file.
+ *
+ * The type (MIME type) is detected by the pipeline before the file modules
+ * run, with the FileTypeDetector found in the lookup. It is stored as a
+ * TSK_FILE_TYPE_SIG attribute of the file's general info artifact, so it is
+ * read back rather than detected again when the file is ingested again.
+ */
+class FileTypeCache {
+
+    private static final Logger logger = Logger.getLogger(FileTypeCache.class.getName());
+    //enough for the signatures of the modules and the magic of most formats,
+    //detectors needing more read the file itself
+    static final int HEADER_SIZE = 8 * 1024;
+    //name the stored types are attributed to
+    private static final String DETECTION_SOURCE = "File Type Detection";
+    private final ThreadLocal<FileEntry> currentFile = new ThreadLocal<>();
+    private volatile FileTypeDetector detector = null;
+    private volatile boolean detectorLooked = false;
+
+    /**
+     * Get the stored type of the file, or detect and store it if it was not
+     * detected in a previous ingest. Called by the pipeline before the file
+     * modules process the file.
+     *
+     * @param file file to detect the type of
+     */
+    void detect(AbstractFile file) {
+        final FileEntry entry = getEntry(file);
+        entry.type = null;
+        final TskData.TSK_DB_FILES_TYPE_ENUM fileType = file.getType();
+        if (file.isDir() || file.getSize() == 0
+                || fileType == TskData.TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS
+                || fileType == TskData.TSK_DB_FILES_TYPE_ENUM.UNUSED_BLOCKS) {
+            //nothing to detect, unallocated space has no format
+            return;
+        }
+        final FileTypeDetector typeDetector = getDetector();
+        if (typeDetector == null) {
+            return;
+        }
+        entry.type = loadType(file);
+        if (entry.type == null) {
+            try {
+                entry.type = typeDetector.detect(file, getHeader(file));
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Could not detect the type of file: " + file.getName(), ex);
+            }
+            if (entry.type != null) {
+                storeType(file, entry.type);
+            }
+        }
+    }
+
+    /**
+     * Get the header of the file, read if not yet read
+     *
+     * @param file file to get the header of
+     * @return up to HEADER_SIZE first bytes of the file, fewer if the file is
+     * smaller or could not be read entirely, must not be modified
+     */
+    byte[] getHeader(AbstractFile file) {
+        final FileEntry entry = getEntry(file);
+        if (entry.header == null) {
+            entry.header = readHeader(file);
+        }
+        return entry.header;
+    }
+
+    /**
+     * Get the type of the file detected by the pipeline
+     *
+     * @param file file to get the type of
+     * @return MIME type, or null if it could not be detected
+     */
+    String getType(AbstractFile file) {
+        return getEntry(file).type;
+    }
+
+    /**
+     * Drop the entry of the file processed by the current thread, when the
+     * pipeline is done with the file
+     */
+    void clear() {
+        currentFile.remove();
+    }
+
+    private FileEntry getEntry(AbstractFile file) {
+        FileEntry entry = currentFile.get();
+        if (entry == null || entry.fileId != file.getId()) {
+            entry = new FileEntry(file.getId());
+            currentFile.set(entry);
+        }
+        return entry;
+    }
+
+    private FileTypeDetector getDetector() {
+        if (!detectorLooked) {
+            detector = Lookup.getDefault().lookup(FileTypeDetector.class);
+            if (detector == null) {
+                logger.log(Level.INFO, "No file type detector installed, file types are not detected");
+            }
+            detectorLooked = true;
+        }
+        return detector;
+    }
+
+    private static byte[] readHeader(AbstractFile file) {
+        final int toRead = (int) Math.min(HEADER_SIZE, file.getSize());
+        final byte[] header = new byte[toRead];
+        int read = 0;
+        try {
+            read = ContentUtils.readFully(file, header, 0, 0, toRead);
+        } catch (TskCoreException ex) {
+            logger.log(Level.WARNING, "Could not read the header of file: " + file.getName(), ex);
+        }
+        return read == toRead ? header : Arrays.copyOf(header, read);
+    }
+
+    private static String loadType(AbstractFile file) {
+        try {
+            for (BlackboardArtifact genInfo : file.getArtifacts(ARTIFACT_TYPE.TSK_GEN_INFO)) {
+                for (BlackboardAttribute attribute : genInfo.getAttributes()) {
+                    if (attribute.getAttributeTypeID() == ATTRIBUTE_TYPE.TSK_FILE_TYPE_SIG.getTypeID()) {
+                        return attribute.getValueString();
+                    }
+                }
+            }
+        } catch (TskCoreException ex) {
+            logger.log(Level.WARNING, "Could not get the stored type of file: " + file.getName(), ex);
+        }
+        return null;
+    }
+
+    private static void storeType(AbstractFile file, String mimeType) {
+        try {
+            final BlackboardArtifact genInfo = file.getGenInfoArtifact();
+            genInfo.addAttribute(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_FILE_TYPE_SIG.getTypeID(),
+                    DETECTION_SOURCE, mimeType));
+        } catch (TskCoreException ex) {
+            logger.log(Level.WARNING, "Could not store the type of file: " + file.getName(), ex);
+        }
+    }
+
+    private static class FileEntry {
+
+        private final long fileId;
+        private byte[] header = null;
+        private String type = null;
+
+        FileEntry(long fileId) {
+            this.fileId = fileId;
+        }
+    }
+}
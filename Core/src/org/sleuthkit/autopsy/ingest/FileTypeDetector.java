@@ -0,0 +1,43 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import org.sleuthkit.datamodel.AbstractFile;
+
+/**
+ * Detector of the MIME type of files, run by the file ingest pipeline on every
+ * file before the file ingest modules. The type is available to the modules
+ * through IngestServices.getFileType().
+ *
+ * Implementations register with @ServiceProvider(service = FileTypeDetector.class),
+ * the first one found is used. The detector is called concurrently by the
+ * file ingest workers, for different files.
+ */
+public interface FileTypeDetector {
+
+    /**
+     * Detect the type of a file
+     *
+     * @param file file to detect the type of
+     * @param header first bytes of the file, as returned by
+     * IngestServices.getFileHeader(), must not be modified
+     * @return MIME type of the file, or null if it could not be detected
+     */
+    String detect(AbstractFile file, byte[] header);
+}
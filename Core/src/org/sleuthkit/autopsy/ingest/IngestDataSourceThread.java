@@ -142,6 +142,9 @@ public boolean cancel() {
                         + " took " + timer.getElapsedTimeSecs() + " secs. to process()");
 
 
+                //write out buffered artifacts before the module is notified
+                manager.getArtifactWriteBuffer().flush();
+
                 //cleanup queues (worker and DataSource/module)
                 manager.removeDataSourceIngestWorker(this);
 
@@ -18,7 +18,6 @@
  */
 package org.sleuthkit.autopsy.ingest;
 
-import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.text.DateFormat;
@@ -28,16 +27,25 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import org.sleuthkit.autopsy.coreutils.Logger;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import org.netbeans.api.progress.ProgressHandle;
 import org.netbeans.api.progress.ProgressHandleFactory;
 import org.openide.util.Cancellable;
 import org.sleuthkit.autopsy.coreutils.MessageNotifyUtil;
+import org.sleuthkit.autopsy.coreutils.ModuleSettings;
 import org.sleuthkit.autopsy.coreutils.PlatformUtil;
 import org.sleuthkit.autopsy.coreutils.StopWatch;
 import org.sleuthkit.autopsy.ingest.IngestMessage.MessageType;
@@ -60,15 +68,24 @@ public class IngestManager {
     private boolean processUnallocSpace = true;
     //queues
     private final IngestScheduler scheduler;
+    //blackboard artifacts posted by modules, not yet written
+    private final ArtifactWriteBuffer artifactWriteBuffer = new ArtifactWriteBuffer();
+    private final FileTypeCache fileTypeCache = new FileTypeCache();
     //workers
     private IngestAbstractFileProcessor abstractFileIngester;
     private List<IngestDataSourceThread> dataSourceIngesters;
     private SwingWorker<Object, Void> queueWorker;
     //modules
-    private List<IngestModuleDataSource> dataSourceModules;
-    private List<IngestModuleAbstractFile> abstractFileModules;
-    // module return values
-    private final Map<String, IngestModuleAbstractFile.ProcessResult> abstractFileModulesRetValues = new HashMap<String, IngestModuleAbstractFile.ProcessResult>();
+    // module return values, per file ingest worker thread (each worker processes a different file)
+    private final ThreadLocal<Map<String, IngestModuleAbstractFile.ProcessResult>> abstractFileModulesRetValues =
+            new ThreadLocal<Map<String, IngestModuleAbstractFile.ProcessResult>>() {
+                @Override
+                protected Map<String, IngestModuleAbstractFile.ProcessResult> initialValue() {
+                    return new HashMap<String, IngestModuleAbstractFile.ProcessResult>();
+                }
+            };
+    // locks used to serialize process() calls of file modules that are not thread-safe
+    private final Map<IngestModuleAbstractFile, Object> abstractFileModuleLocks = new HashMap<IngestModuleAbstractFile, Object>();
     //notifications
     private final static PropertyChangeSupport pcs = new PropertyChangeSupport(IngestManager.class);
     //monitor
@@ -77,6 +94,8 @@ public class IngestManager {
     private IngestModuleLoader moduleLoader = null;
     //property file name id for the module
     public final static String MODULE_PROPERTIES = "ingest";
+    //setting for number of file ingest pipeline worker threads
+    private final static String FILE_INGEST_THREADS_SETTING = "NumFileIngestThreads";
     private volatile int messageID = 0;
 
     /**
@@ -151,20 +170,8 @@ private IngestManager() {
 
     private void initModules() {
         try {
+            //the modules are loaded by the loader when first requested
             moduleLoader = IngestModuleLoader.getDefault();
-            abstractFileModules = moduleLoader.getAbstractFileIngestModules();
-
-            moduleLoader.addModulesReloadedListener(new PropertyChangeListener() {
-                @Override
-                public void propertyChange(PropertyChangeEvent evt) {
-                    if (evt.getPropertyName().equals(IngestModuleLoader.Event.ModulesReloaded.toString())) {
-                        //TODO might need to not allow to remove modules if they are running
-                        abstractFileModules = moduleLoader.getAbstractFileIngestModules();
-                        dataSourceModules = moduleLoader.getDataSourceIngestModules();
-                    }
-                }
-            });
-            dataSourceModules = moduleLoader.getDataSourceIngestModules();
         } catch (IngestModuleLoaderException ex) {
             logger.log(Level.SEVERE, "Error getting module loader");
         }
@@ -243,12 +250,13 @@ static synchronized void fireModuleContentEvent(ModuleContentEvent moduleContent
      * @returns Return value from that module if it was previously run.
      */
     IngestModuleAbstractFile.ProcessResult getAbstractFileModuleResult(String moduleName) {
-        synchronized (abstractFileModulesRetValues) {
-            if (abstractFileModulesRetValues.containsKey(moduleName)) {
-                return abstractFileModulesRetValues.get(moduleName);
-            } else {
-                return IngestModuleAbstractFile.ProcessResult.UNKNOWN;
-            }
+        //the values are kept per worker thread, so this returns results for the file
+        //processed by the file ingest worker the calling module runs in
+        final Map<String, IngestModuleAbstractFile.ProcessResult> retValues = abstractFileModulesRetValues.get();
+        if (retValues.containsKey(moduleName)) {
+            return retValues.get(moduleName);
+        } else {
+            return IngestModuleAbstractFile.ProcessResult.UNKNOWN;
         }
     }
 
@@ -311,6 +319,30 @@ void scheduleFile(AbstractFile file, PipelineContext<IngestModuleAbstractFile> p
         scheduler.getFileScheduler().schedule(file, pipelineContext);
     }
 
+    /**
+     * Get files that will be processed next by a module
+     *
+     * @param module module the files are scheduled for
+     * @param maxFiles max number of files to return
+     * @return files in the order they will be processed
+     */
+    List<AbstractFile> getUpcomingFiles(IngestModuleAbstractFile module, int maxFiles) {
+        return scheduler.getFileScheduler().peekFiles(module, maxFiles);
+    }
+
+    /**
+     * Get the buffer of blackboard artifacts posted by modules
+     *
+     * @return the artifact write buffer
+     */
+    ArtifactWriteBuffer getArtifactWriteBuffer() {
+        return artifactWriteBuffer;
+    }
+
+    FileTypeCache getFileTypeCache() {
+        return fileTypeCache;
+    }
+
     /**
      * Starts the File-level Ingest Module pipeline and the Data Source-level Ingest Modules
      * for the queued up data sources and files. 
@@ -420,7 +452,9 @@ else if (abstractFileIngester.isDone()) {
             abstractFileIngester = new IngestAbstractFileProcessor();
             //init all fs modules, everytime new worker starts
 
-            for (IngestModuleAbstractFile s : abstractFileModules) {
+            abstractFileModuleLocks.clear();
+            for (IngestModuleAbstractFile s : moduleLoader.getAbstractFileIngestModules()) {
+                abstractFileModuleLocks.put(s, new Object());
                 if (fileScheduler.hasModuleEnqueued(s) == false) {
                     continue;
                 } 
@@ -483,10 +517,13 @@ synchronized void stopAll() {
         scheduler.getFileScheduler().empty();
         scheduler.getDataSourceScheduler().empty();
 
+        //write out what the modules produced so far
+        artifactWriteBuffer.flush();
+
         //stop module workers
         if (abstractFileIngester != null) {
             //send signals to all file modules
-            for (IngestModuleAbstractFile s : this.abstractFileModules) {
+            for (IngestModuleAbstractFile s : moduleLoader.getAbstractFileIngestModules()) {
                 if (isModuleRunning(s)) {
                     try {
                         s.stop();
@@ -556,7 +593,7 @@ public synchronized boolean isIngestRunning() {
      * @return true if any ingest modules are running, false otherwise
      */
     public synchronized boolean areModulesRunning() {
-        for (IngestModuleAbstract serv : abstractFileModules) {
+        for (IngestModuleAbstract serv : moduleLoader.getAbstractFileIngestModules()) {
             if (serv.hasBackgroundJobsRunning()) {
                 return true;
             }
@@ -693,6 +730,38 @@ public void setProcessUnallocSpace(boolean processUnallocSpace) {
         this.processUnallocSpace = processUnallocSpace;
     }
 
+    /**
+     * Returns number of worker threads the file ingest pipeline uses to
+     * process files concurrently. Defaults to the number of available processors.
+     *
+     * @return number of file ingest worker threads, at least 1
+     */
+    int getNumFileIngestThreads() {
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        final String numThreadsStr = ModuleSettings.getConfigSetting(MODULE_PROPERTIES, FILE_INGEST_THREADS_SETTING);
+        if (numThreadsStr != null) {
+            try {
+                numThreads = Integer.parseInt(numThreadsStr);
+            } catch (NumberFormatException e) {
+                logger.log(Level.WARNING, "Invalid number of file ingest threads setting: " + numThreadsStr);
+            }
+        }
+        return Math.max(1, numThreads);
+    }
+
+    /**
+     * Sets the number of worker threads the file ingest pipeline uses. Takes
+     * effect when the next file ingest pipeline run starts.
+     *
+     * @param numThreads number of file ingest worker threads, at least 1
+     */
+    public void setNumFileIngestThreads(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Number of file ingest threads has to be at least 1");
+        }
+        ModuleSettings.setConfigSetting(MODULE_PROPERTIES, FILE_INGEST_THREADS_SETTING, Integer.toString(numThreads));
+    }
+
     /**
      * returns ingest summary report (how many files ingested, any errors, etc)
      */
@@ -778,9 +847,9 @@ private class IngestManagerStats {
         private Date endTime;
         private int errorsTotal;
         private Map<String, Integer> errors;
+        //log records dropped before the ingest, to report the ones dropped during
+        private long logRecordsDroppedAtStart;
         private final DateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-        private final StopWatch timer = new StopWatch();
-        private IngestModuleAbstract currentModuleForTimer;
         //file module timing stats, datasource module timers are logged in IngestDataSourceThread class
         private final Map<String, Long> fileModuleTimers = new HashMap<String, Long>();
 
@@ -789,38 +858,18 @@ private class IngestManagerStats {
         }
 
         /**
-         * records start time of the file process for the module must be
-         * followed by logFileModuleEndProcess for the same module
-         *
-         * @param module to record start time for processing a file
-         */
-        void logFileModuleStartProcess(IngestModuleAbstract module) {
-            timer.reset();
-            timer.start();
-            currentModuleForTimer = module;
-        }
-
-        /**
-         * records stop time of the file process for the module must be preceded
-         * by logFileModuleStartProcess for the same module
+         * records time a module took to process a file. Called by the file
+         * ingest workers, which time the modules using their own timers.
          *
-         * @param module to record stop time for processing a file
+         * @param module module that processed a file
+         * @param elapsed time in ms the module took to process the file
          */
-        void logFileModuleEndProcess(IngestModuleAbstract module) {
-            timer.stop();
-            if (module != currentModuleForTimer) {
-                logger.log(Level.WARNING, "Invalid module passed in to record stop processing: " + module.getName()
-                        + ", expected: " + currentModuleForTimer.getName());
-            } else {
-                final long elapsed = timer.getElapsedTime();
-                final long current = fileModuleTimers.get(module.getName());
-                fileModuleTimers.put(module.getName(), elapsed + current);
-            }
-
-            currentModuleForTimer = null;
+        synchronized void logFileModuleProcessTime(IngestModuleAbstract module, long elapsed) {
+            final Long current = fileModuleTimers.get(module.getName());
+            fileModuleTimers.put(module.getName(), current == null ? elapsed : elapsed + current);
         }
 
-        String getFileModuleStats() {
+        synchronized String getFileModuleStats() {
             StringBuilder sb = new StringBuilder();
             for (final String moduleName : fileModuleTimers.keySet()) {
                 sb.append(moduleName).append(" took: ")
@@ -848,14 +897,19 @@ public String toString() {
                     sb.append("\t").append(moduleName).append(": ").append(errors.get(moduleName)).append(EOL);
                 }
             }
+            sb.append("Log records dropped: ").append(getLogRecordsDropped()).append(EOL);
             return sb.toString();
         }
 
-        public String toHtmlString() {
+        public synchronized String toHtmlString() {
             StringBuilder sb = new StringBuilder();
             sb.append("<html><body>");
             sb.append("Ingest time: ").append(getTotalTimeString()).append("<br />");
             sb.append("Total errors: ").append(errorsTotal).append("<br />");
+            final long logRecordsDropped = getLogRecordsDropped();
+            if (logRecordsDropped > 0) {
+                sb.append("Log records dropped: ").append(logRecordsDropped).append("<br />");
+            }
             sb.append("<table><tr><th>Module</th><th>Time</th><th>Errors</th></tr>\n");
             
             for (final String moduleName : fileModuleTimers.keySet()) {
@@ -873,10 +927,11 @@ public String toHtmlString() {
             return sb.toString();
         }
 
-        void start() {
+        synchronized void start() {
             startTime = new Date();
+            logRecordsDroppedAtStart = Logger.getDroppedRecordCount();
 
-            for (IngestModuleAbstractFile module : abstractFileModules) {
+            for (IngestModuleAbstractFile module : moduleLoader.getAbstractFileIngestModules()) {
                 fileModuleTimers.put(module.getName(), 0L);
             }
         }
@@ -892,6 +947,14 @@ long getTotalTime() {
             return endTime.getTime() - startTime.getTime();
         }
 
+        /**
+         * @return number of log records dropped since the ingest started,
+         * because they were logged faster than the logs could be written
+         */
+        long getLogRecordsDropped() {
+            return Logger.getDroppedRecordCount() - logRecordsDroppedAtStart;
+        }
+
         String getStartTimeString() {
             return dateFormatter.format(startTime);
         }
@@ -934,8 +997,9 @@ synchronized void addError(IngestModuleAbstract source) {
     }
 
     /**
-     * File ingest pipeline processor. Worker thread that queries
-     * the scheduler for new files.  
+     * File ingest pipeline processor. Background thread that starts a pool
+     * of file ingest workers, each querying the scheduler for new files and
+     * running them through the pipeline modules.
      * Modules are assumed to already be initialized. 
      * runs until AbstractFile queue is
      * consumed New instance is created and started when data arrives and
@@ -944,8 +1008,21 @@ synchronized void addError(IngestModuleAbstract source) {
     private class IngestAbstractFileProcessor extends SwingWorker<Object, Void> {
 
         private Logger logger = Logger.getLogger(IngestAbstractFileProcessor.class.getName());
+        //how long an idle worker waits for other workers to possibly schedule new files
+        private static final int IDLE_WORKER_WAIT_MS = 100;
+        //how long to wait for the workers to finish their files, before logging that they are still busy
+        private static final int WORKER_TERMINATION_WAIT_SECS = 10;
         //progress  bar
         private ProgressHandle progress;
+        private int totalEnqueuedFiles;
+        private int processedFiles;
+        //number of workers currently processing a file, guarded by queueLock
+        private int busyWorkers;
+        private final Object queueLock = new Object();
+        //set once the worker pool is started, after which cancellation is handled by doInBackground()
+        private volatile boolean workersStarted = false;
+        //if the modules were notified of the cancellation
+        private final AtomicBoolean interruptionHandled = new AtomicBoolean(false);
 
         @Override
         protected Object doInBackground() throws Exception {
@@ -956,7 +1033,7 @@ protected Object doInBackground() throws Exception {
             stats.start();
 
             //notify main thread modules started
-            for (IngestModuleAbstractFile s : abstractFileModules) {
+            for (IngestModuleAbstractFile s : moduleLoader.getAbstractFileIngestModules()) {
                 IngestManager.fireModuleEvent(IngestModuleEvent.STARTED.toString(), s.getName());
             }
 
@@ -978,84 +1055,222 @@ public boolean cancel() {
             progress.start();
             progress.switchToIndeterminate();
             //set initial totals and processed (to be updated as we process or new files are scheduled)
-            int totalEnqueuedFiles = fileScheduler.getFilesEnqueuedEst();
+            totalEnqueuedFiles = fileScheduler.getFilesEnqueuedEst();
             progress.switchToDeterminate(totalEnqueuedFiles);
-            int processedFiles = 0;
-            //process AbstractFiles queue
-            while (fileScheduler.hasNext()) {
-                final ProcessTask fileTask = fileScheduler.next();
-                final PipelineContext<IngestModuleAbstractFile> filepipelineContext = fileTask.context;
-                final ScheduledTask<IngestModuleAbstractFile> fileIngestTask = filepipelineContext.getScheduledTask();
-                final AbstractFile fileToProcess = fileTask.file;
-
-                //clear return values from modules for last file
-                synchronized (abstractFileModulesRetValues) {
-                    abstractFileModulesRetValues.clear();
+            processedFiles = 0;
+            busyWorkers = 0;
+
+            //process AbstractFiles queue with the pool of workers
+            final int numWorkers = getNumFileIngestThreads();
+            logger.log(Level.INFO, "Starting file ingest workers: " + numWorkers);
+            final ExecutorService workerPool = Executors.newFixedThreadPool(numWorkers, new FileIngestWorkerThreadFactory());
+            workersStarted = true;
+            try {
+                final List<Future<Object>> workers = new ArrayList<Future<Object>>();
+                for (int i = 0; i < numWorkers; ++i) {
+                    workers.add(workerPool.submit(new FileIngestWorker()));
+                }
+                for (Future<Object> worker : workers) {
+                    worker.get();
+                }
+            } catch (InterruptedException e) {
+                logger.log(Level.INFO, "Terminating file ingest due to cancellation.");
+                return null;
+            } finally {
+                workerPool.shutdownNow();
+                //the modules must not be stopped while they are still processing files
+                awaitWorkers(workerPool);
+                if (isCancelled() && interruptionHandled.compareAndSet(false, true)) {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            handleInterruption();
+                        }
+                    });
                 }
+            }
 
-                //logger.log(Level.INFO, "IngestManager: Processing: {0}", fileToProcess.getName());
-                
-                for (IngestModuleAbstractFile module : fileIngestTask.getModules()) {
-                    //process the file with every file module
-                    if (isCancelled()) {
-                        logger.log(Level.INFO, "Terminating file ingest due to cancellation.");
-                        return null;
+            logger.log(Level.INFO, "IngestManager: Finished processing files");
+            return null;
+        }
+
+        /**
+         * Wait until the workers finished the files they are processing
+         */
+        private void awaitWorkers(ExecutorService workerPool) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    if (workerPool.awaitTermination(WORKER_TERMINATION_WAIT_SECS, TimeUnit.SECONDS)) {
+                        break;
                     }
-                    progress.progress(fileToProcess.getName() + " (" + module.getName() + ")", processedFiles);
+                    logger.log(Level.INFO, "Waiting for the file ingest workers to finish their current files");
+                } catch (InterruptedException e) {
+                    //cancellation interrupts this thread, keep waiting
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
 
-                    try {
-                        stats.logFileModuleStartProcess(module);
-                        IngestModuleAbstractFile.ProcessResult result = module.process(filepipelineContext, fileToProcess);
-                        stats.logFileModuleEndProcess(module);
+        /**
+         * Get next file to process, waiting while other workers are still
+         * processing files, as they may schedule new (derived) files.
+         *
+         * @return next task or null if all files have been processed
+         * @throws InterruptedException if ingest got cancelled while waiting
+         */
+        private ProcessTask getNextTask() throws InterruptedException {
+            final IngestScheduler.FileScheduler fileScheduler = scheduler.getFileScheduler();
+            synchronized (queueLock) {
+                ProcessTask fileTask = fileScheduler.poll();
+                while (fileTask == null && busyWorkers > 0 && !isCancelled()) {
+                    queueLock.wait(IDLE_WORKER_WAIT_MS);
+                    fileTask = fileScheduler.poll();
+                }
+                if (fileTask != null) {
+                    ++busyWorkers;
+                }
+                return fileTask;
+            }
+        }
 
-                        //store the result for subsequent modules for this file
-                        synchronized (abstractFileModulesRetValues) {
-                            abstractFileModulesRetValues.put(module.getName(), result);
-                        }
+        private void taskDone() {
+            synchronized (queueLock) {
+                --busyWorkers;
+                queueLock.notifyAll();
+            }
+        }
 
-                    } catch (Exception e) {
-                        logger.log(Level.SEVERE, "Error: unexpected exception from module: " + module.getName(), e);
-                        stats.addError(module);
-                    } catch (OutOfMemoryError e) {
-                        logger.log(Level.SEVERE, "Error: out of memory from module: " + module.getName(), e);
-                        stats.addError(module);
+        private synchronized void updateProgress(String fileName, String moduleName) {
+            progress.progress(fileName + " (" + moduleName + ")", processedFiles);
+        }
+
+        private synchronized void fileProcessed() {
+            int newTotalEnqueuedFiles = scheduler.getFileScheduler().getFilesEnqueuedEst();
+            if (newTotalEnqueuedFiles > totalEnqueuedFiles) {
+                //update if new enqueued
+                totalEnqueuedFiles = newTotalEnqueuedFiles + 1;// + processedFiles + 1;
+                //reset
+                progress.switchToIndeterminate();
+                progress.switchToDeterminate(totalEnqueuedFiles);
+            }
+            if (processedFiles < totalEnqueuedFiles) { //fix for now to handle the same datasource Content enqueued twice
+                ++processedFiles;
+            }
+        }
+
+        /**
+         * Runs a file through every module of its pipeline. Calls of modules
+         * that are not thread-safe are serialized among the workers.
+         */
+        private void processFile(ProcessTask fileTask) {
+            final PipelineContext<IngestModuleAbstractFile> filepipelineContext = fileTask.context;
+            final ScheduledTask<IngestModuleAbstractFile> fileIngestTask = filepipelineContext.getScheduledTask();
+            final AbstractFile fileToProcess = fileTask.file;
+
+            //clear return values from modules for last file processed by this worker
+            final Map<String, IngestModuleAbstractFile.ProcessResult> retValues = abstractFileModulesRetValues.get();
+            retValues.clear();
+
+            //detect the type of the file once, for all modules
+            fileTypeCache.detect(fileToProcess);
+
+            final StopWatch timer = new StopWatch();
+            for (IngestModuleAbstractFile module : fileIngestTask.getModules()) {
+                //process the file with every file module
+                if (isCancelled()) {
+                    return;
+                }
+                updateProgress(fileToProcess.getName(), module.getName());
+
+                try {
+                    timer.reset();
+                    timer.start();
+                    IngestModuleAbstractFile.ProcessResult result;
+                    if (module.isThreadSafe()) {
+                        result = module.process(filepipelineContext, fileToProcess);
+                    } else {
+                        Object moduleLock = abstractFileModuleLocks.get(module);
+                        if (moduleLock == null) {
+                            //module instance not known at pipeline start, use the module itself
+                            moduleLock = module;
+                        }
+                        synchronized (moduleLock) {
+                            result = module.process(filepipelineContext, fileToProcess);
+                        }
                     }
-                
-                } //end for every module
-                
-                //free the internal file resource after done with every module
-                fileToProcess.close();
-                
-                // notify listeners thsi file is done
-                fireFileDone(fileToProcess.getId());                
-
-                int newTotalEnqueuedFiles = fileScheduler.getFilesEnqueuedEst();
-                if (newTotalEnqueuedFiles > totalEnqueuedFiles) {
-                    //update if new enqueued
-                    totalEnqueuedFiles = newTotalEnqueuedFiles + 1;// + processedFiles + 1;
-                    //processedFiles = 0;
-                    //reset
-                    progress.switchToIndeterminate();
-                    progress.switchToDeterminate(totalEnqueuedFiles);
+                    timer.stop();
+                    stats.logFileModuleProcessTime(module, timer.getElapsedTime());
+
+                    //store the result for subsequent modules for this file
+                    retValues.put(module.getName(), result);
+
+                } catch (Exception e) {
+                    logger.log(Level.SEVERE, "Error: unexpected exception from module: " + module.getName(), e);
+                    stats.addError(module);
+                } catch (OutOfMemoryError e) {
+                    logger.log(Level.SEVERE, "Error: out of memory from module: " + module.getName(), e);
+                    stats.addError(module);
                 }
-                if (processedFiles < totalEnqueuedFiles) { //fix for now to handle the same datasource Content enqueued twice
-                    ++processedFiles;
+
+            } //end for every module
+
+            //free the internal file resource after done with every module
+            fileToProcess.close();
+            fileTypeCache.clear();
+
+            // notify listeners thsi file is done
+            fireFileDone(fileToProcess.getId());
+
+            fileProcessed();
+        }
+
+        /**
+         * File ingest worker, dequeues and processes files until the file
+         * queues are consumed or ingest is cancelled.
+         */
+        private class FileIngestWorker implements Callable<Object> {
+
+            @Override
+            public Object call() throws Exception {
+                while (!isCancelled()) {
+                    final ProcessTask fileTask = getNextTask();
+                    if (fileTask == null) {
+                        break;
+                    }
+                    try {
+                        processFile(fileTask);
+                    } finally {
+                        taskDone();
+                    }
                 }
-                //--totalEnqueuedFiles;
+                return null;
+            }
+        }
 
+        private class FileIngestWorkerThreadFactory implements ThreadFactory {
 
-            } //end of for every AbstractFile
-            logger.log(Level.INFO, "IngestManager: Finished processing files");
-            return null;
+            private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread t = new Thread(r, "file-ingest-worker-" + threadNumber.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
         }
 
         @Override
         protected void done() {
             try {
                 super.get(); //block and get all exceptions thrown while doInBackground()
+                artifactWriteBuffer.flush();
                 //notify modules of completion
                 if (!this.isCancelled()) {
-                    for (IngestModuleAbstractFile s : abstractFileModules) {
+                    for (IngestModuleAbstractFile s : moduleLoader.getAbstractFileIngestModules()) {
                         s.complete();
                         IngestManager.fireModuleEvent(IngestModuleEvent.COMPLETED.toString(), s.getName());
                     }
@@ -1067,8 +1282,11 @@ protected void done() {
                 logger.log(Level.INFO, PlatformUtil.getAllMemUsageInfo());
 
             } catch (CancellationException e) {
-                //task was cancelled
-                handleInterruption();
+                //task was cancelled, once started the modules are stopped by
+                //doInBackground() when the workers finished their files
+                if (!workersStarted && interruptionHandled.compareAndSet(false, true)) {
+                    handleInterruption();
+                }
 
             } catch (InterruptedException ex) {
                 handleInterruption();
@@ -1098,7 +1316,8 @@ protected void done() {
         }
 
         private void handleInterruption() {
-            for (IngestModuleAbstractFile s : abstractFileModules) {
+            artifactWriteBuffer.flush();
+            for (IngestModuleAbstractFile s : moduleLoader.getAbstractFileIngestModules()) {
                 if (isModuleRunning(s)) {
                     try {
                         s.stop();
@@ -49,4 +49,19 @@ public ModuleType getType() {
      * @return ProcessResult result of the processing that can be used in the pipeline as a hint whether to further process this file
      */
     abstract public ProcessResult process(PipelineContext<IngestModuleAbstractFile>pipelineContext, AbstractFile abstractFile);
+    
+    /**
+     * The file ingest pipeline runs several worker threads, each processing a different file.
+     * By default, the manager serializes calls to process() of a module, so only one worker
+     * at a time is inside the module; other modules can still process other files concurrently.
+     * 
+     * A module that returns true here declares that process() can be safely invoked concurrently
+     * from multiple worker threads for different files, i.e. any state shared between
+     * process() calls is synchronized or confined to the calling thread.
+     * 
+     * @return true if process() can be called concurrently, false otherwise (default)
+     */
+    public boolean isThreadSafe() {
+        return false;
+    }
 }
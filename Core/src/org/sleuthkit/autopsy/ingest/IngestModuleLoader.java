@@ -32,6 +32,9 @@
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -39,10 +42,10 @@
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -82,6 +85,12 @@
  * singleton instance will initialize itself the first time - it will load XML
  * and autodiscover currently present ingest modules in the jar classpath..
  *
+ * The module classes found by the autodiscovery are kept in a discovery
+ * index, with a fingerprint of the module jars and enabled modules scanned.
+ * The jars are only scanned again when the fingerprint changes. The module
+ * classes are validated, loaded and instantiated when the modules are first
+ * requested.
+ *
  *
  * Refer to
  * http://sleuthkit.org/sleuthkit/docs/framework-docs/pipeline_config_page.html
@@ -111,6 +120,13 @@ public final class IngestModuleLoader {
     //if not specified
     private int numModDiscovered = 0;
     private static String CUR_MODULES_DISCOVERED_SETTING = "curModulesDiscovered";
+    //discovery index settings
+    private static final String DISCOVERY_INDEX = "IngestModuleDiscoveryIndex";
+    private static final String DISCOVERY_FINGERPRINT_SETTING = "fingerprint";
+    private static final String DISCOVERED_FILE_MODULES_SETTING = "fileModules";
+    private static final String DISCOVERED_DATA_SOURCE_MODULES_SETTING = "dataSourceModules";
+    //if the pipelines are validated and their modules instantiated since init()
+    private boolean instantiated = false;
 
     //events supported
     enum Event {
@@ -310,8 +326,8 @@ else if (pType == IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE.DATA_SOURCE_AN
 
     }
 
-    private Set<URL> getJarPaths(String modulesDir) {
-        Set<URL> urls = new HashSet<URL>();
+    private List<File> getJarFiles(String modulesDir) {
+        List<File> jars = new ArrayList<File>();
 
         final File modulesDirF = new File(modulesDir);
         FilenameFilter jarFilter = new FilenameFilter() {
@@ -323,21 +339,7 @@ public boolean accept(File dir, String name) {
         File[] dirJars = modulesDirF.listFiles(jarFilter);
         if (dirJars != null) {
             //modules dir exists
-            for (int i = 0; i < dirJars.length; ++i) {
-                String urlPath = "file:/" + dirJars[i].getAbsolutePath();
-                try {
-                    urlPath = URLDecoder.decode(urlPath, ENCODING);
-                } catch (UnsupportedEncodingException ex) {
-                    logger.log(Level.SEVERE, "Could not decode file path. ", ex);
-                }
-
-                try {
-                    urls.add(new URL(urlPath));
-                    //logger.log(Level.INFO, "JAR: " + urlPath);
-                } catch (MalformedURLException ex) {
-                    logger.log(Level.WARNING, "Invalid URL: " + urlPath, ex);
-                }
-            }
+            Collections.addAll(jars, dirJars);
         }
 
         /*
@@ -352,7 +354,32 @@ public boolean accept(File dir, String name) {
          //org.netbeans.ModuleManager moduleManager = moduleSystem.getManager();
          */
 
-        return urls;
+        return jars;
+    }
+
+    /**
+     * Get the jar files of the core, user and other project modules
+     *
+     * @return module jar files
+     */
+    private List<File> getModuleJarFiles() {
+        List<File> jars = new ArrayList<File>();
+
+        //core modules
+        jars.addAll(getJarFiles(PlatformUtil.getInstallModulesPath()));
+
+        //user modules
+        jars.addAll(getJarFiles(PlatformUtil.getUserModulesPath()));
+
+        // add other project dirs, such as from external modules
+        for (String projectDir : PlatformUtil.getProjectsDirs()) {
+            File modules = new File(projectDir + File.separator + "modules");
+            if (modules.exists()) {
+                jars.addAll(getJarFiles(modules.getAbsolutePath()));
+            }
+        }
+
+        return jars;
     }
 
     /**
@@ -437,39 +464,215 @@ private Set<URL> getJarPaths(Collection<? extends ModuleInfo> moduleInfos) {
          }
          * */
 
-        //core modules
-        urls.addAll(getJarPaths(PlatformUtil.getInstallModulesPath()));
+        for (File jar : getModuleJarFiles()) {
+            String urlPath = "file:/" + jar.getAbsolutePath();
+            try {
+                urlPath = URLDecoder.decode(urlPath, ENCODING);
+            } catch (UnsupportedEncodingException ex) {
+                logger.log(Level.SEVERE, "Could not decode file path. ", ex);
+            }
 
-        //user modules
-        urls.addAll(getJarPaths(PlatformUtil.getUserModulesPath()));
-        
-        // add other project dirs, such as from external modules
-        for (String projectDir : PlatformUtil.getProjectsDirs()) {
-            File modules = new File(projectDir + File.separator + "modules");
-            if (modules.exists()) {
-                urls.addAll(getJarPaths(modules.getAbsolutePath()));
+            try {
+                urls.add(new URL(urlPath));
+                //logger.log(Level.INFO, "JAR: " + urlPath);
+            } catch (MalformedURLException ex) {
+                logger.log(Level.WARNING, "Invalid URL: " + urlPath, ex);
             }
         }
-        
-        
 
         return urls;
     }
 
+    /**
+     * Get the base package names of the enabled platform modules to search
+     * for ingest modules
+     *
+     * @param moduleInfos platform modules
+     * @return base package names, sorted
+     */
+    private Set<String> getScannedPackageNames(Collection<? extends ModuleInfo> moduleInfos) {
+        Set<String> packageNames = new TreeSet<String>();
+        for (ModuleInfo moduleInfo : moduleInfos) {
+            String basePackageName = moduleInfo.getCodeNameBase();
+            if (moduleInfo.isEnabled()
+                    && !basePackageName.startsWith("org.netbeans")
+                    && !basePackageName.startsWith("org.openide")) {
+                packageNames.add(basePackageName);
+            }
+        }
+        return packageNames;
+    }
+
+    /**
+     * Get the fingerprint of what the autodiscovery scans: the paths, sizes
+     * and modification times of the module jars, and the enabled modules
+     *
+     * @param moduleInfos platform modules
+     * @return fingerprint, or null if it could not be computed
+     */
+    private String getDiscoveryFingerprint(Collection<? extends ModuleInfo> moduleInfos) {
+        return getDiscoveryFingerprint(getModuleJarFiles(), getScannedPackageNames(moduleInfos));
+    }
+
+    /**
+     * Get the fingerprint of module jars and module package names, which
+     * changes when a jar is added, removed or changed, or when the modules
+     * change. The order of the jars and package names does not matter.
+     *
+     * @param jars module jar files
+     * @param packageNames base package names of the enabled modules
+     * @return fingerprint, or null if it could not be computed
+     */
+    static String getDiscoveryFingerprint(Collection<File> jars, Collection<String> packageNames) {
+        Set<String> entries = new TreeSet<String>();
+        for (File jar : jars) {
+            entries.add(jar.getAbsolutePath() + "|" + jar.length() + "|" + jar.lastModified());
+        }
+        entries.addAll(packageNames);
+        try {
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            for (String entry : entries) {
+                md.update(entry.getBytes(StandardCharsets.UTF_8));
+                md.update((byte) '\n');
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : md.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            logger.log(Level.WARNING, "Could not compute the ingest module discovery fingerprint", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Load the module classes found by the last autodiscovery, if the
+     * fingerprint of the scanned jars and modules did not change since
+     *
+     * @param fingerprint current fingerprint
+     * @param fileModules set to add the file module class names to
+     * @param dataSourceModules set to add the data source module class names
+     * to
+     * @return true if loaded, false if the jars need to be scanned
+     */
+    private boolean loadDiscoveryIndex(String fingerprint, Set<String> fileModules, Set<String> dataSourceModules) {
+        if (fingerprint == null || !ModuleSettings.settingExists(DISCOVERY_INDEX, DISCOVERY_FINGERPRINT_SETTING)) {
+            return false;
+        }
+        Map<String, String> index = ModuleSettings.getConfigSettings(DISCOVERY_INDEX);
+        if (index == null || !fingerprint.equals(index.get(DISCOVERY_FINGERPRINT_SETTING))) {
+            return false;
+        }
+        addClassNames(index.get(DISCOVERED_FILE_MODULES_SETTING), fileModules);
+        addClassNames(index.get(DISCOVERED_DATA_SOURCE_MODULES_SETTING), dataSourceModules);
+        return true;
+    }
+
+    private static void addClassNames(String classNames, Set<String> names) {
+        if (classNames == null) {
+            return;
+        }
+        for (String className : classNames.split(",")) {
+            if (!className.isEmpty()) {
+                names.add(className);
+            }
+        }
+    }
+
+    /**
+     * Save the module classes found by the autodiscovery, for the next
+     * startups
+     *
+     * @param fingerprint fingerprint of the scanned jars and modules
+     * @param fileModules file module class names found
+     * @param dataSourceModules data source module class names found
+     */
+    private void saveDiscoveryIndex(String fingerprint, Set<String> fileModules, Set<String> dataSourceModules) {
+        if (fingerprint == null) {
+            return;
+        }
+        Map<String, String> index = new HashMap<String, String>();
+        index.put(DISCOVERY_FINGERPRINT_SETTING, fingerprint);
+        index.put(DISCOVERED_FILE_MODULES_SETTING, joinClassNames(fileModules));
+        index.put(DISCOVERED_DATA_SOURCE_MODULES_SETTING, joinClassNames(dataSourceModules));
+        ModuleSettings.setConfigSettings(DISCOVERY_INDEX, index);
+    }
+
+    private static String joinClassNames(Set<String> names) {
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(name);
+        }
+        return sb.toString();
+    }
+
     /**
      * Auto-discover ingest modules in all platform modules that are "enabled"
      * If discovered ingest module is not already in XML config, add it do
      * config and add to in-memory pipeline.
      *
+     * The module jars are only scanned if they or the enabled modules changed
+     * since the last scan, otherwise the modules found by the last scan are
+     * used.
+     *
      * @throws IngestModuleLoaderException
      */
-    @SuppressWarnings("unchecked")
     private void autodiscover() throws IngestModuleLoaderException {
 
         // Use Lookup to find the other NBM modules. We'll later search them for ingest modules
         Collection<? extends ModuleInfo> moduleInfos = Lookup.getDefault().lookupAll(ModuleInfo.class);
         logger.log(Level.INFO, "Autodiscovery, found #platform modules: " + moduleInfos.size());
 
+        Set<String> fileModules = new TreeSet<String>();
+        Set<String> dataSourceModules = new TreeSet<String>();
+        final String fingerprint = getDiscoveryFingerprint(moduleInfos);
+        if (loadDiscoveryIndex(fingerprint, fileModules, dataSourceModules)) {
+            logger.log(Level.INFO, "Module jars unchanged, using the ingest modules found by the last autodiscovery");
+        } else {
+            scan(moduleInfos, fileModules, dataSourceModules);
+            saveDiscoveryIndex(fingerprint, fileModules, dataSourceModules);
+        }
+
+        //find out which modules to add
+        //TODO check which modules to remove (which modules were uninstalled)
+        boolean modulesChanged = false;
+        for (String moduleClassName : fileModules) {
+            if (!isInRawPipeline(moduleClassName, IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE.FILE_ANALYSIS)) {
+                logger.log(Level.INFO, "Discovered a new file module to load: " + moduleClassName);
+                //ADD MODULE
+                addModuleToRawPipeline(moduleClassName, IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE.FILE_ANALYSIS);
+                modulesChanged = true;
+            }
+        }
+        for (String moduleClassName : dataSourceModules) {
+            if (!isInRawPipeline(moduleClassName, IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE.DATA_SOURCE_ANALYSIS)) {
+                logger.log(Level.INFO, "Discovered a new DataSource module to load: " + moduleClassName);
+                //ADD MODULE 
+                addModuleToRawPipeline(moduleClassName, IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE.DATA_SOURCE_ANALYSIS);
+                modulesChanged = true;
+            }
+        }
+
+        if (modulesChanged) {
+            save();
+            pcs.firePropertyChange(IngestModuleLoader.Event.ModulesReloaded.toString(), 0, 1);
+        }
+    }
+
+    /**
+     * Scan the module jars for the ingest module classes of the enabled
+     * platform modules
+     *
+     * @param moduleInfos platform modules
+     * @param fileModules set to add the found file module class names to
+     * @param dataSourceModules set to add the found data source module class
+     * names to
+     */
+    private void scan(Collection<? extends ModuleInfo> moduleInfos, Set<String> fileModules, Set<String> dataSourceModules) {
         Set<URL> urls = getJarPaths(moduleInfos);
         ArrayList<Reflections> reflectionsSet = new ArrayList<>();
         
@@ -519,102 +722,44 @@ private void autodiscover() throws IngestModuleLoaderException {
         
         for (Reflections reflections : reflectionsSet) {
 
-            Set<?> fileModules = reflections.getSubTypesOf(IngestModuleAbstractFile.class);
-            Iterator<?> it = fileModules.iterator();
-            while (it.hasNext()) {
-                logger.log(Level.INFO, "Found file ingest module in: " + reflections.getClass().getSimpleName() + ": " + it.next().toString());
+            Set<? extends Class<?>> foundFileModules = reflections.getSubTypesOf(IngestModuleAbstractFile.class);
+            for (Class<?> foundClass : foundFileModules) {
+                logger.log(Level.INFO, "Found file ingest module in: " + reflections.getClass().getSimpleName() + ": " + foundClass.toString());
+                fileModules.add(foundClass.getName());
             }
 
-            Set<?> dataSourceModules = reflections.getSubTypesOf(IngestModuleDataSource.class);
-            it = dataSourceModules.iterator();
-            while (it.hasNext()) {
-                logger.log(Level.INFO, "Found DataSource ingest module in: " + reflections.getClass().getSimpleName() + ": " + it.next().toString());
+            Set<? extends Class<?>> foundDataSourceModules = reflections.getSubTypesOf(IngestModuleDataSource.class);
+            for (Class<?> foundClass : foundDataSourceModules) {
+                logger.log(Level.INFO, "Found DataSource ingest module in: " + reflections.getClass().getSimpleName() + ": " + foundClass.toString());
+                dataSourceModules.add(foundClass.getName());
             }
             
-            if ((fileModules.isEmpty()) && (dataSourceModules.isEmpty())) {
+            if ((foundFileModules.isEmpty()) && (foundDataSourceModules.isEmpty())) {
                 logger.log(Level.INFO, "Module has no ingest modules: " + reflections.getClass().getSimpleName());
-                continue;
             }
+        }
+    }
 
-            //find out which modules to add
-            //TODO check which modules to remove (which modules were uninstalled)
-            boolean modulesChanged = false;
-
-            it = fileModules.iterator();
-            while (it.hasNext()) {
-                boolean exists = false;
-                Class<IngestModuleAbstractFile> foundClass = (Class<IngestModuleAbstractFile>) it.next();
-
-                for (IngestModuleLoader.XmlPipelineRaw rawP : pipelinesXML) {
-                    if (!rawP.type.equals(IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE.FILE_ANALYSIS.toString())) {
-                        continue; //skip
-                    }
-
-                    for (IngestModuleLoader.XmlModuleRaw rawM : rawP.modules) {
-                        //logger.log(Level.INFO, "CLASS NAME : " + foundClass.getName());
-                        if (foundClass.getName().equals(rawM.location)) {
-                            exists = true;
-                            break;
-                        }
-                    }
-                    if (exists == true) {
-                        break;
-                    }
-                }
-
-                if (exists == false) {
-                    logger.log(Level.INFO, "Discovered a new file module to load: " + foundClass.getName());
-                    //ADD MODULE
-                    addModuleToRawPipeline(foundClass, IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE.FILE_ANALYSIS);
-                    modulesChanged = true;
-                }
-
+    /**
+     * Check if a module is in the raw pipeline of the type
+     *
+     * @param moduleClassName module class name (location)
+     * @param pipelineType type of the pipeline to look in
+     * @return true if in the pipeline
+     */
+    private boolean isInRawPipeline(String moduleClassName, IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE pipelineType) {
+        for (IngestModuleLoader.XmlPipelineRaw rawP : pipelinesXML) {
+            if (!rawP.type.equals(pipelineType.toString())) {
+                continue; //skip
             }
 
-            it = dataSourceModules.iterator();
-            while (it.hasNext()) {
-                boolean exists = false;
-                Class<IngestModuleDataSource> foundClass = (Class<IngestModuleDataSource>) it.next();
-
-                for (IngestModuleLoader.XmlPipelineRaw rawP : pipelinesXML) {
-                    if (!rawP.type.equals(IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE.DATA_SOURCE_ANALYSIS.toString())) {
-                        continue; //skip
-                    }
-
-
-                    for (IngestModuleLoader.XmlModuleRaw rawM : rawP.modules) {
-                        //logger.log(Level.INFO, "CLASS NAME : " + foundClass.getName());
-                        if (foundClass.getName().equals(rawM.location)) {
-                            exists = true;
-                            break;
-                        }
-                    }
-                    if (exists == true) {
-                        break;
-                    }
-                }
-
-                if (exists == false) {
-                    logger.log(Level.INFO, "Discovered a new DataSource module to load: " + foundClass.getName());
-                    //ADD MODULE 
-                    addModuleToRawPipeline(foundClass, IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE.DATA_SOURCE_ANALYSIS);
-                    modulesChanged = true;
+            for (IngestModuleLoader.XmlModuleRaw rawM : rawP.modules) {
+                if (moduleClassName.equals(rawM.location)) {
+                    return true;
                 }
-
-            }
-
-            if (modulesChanged) {
-                save();
-                pcs.firePropertyChange(IngestModuleLoader.Event.ModulesReloaded.toString(), 0, 1);
             }
-
-            /*
-             //Enumeration<URL> resources = moduleClassLoader.getResources(basePackageName);
-             Enumeration<URL> resources = classLoader.getResources(basePackageName);
-             while (resources.hasMoreElements()) {
-             System.out.println(resources.nextElement());
-             } */
         }
+        return false;
     }
 
     /**
@@ -633,11 +778,10 @@ void setModuleOrder(IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE pipeLineType
      * add autodiscovered module to raw pipeline to be validated and
      * instantiated
      *
-     * @param moduleClass
+     * @param moduleLocation module class name
      * @param pipelineType
      */
-    private void addModuleToRawPipeline(Class<?> moduleClass, IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE pipelineType) throws IngestModuleLoaderException {
-        String moduleLocation = moduleClass.getName();
+    private void addModuleToRawPipeline(String moduleLocation, IngestModuleLoader.XmlPipelineRaw.PIPELINE_TYPE pipelineType) throws IngestModuleLoaderException {
 
         IngestModuleLoader.XmlModuleRaw modRaw = new IngestModuleLoader.XmlModuleRaw();
         modRaw.arguments = ""; //default, no arguments
@@ -661,7 +805,7 @@ private void addModuleToRawPipeline(Class<?> moduleClass, IngestModuleLoader.Xml
             throw new IngestModuleLoaderException("Could not find expected pipeline of type: " + pipelineType.toString() + ", cannot add autodiscovered module: " + moduleLocation);
         } else {
             pipeline.modules.add(modRaw);
-            logger.log(Level.INFO, "Added a new module " + moduleClass.getName() + " to pipeline " + pipelineType.toString());
+            logger.log(Level.INFO, "Added a new module " + moduleLocation + " to pipeline " + pipelineType.toString());
         }
     }
 
@@ -743,10 +887,7 @@ private void instantiate() throws IngestModuleLoaderException {
         filePipeline.clear();
         dataSourcePipeline.clear();
 
-        //add autodiscovered modules to pipelinesXML
-        autodiscover();
-
-        //validate all modules: from XML + just autodiscovered
+        //validate all modules: from XML + autodiscovered
 
         validate();
 
@@ -831,9 +972,6 @@ public int compare(IngestModuleLoader.XmlModuleRaw o1, IngestModuleLoader.XmlMod
             }
 
         } //end instantiating modules in XML
-
-
-
     }
 
     /**
@@ -935,8 +1073,9 @@ private void loadRawPipeline() throws IngestModuleLoaderException {
     }
 
     /**
-     * Load and validate XML pipeline, autodiscover and instantiate the pipeline
-     * modules Can be called multiple times to refresh the view of modules
+     * Load XML pipeline and autodiscover the pipeline modules. The modules
+     * are validated and instantiated when first requested. Can be called
+     * multiple times to refresh the view of modules
      *
      * @throws IngestModuleLoaderException
      */
@@ -954,26 +1093,47 @@ public synchronized void init() throws IngestModuleLoaderException {
         //load the pipeline config
         loadRawPipeline();
 
-        instantiate();
+        instantiated = false;
 
+        //add autodiscovered modules to pipelinesXML
+        autodiscover();
+    }
 
+    /**
+     * Validate the pipelines and instantiate their modules, if not done since
+     * init(). This is tried once: if it fails, the pipelines are left empty
+     * until the next init() rather than instantiated again on every call.
+     */
+    private void ensureInstantiated() {
+        if (!instantiated) {
+            instantiated = true;
+            try {
+                instantiate();
+            } catch (IngestModuleLoaderException ex) {
+                filePipeline.clear();
+                dataSourcePipeline.clear();
+                logger.log(Level.SEVERE, "Error instantiating the ingest modules, no ingest modules are available", ex);
+            }
+        }
     }
 
     /**
-     * Get loaded file modules
+     * Get loaded file modules, loading them on the first call
      *
      * @return file modules loaded
      */
-    public List<IngestModuleAbstractFile> getAbstractFileIngestModules() {
+    public synchronized List<IngestModuleAbstractFile> getAbstractFileIngestModules() {
+        ensureInstantiated();
         return filePipeline;
     }
 
     /**
-     * Get loaded data source modules
+     * Get loaded data source modules, loading them on the first call
      *
      * @return data source modules loaded
      */
-    public List<IngestModuleDataSource> getDataSourceIngestModules() {
+    public synchronized List<IngestModuleDataSource> getDataSourceIngestModules() {
+        ensureInstantiated();
         return dataSourcePipeline;
     }
 
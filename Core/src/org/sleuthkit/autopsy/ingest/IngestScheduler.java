@@ -445,7 +445,46 @@ public synchronized ProcessTask next() {
             return task;
         }
 
-        /** 
+        /**
+         * Atomically check for and dequeue the next ProcessTask. Safe to use
+         * from multiple file ingest worker threads, unlike a separate
+         * hasNext() / next() sequence.
+         *
+         * @return next ProcessTask, or null if the queues are currently empty
+         */
+        synchronized ProcessTask poll() {
+            if (!hasNext()) {
+                return null;
+            }
+            return next();
+        }
+
+        /**
+         * Get the files of the next tasks to be dequeued for a module, without
+         * dequeuing them. Lets modules prepare data, such as read ahead, before
+         * the files get to the module.
+         *
+         * @param module module the files are scheduled for
+         * @param maxFiles max number of files to return
+         * @return files in the order they will be dequeued, only files in
+         * the current directory queue are considered
+         */
+        synchronized List<AbstractFile> peekFiles(IngestModuleAbstractFile module, int maxFiles) {
+            final List<AbstractFile> files = new ArrayList<>();
+            final Iterator<ProcessTask> it = curFileProcessTasks.descendingIterator();
+            while (it.hasNext() && files.size() < maxFiles) {
+                final ProcessTask task = it.next();
+                for (IngestModuleAbstractFile m : task.context.getScheduledTask().getModules()) {
+                    if (m.getName().equals(module.getName())) {
+                        files.add(task.file);
+                        break;
+                    }
+                }
+            }
+            return files;
+        }
+
+        /**
          * Shuffle the queues so that there are files in the files queue.
          * @returns true if no more data in queue
          */
@@ -20,12 +20,16 @@
 
 package org.sleuthkit.autopsy.ingest;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.coreutils.ModuleSettings;
 import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
+import org.sleuthkit.datamodel.BlackboardAttribute;
 import org.sleuthkit.datamodel.SleuthkitCase;
 
 
@@ -119,6 +123,32 @@ public void fireModuleDataEvent(ModuleDataEvent moduleDataEvent) {
     }
     
     
+    /**
+     * Post a new blackboard artifact to be written to the blackboard.
+     * Artifacts are buffered and written in batches, by size and time, each
+     * artifact with all its attributes at once.  A ModuleDataEvent with the
+     * written artifacts is fired for each batch rather than for each artifact,
+     * so the module should not fire its own event for them.
+     * Pending artifacts are also written when the module finishes.
+     * 
+     * @param moduleName name of the module posting the artifact
+     * @param type type of the artifact
+     * @param file file the artifact is associated with
+     * @param attributes attributes of the artifact, must not be modified after
+     * posting
+     */
+    public void addArtifact(String moduleName, ARTIFACT_TYPE type, AbstractFile file, Collection<BlackboardAttribute> attributes) {
+        manager.getArtifactWriteBuffer().add(moduleName, type, file, attributes);
+    }
+    
+    /**
+     * Write all artifacts posted with addArtifact() that are still pending,
+     * e.g. before querying the blackboard for them
+     */
+    public void flushArtifacts() {
+        manager.getArtifactWriteBuffer().flush();
+    }
+    
      /**
      * Fire module content event to notify registered module content event listeners
      * that there is new content (from ZIP file contents, carving, etc.)
@@ -141,6 +171,48 @@ public void scheduleFile(AbstractFile file, PipelineContext<IngestModuleAbstract
         manager.scheduleFile(file, pipelineContext);
     }
     
+    /**
+     * Get files queued to be processed next by a module, without dequeuing
+     * them.  This allows a module to start work on files ahead of the
+     * pipeline, such as reading content in the background.  The files are
+     * still passed to the module's process() method as usual.
+     * 
+     * @param module file ingest module the files are scheduled for
+     * @param maxFiles max number of files to return
+     * @return files in the order they will be processed
+     */
+    public List<AbstractFile> getUpcomingFiles(IngestModuleAbstractFile module, int maxFiles) {
+        return manager.getUpcomingFiles(module, maxFiles);
+    }
+    
+    
+    /**
+     * Get the first bytes of a file being processed by the file ingest
+     * pipeline, to check its signature.  The header is read once per file
+     * and shared by all modules, so modules should use it rather than read
+     * the start of the file themselves.
+     * 
+     * @param file file currently processed by the pipeline
+     * @return up to the first 8KB of the file, fewer if the file is smaller
+     * or could not be read entirely. The array must not be modified.
+     */
+    public byte[] getFileHeader(AbstractFile file) {
+        return manager.getFileTypeCache().getHeader(file);
+    }
+    
+    /**
+     * Get the type of a file being processed by the file ingest pipeline.
+     * The pipeline detects the type before the file modules run, with the
+     * installed FileTypeDetector, or reads the type stored by a previous
+     * ingest of the file.
+     * 
+     * @param file file currently processed by the pipeline
+     * @return MIME type of the file, or null if it could not be detected,
+     * e.g. for directories and empty files, or if no detector is installed
+     */
+    public String getFileType(AbstractFile file) {
+        return manager.getFileTypeCache().getType(file);
+    }
     
      /**
      * Get free disk space of a drive where ingest data are written to
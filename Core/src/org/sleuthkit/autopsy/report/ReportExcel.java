@@ -21,27 +21,48 @@
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import org.apache.poi.hssf.util.HSSFColor;
+import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.coreutils.Logger;
 
+/**
+ * Excel (.xlsx) report. The workbook is streamed: only the last
+ * ROW_ACCESS_WINDOW_SIZE rows of a sheet are kept in memory, older rows are
+ * flushed to temporary files as rows are added, so the memory used does not
+ * grow with the number of artifacts reported. A data type with more rows than
+ * a sheet can hold is continued on additional sheets.
+ */
 public class ReportExcel implements TableReportModule {
     private static final Logger logger = Logger.getLogger(ReportExcel.class.getName());
     private static ReportExcel instance;
+    // number of rows of the current sheet kept in memory
+    private static final int ROW_ACCESS_WINDOW_SIZE = 100;
+    private static final int MAX_ROWS_PER_SHEET = SpreadsheetVersion.EXCEL2007.getMaxRows();
+    private static final int MAX_SHEET_NAME_LENGTH = 31;
+    // column widths are sized to at most this many characters
+    private static final int MAX_COLUMN_WIDTH_CHARS = 100;
     
-    private Workbook wb;
+    private SXSSFWorkbook wb;
     private Sheet sheet;
     private CellStyle titleStyle;
     private CellStyle setStyle;
     private CellStyle elementStyle;
     private int rowIndex = 0;
-    private int sheetColCount = 0;
     private int artifactsCount = 0;
     private String reportPath;
+    // name of the current data type, and number of sheets it spans
+    private String dataTypeName;
+    private int dataTypeSheetCount = 0;
+    // column names of the current table, repeated on continuation sheets
+    private List<String> tableTitles = null;
+    // widest value, in characters, of each column of the current sheet
+    private List<Integer> columnWidths = new ArrayList<>();
     
     // Get the default instance of this report
     public static synchronized ReportExcel getDefault() {
@@ -65,8 +86,8 @@ public void startReport(String path) {
         // Set the path and save it for when the report is written to disk.
         this.reportPath = path + getFilePath();
                 
-        // Make a workbook.
-        wb = new XSSFWorkbook();
+        // Make a streaming workbook.
+        wb = new SXSSFWorkbook(ROW_ACCESS_WINDOW_SIZE);
         
         // Create some cell styles.
         // TODO: The commented out cell style settings below do not work as desired when
@@ -118,6 +139,11 @@ public void endReport() {
                 } catch (IOException ex) {
                 }
             }
+            // Drop the rows still in memory. The rows flushed to temporary files
+            // stay in java.io.tmpdir: POI 3.8 has no SXSSFWorkbook.dispose() to
+            // delete them, they are only deleted when the application exits.
+            wb = null;
+            sheet = null;
         }
     }
     
@@ -128,31 +154,7 @@ public void endReport() {
      */
     @Override
     public void startDataType(String name) {
-        // Create a worksheet for the data type (assumed to be an artifact type).
-        name = escapeForExcel(name);
-        sheet = wb.createSheet(name);
-        sheet.setAutobreaks(true);
-        rowIndex = 0;
-        artifactsCount = 0;
-        
-        // Add a title row to the worksheet.
-        Row row = sheet.createRow(rowIndex);
-        row.setRowStyle(setStyle);
-        row.createCell(0).setCellValue(name);
-        ++rowIndex;
-        
-        // Add an artifacts count row. The actual count will be filled in later.
-        row = sheet.createRow(rowIndex);
-        row.setRowStyle(setStyle);
-        row.createCell(0).setCellValue("Number of artifacts:");
-        ++rowIndex;
-
-        // Add an empty row as a separator.
-        sheet.createRow(rowIndex);
-        ++rowIndex;
-                        
-        // There will be at least two columns, one each for the artifacts count and its label.
-        sheetColCount = 2;
+        startDataType(name, "");
     }
 
     /**
@@ -165,37 +167,24 @@ public void startDataType(String name) {
     public void startDataType(String name, String comment) {
         // Create a worksheet for the data type (assumed to be an artifact type).
         name = escapeForExcel(name);
-        sheet = wb.createSheet(name);
-        sheet.setAutobreaks(true);
-        rowIndex = 0;
+        dataTypeName = name;
+        dataTypeSheetCount = 1;
+        tableTitles = null;
         artifactsCount = 0;
+        createSheet(name);
         
         // Add a title row to the worksheet.
-        Row row = sheet.createRow(rowIndex);
-        row.setRowStyle(setStyle);
-        row.createCell(0).setCellValue(name);
-        ++rowIndex;
+        Row row = createRow(setStyle);
+        addCell(row, 0, name);
         
-        // Add an artifacts count row. The actual count will be filled in later.
-        row = sheet.createRow(rowIndex);
-        row.setRowStyle(setStyle);
-        row.createCell(0).setCellValue("Number of artifacts:");
-        ++rowIndex;
-
         // Add a comment row, if a comment was supplied.
         if (!comment.isEmpty()) {
-            row = sheet.createRow(rowIndex);
-            row.setRowStyle(setStyle);
-            row.createCell(0).setCellValue(comment);
-            ++rowIndex;
+            row = createRow(setStyle);
+            addCell(row, 0, comment);
         }
         
         // Add an empty row as a separator.
-        sheet.createRow(rowIndex);
-        ++rowIndex;
-                
-        // There will be at least two columns, one each for the artifacts count and its label.
-        sheetColCount = 2;
+        createRow(null);
     }    
     
     /**
@@ -203,15 +192,14 @@ public void startDataType(String name, String comment) {
      */
     @Override
     public void endDataType() {
-        // Fill in the artifact count cell in row 0.
-        Row row = sheet.getRow(1);
-        row.setRowStyle(setStyle);
-        row.createCell(1).setCellValue(artifactsCount);
+        // The rows at the top of the sheet may already be flushed, so the
+        // artifacts count is added at the end of the data type.
+        Row row = createRow(setStyle);
+        addCell(row, 0, "Number of artifacts:");
+        addCell(row, 1, artifactsCount);
     
         // Now that the sheet is complete, size the columns to the content.
-        for (int i = 0; i < sheetColCount; ++i) {
-            sheet.autoSizeColumn(i);
-        }
+        sizeColumns();
     }
 
     /**
@@ -221,10 +209,8 @@ public void endDataType() {
     @Override
     public void startSet(String setName) {
         setName = escapeForExcel(setName);
-        Row row = sheet.createRow(rowIndex);
-        row.setRowStyle(setStyle);
-        row.createCell(0).setCellValue(setName);
-        ++rowIndex;
+        Row row = createRow(setStyle);
+        addCell(row, 0, setName);
     }
 
     /**
@@ -233,8 +219,7 @@ public void startSet(String setName) {
     @Override
     public void endSet() {
         // Add an empty row as a separator.
-        sheet.createRow(rowIndex);
-        ++rowIndex;
+        createRow(null);
     }
 
     @Override
@@ -249,10 +234,8 @@ public void addSetIndex(List<String> sets) {
     @Override
     public void addSetElement(String elementName) {
         elementName = escapeForExcel(elementName);
-        Row row = sheet.createRow(rowIndex);
-        row.setRowStyle(elementStyle);
-        row.createCell(0).setCellValue(elementName);
-        ++rowIndex;
+        Row row = createRow(elementStyle);
+        addCell(row, 0, elementName);
     }
 
     /**
@@ -261,26 +244,15 @@ public void addSetElement(String elementName) {
      */
     @Override
     public void startTable(List<String> titles) {
-        int tableColCount = 0;
-        Row row = sheet.createRow(rowIndex);
-        row.setRowStyle(titleStyle);
-        for (int i=0; i<titles.size(); i++) {
-            row.createCell(i).setCellValue(titles.get(i));
-            ++tableColCount;
-        }
-        ++rowIndex;
-        
-        // Keep track of the number of columns with data in them for later column auto-sizing.
-        if (tableColCount > sheetColCount) {
-            sheetColCount = tableColCount;
-        }
+        tableTitles = new ArrayList<>(titles);
+        addTableTitles();
     }
 
     @Override
     public void endTable() {
+        tableTitles = null;
         // Add an empty row as a separator.
-        sheet.createRow(rowIndex);
-        ++rowIndex;
+        createRow(null);
     }
 
     /**
@@ -289,11 +261,10 @@ public void endTable() {
      */
     @Override
     public void addRow(List<String> rowData) {
-        Row row = sheet.createRow(rowIndex);
+        Row row = createRow(null);
         for (int i = 0; i < rowData.size(); ++i) {
-            row.createCell(i).setCellValue(rowData.get(i));
+            addCell(row, i, rowData.get(i));
         }
-        ++rowIndex;
         ++artifactsCount;
     }
 
@@ -337,46 +308,125 @@ public String getFilePath() {
     private static String escapeForExcel(String text) {
          return text.replaceAll("[\\/\\:\\?\\*\\\\]", "_");
     }
-    
-    private void writeSummaryWorksheet() {
-        sheet = wb.createSheet("Summary");
+
+    /**
+     * Create a sheet and make it the current sheet.
+     * @param name sheet name
+     */
+    private void createSheet(String name) {
+        sheet = wb.createSheet(name);
+        sheet.setAutobreaks(true);
         rowIndex = 0;
-        
+        columnWidths.clear();
+    }
+
+    /**
+     * Add a row to the current sheet, continuing the current data type on a
+     * new sheet if the current sheet is full.
+     * @param style row style, or null for the default style
+     * @return the row
+     */
+    private Row createRow(CellStyle style) {
+        if (rowIndex >= MAX_ROWS_PER_SHEET) {
+            startContinuationSheet();
+        }
         Row row = sheet.createRow(rowIndex);
-        row.setRowStyle(setStyle);
-        row.createCell(0).setCellValue("Summary");
+        if (style != null) {
+            row.setRowStyle(style);
+        }
         ++rowIndex;
+        return row;
+    }
 
-        sheet.createRow(rowIndex);
+    /**
+     * Continue the current data type on a new sheet, repeating the column
+     * names of the current table.
+     */
+    private void startContinuationSheet() {
+        sizeColumns();
+        ++dataTypeSheetCount;
+        String suffix = " (" + dataTypeSheetCount + ")";
+        String baseName = dataTypeName;
+        if (baseName.length() + suffix.length() > MAX_SHEET_NAME_LENGTH) {
+            baseName = baseName.substring(0, MAX_SHEET_NAME_LENGTH - suffix.length());
+        }
+        createSheet(baseName + suffix);
+
+        Row row = sheet.createRow(rowIndex);
+        row.setRowStyle(setStyle);
+        addCell(row, 0, dataTypeName + " (continued)");
         ++rowIndex;
+        if (tableTitles != null) {
+            addTableTitles();
+        }
+    }
+
+    private void addTableTitles() {
+        Row row = createRow(titleStyle);
+        for (int i = 0; i < tableTitles.size(); i++) {
+            addCell(row, i, tableTitles.get(i));
+        }
+    }
+
+    private void addCell(Row row, int column, String value) {
+        row.createCell(column).setCellValue(value);
+        updateColumnWidth(column, value != null ? value.length() : 0);
+    }
+
+    private void addCell(Row row, int column, int value) {
+        row.createCell(column).setCellValue(value);
+        updateColumnWidth(column, Integer.toString(value).length());
+    }
+
+    /**
+     * Keep track of the width of the columns for later column sizing, as
+     * the flushed rows are not available to auto-size the columns.
+     */
+    private void updateColumnWidth(int column, int chars) {
+        while (columnWidths.size() <= column) {
+            columnWidths.add(0);
+        }
+        if (chars > columnWidths.get(column)) {
+            columnWidths.set(column, Math.min(chars, MAX_COLUMN_WIDTH_CHARS));
+        }
+    }
+
+    /**
+     * Size the columns of the current sheet to the content.
+     */
+    private void sizeColumns() {
+        for (int i = 0; i < columnWidths.size(); ++i) {
+            // Column widths are in units of 1/256th of a character.
+            sheet.setColumnWidth(i, (columnWidths.get(i) + 2) * 256);
+        }
+    }
+    
+    private void writeSummaryWorksheet() {
+        createSheet("Summary");
+        
+        Row row = createRow(setStyle);
+        addCell(row, 0, "Summary");
+
+        createRow(null);
                                 
         Case currentCase = Case.getCurrentCase();        
                
-        row = sheet.createRow(rowIndex);
-        row.setRowStyle(setStyle);
-        row.createCell(0).setCellValue("Case Name:");
-        row.createCell(1).setCellValue(currentCase.getName());
-        ++rowIndex;
+        row = createRow(setStyle);
+        addCell(row, 0, "Case Name:");
+        addCell(row, 1, currentCase.getName());
 
-        row = sheet.createRow(rowIndex);
-        row.setRowStyle(setStyle);
-        row.createCell(0).setCellValue("Case Number:");
-        row.createCell(1).setCellValue(currentCase.getNumber());
-        ++rowIndex;
+        row = createRow(setStyle);
+        addCell(row, 0, "Case Number:");
+        addCell(row, 1, currentCase.getNumber());
 
-        row = sheet.createRow(rowIndex);
-        row.setRowStyle(setStyle);
-        row.createCell(0).setCellValue("Examiner:");
-        row.createCell(1).setCellValue(currentCase.getExaminer());
-        ++rowIndex;
+        row = createRow(setStyle);
+        addCell(row, 0, "Examiner:");
+        addCell(row, 1, currentCase.getExaminer());
 
-        row = sheet.createRow(rowIndex);
-        row.setRowStyle(setStyle);
-        row.createCell(0).setCellValue("Number of Images:");
-        row.createCell(1).setCellValue(currentCase.getImageIDs().length);
-        ++rowIndex;
+        row = createRow(setStyle);
+        addCell(row, 0, "Number of Images:");
+        addCell(row, 1, currentCase.getImageIDs().length);
         
-        sheet.autoSizeColumn(0);
-        sheet.autoSizeColumn(1);        
+        sizeColumns();
     }
 }
@@ -93,6 +93,10 @@
  */
 public class ReportGenerator {
     private static final Logger logger = Logger.getLogger(ReportGenerator.class.getName());
+    // the files and artifacts reported are read from the database in batches of these sizes
+    private static final int FILE_BATCH_SIZE = 1000;
+    private static final int ARTIFACT_BATCH_SIZE = 500;
+    private static final String FILE_REPORT_WHERE_CLAUSE = "NOT meta_type = 2";
     
     private Case currentCase = Case.getCurrentCase();
     private SleuthkitCase skCase = currentCase.getSleuthkitCase();
@@ -277,39 +281,35 @@ protected Integer doInBackground() throws Exception {
                 }
             }
             
-            List<AbstractFile> files = getFiles();
-            int numFiles = files.size();
+            // The files are read a batch at a time, so they are not all in memory.
+            long numFiles;
+            try {
+                numFiles = countFiles();
+            } catch (TskCoreException ex) {
+                logger.log(Level.SEVERE, "Failed to count the files to report.", ex);
+                for (FileReportModule module : fileModules) {
+                    fileProgress.get(module).error("Error reading the files of the case");
+                }
+                return 0;
+            }
             for (FileReportModule module : fileModules) {
                 module.startReport(reportPath);
                 module.startTable(enabledInfo);
                 fileProgress.get(module).setIndeterminate(false);
-                fileProgress.get(module).setMaximumProgress(numFiles);
+                fileProgress.get(module).setMaximumProgress((int) numFiles);
             }
             
-            int i = 0;
-            // Add files to report.
-            for (AbstractFile file : files) {
-                // Check to see if any reports have been cancelled.
-                if (fileModules.isEmpty()) {
-                    break;
-                }
-                // Remove cancelled reports, add files to report otherwise.
-                Iterator<FileReportModule> iter = fileModules.iterator();
-                while (iter.hasNext()) {
-                    FileReportModule module = iter.next();
-                    ReportProgressPanel progress = fileProgress.get(module);
-                    if (progress.getStatus() == ReportStatus.CANCELED) {
-                        iter.remove();
-                    } else {
-                        module.addRow(file, enabledInfo);
-                        progress.increment();
-                    }
-                    
-                    if ((i % 100) == 0) {
-                        progress.updateStatusLabel("Now processing " + file.getName());
-                    }
+            try {
+                writeFiles();
+            } catch (TskCoreException ex) {
+                // Don't let a truncated report look complete.
+                logger.log(Level.SEVERE, "Failed to get the files to report.", ex);
+                for (FileReportModule module : fileModules) {
+                    module.endTable();
+                    module.endReport();
+                    fileProgress.get(module).error("Error reading the files of the case, the report is incomplete");
                 }
-                i++;
+                return 0;
             }
             
             for (FileReportModule module : fileModules) {
@@ -322,20 +322,63 @@ protected Integer doInBackground() throws Exception {
         }
         
         /**
-         * Get all files in the image.
-         * @return 
+         * Add the files to the reports of the modules that are not canceled.
+         * @throws TskCoreException if a batch of files could not be read
          */
-        private List<AbstractFile> getFiles() {
-            List<AbstractFile> absFiles;
-            try {
-                SleuthkitCase skCase = Case.getCurrentCase().getSleuthkitCase();
-                absFiles = skCase.findAllFilesWhere("NOT meta_type = 2");
-                return absFiles;
-            } catch (TskCoreException ex) {
-                // TODO
-                return Collections.<AbstractFile>emptyList();
+        private void writeFiles() throws TskCoreException {
+            int i = 0;
+            long lastObjId = -1;
+            List<AbstractFile> files = getFiles(lastObjId);
+            while (!files.isEmpty() && !fileModules.isEmpty()) {
+                // Add files to report.
+                for (AbstractFile file : files) {
+                    // Check to see if any reports have been cancelled.
+                    if (fileModules.isEmpty()) {
+                        break;
+                    }
+                    // Remove cancelled reports, add files to report otherwise.
+                    Iterator<FileReportModule> iter = fileModules.iterator();
+                    while (iter.hasNext()) {
+                        FileReportModule module = iter.next();
+                        ReportProgressPanel progress = fileProgress.get(module);
+                        if (progress.getStatus() == ReportStatus.CANCELED) {
+                            iter.remove();
+                        } else {
+                            module.addRow(file, enabledInfo);
+                            progress.increment();
+                        }
+
+                        if ((i % 100) == 0) {
+                            progress.updateStatusLabel("Now processing " + file.getName());
+                        }
+                    }
+                    i++;
+                    lastObjId = file.getId();
+                }
+                files = getFiles(lastObjId);
             }
         }
+        
+        /**
+         * Get the number of files in the image.
+         * @return 
+         * @throws TskCoreException if the files could not be counted
+         */
+        private long countFiles() throws TskCoreException {
+            return skCase.countFilesWhere(FILE_REPORT_WHERE_CLAUSE);
+        }
+        
+        /**
+         * Get the next batch of files in the image.
+         * @param lastObjId obj_id of the last file of the previous batch, -1 for the first batch
+         * @return files with larger obj_ids, in obj_id order, empty when all files were read
+         * @throws TskCoreException if the batch could not be read, rather than
+         * ending the report early
+         */
+        private List<AbstractFile> getFiles(long lastObjId) throws TskCoreException {
+            return skCase.findAllFilesWhere(FILE_REPORT_WHERE_CLAUSE + " AND obj_id > " + lastObjId
+                    + " ORDER BY obj_id LIMIT " + FILE_BATCH_SIZE);
+        }
     }
     
     /**
@@ -390,6 +433,33 @@ protected Integer doInBackground() throws Exception {
                 comment.append(makeCommaSeparatedList(tagNamesFilter));
             }            
             
+            try {
+                writeArtifactTypes(comment.toString());
+            } catch (TskCoreException ex) {
+                // Don't let a truncated report look complete.
+                logger.log(Level.SEVERE, "Failed to get Blackboard Artifacts when generating report.", ex);
+                for (TableReportModule module : tableModules) {
+                    module.endReport();
+                    tableProgress.get(module).error("Error reading the results of the case, the report is incomplete");
+                }
+                return 0;
+            }
+            
+            // End the report
+            for (TableReportModule module : tableModules) {
+                tableProgress.get(module).complete();
+                module.endReport();
+            }
+            
+            return 0;
+        }
+        
+        /**
+         * Write every enabled artifact type to the modules that are not canceled.
+         * @param comment comment on the tags filter, may be the empty string
+         * @throws TskCoreException if the artifacts could not be read
+         */
+        private void writeArtifactTypes(String comment) throws TskCoreException {
             // For every enabled artifact type
             for (ARTIFACT_TYPE type : artifactTypes) {
                 // Check to see if all the TableReportModules have been canceled
@@ -411,58 +481,78 @@ protected Integer doInBackground() throws Exception {
                 
                 // If the type is keyword hit or hashset hit, use the helper
                 if (type.equals(ARTIFACT_TYPE.TSK_KEYWORD_HIT)) {
-                    writeKeywordHits(tableModules, comment.toString(), tagNamesFilter);
+                    writeKeywordHits(tableModules, comment, tagNamesFilter);
                     continue;
                 } else if (type.equals(ARTIFACT_TYPE.TSK_HASHSET_HIT)) {
-                    writeHashsetHits(tableModules, comment.toString(), tagNamesFilter);
+                    writeHashsetHits(tableModules, comment, tagNamesFilter);
                     continue;
                 }
 
-                List<ArtifactData> unsortedArtifacts = getFilteredArtifacts(type, tagNamesFilter);
-                
-                if (unsortedArtifacts.isEmpty()) {
-                    // Don't report on this artifact type if there are no results
-                    continue;
-                }
-                // The most efficient way to sort all the Artifacts is to add them to a List, and then
-                // sort that List based off a Comparator. Adding to a TreeMap/Set/List sorts the list
-                // each time an element is added, which adds unnecessary overhead if we only need it sorted once.
-                Collections.sort(unsortedArtifacts);
-
-                // Get the column headers appropriate for the artifact type.
-                /* @@@ BC: Seems like a better design here would be to have a method that 
-                 * takes in the artifact as an argument and returns the attributes. We then use that
-                 * to make the headers and to make each row afterwards so that we don't have artifact-specific
-                 * logic in both getArtifactTableCoumnHeaders and ArtifactData.getRow()
-                 */
-                List<String> columnHeaders = getArtifactTableColumnHeaders(type.getTypeID());
-                if (columnHeaders == null) {
-                    // @@@ Hack to prevent system from hanging.  Better solution is to merge all attributes into a single column or analyze the artifacts to find out how many are needed.
-                    MessageNotifyUtil.Notify.show("Skipping artifact type " + type + " in reports", "Unknown columns to report on", MessageNotifyUtil.MessageType.ERROR);
-                    continue;
-                }
-                
-                for (TableReportModule module : tableModules) {                  
+                writeArtifacts(type, tableModules, comment, tagNamesFilter);
+            }
+        }
+    }
+    
+    private Boolean failsTagFilter(HashSet<String> tags, HashSet<String> tagsFilter) 
+    {
+        if (null == tagsFilter || tagsFilter.isEmpty()) {
+            return false;
+        }
 
-                    // This is a temporary workaround to avoid modifying the TableReportModule interface.
-                    if (module instanceof ReportHTML) {
-                        ReportHTML htmlReportModule = (ReportHTML)module;
-                        htmlReportModule.startDataType(type.getDisplayName(), comment.toString());                        
-                        htmlReportModule.startTable(columnHeaders, type);
-                    }
-                    else if (module instanceof ReportExcel) {
-                        ReportExcel excelReportModule = (ReportExcel)module;
-                        excelReportModule.startDataType(type.getDisplayName(), comment.toString());                        
-                        excelReportModule.startTable(columnHeaders);                    
-                    }
-                    else {
-                        module.startDataType(type.getDisplayName());                        
-                        module.startTable(columnHeaders);
+        HashSet<String> filteredTags = new HashSet<>(tags);
+        filteredTags.retainAll(tagsFilter);
+        return filteredTags.isEmpty();
+    }
+    
+    /**
+     * Write the artifacts of a type to the provided TableReportModules.
+     * 
+     * The ids of the artifacts are read in the order of the sort key of the
+     * type, and the artifacts, attributes and tags are read a batch of ids at
+     * a time, so only a batch of artifacts is in memory at any time.
+     * @param type artifact type to report on
+     * @param tableModules modules to report on
+     * @param comment comment on the tags filter, may be the empty string
+     * @param tagNamesFilter tag names the reported artifacts must have, if not empty
+     * @throws TskCoreException if the artifacts could not be read
+     */
+    @SuppressWarnings("deprecation")
+    private void writeArtifacts(ARTIFACT_TYPE type, List<TableReportModule> tableModules, String comment, HashSet<String> tagNamesFilter) throws TskCoreException {
+        boolean dataTypeStarted = false;
+        boolean msgSent = false;
+        ResultSet rs = null;
+        try {
+            rs = skCase.runQuery(getSortedArtifactIdsQuery(type));
+            List<Long> batch = new ArrayList<>();
+            boolean more = true;
+            while (more && !tableModules.isEmpty()) {
+                more = rs.next();
+                if (more) {
+                    batch.add(rs.getLong("artifact_id"));
+                    if (batch.size() < ARTIFACT_BATCH_SIZE) {
+                        continue;
                     }
                 }
                 
-                boolean msgSent = false;    
-                for(ArtifactData artifactData : unsortedArtifacts) {
+                for (ArtifactData artifactData : getFilteredArtifacts(batch, tagNamesFilter)) {
+                    if (!dataTypeStarted) {
+                        // Don't report on this artifact type if there are no results,
+                        // so the data type is started with the first artifact.
+                        /* @@@ BC: Seems like a better design here would be to have a method that 
+                         * takes in the artifact as an argument and returns the attributes. We then use that
+                         * to make the headers and to make each row afterwards so that we don't have artifact-specific
+                         * logic in both getArtifactTableCoumnHeaders and ArtifactData.getRow()
+                         */
+                        List<String> columnHeaders = getArtifactTableColumnHeaders(type.getTypeID());
+                        if (columnHeaders == null) {
+                            // @@@ Hack to prevent system from hanging.  Better solution is to merge all attributes into a single column or analyze the artifacts to find out how many are needed.
+                            MessageNotifyUtil.Notify.show("Skipping artifact type " + type + " in reports", "Unknown columns to report on", MessageNotifyUtil.MessageType.ERROR);
+                            return;
+                        }
+                        startArtifactDataType(type, columnHeaders, tableModules, comment);
+                        dataTypeStarted = true;
+                    }
+                    
                     HashSet<String> tags = artifactData.getTags();
                     
                     String tagsList = makeCommaSeparatedList(tags);
@@ -479,6 +569,8 @@ else if (module instanceof ReportExcel) {
                             }
                             continue;
                         }
+                        // Each module gets its own copy, as the tags are added to it.
+                        rowData = new ArrayList<>(rowData);
                         // Add the list of tag names if the artifact is not itself as tag.
                         if (artifactData.getArtifact().getArtifactTypeID() != ARTIFACT_TYPE.TSK_TAG_ARTIFACT.getTypeID() &&
                             artifactData.getArtifact().getArtifactTypeID() != ARTIFACT_TYPE.TSK_TAG_FILE.getTypeID())
@@ -496,70 +588,261 @@ else if (module instanceof ReportExcel) {
                         }                        
                     }
                 }
-                // Finish up this data type
-                for (TableReportModule module : tableModules) {
-                    tableProgress.get(module).increment();
-                    module.endTable();
-                    module.endDataType();
+                batch.clear();
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Failed to query the artifacts of type " + type + " when generating report.", ex);
+        } finally {
+            if (rs != null) {
+                try {
+                    skCase.closeRunQuery(rs);
+                } catch (SQLException ex) {
                 }
             }
-            
-            // End the report
+        }
+        
+        if (dataTypeStarted) {
+            // Finish up this data type
             for (TableReportModule module : tableModules) {
-                tableProgress.get(module).complete();
-                module.endReport();
+                tableProgress.get(module).increment();
+                module.endTable();
+                module.endDataType();
             }
-            
-            return 0;
         }
     }
     
-    private Boolean failsTagFilter(HashSet<String> tags, HashSet<String> tagsFilter) 
-    {
-        if (null == tagsFilter || tagsFilter.isEmpty()) {
-            return false;
-        }
+    private void startArtifactDataType(ARTIFACT_TYPE type, List<String> columnHeaders, List<TableReportModule> tableModules, String comment) {
+        for (TableReportModule module : tableModules) {                  
 
-        HashSet<String> filteredTags = new HashSet<>(tags);
-        filteredTags.retainAll(tagsFilter);
-        return filteredTags.isEmpty();
+            // This is a temporary workaround to avoid modifying the TableReportModule interface.
+            if (module instanceof ReportHTML) {
+                ReportHTML htmlReportModule = (ReportHTML)module;
+                htmlReportModule.startDataType(type.getDisplayName(), comment);                        
+                htmlReportModule.startTable(columnHeaders, type);
+            }
+            else if (module instanceof ReportExcel) {
+                ReportExcel excelReportModule = (ReportExcel)module;
+                excelReportModule.startDataType(type.getDisplayName(), comment);                        
+                excelReportModule.startTable(columnHeaders);                    
+            }
+            else {
+                module.startDataType(type.getDisplayName());                        
+                module.startTable(columnHeaders);
+            }
+        }
+    }
+    
+    /**
+     * Get the query for the ids of the artifacts of a type, ordered by the
+     * value of the sort attribute of the type, then by id.
+     * 
+     * @param type artifact type
+     * @return query selecting artifact_id
+     */
+    private String getSortedArtifactIdsQuery(ARTIFACT_TYPE type) {
+        ATTRIBUTE_TYPE sortAttribute = getSortAttributeType(type);
+        if (sortAttribute == null) {
+            return "SELECT artifact_id FROM blackboard_artifacts " +
+                   "WHERE artifact_type_id = " + type.getTypeID() + " " +
+                   "ORDER BY artifact_id";
+        }
+        // Only one of the value columns is set for an attribute type. Artifacts with
+        // several attributes of the sort type are grouped into a single row.
+        return "SELECT art.artifact_id AS artifact_id " +
+               "FROM blackboard_artifacts AS art LEFT JOIN blackboard_attributes AS att " +
+                    "ON (att.artifact_id = art.artifact_id AND att.attribute_type_id = " + sortAttribute.getTypeID() + ") " +
+               "WHERE art.artifact_type_id = " + type.getTypeID() + " " +
+               "GROUP BY art.artifact_id " +
+               "ORDER BY MIN(att.value_text), MIN(att.value_int32), MIN(att.value_int64), MIN(att.value_double), art.artifact_id";
     }
     
     /**
-     * Get a List of the artifacts and data of the given type that pass the given Tag Filter.
+     * For a given artifact type, return the attribute type of the first column
+     * of its table, which the rows are sorted by.
      * 
-     * @param type The artifact type to get
+     * @param type artifact type
+     * @return attribute type, or null if the rows are in artifact id order
+     */
+    private ATTRIBUTE_TYPE getSortAttributeType(ARTIFACT_TYPE type) {
+        switch (type) {
+            case TSK_WEB_BOOKMARK:
+            case TSK_WEB_COOKIE:
+            case TSK_WEB_HISTORY:
+                return ATTRIBUTE_TYPE.TSK_URL;
+            case TSK_WEB_DOWNLOAD:
+            case TSK_RECENT_OBJECT:
+                return ATTRIBUTE_TYPE.TSK_PATH;
+            case TSK_INSTALLED_PROG:
+            case TSK_TOOL_OUTPUT:
+                return ATTRIBUTE_TYPE.TSK_PROG_NAME;
+            case TSK_DEVICE_ATTACHED:
+                return ATTRIBUTE_TYPE.TSK_DEVICE_MODEL;
+            case TSK_WEB_SEARCH_QUERY:
+                return ATTRIBUTE_TYPE.TSK_TEXT;
+            case TSK_METADATA_EXIF:
+                return ATTRIBUTE_TYPE.TSK_DATETIME;
+            case TSK_TAG_FILE:
+            case TSK_TAG_ARTIFACT:
+                // The first columns are not attributes, tags are grouped by tag name.
+                return ATTRIBUTE_TYPE.TSK_TAG_NAME;
+            case TSK_CONTACT:
+            case TSK_CALLLOG:
+                return ATTRIBUTE_TYPE.TSK_NAME_PERSON;
+            case TSK_MESSAGE:
+                return ATTRIBUTE_TYPE.TSK_MESSAGE_TYPE;
+            case TSK_CALENDAR_ENTRY:
+                return ATTRIBUTE_TYPE.TSK_CALENDAR_ENTRY_TYPE;
+            case TSK_SPEED_DIAL_ENTRY:
+                return ATTRIBUTE_TYPE.TSK_SHORTCUT;
+            case TSK_BLUETOOTH_PAIRING:
+                return ATTRIBUTE_TYPE.TSK_DEVICE_NAME;
+            case TSK_GPS_TRACKPOINT:
+            case TSK_GPS_BOOKMARK:
+            case TSK_GPS_LAST_KNOWN_LOCATION:
+            case TSK_GPS_SEARCH:
+                return ATTRIBUTE_TYPE.TSK_GEO_LATITUDE;
+            case TSK_SERVICE_ACCOUNT:
+                return ATTRIBUTE_TYPE.TSK_CATEGORY;
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Get the artifacts and data of a batch of artifact ids that pass the given Tag Filter.
+     * 
+     * The artifacts, their attributes, their tags and their source files are
+     * each read with a single query for the batch.
+     * 
+     * @param artifactIds ids of the artifacts to get
      * @param tagNamesFilter The tag names that should be included.
-     * @return a list of the filtered tags.
+     * @return the artifacts that pass the filter, in the order of the ids
+     * @throws TskCoreException if the artifacts, their attributes, files or
+     * tags could not be read, rather than dropping the batch
      */
-    private List<ArtifactData> getFilteredArtifacts(ARTIFACT_TYPE type, HashSet<String> tagNamesFilter) {
+    private List<ArtifactData> getFilteredArtifacts(List<Long> artifactIds, HashSet<String> tagNamesFilter) throws TskCoreException {
         List<ArtifactData> artifacts = new ArrayList<>();
-        try {
-             // For every artifact of the current type, add it and it's attributes to a list
-             for (BlackboardArtifact artifact : skCase.getBlackboardArtifacts(type)) {
-                 HashSet<String> tags = Tags.getUniqueTagNamesForArtifact(artifact);
-                 if(failsTagFilter(tags, tagNamesFilter)) {
-                     continue;
-                 }
-                 try {
-                     artifacts.add(new ArtifactData(artifact, skCase.getBlackboardAttributes(artifact), tags));
-                 } catch (TskCoreException ex) {
-                     logger.log(Level.SEVERE, "Failed to get Blackboard Attributes when generating report.", ex);
-                 }
-             }
-         } 
-         catch (TskCoreException ex) {
-             logger.log(Level.SEVERE, "Failed to get Blackboard Artifacts when generating report.", ex);
-         }
+        if (artifactIds.isEmpty()) {
+            return artifacts;
+        }
+        String idList = makeIdList(artifactIds);
+        Map<Long, BlackboardArtifact> artifactsById = new HashMap<>();
+        List<Long> objIds = new ArrayList<>();
+        for (BlackboardArtifact artifact : skCase.getMatchingArtifacts("WHERE artifact_id IN (" + idList + ")")) {
+            artifactsById.put(artifact.getArtifactID(), artifact);
+            objIds.add(artifact.getObjectID());
+        }
+        
+        Map<Long, List<BlackboardAttribute>> attributesById = new HashMap<>();
+        for (BlackboardAttribute attribute : skCase.getMatchingAttributes("WHERE artifact_id IN (" + idList + ")")) {
+            List<BlackboardAttribute> attributes = attributesById.get(attribute.getArtifactID());
+            if (attributes == null) {
+                attributes = new ArrayList<>();
+                attributesById.put(attribute.getArtifactID(), attributes);
+            }
+            attributes.add(attribute);
+        }
+        
+        Map<Long, HashSet<String>> tagsById = getTagNamesOfTaggedArtifacts(idList);
+        
+        Map<Long, AbstractFile> filesById = new HashMap<>();
+        if (!objIds.isEmpty()) {
+            for (AbstractFile file : skCase.findAllFilesWhere("obj_id IN (" + makeIdList(objIds) + ")")) {
+                filesById.put(file.getId(), file);
+            }
+        }
+        
+        for (Long artifactId : artifactIds) {
+            BlackboardArtifact artifact = artifactsById.get(artifactId);
+            if (artifact == null) {
+                continue;
+            }
+            List<BlackboardAttribute> attributes = attributesById.get(artifactId);
+            if (attributes == null) {
+                attributes = new ArrayList<>();
+            }
+            
+            // Tag artifacts have their own tag name, other artifacts the names of their tags.
+            HashSet<String> tags = new HashSet<>();
+            if (artifact.getArtifactTypeID() == ARTIFACT_TYPE.TSK_TAG_FILE.getTypeID() ||
+                artifact.getArtifactTypeID() == ARTIFACT_TYPE.TSK_TAG_ARTIFACT.getTypeID()) {
+                for (BlackboardAttribute attribute : attributes) {
+                    if (attribute.getAttributeTypeID() == ATTRIBUTE_TYPE.TSK_TAG_NAME.getTypeID()) {
+                        tags.add(attribute.getValueString());
+                    }
+                }
+            } else if (tagsById.containsKey(artifactId)) {
+                tags = tagsById.get(artifactId);
+            }
+            if (failsTagFilter(tags, tagNamesFilter)) {
+                continue;
+            }
+            
+            artifacts.add(new ArtifactData(artifact, attributes, tags, filesById.get(artifact.getObjectID())));
+        }
         return artifacts;
     }
+    
+    /**
+     * Get the tag names of tagged artifacts.
+     * 
+     * @param idList comma separated ids of the tagged artifacts
+     * @return map of the id of each tagged artifact to its tag names
+     * @throws TskCoreException if the tags could not be read, rather than
+     * reporting the artifacts as untagged
+     */
+    @SuppressWarnings("deprecation")
+    private Map<Long, HashSet<String>> getTagNamesOfTaggedArtifacts(String idList) throws TskCoreException {
+        Map<Long, HashSet<String>> tagsById = new HashMap<>();
+        ResultSet rs = null;
+        try {
+            rs = skCase.runQuery("SELECT tagged.value_int64 AS tagged_id, tag.value_text AS tag_name " +
+                                 "FROM blackboard_attributes AS tagged, blackboard_attributes AS tag " +
+                                 "WHERE tagged.attribute_type_id = " + ATTRIBUTE_TYPE.TSK_TAGGED_ARTIFACT.getTypeID() + " " +
+                                     "AND tagged.value_int64 IN (" + idList + ") " +
+                                     "AND tag.artifact_id = tagged.artifact_id " +
+                                     "AND tag.attribute_type_id = " + ATTRIBUTE_TYPE.TSK_TAG_NAME.getTypeID());
+            while (rs.next()) {
+                long taggedId = rs.getLong("tagged_id");
+                HashSet<String> tags = tagsById.get(taggedId);
+                if (tags == null) {
+                    tags = new HashSet<>();
+                    tagsById.put(taggedId, tags);
+                }
+                tags.add(rs.getString("tag_name"));
+            }
+        } catch (SQLException ex) {
+            throw new TskCoreException("Failed to get the tags of artifacts when generating report.", ex);
+        } finally {
+            if (rs != null) {
+                try {
+                    skCase.closeRunQuery(rs);
+                } catch (SQLException ex) {
+                    logger.log(Level.WARNING, "Failed to close the tags query.", ex);
+                }
+            }
+        }
+        return tagsById;
+    }
+    
+    private static String makeIdList(List<Long> ids) {
+        StringBuilder idList = new StringBuilder();
+        for (Long id : ids) {
+            if (idList.length() > 0) {
+                idList.append(',');
+            }
+            idList.append(id);
+        }
+        return idList.toString();
+    }
             
     /**
      * Write the keyword hits to the provided TableReportModules.
      * @param tableModules modules to report on
+     * @throws TskCoreException if the hits could not be read
      */
     @SuppressWarnings("deprecation")
-    private void writeKeywordHits(List<TableReportModule> tableModules, String comment, HashSet<String> tagNamesFilter) {
+    private void writeKeywordHits(List<TableReportModule> tableModules, String comment, HashSet<String> tagNamesFilter) throws TskCoreException {
         ResultSet listsRs = null;
         try {
             // Query for keyword lists
@@ -598,7 +881,7 @@ else if (module instanceof ReportExcel) {
             }
         }
         catch (SQLException ex) {
-            logger.log(Level.SEVERE, "Failed to query keyword lists.", ex);
+            throw new TskCoreException("Failed to query keyword lists.", ex);
         } finally {
             if (listsRs != null) {
                 try {
@@ -698,7 +981,7 @@ else if (module instanceof ReportExcel) {
                 module.endDataType();
             }
         } catch (SQLException ex) {
-            logger.log(Level.SEVERE, "Failed to query keywords.", ex);
+            throw new TskCoreException("Failed to query keywords.", ex);
         } finally {
             if (rs != null) {
                 try {
@@ -712,9 +995,10 @@ else if (module instanceof ReportExcel) {
     /**
      * Write the hash set hits to the provided TableReportModules.
      * @param tableModules modules to report on
+     * @throws TskCoreException if the hits could not be read
      */
     @SuppressWarnings("deprecation")
-    private void writeHashsetHits(List<TableReportModule> tableModules,  String comment, HashSet<String> tagNamesFilter) {
+    private void writeHashsetHits(List<TableReportModule> tableModules,  String comment, HashSet<String> tagNamesFilter) throws TskCoreException {
         ResultSet listsRs = null;
         try {
             // Query for hashsets
@@ -747,7 +1031,7 @@ else if (module instanceof ReportExcel) {
                         + ARTIFACT_TYPE.TSK_HASHSET_HIT.getDisplayName() + "...");
             }
         } catch (SQLException ex) {        
-            logger.log(Level.SEVERE, "Failed to query hashset lists.", ex);
+            throw new TskCoreException("Failed to query hashset lists.", ex);
         } finally {
             if (listsRs != null) {
                 try {
@@ -829,7 +1113,7 @@ else if (module instanceof ReportExcel) {
                 module.endDataType();
             }
         } catch (SQLException ex) {
-            logger.log(Level.SEVERE, "Failed to query hashsets hits.", ex);
+            throw new TskCoreException("Failed to query hashsets hits.", ex);
         } finally {
             if (rs != null) {
                 try {
@@ -1050,16 +1334,18 @@ private AbstractFile getAbstractFile(long objId) {
      * Container class that holds data about an Artifact to eliminate duplicate
      * calls to the Sleuthkit database.
      */
-    private class ArtifactData implements Comparable<ArtifactData> {
+    private class ArtifactData {
         private BlackboardArtifact artifact;
         private List<BlackboardAttribute> attributes;
         private HashSet<String> tags;
+        private AbstractFile sourceFile;
         private List<String> rowData = null;
         
-        ArtifactData(BlackboardArtifact artifact, List<BlackboardAttribute> attrs, HashSet<String> tags) {
+        ArtifactData(BlackboardArtifact artifact, List<BlackboardAttribute> attrs, HashSet<String> tags, AbstractFile sourceFile) {
             this.artifact = artifact;
             this.attributes = attrs;
             this.tags = tags;
+            this.sourceFile = sourceFile;
         }
         
         public BlackboardArtifact getArtifact() { return artifact; }
@@ -1072,27 +1358,20 @@ private class ArtifactData implements Comparable<ArtifactData> {
         
         public long getObjectID() { return artifact.getObjectID(); }
 
-        
+
         /**
-         * Compares ArtifactData objects by the first attribute they have in
-         * common in their List<BlackboardAttribute>. 
-         * 
-         * If all attributes are the same, they are assumed duplicates and are
-         * compared by their artifact id. Should only be used with attributes
-         * of the same type.
+         * Get the unique path of the source file of the artifact.
          */
-        @Override
-        public int compareTo(ArtifactData otherArtifactData) {
-            List<String> thisRow = getRow();
-            List<String> otherRow = otherArtifactData.getRow();
-            for (int i = 0; i < thisRow.size(); i++) {
-                int compare = thisRow.get(i).compareTo(otherRow.get(i));
-                if (compare != 0) {
-                    return compare;
-                }
+        private String getSourceFilePath() {
+            if (sourceFile == null) {
+                return getFileUniquePath(this.getObjectID());
+            }
+            try {
+                return sourceFile.getUniquePath();
+            } catch (TskCoreException ex) {
+                logger.log(Level.WARNING, "Failed to get the unique path of the source file.", ex);
             }
-            // If all attributes are the same, they're most likely duplicates so sort by artifact ID
-            return ((Long) this.getArtifactID()).compareTo((Long) otherArtifactData.getArtifactID());
+            return "";
         }
         
         /**
@@ -1128,7 +1407,7 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    bookmark.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_TITLE.getTypeID()));
                    bookmark.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME_CREATED.getTypeID()));
                    bookmark.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID()));
-                   bookmark.add(getFileUniquePath(this.getObjectID()));
+                   bookmark.add(getSourceFilePath());
                    return bookmark;
                case TSK_WEB_COOKIE:
                    List<String> cookie = new ArrayList<>();
@@ -1137,7 +1416,7 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    cookie.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_NAME.getTypeID()));
                    cookie.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_VALUE.getTypeID()));
                    cookie.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID()));
-                   cookie.add(getFileUniquePath(this.getObjectID()));
+                   cookie.add(getSourceFilePath());
                    return cookie;
                case TSK_WEB_HISTORY:
                    List<String> history = new ArrayList<>();
@@ -1146,7 +1425,7 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    history.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_REFERRER.getTypeID()));
                    history.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_TITLE.getTypeID()));
                    history.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID()));
-                   history.add(getFileUniquePath(this.getObjectID()));
+                   history.add(getSourceFilePath());
                    return history;
                case TSK_WEB_DOWNLOAD:
                    List<String> download = new ArrayList<>();
@@ -1154,26 +1433,26 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    download.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_URL.getTypeID()));
                    download.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED.getTypeID()));
                    download.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID()));
-                   download.add(getFileUniquePath(this.getObjectID()));
+                   download.add(getSourceFilePath());
                    return download;
                case TSK_RECENT_OBJECT:
                    List<String> recent = new ArrayList<>();
                    recent.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_PATH.getTypeID()));
                    recent.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID()));
-                   recent.add(getFileUniquePath(this.getObjectID()));
+                   recent.add(getSourceFilePath());
                    return recent;
                case TSK_INSTALLED_PROG:
                    List<String> installed = new ArrayList<>();
                    installed.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID()));
                    installed.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID()));
-                   installed.add(getFileUniquePath(this.getObjectID()));
+                   installed.add(getSourceFilePath());
                    return installed;
                case TSK_DEVICE_ATTACHED:
                    List<String> devices = new ArrayList<>();
                    devices.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DEVICE_MODEL.getTypeID()));
                    devices.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DEVICE_ID.getTypeID()));
                    devices.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID()));
-                   devices.add(getFileUniquePath(this.getObjectID()));
+                   devices.add(getSourceFilePath());
                    return devices;
                case TSK_WEB_SEARCH_QUERY:
                    List<String> search = new ArrayList<>();
@@ -1181,7 +1460,7 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    search.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DOMAIN.getTypeID()));
                    search.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED.getTypeID()));
                    search.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID()));
-                   search.add(getFileUniquePath(this.getObjectID()));
+                   search.add(getSourceFilePath());
                    return search;
                case TSK_METADATA_EXIF: 
                    List<String> exif = new ArrayList<>();
@@ -1190,11 +1469,11 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    exif.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DEVICE_MODEL.getTypeID()));
                    exif.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_GEO_LATITUDE.getTypeID()));
                    exif.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_GEO_LONGITUDE.getTypeID()));
-                   exif.add(getFileUniquePath(this.getObjectID()));
+                   exif.add(getSourceFilePath());
                    return exif;
                case TSK_TAG_FILE:
                    List<String> taggedFileRow = new ArrayList<>();
-                   AbstractFile taggedFile = getAbstractFile(this.getObjectID());
+                   AbstractFile taggedFile = sourceFile != null ? sourceFile : getAbstractFile(this.getObjectID());
                    if (taggedFile != null) {
                        taggedFileRow.add(taggedFile.getUniquePath());
                    } else {
@@ -1218,9 +1497,9 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    taggedArtifactRow.add(taggedArtifactType);
                    taggedArtifactRow.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_TAG_NAME.getTypeID()));
                    taggedArtifactRow.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_COMMENT.getTypeID()));
-                   AbstractFile sourceFile = getAbstractFile(this.getObjectID());
-                   if (sourceFile != null) {
-                       taggedArtifactRow.add(sourceFile.getUniquePath());
+                   AbstractFile taggedArtifactSourceFile = sourceFile != null ? sourceFile : getAbstractFile(this.getObjectID());
+                   if (taggedArtifactSourceFile != null) {
+                       taggedArtifactRow.add(taggedArtifactSourceFile.getUniquePath());
                    } else {
                        taggedArtifactRow.add("");
                    }
@@ -1233,7 +1512,7 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    contact.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_PHONE_NUMBER_OFFICE.getTypeID()));
                    contact.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_PHONE_NUMBER_MOBILE.getTypeID()));
                    contact.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_EMAIL.getTypeID()));
-                   contact.add(getFileUniquePath(this.getObjectID()));
+                   contact.add(getSourceFilePath());
                    return contact;
                 case TSK_MESSAGE:
                    List<String> message = new ArrayList<>();
@@ -1246,7 +1525,7 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    message.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_EMAIL_TO.getTypeID()));
                    message.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_SUBJECT.getTypeID()));
                    message.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_TEXT.getTypeID()));
-                   message.add(getFileUniquePath(this.getObjectID()));
+                   message.add(getSourceFilePath());
                    return message;
                  case TSK_CALLLOG:
                    List<String> call_log = new ArrayList<>();
@@ -1254,7 +1533,7 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    call_log.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_PHONE_NUMBER.getTypeID()));
                    call_log.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID()));
                    call_log.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DIRECTION.getTypeID()));
-                   call_log.add(getFileUniquePath(this.getObjectID()));
+                   call_log.add(getSourceFilePath());
                    return call_log;
                  case TSK_CALENDAR_ENTRY:
                    List<String> calEntry = new ArrayList<>();
@@ -1263,21 +1542,21 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    calEntry.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME_START.getTypeID()));
                    calEntry.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME_END.getTypeID()));
                    calEntry.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_LOCATION.getTypeID()));
-                   calEntry.add(getFileUniquePath(this.getObjectID()));
+                   calEntry.add(getSourceFilePath());
                    return calEntry;
                  case TSK_SPEED_DIAL_ENTRY:
                    List<String> speedDialEntry = new ArrayList<>();
                    speedDialEntry.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_SHORTCUT.getTypeID()));
                    speedDialEntry.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_NAME_PERSON.getTypeID()));
                    speedDialEntry.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_PHONE_NUMBER.getTypeID()));
-                   speedDialEntry.add(getFileUniquePath(this.getObjectID()));
+                   speedDialEntry.add(getSourceFilePath());
                    return speedDialEntry;
                  case TSK_BLUETOOTH_PAIRING:
                    List<String> bluetoothEntry = new ArrayList<>();
                    bluetoothEntry.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DEVICE_NAME.getTypeID()));
                    bluetoothEntry.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DEVICE_ID.getTypeID()));
                    bluetoothEntry.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID()));
-                   bluetoothEntry.add(getFileUniquePath(this.getObjectID()));
+                   bluetoothEntry.add(getSourceFilePath());
                    return bluetoothEntry;
                  case TSK_GPS_TRACKPOINT:
                    List<String> gpsTrackpoint = new ArrayList<>();
@@ -1287,7 +1566,7 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    gpsTrackpoint.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_NAME.getTypeID()));
                    gpsTrackpoint.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_LOCATION.getTypeID()));
                    gpsTrackpoint.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID()));
-                   gpsTrackpoint.add(getFileUniquePath(this.getObjectID()));
+                   gpsTrackpoint.add(getSourceFilePath());
                    return gpsTrackpoint;
                  case TSK_GPS_BOOKMARK:
                    List<String> gpsBookmarkEntry = new ArrayList<>();
@@ -1297,7 +1576,7 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    gpsBookmarkEntry.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_NAME.getTypeID()));
                    gpsBookmarkEntry.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_LOCATION.getTypeID()));
                    gpsBookmarkEntry.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID()));
-                   gpsBookmarkEntry.add(getFileUniquePath(this.getObjectID()));
+                   gpsBookmarkEntry.add(getSourceFilePath());
                    return gpsBookmarkEntry;
                  case TSK_GPS_LAST_KNOWN_LOCATION:
                    List<String> gpsLastLocation = new ArrayList<>();
@@ -1307,7 +1586,7 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    gpsLastLocation.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_NAME.getTypeID()));
                    gpsLastLocation.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_LOCATION.getTypeID()));
                    gpsLastLocation.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID()));
-                   gpsLastLocation.add(getFileUniquePath(this.getObjectID()));
+                   gpsLastLocation.add(getSourceFilePath());
                    return gpsLastLocation;
                  case TSK_GPS_SEARCH:
                    List<String> gpsSearch = new ArrayList<>();
@@ -1317,7 +1596,7 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    gpsSearch.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_NAME.getTypeID()));
                    gpsSearch.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_LOCATION.getTypeID()));
                    gpsSearch.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID()));
-                   gpsSearch.add(getFileUniquePath(this.getObjectID()));
+                   gpsSearch.add(getSourceFilePath());
                    return gpsSearch;
                  case TSK_SERVICE_ACCOUNT:
                    List<String> appAccount = new ArrayList<>();
@@ -1331,13 +1610,13 @@ private List<String> getOrderedRowDataAsStrings() throws TskCoreException {
                    appAccount.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_DESCRIPTION.getTypeID()));
                    appAccount.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_EMAIL_REPLYTO.getTypeID()));
                    appAccount.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_SERVER_NAME.getTypeID()));
-                   appAccount.add(getFileUniquePath(this.getObjectID()));
+                   appAccount.add(getSourceFilePath());
                    return appAccount;
                 case TSK_TOOL_OUTPUT: 
                    List<String> row = new ArrayList<>();
                    row.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID()));
                    row.add(mappedAttributes.get(ATTRIBUTE_TYPE.TSK_TEXT.getTypeID()));
-                   row.add(getFileUniquePath(this.getObjectID()));
+                   row.add(getSourceFilePath());
                    return row; 
             }
             return null;
@@ -31,12 +31,13 @@ public class ReportProgressPanel extends javax.swing.JPanel {
     private ReportStatus STATUS;
     
     // Enum to represent if a report is waiting,
-    // running, done, or has been canceled
+    // running, done, has been canceled, or has failed
     public enum ReportStatus {
         QUEUING,
         RUNNING,
         COMPLETE,
-        CANCELED
+        CANCELED,
+        ERROR
     }
 
     /**
@@ -228,7 +229,7 @@ public void complete() {
         EventQueue.invokeLater(new Runnable() {
             @Override
             public void run() {
-                if (STATUS != ReportStatus.CANCELED) {
+                if (STATUS != ReportStatus.CANCELED && STATUS != ReportStatus.ERROR) {
                     STATUS = ReportStatus.COMPLETE;
                     processingLabel.setText("Complete");
                     reportProgressBar.setValue(reportProgressBar.getMaximum());
@@ -240,6 +241,31 @@ public void run() {
         // Do something with the button to change the icon and make not clickable
     }
 
+    /**
+     * Declare the report failed.
+     * This will show the error in red in place of the status, and disallow
+     * any cancellation of this report. A failed report is not completed.
+     * 
+     * @param message error to show
+     */
+    public void error(final String message) {
+        EventQueue.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (STATUS != ReportStatus.CANCELED) {
+                    STATUS = ReportStatus.ERROR;
+                    cancelButton.setEnabled(false);
+                    cancelButton.setToolTipText("Error");
+                    reportProgressBar.setIndeterminate(false);
+                    reportProgressBar.setForeground(Color.RED);
+                    reportProgressBar.setBackground(Color.RED);
+                    processingLabel.setForeground(Color.RED);
+                    processingLabel.setText(message);
+                }
+            }
+        });
+    }
+
     /**
      * This method is called from within the constructor to initialize the form.
      * WARNING: Do NOT modify this code. The content of this method is always
@@ -341,6 +367,8 @@ void cancel() {
                 break;
             case CANCELED:
                 break;
+            case ERROR:
+                break;
             default:
                 STATUS = ReportStatus.CANCELED;
                 cancelButton.setEnabled(false);
@@ -361,6 +389,8 @@ private void cancelButtonMouseEntered(java.awt.event.MouseEvent evt) {//GEN-FIRS
                 break;
             case CANCELED:
                 break;
+            case ERROR:
+                break;
             default:
                 setCursor(Cursor.getPredefinedCursor(Cursor.HAND_CURSOR));
                 cancelButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/org/sleuthkit/autopsy/report/images/report_cancel_hover.png")));
@@ -374,6 +404,8 @@ private void cancelButtonMouseExited(java.awt.event.MouseEvent evt) {//GEN-FIRST
                 break;
             case CANCELED:
                 break;
+            case ERROR:
+                break;
             case QUEUING:
                 setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
                 cancelButton.setIcon(new javax.swing.ImageIcon(getClass().getResource("/org/sleuthkit/autopsy/report/images/report_loading.png")));
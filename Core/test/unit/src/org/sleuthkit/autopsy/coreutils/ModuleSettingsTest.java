@@ -0,0 +1,115 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.coreutils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import junit.framework.TestCase;
+
+/**
+ * Tests the in-memory settings of ModuleSettings and their delayed writes
+ */
+public class ModuleSettingsTest extends TestCase {
+
+    private String moduleName;
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        moduleName = "ModuleSettingsTest-" + getName();
+        file = new File(PlatformUtil.getUserConfigDirectory(), moduleName + ".properties");
+        file.delete();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ModuleSettings.flush();
+        file.delete();
+    }
+
+    private Properties readFile() throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        }
+        return props;
+    }
+
+    public void testChangesWrittenOnFlush() throws IOException {
+        ModuleSettings.setConfigSetting(moduleName, "a", "1");
+        ModuleSettings.setConfigSetting(moduleName, "b", "2");
+        ModuleSettings.removeProperty(moduleName, "b");
+        assertEquals("1", ModuleSettings.getConfigSetting(moduleName, "a"));
+        assertNull(ModuleSettings.getConfigSetting(moduleName, "b"));
+
+        ModuleSettings.flush();
+        Properties props = readFile();
+        assertEquals("1", props.getProperty("a"));
+        assertNull(props.getProperty("b"));
+    }
+
+    public void testChangesWrittenInBackground() throws Exception {
+        ModuleSettings.setConfigSetting(moduleName, "a", "1");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (readFile().getProperty("a") == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals("1", readFile().getProperty("a"));
+    }
+
+    public void testOutsideChangesRead() throws Exception {
+        ModuleSettings.setConfigSetting(moduleName, "a", "1");
+        ModuleSettings.flush();
+
+        Properties props = new Properties();
+        props.setProperty("a", "changed outside");
+        try (OutputStream out = new FileOutputStream(file)) {
+            props.store(out, null);
+        }
+        Thread.sleep(ModuleSettings.CHECK_INTERVAL_MS + 100);
+        assertEquals("changed outside", ModuleSettings.getConfigSetting(moduleName, "a"));
+    }
+
+    public void testFailedWriteKeepsChanges() throws IOException {
+        ModuleSettings.setConfigSetting(moduleName, "a", "1");
+        ModuleSettings.flush();
+
+        //a directory where the temporary file is written makes the writes fail
+        File temp = new File(file.getPath() + ".tmp");
+        File blocker = new File(temp, "blocker");
+        assertTrue(blocker.mkdirs());
+        try {
+            ModuleSettings.setConfigSetting(moduleName, "a", "2");
+            ModuleSettings.flush();
+            assertEquals("1", readFile().getProperty("a"));
+            assertEquals("2", ModuleSettings.getConfigSetting(moduleName, "a"));
+        } finally {
+            blocker.delete();
+            temp.delete();
+        }
+
+        ModuleSettings.flush();
+        assertEquals("2", readFile().getProperty("a"));
+    }
+}
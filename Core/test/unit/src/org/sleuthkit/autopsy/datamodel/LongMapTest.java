@@ -0,0 +1,70 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.datamodel;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the long keyed map of the case indexes
+ */
+public class LongMapTest extends TestCase {
+
+    public void testPutAndGet() {
+        LongMap<String> map = new LongMap<>();
+        assertNull(map.get(1));
+        map.put(1, "a");
+        map.put(-1, "b");
+        map.put(0, "c");
+        map.put(Long.MAX_VALUE, "d");
+        assertEquals("a", map.get(1));
+        assertEquals("b", map.get(-1));
+        assertEquals("c", map.get(0));
+        assertEquals("d", map.get(Long.MAX_VALUE));
+        assertNull(map.get(2));
+        assertEquals(4, map.size());
+
+        map.put(1, "e");
+        assertEquals("e", map.get(1));
+        assertEquals(4, map.size());
+    }
+
+    public void testGrow() {
+        LongMap<Long> map = new LongMap<>();
+        for (long id = 0; id < 100000; id += 3) {
+            map.put(id, id * 2);
+        }
+        assertEquals(33334, map.size());
+        for (long id = 0; id < 100000; id++) {
+            if (id % 3 == 0) {
+                assertEquals(Long.valueOf(id * 2), map.get(id));
+            } else {
+                assertNull(map.get(id));
+            }
+        }
+    }
+
+    public void testNullValue() {
+        try {
+            new LongMap<String>().put(1, null);
+            fail("Put a null value");
+        } catch (IllegalArgumentException ex) {
+            //expected
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.filesearch;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Tests the name matching of the file name index
+ */
+public class FileNameIndexTest extends TestCase {
+
+    private static FileNameIndex index(String... names) {
+        //small capacity, for the arrays to grow
+        FileNameIndex.Builder builder = new FileNameIndex.Builder(1, 1);
+        for (int i = 0; i < names.length; ++i) {
+            builder.add(10 + i, names[i]);
+        }
+        return builder.build();
+    }
+
+    private static void assertIds(long[] expected, long[] actual) {
+        assertEquals(Arrays.toString(expected), Arrays.toString(actual));
+    }
+
+    public void testSubstring() {
+        FileNameIndex index = index("report.doc", "notes.txt", "doc", "readme", "old.docx");
+        assertIds(new long[]{10, 12, 14}, index.findIds("doc"));
+        assertIds(new long[]{11}, index.findIds("s.t"));
+        assertIds(new long[]{10, 11, 14}, index.findIds("."));
+        assertIds(new long[0], index.findIds("docs"));
+        assertIds(new long[0], index.findIds(""));
+    }
+
+    public void testMatchAtEndOfName() {
+        //the names are packed together, a match must not run into the next name
+        FileNameIndex index = index("ab", "cd", "abc");
+        assertIds(new long[0], index.findIds("bcd"));
+        assertIds(new long[]{12}, index.findIds("bc"));
+        assertIds(new long[]{11}, index.findIds("cd"));
+    }
+
+    public void testAsciiCaseIsFolded() {
+        FileNameIndex index = index("Report.DOC", "report.doc", "REPORT.doc");
+        assertIds(new long[]{10, 11, 12}, index.findIds("rEpOrT"));
+        assertIds(new long[]{10, 11, 12}, index.findIds(".Doc"));
+    }
+
+    public void testNonAsciiCaseIsNotFolded() {
+        //as with the LIKE operator of SQLite, only ASCII letters ignore case
+        FileNameIndex index = index("\u00c9t\u00e9.txt", "\u00e9t\u00e9.txt", "caf\u00e9");
+        assertIds(new long[]{11}, index.findIds("\u00e9t\u00e9"));
+        assertIds(new long[]{10}, index.findIds("\u00c9T\u00e9"));
+        assertIds(new long[]{12}, index.findIds("CAF\u00e9"));
+    }
+
+    public void testNoName() {
+        FileNameIndex index = index(null, "a");
+        assertIds(new long[]{11}, index.findIds("a"));
+        assertEquals(11, index.getMaxId());
+    }
+
+    public void testIdGaps() {
+        //ids differing by more than 7 bits take several bytes
+        FileNameIndex index = new FileNameIndex.Builder(1, 1)
+                .add(1, "a").add(2, "b").add(200, "a").add(1L << 40, "a").build();
+        assertIds(new long[]{1, 200, 1L << 40}, index.findIds("a"));
+        assertEquals(1L << 40, index.getMaxId());
+    }
+
+    public void testZeroInName() {
+        FileNameIndex index = index("a\u0000b", "ab", "b");
+        assertIds(new long[]{10}, index.findIds("\u0000"));
+        assertIds(new long[]{10}, index.findIds("a\u0000"));
+        assertIds(new long[]{11}, index.findIds("ab"));
+    }
+
+    public void testUnusedCapacity() {
+        //larger expected sizes than the files added
+        FileNameIndex index = new FileNameIndex.Builder(100, 1000).add(1, "a").add(2, "ba").build();
+        assertIds(new long[]{1, 2}, index.findIds("a"));
+        assertIds(new long[0], index.findIds("c"));
+    }
+
+    public void testEmptyIndex() {
+        FileNameIndex index = index();
+        assertIds(new long[0], index.findIds("a"));
+        assertEquals(-1, index.getMaxId());
+    }
+}
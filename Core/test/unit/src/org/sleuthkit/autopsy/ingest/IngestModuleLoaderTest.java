@@ -0,0 +1,91 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.ingest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests the fingerprint deciding if the ingest modules are discovered again
+ */
+public class IngestModuleLoaderTest extends TestCase {
+
+    private File dir;
+    private File first;
+    private File second;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = new File(System.getProperty("netbeans.user"), "IngestModuleLoaderTest");
+        dir.mkdirs();
+        first = new File(dir, "first.jar");
+        second = new File(dir, "second.jar");
+        write(first, 10);
+        write(second, 20);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        first.delete();
+        second.delete();
+        dir.delete();
+    }
+
+    private static void write(File file, int length) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[length]);
+        }
+    }
+
+    private static String fingerprint(List<File> jars, String... packageNames) {
+        return IngestModuleLoader.getDiscoveryFingerprint(jars, Arrays.asList(packageNames));
+    }
+
+    public void testSameModules() {
+        String fingerprint = fingerprint(Arrays.asList(first, second), "org.a", "org.b");
+        assertNotNull(fingerprint);
+        assertEquals(fingerprint, fingerprint(Arrays.asList(first, second), "org.a", "org.b"));
+        //the order in which the jars and modules are listed does not matter
+        assertEquals(fingerprint, fingerprint(Arrays.asList(second, first), "org.b", "org.a"));
+    }
+
+    public void testModulesChanged() {
+        String fingerprint = fingerprint(Arrays.asList(first, second), "org.a");
+        assertFalse(fingerprint.equals(fingerprint(Arrays.asList(first), "org.a")));
+        assertFalse(fingerprint.equals(fingerprint(Arrays.asList(first, second), "org.a", "org.b")));
+        assertFalse(fingerprint.equals(fingerprint(Arrays.asList(first, second))));
+        assertFalse(fingerprint(Collections.<File>emptyList()).equals(fingerprint(Arrays.asList(first))));
+    }
+
+    public void testJarChanged() throws IOException {
+        List<File> jars = Arrays.asList(first, second);
+        String fingerprint = fingerprint(jars, "org.a");
+        write(second, 21);
+        assertFalse(fingerprint.equals(fingerprint(jars, "org.a")));
+
+        String rewritten = fingerprint(jars, "org.a");
+        assertTrue(second.setLastModified(second.lastModified() - 60000));
+        assertFalse(rewritten.equals(fingerprint(jars, "org.a")));
+    }
+}
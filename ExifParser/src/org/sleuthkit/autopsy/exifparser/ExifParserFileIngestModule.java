@@ -197,8 +197,22 @@ public IngestModuleAbstractFile.ProcessResult processFile(AbstractFile f) {
      * @return true if to be processed
      */
     private boolean parsableFormat(AbstractFile f) {
-        return isJpegFileHeader(f);
+        if (f.getSize() < 100) {
+            return false;
+        }
+        //the JPEG signature is in the first bytes, no need to open the file
+        return isJpegHeader(services.getFileHeader(f));
+    }
 
+    /**
+     * Check if the header bytes start with the JPEG signature
+     *
+     * @param header header bytes of a file
+     *
+     * @return true if jpeg header, false otherwise
+     */
+    private static boolean isJpegHeader(byte[] header) {
+        return header.length >= 2 && (header[0] & 0xff) == 0xff && (header[1] & 0xff) == 0xd8;
     }
 
     /**
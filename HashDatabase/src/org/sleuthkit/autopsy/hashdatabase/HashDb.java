@@ -21,6 +21,7 @@
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
 import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.logging.Level;
 import javax.swing.SwingWorker;
@@ -63,8 +64,12 @@ public String getDisplayName() {
     private List<String> databasePaths; // TODO: Length limited to one for now...
     private boolean useForIngest;
     private boolean showInboxMessages;
-    private boolean indexing;
+    private volatile boolean indexing;
     private DBType type;
+    // In-memory lookup filter and the modified-time of the index it was built from
+    private volatile HashDbLookupFilter lookupFilter;
+    private volatile long lookupFilterIndexTime;
+    private final Object lookupFilterLock = new Object();
     
     public HashDb(String name, List<String> databasePaths, boolean useForIngest, boolean showInboxMessages, DBType type) {
         this.name = name;
@@ -213,6 +218,56 @@ void createIndex() throws TskException {
         creator.execute();
     }
 
+    /**
+     * Gets the in-memory lookup filter of the index, if it has been loaded.
+     * The filter is dropped when the database is indexed again, and reloaded
+     * by loadLookupFilter() if the index file changed since it was loaded.
+     * @return the filter, or null if not loaded
+     */
+    HashDbLookupFilter getLookupFilter() {
+        if (indexing) {
+            return null;
+        }
+        return lookupFilter;
+    }
+
+    /**
+     * Loads the in-memory lookup filter from the index, unless a current one
+     * is already loaded.  Reads the entire index, so this should not be called
+     * on the EDT.
+     */
+    void loadLookupFilter() {
+        synchronized (lookupFilterLock) {
+            if (indexing) {
+                return;
+            }
+            File index = indexFile();
+            long indexTime = index.lastModified();
+            if (lookupFilter != null && lookupFilterIndexTime == indexTime) {
+                return;
+            }
+            if (!index.exists()) {
+                lookupFilter = null;
+                return;
+            }
+            lookupFilter = null;
+            try {
+                HashDbLookupFilter filter = HashDbLookupFilter.build(index);
+                if (filter == null) {
+                    Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Index of " + name 
+                            + " is too large for an in-memory lookup filter.");
+                    return;
+                }
+                Logger.getLogger(this.getClass().getName()).log(Level.INFO, "Loaded lookup filter for " + name 
+                        + " with " + filter.getNumHashes() + " hashes.");
+                lookupFilterIndexTime = indexTime;
+                lookupFilter = filter;
+            } catch (IOException ex) {
+                Logger.getLogger(this.getClass().getName()).log(Level.WARNING, "Error loading lookup filter for " + name, ex);
+            }
+        }
+    }
+
     /**
      * Checks if one file is older than an other
      * @param a first file
@@ -296,6 +351,7 @@ public boolean cancel() {
         /* clean up or start the worker threads */
         @Override
         protected void done() {
+            lookupFilter = null;
             indexing = false;
             progress.finish();
             pcs.firePropertyChange(EVENT.INDEXING_DONE.toString(), null, name);
@@ -22,10 +22,17 @@
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.coreutils.ModuleSettings;
 import org.sleuthkit.autopsy.coreutils.Version;
 import org.sleuthkit.autopsy.ingest.PipelineContext;
 import org.sleuthkit.autopsy.ingest.IngestMessage;
@@ -38,7 +45,6 @@
 import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
 import org.sleuthkit.datamodel.BlackboardAttribute;
 import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
-import org.sleuthkit.datamodel.Hash;
 import org.sleuthkit.datamodel.SleuthkitCase;
 import org.sleuthkit.datamodel.TskCoreException;
 import org.sleuthkit.datamodel.TskData;
@@ -51,22 +57,35 @@ public class HashDbIngestModule extends IngestModuleAbstractFile {
     public final static String MODULE_DESCRIPTION = "Identifies known and notables files using supplied hash databases, such as a standard NSRL database.";
     final public static String MODULE_VERSION = Version.getVersion();
     private static final Logger logger = Logger.getLogger(HashDbIngestModule.class.getName());
+    // Setting to disable the in-memory lookup filters, e.g. when memory is scarce
+    private static final String PROPERTIES_FILE = "HashDatabase";
+    private static final String USE_LOOKUP_FILTER_SETTING = "UseLookupFilter";
+    // Loads the lookup filters in the background, lookups go to the index until a filter is loaded
+    private static final ExecutorService filterLoader = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "hash-lookup-filter-loader");
+            t.setDaemon(true);
+            return t;
+        }
+    });
     private IngestServices services;
     private SleuthkitCase skCase;
-    private static int messageId = 0;
-    private int knownBadCount;
+    private static final AtomicInteger messageId = new AtomicInteger(0);
+    private final AtomicInteger knownBadCount = new AtomicInteger(0);
     // Whether or not to do hash lookups (only set to true if there are dbs set)
     private boolean nsrlIsSet;
     private boolean knownBadIsSet;
     private boolean calcHashesIsSet;
-    static long calctime = 0;
-    static long lookuptime = 0;
+    private final AtomicLong calctime = new AtomicLong(0);
+    private final AtomicLong lookuptime = new AtomicLong(0);
+    private final AtomicLong filteredLookups = new AtomicLong(0);
+    private HashDb nsrlSet;
     private Map<Integer, HashDb> knownBadSets = new HashMap<>();
     private HashDbManagementPanel panel;
-    private final Hash hasher = new Hash();
+    private Md5Prefetcher md5Prefetcher;
 
     private HashDbIngestModule() {
-        knownBadCount = 0;
     }
 
     public static synchronized HashDbIngestModule getDefault() {
@@ -80,10 +99,13 @@ public static synchronized HashDbIngestModule getDefault() {
     public void init(IngestModuleInit initContext) {
         services = IngestServices.getDefault();
         this.skCase = Case.getCurrentCase().getSleuthkitCase();
+        this.md5Prefetcher = new Md5Prefetcher(skCase);
         try {
             HashDbXML hdbxml = HashDbXML.getCurrent();
             knownBadSets.clear();
             skCase.clearLookupDatabases();
+            nsrlSet = null;
+            filteredLookups.set(0);
             nsrlIsSet = false;
             knownBadIsSet = false;
             calcHashesIsSet = hdbxml.getCalculate();
@@ -91,6 +113,7 @@ public void init(IngestModuleInit initContext) {
             HashDb nsrl = hdbxml.getNSRLSet();
             if (nsrl != null && nsrl.getUseForIngest() && IndexStatus.isIngestible(nsrl.status())) {
                 nsrlIsSet = true;
+                nsrlSet = nsrl;
                 // @@@ Unchecked return value
                 skCase.setNSRLDatabase(nsrl.getDatabasePaths().get(0));
             }
@@ -104,19 +127,56 @@ public void init(IngestModuleInit initContext) {
                 }
             }
 
+            if (useLookupFilter()) {
+                if (nsrlSet != null) {
+                    loadLookupFilter(nsrlSet);
+                }
+                for (HashDb db : knownBadSets.values()) {
+                    loadLookupFilter(db);
+                }
+            }
+
             if (!nsrlIsSet) {
-                this.services.postMessage(IngestMessage.createWarningMessage(++messageId, this, "No NSRL database set", "Known file search will not be executed."));
+                this.services.postMessage(IngestMessage.createWarningMessage(messageId.incrementAndGet(), this, "No NSRL database set", "Known file search will not be executed."));
             }
             if (!knownBadIsSet) {
-                this.services.postMessage(IngestMessage.createWarningMessage(++messageId, this, "No known bad database set", "Known bad file search will not be executed."));
+                this.services.postMessage(IngestMessage.createWarningMessage(messageId.incrementAndGet(), this, "No known bad database set", "Known bad file search will not be executed."));
             }
 
         } catch (TskException ex) {
             logger.log(Level.SEVERE, "Setting NSRL and Known database failed", ex);
-            this.services.postMessage(IngestMessage.createErrorMessage(++messageId, this, "Error Configuring Hash Databases", "Setting NSRL and Known database failed."));
+            this.services.postMessage(IngestMessage.createErrorMessage(messageId.incrementAndGet(), this, "Error Configuring Hash Databases", "Setting NSRL and Known database failed."));
         }
     }
 
+    private static boolean useLookupFilter() {
+        String setting = ModuleSettings.getConfigSetting(PROPERTIES_FILE, USE_LOOKUP_FILTER_SETTING);
+        return setting == null || Boolean.parseBoolean(setting);
+    }
+
+    private static void loadLookupFilter(final HashDb db) {
+        filterLoader.submit(new Runnable() {
+            @Override
+            public void run() {
+                db.loadLookupFilter();
+            }
+        });
+    }
+
+    /**
+     * Checks the in-memory filter of the database, if loaded, to skip lookups
+     * of hashes that are definitely not in the database
+     * @return true if the index lookup has to be done
+     */
+    private boolean needsLookup(HashDb db, String md5Hash) {
+        HashDbLookupFilter filter = db.getLookupFilter();
+        if (filter == null || filter.mightContain(md5Hash)) {
+            return true;
+        }
+        filteredLookups.incrementAndGet();
+        return false;
+    }
+
     @Override
     public void complete() {
         if ((knownBadIsSet) || (nsrlIsSet)) {
@@ -125,10 +185,11 @@ public void complete() {
             detailsSb.append("<table border='0' cellpadding='4' width='280'>");
 
             detailsSb.append("<tr><td>Known bads found:</td>");
-            detailsSb.append("<td>").append(knownBadCount).append("</td></tr>");
+            detailsSb.append("<td>").append(knownBadCount.get()).append("</td></tr>");
 
-            detailsSb.append("<tr><td>Total Calculation Time</td><td>").append(calctime).append("</td></tr>\n");
-            detailsSb.append("<tr><td>Total Lookup Time</td><td>").append(lookuptime).append("</td></tr>\n");
+            detailsSb.append("<tr><td>Total Calculation Time</td><td>").append(calctime.get()).append("</td></tr>\n");
+            detailsSb.append("<tr><td>Total Lookup Time</td><td>").append(lookuptime.get()).append("</td></tr>\n");
+            detailsSb.append("<tr><td>Lookups Skipped by Filter</td><td>").append(filteredLookups.get()).append("</td></tr>\n");
             detailsSb.append("</table>");
 
             detailsSb.append("<p>Databases Used:</p>\n<ul>");
@@ -137,12 +198,15 @@ public void complete() {
             }
 
             detailsSb.append("</ul>");
-            services.postMessage(IngestMessage.createMessage(++messageId, IngestMessage.MessageType.INFO, this, "Hash Lookup Results", detailsSb.toString()));
+            services.postMessage(IngestMessage.createMessage(messageId.incrementAndGet(), IngestMessage.MessageType.INFO, this, "Hash Lookup Results", detailsSb.toString()));
             clearHashDatabaseHandles();
         }
     }
 
     private void clearHashDatabaseHandles() {
+        if (md5Prefetcher != null) {
+            md5Prefetcher.clear();
+        }
         try {
             skCase.clearLookupDatabases();
         } catch (TskCoreException ex) {
@@ -150,6 +214,7 @@ private void clearHashDatabaseHandles() {
         }
         this.nsrlIsSet = false;
         this.knownBadIsSet = false;
+        this.nsrlSet = null;
     }
     
     /**
@@ -194,6 +259,16 @@ public ProcessResult process(PipelineContext<IngestModuleAbstractFile>pipelineCo
     }
 
 
+    /**
+     * The lookups only read the settings made in init(), the counters are
+     * atomic, and the case database and hash database handles do their own
+     * locking, so files can be looked up concurrently.
+     */
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public boolean hasBackgroundJobsRunning() {
         return false;
@@ -240,6 +315,14 @@ public void saveSimpleConfiguration() {
     }
 
     private void processBadFile(AbstractFile abstractFile, String md5Hash, String hashSetName, boolean showInboxMessage) {
+        if (!showInboxMessage) {
+            // no message needs the artifact, let it be written in a batch
+            List<BlackboardAttribute> attributes = new ArrayList<>();
+            attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_SET_NAME.getTypeID(), MODULE_NAME, hashSetName));
+            attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_HASH_MD5.getTypeID(), MODULE_NAME, md5Hash));
+            services.addArtifact(MODULE_NAME, ARTIFACT_TYPE.TSK_HASHSET_HIT, abstractFile, attributes);
+            return;
+        }
         try {
             BlackboardArtifact badFile = abstractFile.newArtifact(ARTIFACT_TYPE.TSK_HASHSET_HIT);
             //TODO Revisit usage of deprecated constructor as per TSK-583
@@ -270,7 +353,7 @@ private void processBadFile(AbstractFile abstractFile, String md5Hash, String ha
 
                 detailsSb.append("</table>");
 
-                services.postMessage(IngestMessage.createDataMessage(++messageId, this,
+                services.postMessage(IngestMessage.createDataMessage(messageId.incrementAndGet(), this,
                         "Known Bad: " + abstractFile.getName(),
                         detailsSb.toString(),
                         abstractFile.getName() + md5Hash,
@@ -288,17 +371,20 @@ private ProcessResult processFile(AbstractFile file) {
             return ProcessResult.OK;
         }
 
+        // start hashing the next files in the background, while this one is processed
+        md5Prefetcher.prefetch(file, services.getUpcomingFiles(this, Md5Prefetcher.MAX_FILES_AHEAD));
+
         // calc hash value
         String name = file.getName();
         String md5Hash = file.getMd5Hash();
         if (md5Hash == null || md5Hash.isEmpty()) {
             try {
                 long calcstart = System.currentTimeMillis();
-                md5Hash = hasher.calculateMd5(file);
-                calctime += (System.currentTimeMillis() - calcstart);
+                md5Hash = md5Prefetcher.getMd5(file);
+                calctime.addAndGet(System.currentTimeMillis() - calcstart);
             } catch (IOException ex) {
                 logger.log(Level.WARNING, "Error calculating hash of file " + name, ex);
-                services.postMessage(IngestMessage.createErrorMessage(++messageId, HashDbIngestModule.this, "Read Error: " + name,
+                services.postMessage(IngestMessage.createErrorMessage(messageId.incrementAndGet(), HashDbIngestModule.this, "Read Error: " + name,
                         "Error encountered while calculating the hash value for " + name + "."));
                 return ProcessResult.ERROR;
             }
@@ -314,23 +400,27 @@ private ProcessResult processFile(AbstractFile file) {
             for (Map.Entry<Integer, HashDb> entry : knownBadSets.entrySet()) {
                 try {
                     long lookupstart = System.currentTimeMillis();
-                    status = skCase.knownBadLookupMd5(md5Hash, entry.getKey());
-                    lookuptime += (System.currentTimeMillis() - lookupstart);
+                    if (needsLookup(entry.getValue(), md5Hash)) {
+                        status = skCase.knownBadLookupMd5(md5Hash, entry.getKey());
+                    } else {
+                        status = TskData.FileKnown.UKNOWN;
+                    }
+                    lookuptime.addAndGet(System.currentTimeMillis() - lookupstart);
                 } catch (TskException ex) {
                     logger.log(Level.WARNING, "Couldn't lookup known bad hash for file " + name + " - see sleuthkit log for details", ex);
-                    services.postMessage(IngestMessage.createErrorMessage(++messageId, HashDbIngestModule.this, "Hash Lookup Error: " + name,
+                    services.postMessage(IngestMessage.createErrorMessage(messageId.incrementAndGet(), HashDbIngestModule.this, "Hash Lookup Error: " + name,
                             "Error encountered while looking up known bad hash value for " + name + "."));
                     ret = ProcessResult.ERROR;
                 }
 
                 if (status.equals(TskData.FileKnown.BAD)) {
                     foundBad = true;
-                    knownBadCount += 1;
+                    knownBadCount.incrementAndGet();
                     try {
                         skCase.setKnown(file, TskData.FileKnown.BAD);
                     } catch (TskException ex) {
                         logger.log(Level.WARNING, "Couldn't set known bad state for file " + name + " - see sleuthkit log for details", ex);
-                        services.postMessage(IngestMessage.createErrorMessage(++messageId, HashDbIngestModule.this, "Hash Lookup Error: " + name,
+                        services.postMessage(IngestMessage.createErrorMessage(messageId.incrementAndGet(), HashDbIngestModule.this, "Hash Lookup Error: " + name,
                                 "Error encountered while setting known bad state for " + name + "."));
                         ret = ProcessResult.ERROR;
                     }
@@ -344,11 +434,15 @@ private ProcessResult processFile(AbstractFile file) {
         if (!foundBad && nsrlIsSet) {
             try {
                 long lookupstart = System.currentTimeMillis();
-                status = skCase.nsrlLookupMd5(md5Hash);
-                lookuptime += (System.currentTimeMillis() - lookupstart);
+                if (needsLookup(nsrlSet, md5Hash)) {
+                    status = skCase.nsrlLookupMd5(md5Hash);
+                } else {
+                    status = TskData.FileKnown.UKNOWN;
+                }
+                lookuptime.addAndGet(System.currentTimeMillis() - lookupstart);
             } catch (TskException ex) {
                 logger.log(Level.WARNING, "Couldn't lookup NSRL hash for file " + name + " - see sleuthkit log for details", ex);
-                services.postMessage(IngestMessage.createErrorMessage(++messageId, HashDbIngestModule.this, "Hash Lookup Error: " + name,
+                services.postMessage(IngestMessage.createErrorMessage(messageId.incrementAndGet(), HashDbIngestModule.this, "Hash Lookup Error: " + name,
                         "Error encountered while looking up NSRL hash value for " + name + "."));
                 ret = ProcessResult.ERROR;
             }
@@ -358,7 +452,7 @@ private ProcessResult processFile(AbstractFile file) {
                     skCase.setKnown(file, TskData.FileKnown.KNOWN);
                 } catch (TskException ex) {
                     logger.log(Level.WARNING, "Couldn't set known state for file " + name + " - see sleuthkit log for details", ex);
-                    services.postMessage(IngestMessage.createErrorMessage(++messageId, HashDbIngestModule.this, "Hash Lookup Error: " + name,
+                    services.postMessage(IngestMessage.createErrorMessage(messageId.incrementAndGet(), HashDbIngestModule.this, "Hash Lookup Error: " + name,
                             "Error encountered while setting known (NSRL) state for " + name + "."));
                     ret = ProcessResult.ERROR;
                 }
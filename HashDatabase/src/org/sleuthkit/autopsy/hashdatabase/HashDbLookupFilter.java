@@ -0,0 +1,148 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.hashdatabase;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * In-memory Bloom filter of the MD5 hashes in a hash database index, used to
+ * rule out most hash lookup misses without a Sleuth Kit index lookup.
+ *
+ * The filter can report false positives (about 1% with the default sizing),
+ * in which case the regular index lookup is done, but never false negatives.
+ *
+ * Index lines are expected in the Sleuth Kit index format, an MD5 hash in hex
+ * followed by a '|' and the offset in the database. Lines that do not start
+ * with an MD5 hash, such as the index header, are skipped.
+ */
+class HashDbLookupFilter {
+
+    //index line length, hash + '|' + 16 digit offset + '\n', to estimate the number of hashes
+    private static final int INDEX_LINE_LEN = 32 + 1 + 16 + 1;
+    private static final int BITS_PER_HASH = 10;
+    private static final int NUM_PROBES = 7;
+    //filters larger than this are not built, the index lookup alone is used
+    private static final long MAX_FILTER_BYTES = 128 * 1024 * 1024L;
+    private static final int MIN_FILTER_BITS = 1024;
+    private final long[] bits;
+    private final long bitMask;
+    private long numHashes = 0;
+
+    private HashDbLookupFilter(long numBits) {
+        bits = new long[(int) (numBits / 64)];
+        bitMask = numBits - 1;
+    }
+
+    /**
+     * Build the filter from a hash database index file
+     *
+     * @param indexFile index file to read the hashes from
+     * @return the filter, or null if the index is too large to be filtered in
+     * memory
+     * @throws IOException if the index could not be read
+     */
+    static HashDbLookupFilter build(File indexFile) throws IOException {
+        final long estimatedHashes = Math.max(1, indexFile.length() / INDEX_LINE_LEN);
+        long numBits = MIN_FILTER_BITS;
+        while (numBits < estimatedHashes * BITS_PER_HASH) {
+            numBits <<= 1;
+        }
+        if (numBits / 8 > MAX_FILTER_BYTES) {
+            return null;
+        }
+
+        final HashDbLookupFilter filter = new HashDbLookupFilter(numBits);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(indexFile), Charset.forName("US-ASCII")), 1 << 16)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.length() < 32 || (line.length() > 32 && line.charAt(32) != '|')
+                        || !isHex(line, 32)) {
+                    continue;
+                }
+                filter.add(parseHex(line, 0), parseHex(line, 16));
+            }
+        }
+        return filter;
+    }
+
+    /**
+     * Check if a hash may be in the database
+     *
+     * @param md5Hash MD5 hash in hex
+     * @return false if the hash is definitely not in the database, true if it
+     * may be, or if the hash is not a valid MD5 hash
+     */
+    boolean mightContain(String md5Hash) {
+        if (md5Hash == null || md5Hash.length() != 32 || !isHex(md5Hash, 32)) {
+            return true;
+        }
+        final long high = parseHex(md5Hash, 0);
+        final long low = parseHex(md5Hash, 16);
+        for (int i = 0; i < NUM_PROBES; ++i) {
+            final long bit = (high + i * low) & bitMask;
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return number of hashes added to the filter
+     */
+    long getNumHashes() {
+        return numHashes;
+    }
+
+    private void add(long high, long low) {
+        //MD5 bits are uniformly distributed, so they are used directly as the
+        //two base hashes to derive the probe positions from
+        for (int i = 0; i < NUM_PROBES; ++i) {
+            final long bit = (high + i * low) & bitMask;
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        ++numHashes;
+    }
+
+    private static boolean isHex(String s, int len) {
+        for (int i = 0; i < len; ++i) {
+            if (Character.digit(s.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parse 16 hex digits, already checked to be valid, into a long
+     */
+    private static long parseHex(String s, int start) {
+        long value = 0;
+        for (int i = start; i < start + 16; ++i) {
+            value = (value << 4) | Character.digit(s.charAt(i), 16);
+        }
+        return value;
+    }
+}
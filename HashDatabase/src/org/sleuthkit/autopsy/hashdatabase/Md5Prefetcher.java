@@ -0,0 +1,255 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.hashdatabase;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+import org.sleuthkit.datamodel.TskData;
+
+/**
+ * Calculates MD5 hashes of files on a pool of worker threads, ahead of the
+ * files being processed by the hash lookup module.
+ *
+ * Content is read in large blocks, starting at offset 0 so that all reads are
+ * block aligned. Hashes are stored in the case database through the file
+ * object the module gets them for, the same as when calculated by the module,
+ * so they are available to the lookups and to the other modules of the
+ * pipeline.
+ */
+class Md5Prefetcher {
+
+    private static final Logger logger = Logger.getLogger(Md5Prefetcher.class.getName());
+    private static final int READ_BLOCK_SIZE = 1024 * 1024;
+    private static final int NUM_WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    //max number of files being hashed, or hashed and not yet claimed, at a time
+    static final int MAX_FILES_AHEAD = NUM_WORKERS * 2;
+    private static final ExecutorService workers = Executors.newFixedThreadPool(NUM_WORKERS, new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "md5-hash-worker-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+    //reusable read buffer per thread, workers and the ingest thread hash in parallel
+    private static final ThreadLocal<byte[]> readBuffers = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[READ_BLOCK_SIZE];
+        }
+    };
+    private final ConcurrentMap<Long, Future<String>> pending = new ConcurrentHashMap<>();
+    private final SleuthkitCase skCase;
+
+    Md5Prefetcher(SleuthkitCase skCase) {
+        this.skCase = skCase;
+    }
+
+    /**
+     * Start hashing files that do not have a hash yet in the background, as
+     * long as fewer than MAX_FILES_AHEAD files are pending
+     *
+     * @param current file currently being processed
+     * @param files files to be processed next, in processing order
+     */
+    void prefetch(AbstractFile current, List<AbstractFile> files) {
+        //drop finished hashes of files that will not be processed by the
+        //module after all, so they do not take up the slots
+        final Set<Long> expectedIds = new HashSet<>();
+        expectedIds.add(current.getId());
+        for (AbstractFile file : files) {
+            expectedIds.add(file.getId());
+        }
+        final Iterator<Map.Entry<Long, Future<String>>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Long, Future<String>> entry = it.next();
+            if (entry.getValue().isDone() && !expectedIds.contains(entry.getKey())) {
+                it.remove();
+            }
+        }
+
+        for (final AbstractFile file : files) {
+            if (pending.size() >= MAX_FILES_AHEAD) {
+                return;
+            }
+            if (pending.containsKey(file.getId()) || !needsHash(file)) {
+                continue;
+            }
+            //the module may be prefetching from several ingest workers
+            final long fileId = file.getId();
+            final FutureTask<String> task = new FutureTask<>(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return calculateMd5InBackground(fileId);
+                }
+            });
+            if (pending.putIfAbsent(file.getId(), task) == null) {
+                workers.execute(task);
+            }
+        }
+    }
+
+    /**
+     * Get the hash of a file, waiting for the background calculation if it
+     * was started, or calculating it on the calling thread otherwise. The
+     * hash is stored through the given file object, so later modules of the
+     * pipeline see it from getMd5Hash().
+     *
+     * @param file file to get the hash of
+     * @return MD5 hash in hex
+     * @throws IOException if the file content could not be read
+     */
+    String getMd5(AbstractFile file) throws IOException {
+        final String md5Hash = waitForMd5(file);
+        try {
+            skCase.setMd5Hash(file, md5Hash);
+        } catch (TskCoreException ex) {
+            logger.log(Level.WARNING, "Error storing hash of file " + file.getName(), ex);
+        }
+        return md5Hash;
+    }
+
+    private String waitForMd5(AbstractFile file) throws IOException {
+        final Future<String> future = pending.remove(file.getId());
+        if (future == null) {
+            return calculateMd5(file);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new IOException("Interrupted while calculating hash of " + file.getName(), ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Error calculating hash of " + file.getName(), cause);
+        }
+    }
+
+    /**
+     * Cancel the pending calculations, e.g. when ingest is stopped
+     */
+    void clear() {
+        for (Future<String> future : pending.values()) {
+            future.cancel(true);
+        }
+        pending.clear();
+    }
+
+    private static boolean needsHash(AbstractFile file) {
+        final String md5Hash = file.getMd5Hash();
+        return (md5Hash == null || md5Hash.isEmpty())
+                && !file.isDir()
+                && !file.getType().equals(TskData.TSK_DB_FILES_TYPE_ENUM.UNALLOC_BLOCKS);
+    }
+
+    /**
+     * Calculate the hash of a queued file on a worker thread. The queued file
+     * object is used and closed by the ingest workers when they process it,
+     * so the content is read through a file object of its own.
+     *
+     * @param fileId id of the file to hash
+     * @return MD5 hash in hex
+     * @throws IOException if the file content could not be read
+     */
+    private String calculateMd5InBackground(long fileId) throws IOException {
+        final AbstractFile file;
+        try {
+            file = skCase.getAbstractFileById(fileId);
+        } catch (TskCoreException ex) {
+            throw new IOException("Error getting file to hash, id: " + fileId, ex);
+        }
+        if (file == null) {
+            throw new IOException("File to hash not found, id: " + fileId);
+        }
+        try {
+            return calculateMd5(file);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Calculate the hash of the file content
+     */
+    private String calculateMd5(AbstractFile file) throws IOException {
+        final MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException("MD5 algorithm not available", ex);
+        }
+
+        final byte[] buffer = readBuffers.get();
+        final long size = file.getSize();
+        long offset = 0;
+        try {
+            while (offset < size) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IOException("Interrupted while reading " + file.getName());
+                }
+                final int read = file.read(buffer, offset, Math.min(READ_BLOCK_SIZE, size - offset));
+                if (read <= 0) {
+                    break;
+                }
+                md.update(buffer, 0, read);
+                offset += read;
+            }
+        } catch (TskCoreException ex) {
+            throw new IOException("Error reading content of " + file.getName(), ex);
+        }
+
+        return toHex(md.digest());
+    }
+
+    private static String toHex(byte[] digest) {
+        final StringBuilder sb = new StringBuilder(digest.length * 2);
+        for (byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -44,7 +44,7 @@ public class AbstractFileHtmlExtract implements AbstractFileExtract {
     static final int MAX_EXTR_TEXT_CHARS = 512 * 1024;
     private static final int SINGLE_READ_CHARS = 1024;
     private static final int EXTRA_CHARS = 128; //for whitespace
-    private static final char[] TEXT_CHUNK_BUF = new char[MAX_EXTR_TEXT_CHARS];
+    private static final ArrayPool<char[]> TEXT_CHUNK_BUF_POOL = new ArrayPool<char[]>(char[].class, MAX_EXTR_TEXT_CHARS);
     private static final int MAX_SIZE = 50000000;
     private KeywordSearchIngestModule module;
     private Ingester ingester;
@@ -104,6 +104,7 @@ public boolean index(AbstractFile sourceFile) throws IngesterException {
 
         boolean success = false;
         Reader reader = null;
+        char[] textChunkBuf = null;
 
         final InputStream stream = new ReadContentInputStream(sourceFile);
 
@@ -119,17 +120,18 @@ public boolean index(AbstractFile sourceFile) throws IngesterException {
                 return false;
             }
 
+            textChunkBuf = TEXT_CHUNK_BUF_POOL.acquire();
             success = true;
             long readSize;
             long totalRead = 0;
             boolean eof = false;
             //we read max 1024 chars at time, this seems to max what this Reader would return
-            while (!eof && (readSize = reader.read(TEXT_CHUNK_BUF, 0, SINGLE_READ_CHARS)) != -1) {
+            while (!eof && (readSize = reader.read(textChunkBuf, 0, SINGLE_READ_CHARS)) != -1) {
                 totalRead += readSize;
 
                 //consume more bytes to fill entire chunk (leave EXTRA_CHARS to end the word)
                 while ((totalRead < MAX_EXTR_TEXT_CHARS - SINGLE_READ_CHARS - EXTRA_CHARS)
-                        && (readSize = reader.read(TEXT_CHUNK_BUF, (int) totalRead, SINGLE_READ_CHARS)) != -1) {
+                        && (readSize = reader.read(textChunkBuf, (int) totalRead, SINGLE_READ_CHARS)) != -1) {
                     totalRead += readSize;
                 }
                 if (readSize == -1) {
@@ -138,8 +140,8 @@ public boolean index(AbstractFile sourceFile) throws IngesterException {
                 } else {
                     //try to read until whitespace to not break words
                     while ((totalRead < MAX_EXTR_TEXT_CHARS - 1)
-                            && !Character.isWhitespace(TEXT_CHUNK_BUF[(int) totalRead - 1])
-                            && (readSize = reader.read(TEXT_CHUNK_BUF, (int) totalRead, 1)) != -1) {
+                            && !Character.isWhitespace(textChunkBuf[(int) totalRead - 1])
+                            && (readSize = reader.read(textChunkBuf, (int) totalRead, 1)) != -1) {
                         totalRead += readSize;
                     }
                     if (readSize == -1) {
@@ -158,9 +160,9 @@ public boolean index(AbstractFile sourceFile) throws IngesterException {
                 //inject BOM here (saves byte buffer realloc later), will be converted to specific encoding BOM
                 //sb.append(UTF16BOM); disabled BOM, not needing as bypassing Tika
                 if (totalRead < MAX_EXTR_TEXT_CHARS) {
-                    sb.append(TEXT_CHUNK_BUF, 0, (int) totalRead);
+                    sb.append(textChunkBuf, 0, (int) totalRead);
                 } else {
-                    sb.append(TEXT_CHUNK_BUF);
+                    sb.append(textChunkBuf);
                 }
 
                 //reset for next chunk
@@ -208,6 +210,7 @@ public boolean index(AbstractFile sourceFile) throws IngesterException {
             } catch (IOException ex) {
                 logger.log(Level.WARNING, "Unable to close content reader from " + sourceFile.getId(), ex);
             }
+            TEXT_CHUNK_BUF_POOL.release(textChunkBuf);
         }
 
         //after all chunks, ingest the parent file without content itself, and store numChunks
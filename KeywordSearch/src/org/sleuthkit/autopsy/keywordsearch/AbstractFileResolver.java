@@ -0,0 +1,148 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.sleuthkit.autopsy.ingest.IngestManager;
+import org.sleuthkit.autopsy.ingest.IngestManager.IngestModuleEvent;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.SleuthkitCase;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Resolves the file ids of keyword hit documents to AbstractFile objects of
+ * the current case.
+ *
+ * Ids that are not cached are looked up with a query per batch of ids, rather
+ * than a query per id, and recently resolved files are kept in a bounded LRU
+ * cache, so that the hits of common keywords, and hits listed again, are
+ * resolved quickly. The cache is cleared when the case changes.
+ *
+ * Ingest modules write fields of the files, such as the MD5 hash and known
+ * status, that the cached objects would not show. So files are not cached
+ * while ingest is running, and the cache is cleared when ingest modules are
+ * done.
+ */
+class AbstractFileResolver {
+
+    //max number of ids in a single IN list query
+    private static final int MAX_IDS_PER_QUERY = 500;
+    private static final int MAX_CACHED_FILES = 10000;
+    private static final AbstractFileResolver instance = new AbstractFileResolver();
+    private SleuthkitCase skCase = null;
+    private final Map<Long, AbstractFile> cache = new LinkedHashMap<Long, AbstractFile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, AbstractFile> eldest) {
+            return size() > MAX_CACHED_FILES;
+        }
+    };
+
+    private AbstractFileResolver() {
+        IngestManager.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                final String changed = evt.getPropertyName();
+                if (changed.equals(IngestModuleEvent.COMPLETED.toString())
+                        || changed.equals(IngestModuleEvent.STOPPED.toString())) {
+                    clearCache();
+                }
+            }
+        });
+    }
+
+    static AbstractFileResolver getDefault() {
+        return instance;
+    }
+
+    /**
+     * Resolve file ids of a case to files
+     *
+     * @param sc case the files belong to
+     * @param fileIds ids of the files to resolve
+     * @return map of id to file, ids of files that do not exist are not
+     * included
+     * @throws TskCoreException if the files could not be queried
+     */
+    Map<Long, AbstractFile> getFiles(SleuthkitCase sc, Collection<Long> fileIds) throws TskCoreException {
+        return getFiles(sc, fileIds, !IngestManager.getDefault().isIngestRunning());
+    }
+
+    private synchronized Map<Long, AbstractFile> getFiles(SleuthkitCase sc, Collection<Long> fileIds, boolean useCache) throws TskCoreException {
+        if (sc != skCase || !useCache) {
+            //different case, cached files are of the previous case,
+            //or ingest is running and may have changed the cached files
+            cache.clear();
+            skCase = sc;
+        }
+
+        final Map<Long, AbstractFile> files = new HashMap<Long, AbstractFile>();
+        final Set<Long> notCached = new LinkedHashSet<Long>();
+        for (Long fileId : fileIds) {
+            final AbstractFile file = cache.get(fileId);
+            if (file != null) {
+                files.put(fileId, file);
+            } else {
+                notCached.add(fileId);
+            }
+        }
+        final List<Long> toQuery = new ArrayList<Long>(notCached);
+
+        for (int start = 0; start < toQuery.size(); start += MAX_IDS_PER_QUERY) {
+            final List<Long> batch = toQuery.subList(start, Math.min(start + MAX_IDS_PER_QUERY, toQuery.size()));
+            final StringBuilder where = new StringBuilder("obj_id IN (");
+            for (int i = 0; i < batch.size(); ++i) {
+                if (i > 0) {
+                    where.append(',');
+                }
+                where.append(batch.get(i));
+            }
+            where.append(')');
+
+            for (AbstractFile file : sc.findAllFilesWhere(where.toString())) {
+                files.put(file.getId(), file);
+                if (useCache) {
+                    cache.put(file.getId(), file);
+                }
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Drop the cached files, e.g. when the case is closed
+     */
+    synchronized void clear() {
+        cache.clear();
+        skCase = null;
+    }
+
+    private synchronized void clearCache() {
+        cache.clear();
+    }
+}
@@ -43,8 +43,8 @@ class AbstractFileStringExtract implements AbstractFileExtract {
     private static final Logger logger = Logger.getLogger(AbstractFileStringExtract.class.getName());
     static final long MAX_STRING_CHUNK_SIZE = 1 * 1024 * 1024L;
     private AbstractFile sourceFile;
-    //single static buffer for all extractions.  Safe, indexing can only happen in one thread
-    private static final byte[] STRING_CHUNK_BUF = new byte[(int) MAX_STRING_CHUNK_SIZE];
+    //chunk buffers shared by all extractions, a buffer is held for the duration of a file extraction
+    private static final ArrayPool<byte[]> STRING_CHUNK_BUF_POOL = new ArrayPool<byte[]>(byte[].class, (int) MAX_STRING_CHUNK_SIZE);
     //private static final int BOM_LEN = 3; 
     private static final int BOM_LEN = 0;  //disabled prepending of BOM
     private static final Charset INDEX_CHARSET = Server.DEFAULT_INDEXED_TEXT_CHARSET;
@@ -56,9 +56,9 @@ class AbstractFileStringExtract implements AbstractFileExtract {
     //disabled prepending of BOM
     //static {
     //prepend UTF-8 BOM to start of the buffer
-    //STRING_CHUNK_BUF[0] = (byte) 0xEF;
-    //STRING_CHUNK_BUF[1] = (byte) 0xBB;
-    //STRING_CHUNK_BUF[2] = (byte) 0xBF;
+    //stringChunkBuf[0] = (byte) 0xEF;
+    //stringChunkBuf[1] = (byte) 0xBB;
+    //stringChunkBuf[2] = (byte) 0xBF;
     //}
     public AbstractFileStringExtract() {
         this.module = KeywordSearchIngestModule.getDefault();
@@ -127,19 +127,20 @@ public boolean index(AbstractFile sourceFile) throws IngesterException {
         }
 
 
+        final byte[] stringChunkBuf = STRING_CHUNK_BUF_POOL.acquire();
         try {
             success = true;
             //break input stream into chunks 
 
             long readSize = 0;
-            while ((readSize = stringStream.read(STRING_CHUNK_BUF, BOM_LEN, (int) MAX_STRING_CHUNK_SIZE - BOM_LEN)) != -1) {
+            while ((readSize = stringStream.read(stringChunkBuf, BOM_LEN, (int) MAX_STRING_CHUNK_SIZE - BOM_LEN)) != -1) {
                 //FileOutputStream debug = new FileOutputStream("c:\\temp\\" + sourceFile.getName() + Integer.toString(this.numChunks+1));
-                //debug.write(STRING_CHUNK_BUF, 0, (int)readSize);
+                //debug.write(stringChunkBuf, 0, (int)readSize);
 
                 AbstractFileChunk chunk = new AbstractFileChunk(this, this.numChunks + 1);
 
                 try {
-                    chunk.index(ingester, STRING_CHUNK_BUF, readSize + BOM_LEN, INDEX_CHARSET);
+                    chunk.index(ingester, stringChunkBuf, readSize + BOM_LEN, INDEX_CHARSET);
                     ++this.numChunks;
                 } catch (IngesterException ingEx) {
                     success = false;
@@ -162,6 +163,7 @@ public boolean index(AbstractFile sourceFile) throws IngesterException {
             logger.log(Level.WARNING, "Unable to read input stream to divide and send to Solr, file: " + sourceFile.getName(), ex);
             success = false;
         } finally {
+            STRING_CHUNK_BUF_POOL.release(stringChunkBuf);
             try {
                 stringStream.close();
             } catch (IOException ex) {
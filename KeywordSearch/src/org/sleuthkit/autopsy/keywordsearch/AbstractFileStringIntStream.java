@@ -34,7 +34,8 @@
  * object, extract international strings from the file and read output as a
  * stream of UTF-8 strings as encoded bytes.
  *
- * Currently not-thread safe (reusing static buffers for efficiency)
+ * A stream object is not thread safe, but multiple streams can be read in
+ * parallel, the file read buffers are pooled.
  */
 public class AbstractFileStringIntStream extends InputStream {
 
@@ -42,7 +43,8 @@ public class AbstractFileStringIntStream extends InputStream {
     private final byte[] oneCharBuf = new byte[1];
     private final StringExtract stringExtractor;
     private static final int FILE_BUF_SIZE = 1024 * 1024;
-    private static final byte[] fileReadBuff = new byte[FILE_BUF_SIZE]; //NOTE: need to run all stream extraction in same thread
+    //file read buffers, shared by all streams, a buffer is held only for a single read and convert
+    private static final ArrayPool<byte[]> fileReadBuffPool = new ArrayPool<byte[]>(byte[].class, FILE_BUF_SIZE);
     private long fileReadOffset = 0L;
     private byte[] convertBuff; //stores extracted string encoded as bytes, before returned to user
     private int convertBuffOffset = 0; //offset to start returning data to user on next read()
@@ -141,18 +143,23 @@ public int read(byte[] b, int off, int len) throws IOException {
                         //fill up entire fileReadBuff fresh
                         toRead = Math.min(FILE_BUF_SIZE, fileSize - fileReadOffset);
                     //}
-                    int read = content.read(fileReadBuff, fileReadOffset, toRead);
-                    if (read == -1 || read == 0) {
-                        fileEOF = true;
-                    } else {
-                        fileReadOffset += read;
-                        if (fileReadOffset >= fileSize) {
+                    final byte[] fileReadBuff = fileReadBuffPool.acquire();
+                    try {
+                        int read = content.read(fileReadBuff, fileReadOffset, toRead);
+                        if (read == -1 || read == 0) {
                             fileEOF = true;
+                        } else {
+                            fileReadOffset += read;
+                            if (fileReadOffset >= fileSize) {
+                                fileEOF = true;
+                            }
+
+                            //put converted string in convertBuff
+                            convert(fileReadBuff, read);
+                            convertBuffRemain = bytesInConvertBuff - convertBuffOffset;
                         }
-
-                        //put converted string in convertBuff
-                        convert(read);
-                        convertBuffRemain = bytesInConvertBuff - convertBuffOffset;
+                    } finally {
+                        fileReadBuffPool.release(fileReadBuff);
                     }
                 } catch (TskCoreException ex) {
                     //Exceptions.printStackTrace(ex);
@@ -200,9 +207,10 @@ public int read(byte[] b, int off, int len) throws IOException {
      * convert bytes in file buffer to string, and encode string in
      * convertBuffer
      *
+     * @param fileReadBuff buffer with the bytes read from file
      * @param numBytes num bytes in the fileReadBuff
      */
-    private void convert(int numBytes) {
+    private void convert(byte[] fileReadBuff, int numBytes) {
         lastExtractResult = stringExtractor.extract(fileReadBuff, numBytes, 0);
         convertBuff = lastExtractResult.getText().getBytes(outCharset);
 
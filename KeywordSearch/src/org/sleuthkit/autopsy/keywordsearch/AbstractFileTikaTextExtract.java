@@ -28,8 +28,6 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -42,7 +40,6 @@
 import org.apache.tika.language.LanguageIdentifier;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.mime.MediaType;
-import org.apache.tika.parser.ParseContext;
 import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.coreutils.StringExtract;
 import org.sleuthkit.autopsy.keywordsearch.Ingester.IngesterException;
@@ -67,14 +64,14 @@ public class AbstractFileTikaTextExtract implements AbstractFileExtract {
     static final int MAX_EXTR_TEXT_CHARS = 512 * 1024;
     private static final int SINGLE_READ_CHARS = 1024;
     private static final int EXTRA_CHARS = 128; //for whitespace
-    private static final char[] TEXT_CHUNK_BUF = new char[MAX_EXTR_TEXT_CHARS];
+    private static final ArrayPool<char[]> TEXT_CHUNK_BUF_POOL = new ArrayPool<char[]>(char[].class, MAX_EXTR_TEXT_CHARS);
+    private static ReusableTikaParser parser;
     //private Tika tika;
     private KeywordSearchIngestModule module;
     private static Ingester ingester;
     private AbstractFile sourceFile; //currently processed file
     private int numChunks = 0;
     //private static final String UTF16BOM = "\uFEFF"; disabled prepending of BOM
-    private final ExecutorService tikaParseExecutor = Executors.newSingleThreadExecutor();
     private final List<String> TIKA_SUPPORTED_TYPES = new ArrayList<String>();
     private final TikaLanguageIdentifier tikaLanguageIdentifier;
 
@@ -83,7 +80,7 @@ public class AbstractFileTikaTextExtract implements AbstractFileExtract {
         this.module = KeywordSearchIngestModule.getDefault();
         ingester = Server.getIngester();
 
-        Set<MediaType> mediaTypes = new Tika().getParser().getSupportedTypes(new ParseContext());
+        Set<MediaType> mediaTypes = getParser().getSupportedTypes();
         for (MediaType mt : mediaTypes) {
             TIKA_SUPPORTED_TYPES.add(mt.getType() + "/" + mt.getSubtype());
         }
@@ -91,6 +88,16 @@ public class AbstractFileTikaTextExtract implements AbstractFileExtract {
 
     }
 
+    /**
+     * Get the parser shared by the extractors, creating it on first use
+     */
+    private static synchronized ReusableTikaParser getParser() {
+        if (parser == null) {
+            parser = new ReusableTikaParser();
+        }
+        return parser;
+    }
+
     @Override
     public boolean setScripts(List<StringExtract.StringExtractUnicodeTable.SCRIPT> extractScripts) {
         return false;
@@ -128,23 +135,25 @@ public boolean index(AbstractFile sourceFile) throws Ingester.IngesterException
         boolean success = false;
         Reader reader = null;
         final InputStream stream = new ReadContentInputStream(sourceFile);
+        final ReusableTikaParser tikaParser = getParser();
+        boolean parserReusable = false;
+        char[] textChunkBuf = null;
         try {
             Metadata meta = new Metadata();
 
-            //Parse the file in a task
-            Tika tika = new Tika(); //new tika instance for every file, to workaround tika memory issues
-            ParseRequestTask parseTask = new ParseRequestTask(tika, stream, meta, sourceFile);
-            final Future<?> future = tikaParseExecutor.submit(parseTask);
+            //Parse the file in a task, with the reused parser
+            ParseRequestTask parseTask = new ParseRequestTask(tikaParser.getTika(), stream, meta, sourceFile);
+            final Future<?> future = tikaParser.submit(parseTask);
             try {
                 future.get(Ingester.getTimeout(sourceFile.getSize()), TimeUnit.SECONDS);
             } catch (TimeoutException te) {
-                tika = null;
+                //a hung parse may not stop, its thread and parser are then abandoned
+                future.cancel(true);
                 final String msg = "Exception: Tika parse timeout for content: " + sourceFile.getId() + ", " + sourceFile.getName();
                 KeywordSearch.getTikaLogger().log(Level.WARNING, msg, te);
                 logger.log(Level.WARNING, msg);
                 throw new IngesterException(msg);
             } catch (Exception ex) {
-                tika = null;
                 final String msg = "Exception: Unexpected exception from Tika parse task execution for file: " + sourceFile.getId() + ", " + sourceFile.getName();
                 KeywordSearch.getTikaLogger().log(Level.WARNING, msg, ex);
                 logger.log(Level.WARNING, msg);
@@ -159,6 +168,7 @@ public boolean index(AbstractFile sourceFile) throws Ingester.IngesterException
                 return false;
             }
 
+            textChunkBuf = TEXT_CHUNK_BUF_POOL.acquire();
 
             // break the results into chunks and index
             success = true;
@@ -166,12 +176,12 @@ public boolean index(AbstractFile sourceFile) throws Ingester.IngesterException
             long totalRead = 0;
             boolean eof = false;
             //we read max 1024 chars at time, this seems to max what this Reader would return
-            while (!eof && (readSize = reader.read(TEXT_CHUNK_BUF, 0, SINGLE_READ_CHARS)) != -1) {
+            while (!eof && (readSize = reader.read(textChunkBuf, 0, SINGLE_READ_CHARS)) != -1) {
                 totalRead += readSize;
 
                 //consume more bytes to fill entire chunk (leave EXTRA_CHARS to end the word)
                 while ((totalRead < MAX_EXTR_TEXT_CHARS - SINGLE_READ_CHARS - EXTRA_CHARS)
-                        && (readSize = reader.read(TEXT_CHUNK_BUF, (int) totalRead, SINGLE_READ_CHARS)) != -1) {
+                        && (readSize = reader.read(textChunkBuf, (int) totalRead, SINGLE_READ_CHARS)) != -1) {
                     totalRead += readSize;
                 }
                 if (readSize == -1) {
@@ -180,8 +190,8 @@ public boolean index(AbstractFile sourceFile) throws Ingester.IngesterException
                 } else {
                     //try to read char-by-char until whitespace to not break words
                     while ((totalRead < MAX_EXTR_TEXT_CHARS - 1)
-                            && !Character.isWhitespace(TEXT_CHUNK_BUF[(int) totalRead - 1])
-                            && (readSize = reader.read(TEXT_CHUNK_BUF, (int) totalRead, 1)) != -1) {
+                            && !Character.isWhitespace(textChunkBuf[(int) totalRead - 1])
+                            && (readSize = reader.read(textChunkBuf, (int) totalRead, 1)) != -1) {
                         totalRead += readSize;
                     }
                     if (readSize == -1) {
@@ -199,9 +209,9 @@ public boolean index(AbstractFile sourceFile) throws Ingester.IngesterException
                 //inject BOM here (saves byte buffer realloc later), will be converted to specific encoding BOM
                 //sb.append(UTF16BOM); disabled prepending of BOM
                 if (totalRead < MAX_EXTR_TEXT_CHARS) {
-                    sb.append(TEXT_CHUNK_BUF, 0, (int) totalRead);
+                    sb.append(textChunkBuf, 0, (int) totalRead);
                 } else {
-                    sb.append(TEXT_CHUNK_BUF);
+                    sb.append(textChunkBuf);
                 }
 
                 //reset for next chunk
@@ -241,6 +251,8 @@ public boolean index(AbstractFile sourceFile) throws Ingester.IngesterException
                 //not to delay commit if timer has gone off
                 module.checkRunCommitSearch();
             }
+            //parser completed the parse, can be used for the next file
+            parserReusable = true;
         } catch (IOException ex) {
             final String msg = "Exception: Unable to read Tika content stream from " + sourceFile.getId() + ": " + sourceFile.getName();
             KeywordSearch.getTikaLogger().log(Level.WARNING, msg, ex);
@@ -264,6 +276,8 @@ public boolean index(AbstractFile sourceFile) throws Ingester.IngesterException
             } catch (IOException ex) {
                 logger.log(Level.WARNING, "Unable to close content reader from " + sourceFile.getId(), ex);
             }
+            TEXT_CHUNK_BUF_POOL.release(textChunkBuf);
+            tikaParser.parseDone(parserReusable);
         }
 
         //after all chunks, ingest the parent file without content itself, and store numChunks
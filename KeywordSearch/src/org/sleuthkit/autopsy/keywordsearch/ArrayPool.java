@@ -0,0 +1,105 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.lang.reflect.Array;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe pool of fixed size arrays, used by the extraction and indexing
+ * code to reuse large byte and char buffers without sharing them between
+ * threads.
+ *
+ * A buffer is owned by the caller between acquire() and release(). When the
+ * pool is empty, a new buffer is allocated, and at most maxPooled released
+ * buffers are kept for reuse, the rest are left to the garbage collector.
+ *
+ * @param <T> array type of the buffers, e.g. byte[]
+ */
+class ArrayPool<T> {
+
+    private final Class<T> arrayType;
+    private final int bufferSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<T> pooled = new ConcurrentLinkedQueue<T>();
+    private final AtomicInteger numPooled = new AtomicInteger(0);
+
+    /**
+     * @param arrayType array type of the buffers, e.g. byte[].class
+     * @param bufferSize size of the buffers in elements
+     * @param maxPooled max. number of released buffers kept for reuse
+     */
+    ArrayPool(Class<T> arrayType, int bufferSize, int maxPooled) {
+        if (!arrayType.isArray()) {
+            throw new IllegalArgumentException("Not an array type: " + arrayType);
+        }
+        this.arrayType = arrayType;
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * Create a pool that keeps a buffer for each processor, enough for the
+     * ingest worker threads to not allocate buffers per file
+     *
+     * @param arrayType array type of the buffers, e.g. byte[].class
+     * @param bufferSize size of the buffers in elements
+     */
+    ArrayPool(Class<T> arrayType, int bufferSize) {
+        this(arrayType, bufferSize, Runtime.getRuntime().availableProcessors());
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Get a buffer for exclusive use by the caller, until released
+     *
+     * @return pooled buffer, or a newly allocated one if none is available.
+     * Contents of the buffer are undefined.
+     */
+    T acquire() {
+        final T buffer = pooled.poll();
+        if (buffer == null) {
+            return arrayType.cast(Array.newInstance(arrayType.getComponentType(), bufferSize));
+        }
+        numPooled.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Return a buffer acquired from this pool. The caller must not use the
+     * buffer after releasing it.
+     *
+     * @param buffer buffer to release, ignored if null or not of the pool's
+     * buffer size
+     */
+    void release(T buffer) {
+        if (buffer == null || Array.getLength(buffer) != bufferSize) {
+            return;
+        }
+        if (numPooled.incrementAndGet() > maxPooled) {
+            numPooled.decrementAndGet();
+            return;
+        }
+        pooled.offer(buffer);
+    }
+}
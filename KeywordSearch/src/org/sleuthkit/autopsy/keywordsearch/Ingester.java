@@ -23,28 +23,27 @@
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
-import org.apache.solr.client.solrj.SolrRequest.METHOD;
 import org.apache.solr.client.solrj.SolrServerException;
-import org.apache.solr.client.solrj.request.AbstractUpdateRequest;
-import org.apache.solr.client.solrj.request.ContentStreamUpdateRequest;
-import org.apache.solr.common.SolrException;
-import org.apache.solr.common.SolrException.ErrorCode;
 import org.apache.solr.common.util.ContentStream;
 import org.apache.solr.common.SolrInputDocument;
 import org.openide.util.Exceptions;
 import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.datamodel.ContentUtils;
-import org.sleuthkit.autopsy.keywordsearch.Server.SolrServerNoPortException;
 import org.sleuthkit.datamodel.AbstractContent;
 import org.sleuthkit.datamodel.AbstractFile;
 import org.sleuthkit.datamodel.Content;
@@ -66,15 +65,23 @@ public class Ingester {
 
     private static final Logger logger = Logger.getLogger(Ingester.class.getName());
     private boolean uncommitedIngests = false;
-    private final ExecutorService upRequestExecutor = Executors.newSingleThreadExecutor();
     private final Server solrServer = KeywordSearch.getServer();
     private final GetContentFieldsV getContentFieldsV = new GetContentFieldsV();
+    private final DocumentBatcher batcher = new DocumentBatcher();
+    //ids of source files whose documents failed to be added by the batcher, since last query
+    private final Set<Long> failedFileIds = Collections.synchronizedSet(new HashSet<Long>());
+    //commit generation set on documents being added, and generation of the last commit
+    //seeded from the clock, so that generations keep increasing across application restarts
+    private final Object generationLock = new Object();
+    private long currentGeneration = System.currentTimeMillis();
+    private volatile long committedGeneration = 0;
     private static Ingester instance;
    
     //for ingesting chunk as SolrInputDocument (non-content-streaming, by-pass tika)
     //TODO use a streaming way to add content to /update handler
     private final static int MAX_DOC_CHUNK_SIZE = 1024*1024;
-    private final byte[] docChunkContentBuf = new byte[MAX_DOC_CHUNK_SIZE];
+    //chunk read buffers, so that chunks can be ingested from multiple threads
+    private final ArrayPool<byte[]> docChunkContentBufPool = new ArrayPool<byte[]>(byte[].class, MAX_DOC_CHUNK_SIZE);
     private static final String docContentEncoding = "UTF-8";
 
 
@@ -88,6 +95,17 @@ public static synchronized Ingester getDefault() {
         return instance;
     }
 
+    /**
+     * Send the pending documents, wait until Solr has processed them, and
+     * stop the batch timer, when the case is closed and before its core is
+     * closed. The timer is started again by the next document added.
+     */
+    static synchronized void caseClosed() {
+        if (instance != null) {
+            instance.batcher.stop();
+        }
+    }
+
     @Override
     @SuppressWarnings("FinalizeDeclaration")
     protected void finalize() throws Throwable {
@@ -289,6 +307,9 @@ private void ingest(ContentStream cs, Map<String, String> fields, final long siz
         for (String key : fields.keySet()) {
             updateDoc.addField(key, fields.get(key));
         }
+        synchronized (generationLock) {
+            updateDoc.addField(Server.Schema.COMMIT_GEN.toString(), currentGeneration);
+        }
 
         //using size here, but we are no longer ingesting entire files
         //size is normally a chunk size, up to 1MB
@@ -297,29 +318,34 @@ private void ingest(ContentStream cs, Map<String, String> fields, final long siz
  
             InputStream is = null;
             int read = 0;
+            final byte[] docChunkContentBuf = docChunkContentBufPool.acquire();
             try {
-                is = cs.getStream();
-                read = is.read(docChunkContentBuf);
-            } catch (IOException ex) {
-                throw new IngesterException("Could not read content stream: " + cs.getName());
-            } finally {
                 try {
-                    is.close();
+                    is = cs.getStream();
+                    read = is.read(docChunkContentBuf);
                 } catch (IOException ex) {
-                    logger.log(Level.WARNING, "Could not close input stream after reading content, " + cs.getName(), ex);
+                    throw new IngesterException("Could not read content stream: " + cs.getName());
+                } finally {
+                    try {
+                        is.close();
+                    } catch (IOException ex) {
+                        logger.log(Level.WARNING, "Could not close input stream after reading content, " + cs.getName(), ex);
+                    }
                 }
-            }
 
-            if (read != 0) {
-                String s = "";
-                try {
-                    s = new String(docChunkContentBuf, 0, read, docContentEncoding);
-                } catch (UnsupportedEncodingException ex) {
-                    Exceptions.printStackTrace(ex);
+                if (read > 0) {
+                    String s = "";
+                    try {
+                        s = new String(docChunkContentBuf, 0, read, docContentEncoding);
+                    } catch (UnsupportedEncodingException ex) {
+                        Exceptions.printStackTrace(ex);
+                    }
+                    updateDoc.addField(Server.Schema.CONTENT.toString(), s);
+                } else {
+                    updateDoc.addField(Server.Schema.CONTENT.toString(), "");
                 }
-                updateDoc.addField(Server.Schema.CONTENT.toString(), s);
-            } else {
-                updateDoc.addField(Server.Schema.CONTENT.toString(), "");
+            } finally {
+                docChunkContentBufPool.release(docChunkContentBuf);
             }
         }
         else {
@@ -329,82 +355,14 @@ private void ingest(ContentStream cs, Map<String, String> fields, final long siz
         
 
         try {
-            //TODO consider timeout thread, or vary socket timeout based on size of indexed content
-            solrServer.addDocument(updateDoc);
+            //queue the document to be sent in a batch, blocks if too many batches are pending
+            batcher.add(updateDoc, size);
             uncommitedIngests = true;
-        } catch (KeywordSearchModuleException ex) {
-            throw new IngesterException("Error ingestint document: " + cs.getName(), ex);
-        }
-
-
-    }
-
-    /**
-     * Delegate method actually performing the indexing work for objects
-     * implementing ContentStream
-     *
-     * @param cs ContentStream to ingest
-     * @param fields content specific fields
-     * @param size size of the content - used to determine the Solr timeout, not
-     * used to populate meta-data
-     *
-     * @throws IngesterException if there was an error processing a specific
-     * content, but the Solr server is probably fine.
-     */
-    private void ingestExtract(ContentStream cs, Map<String, String> fields, final long size) throws IngesterException {
-        final ContentStreamUpdateRequest up = new ContentStreamUpdateRequest("/update/extract");
-        up.addContentStream(cs);
-        setFields(up, fields);
-        up.setAction(AbstractUpdateRequest.ACTION.COMMIT, true, true);
-
-        final String contentType = cs.getContentType();
-        if (contentType != null && !contentType.trim().equals("")) {
-            up.setParam("stream.contentType", contentType);
-        }
-
-        //logger.log(Level.INFO, "Ingesting " + fields.get("file_name"));
-        up.setParam("commit", "false");
-
-        final Future<?> f = upRequestExecutor.submit(new UpRequestTask(up));
-
-        try {
-            f.get(getTimeout(size), TimeUnit.SECONDS);
-        } catch (TimeoutException te) {
-            logger.log(Level.WARNING, "Solr timeout encountered, trying to restart Solr");
-            //restart may be needed to recover from some error conditions
-            hardSolrRestart();
-            throw new IngesterException("Solr index request time out for id: " + fields.get("id") + ", name: " + fields.get("file_name"));
-        } catch (Exception e) {
-            throw new IngesterException("Problem posting content to Solr, id: " + fields.get("id") + ", name: " + fields.get("file_name"), e);
-        }
-        uncommitedIngests = true;
-    }
-
-    /**
-     * attempt to restart Solr and recover from its internal error
-     */
-    private void hardSolrRestart() {
-        try {
-            solrServer.closeCore();
-        } catch (KeywordSearchModuleException ex) {
-            logger.log(Level.WARNING, "Cannot close core while restating", ex);
+        } catch (InterruptedException ex) {
+            throw new IngesterException("Interrupted while queueing document for indexing: " + cs.getName(), ex);
         }
 
-        solrServer.stop();
-
-        try {
-            solrServer.start();
-        } catch (KeywordSearchModuleException ex) {
-            logger.log(Level.WARNING, "Cannot start while restating", ex);
-        } catch (SolrServerNoPortException ex) {
-            logger.log(Level.WARNING, "Cannot start server with this port", ex);
-        }
 
-        try {
-            solrServer.openCore();
-        } catch (KeywordSearchModuleException ex) {
-            logger.log(Level.WARNING, "Cannot open core while restating", ex);
-        }
     }
 
     /**
@@ -429,52 +387,221 @@ static int getTimeout(long size) {
 
     }
 
-    private class UpRequestTask implements Runnable {
+    /**
+     * Accumulates documents and sends them to Solr asynchronously as
+     * multi-document update requests, instead of a request per chunk.
+     *
+     * A batch is sent when it reaches max. number of documents or bytes, or
+     * when it gets older than max. age. The number of batches in flight is
+     * bounded and add() blocks the ingest thread while the limit is reached.
+     * If a batch fails, its documents are resent one by one and failures are
+     * recorded per source file.
+     */
+    private class DocumentBatcher {
+
+        private static final int MAX_BATCH_DOCS = 64;
+        private static final long MAX_BATCH_BYTES = 8 * 1024 * 1024L;
+        private static final long MAX_BATCH_AGE_MS = 2000;
+        private static final int MAX_BATCHES_IN_FLIGHT = 2;
+        private List<SolrInputDocument> curBatch = new ArrayList<SolrInputDocument>();
+        private long curBatchBytes = 0;
+        private long curBatchStartTime = 0;
+        private final Semaphore batchesInFlight = new Semaphore(MAX_BATCHES_IN_FLIGHT);
+        private final ExecutorService submitExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("keyword-index-batch-sender"));
+        //sends batches older than max. age, while a case is open
+        private ScheduledExecutorService flushTimer = null;
+
+        private synchronized void startFlushTimer() {
+            if (flushTimer != null) {
+                return;
+            }
+            flushTimer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("keyword-index-batch-timer"));
+            flushTimer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        flushIfExpired();
+                    } catch (InterruptedException ex) {
+                        logger.log(Level.WARNING, "Interrupted while sending expired batch of documents", ex);
+                    }
+                }
+            }, MAX_BATCH_AGE_MS, MAX_BATCH_AGE_MS / 2, TimeUnit.MILLISECONDS);
+        }
 
-        ContentStreamUpdateRequest up;
+        /**
+         * Send the current batch, wait until all batches are processed by
+         * Solr, and stop the flush timer
+         */
+        synchronized void stop() {
+            try {
+                flush();
+            } catch (InterruptedException ex) {
+                logger.log(Level.WARNING, "Interrupted while sending pending documents", ex);
+            }
+            if (flushTimer != null) {
+                flushTimer.shutdownNow();
+                flushTimer = null;
+            }
+        }
 
-        UpRequestTask(ContentStreamUpdateRequest up) {
-            this.up = up;
+        /**
+         * Add document to the current batch, and send the batch if it is full
+         *
+         * @param doc document to add
+         * @param size approx. size of the document content in bytes
+         * @throws InterruptedException if interrupted while waiting for a
+         * pending batch to complete
+         */
+        synchronized void add(SolrInputDocument doc, long size) throws InterruptedException {
+            startFlushTimer();
+            if (curBatch.isEmpty()) {
+                curBatchStartTime = System.currentTimeMillis();
+            }
+            curBatch.add(doc);
+            curBatchBytes += size;
+            if (curBatch.size() >= MAX_BATCH_DOCS || curBatchBytes >= MAX_BATCH_BYTES) {
+                submitCurrentBatch();
+            }
         }
 
-        @Override
-        public void run() {
+        /**
+         * Send current batch and wait until all batches are processed by Solr
+         *
+         * @throws InterruptedException if interrupted while waiting
+         */
+        synchronized void flush() throws InterruptedException {
+            submitCurrentBatch();
+            batchesInFlight.acquire(MAX_BATCHES_IN_FLIGHT);
+            batchesInFlight.release(MAX_BATCHES_IN_FLIGHT);
+        }
+
+        private synchronized void flushIfExpired() throws InterruptedException {
+            if (!curBatch.isEmpty()
+                    && System.currentTimeMillis() - curBatchStartTime >= MAX_BATCH_AGE_MS) {
+                submitCurrentBatch();
+            }
+        }
+
+        private synchronized void submitCurrentBatch() throws InterruptedException {
+            if (curBatch.isEmpty()) {
+                return;
+            }
+            final List<SolrInputDocument> batch = curBatch;
+            curBatch = new ArrayList<SolrInputDocument>();
+            curBatchBytes = 0;
+
+            //back-pressure, wait if too many batches are still being processed
+            batchesInFlight.acquire();
+            submitExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        sendBatch(batch);
+                    } finally {
+                        batchesInFlight.release();
+                    }
+                }
+            });
+        }
+
+        private void sendBatch(List<SolrInputDocument> batch) {
             try {
-                up.setMethod(METHOD.POST);
-                solrServer.request(up);
-            } catch (NoOpenCoreException ex) {
-                throw new RuntimeException("No Solr core available, cannot index the content", ex);
-            } catch (IllegalStateException ex) {
-                // problems with content
-                throw new RuntimeException("Problem reading file.", ex);
-            } catch (SolrServerException ex) {
-                // If there's a problem talking to Solr, something is fundamentally
-                // wrong with ingest
-                throw new RuntimeException("Problem with Solr", ex);
-            } catch (SolrException ex) {
-                // Tika problems result in an unchecked SolrException
-                ErrorCode ec = ErrorCode.getErrorCode(ex.code());
-
-                // When Tika has problems with a document, it throws a server error
-                // but it's okay to continue with other documents
-                if (ec.equals(ErrorCode.SERVER_ERROR)) {
-                    throw new RuntimeException("Problem posting file contents to Solr. SolrException error code: " + ec, ex);
-                } else {
-                    // shouldn't get any other error codes
-                    throw ex;
+                solrServer.addDocuments(batch);
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Error adding batch of " + batch.size()
+                        + " documents to index, retrying documents one by one", ex);
+                for (SolrInputDocument doc : batch) {
+                    try {
+                        solrServer.addDocument(doc);
+                    } catch (Exception docEx) {
+                        final String docId = (String) doc.getFieldValue(Server.Schema.ID.toString());
+                        logger.log(Level.WARNING, "Error adding document to index, id: " + docId, docEx);
+                        failedFileIds.add(getSourceFileId(docId));
+                    }
                 }
             }
+        }
+    }
+
+    /**
+     * Makes named daemon threads, so the batcher threads do not keep the
+     * application running
+     */
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String name;
 
+        DaemonThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
         }
     }
 
+    /**
+     * Get id of the source file from a Solr document id (file or chunk id)
+     *
+     * @param docId Solr document id
+     * @return source file id
+     */
+    private static long getSourceFileId(String docId) {
+        final int sepIndex = docId.indexOf(Server.ID_CHUNK_SEP);
+        return Long.parseLong(sepIndex == -1 ? docId : docId.substring(0, sepIndex));
+    }
+
+    /**
+     * Get ids of files whose documents failed to be added to the index since
+     * the last call. Documents are sent asynchronously, so failures are
+     * not reported by the ingest() methods. Complete once commit() returns.
+     *
+     * @return set of source file ids with indexing errors
+     */
+    Set<Long> getFailedFileIds() {
+        synchronized (failedFileIds) {
+            final Set<Long> ret = new HashSet<Long>(failedFileIds);
+            failedFileIds.clear();
+            return ret;
+        }
+    }
+
+    /**
+     * Get the generation of the last successful commit. All documents with
+     * this or lower generation, added by this Ingester, are searchable.
+     *
+     * @return last committed generation, 0 if nothing was committed yet
+     */
+    long getCommittedGeneration() {
+        return committedGeneration;
+    }
+
     /**
      * Tells Solr to commit (necessary before ingested files will appear in
-     * searches)
+     * searches). Sends all pending document batches first.
+     *
+     * Documents added after this method is called get the next commit
+     * generation. Should not be called concurrently with ingest() calls
+     * from the same client, so that all documents of the committed
+     * generation are part of the commit.
      */
     void commit() {
+        final long commitGeneration;
+        synchronized (generationLock) {
+            commitGeneration = currentGeneration;
+            currentGeneration = Math.max(currentGeneration + 1, System.currentTimeMillis());
+        }
+        try {
+            batcher.flush();
+        } catch (InterruptedException ex) {
+            logger.log(Level.WARNING, "Interrupted while sending pending documents before commit", ex);
+        }
         try {
             solrServer.commit();
+            committedGeneration = commitGeneration;
             uncommitedIngests = false;
         } catch (NoOpenCoreException ex) {
             logger.log(Level.WARNING, "Error commiting index", ex);
@@ -483,18 +610,6 @@ void commit() {
         }
     }
 
-    /**
-     * Helper to set document fields
-     *
-     * @param up request with document
-     * @param fields map of field-names->values
-     */
-    private static void setFields(ContentStreamUpdateRequest up, Map<String, String> fields) {
-        for (Entry<String, String> field : fields.entrySet()) {
-            up.setParam("literal." + field.getKey(), field.getValue());
-        }
-    }
-
     /**
      * ContentStream to read() the data from a FsContent object
      */
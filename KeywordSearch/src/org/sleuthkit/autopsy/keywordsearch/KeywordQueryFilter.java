@@ -31,7 +31,8 @@ public class KeywordQueryFilter {
 
     public static enum FilterType {
 
-        FILE, CHUNK, DATA_SOURCE
+        FILE, CHUNK, DATA_SOURCE, 
+        COMMIT_GEN_SINCE ///< documents added in the index commit generation of the single id filter, or later
     };
     private Set<Long>idFilters;
     private FilterType filterType;
@@ -60,6 +61,14 @@ public String toString() {
         StringBuilder sb = new StringBuilder();
         String id = null;
         
+        if (filterType == FilterType.COMMIT_GEN_SINCE) {
+            //range filter on the commit generation of the documents
+            sb.append(Server.Schema.COMMIT_GEN.toString()).append(":[");
+            sb.append(Long.toString(idFilters.iterator().next()));
+            sb.append(" TO *]");
+            return sb.toString();
+        }
+        
         Iterator<Long>it = idFilters.iterator();
         for (int i = 0; it.hasNext(); ++i) {
             if (i > 0) {
@@ -129,6 +129,8 @@ public void propertyChange(PropertyChangeEvent evt) {
                     // a case was closed
                     try {
                         ResultWriter.stopAllWriters();
+                        Ingester.caseClosed();
+                        AbstractFileResolver.getDefault().clear();
                         Thread.sleep(2000);
                         server.closeCore();
                     } catch (Exception e) {
@@ -0,0 +1,351 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.apache.solr.client.solrj.SolrQuery;
+import org.apache.solr.client.solrj.SolrRequest.METHOD;
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.client.solrj.response.TermsResponse;
+import org.apache.solr.client.solrj.response.TermsResponse.Term;
+import org.sleuthkit.autopsy.coreutils.Logger;
+
+/**
+ * Searches for many keywords at once, used by the ingest searcher to run
+ * large keyword lists with a small number of Solr requests.
+ *
+ * Literal keywords are checked in groups. A single request with a facet query
+ * per keyword tells which keywords of the group have any hits in the filtered
+ * documents, and only those keywords are then queried for their hits.
+ *
+ * Regex keywords are enumerated in a single terms component request with all
+ * the regexes combined. The returned terms are matched back to the regexes
+ * and checked in groups, the same way as the literal keywords.
+ *
+ * Hits are fetched together with their snippets, so no snippet query is
+ * needed per hit.
+ */
+class KeywordSearchGroupedQuery {
+
+    private static final Logger logger = Logger.getLogger(KeywordSearchGroupedQuery.class.getName());
+    //max number of keywords / terms checked in a single request
+    private static final int GROUP_SIZE = 100;
+    //max number of terms per regex keyword, as when searching a regex alone
+    private static final int MAX_TERMS_RESULTS = 20000;
+    //max number of terms of a request combining several regexes
+    private static final int MAX_COMBINED_TERMS_RESULTS = 100000;
+    //corresponds to field in Solr schema, analyzed with white-space tokenizer only
+    private static final String TERMS_SEARCH_FIELD = Server.Schema.CONTENT_WS.toString();
+    private static final String TERMS_HANDLER = "/terms";
+    private static final int TERMS_TIMEOUT = 90 * 1000; //in ms
+    //a backreference in a combined regex would refer to a group of another regex
+    private static final Pattern BACKREFERENCE = Pattern.compile("\\\\[1-9]");
+    private final List<Keyword> keywords;
+    private final List<KeywordQueryFilter> filters = new ArrayList<KeywordQueryFilter>();
+
+    /**
+     * @param keywords literal and regex keywords to search for
+     */
+    KeywordSearchGroupedQuery(List<Keyword> keywords) {
+        this.keywords = keywords;
+    }
+
+    /**
+     * Add filter to narrow down the search. Multiple filters are ANDed.
+     *
+     * @param filter filter to add
+     */
+    void addFilter(KeywordQueryFilter filter) {
+        filters.add(filter);
+    }
+
+    /**
+     * Execute the search for all keywords
+     *
+     * @return map of keyword to its results (map of matching term to hits,
+     * with snippets), keywords without hits are not included
+     * @throws NoOpenCoreException if there is no open core, likely because the
+     * case was closed
+     * @throws CancellationException if the calling thread got interrupted
+     */
+    Map<Keyword, Map<String, List<ContentHit>>> performQuery() throws NoOpenCoreException {
+        final Map<Keyword, Map<String, List<ContentHit>>> results = new LinkedHashMap<Keyword, Map<String, List<ContentHit>>>();
+
+        //candidate query strings to check for hits, and the keywords they belong to
+        final Map<String, List<Keyword>> candidates = new LinkedHashMap<String, List<Keyword>>();
+        final List<Keyword> regexKeywords = new ArrayList<Keyword>();
+        for (Keyword keyword : keywords) {
+            if (keyword.isLiteral()) {
+                addCandidate(candidates, KeywordSearchUtil.escapeLuceneQuery(keyword.getQuery()), keyword);
+            } else {
+                regexKeywords.add(keyword);
+            }
+        }
+
+        //map of escaped term to the original term, for regex matches
+        final Map<String, String> regexTerms = new HashMap<String, String>();
+        for (Map.Entry<String, List<Keyword>> termMatches : queryRegexTerms(regexKeywords).entrySet()) {
+            final String term = termMatches.getKey();
+            final String termEscaped = KeywordSearchUtil.escapeLuceneQuery(term);
+            regexTerms.put(termEscaped, term);
+            for (Keyword keyword : termMatches.getValue()) {
+                addCandidate(candidates, termEscaped, keyword);
+            }
+        }
+
+        //check which candidates have any hits, a group at a time
+        final List<String> candidateQueries = new ArrayList<String>(candidates.keySet());
+        for (int start = 0; start < candidateQueries.size(); start += GROUP_SIZE) {
+            checkCancelled();
+            final List<String> group = candidateQueries.subList(start, Math.min(start + GROUP_SIZE, candidateQueries.size()));
+            for (String queryEscaped : queryCandidatesWithHits(group)) {
+                checkCancelled();
+
+                //get the hits, with snippets
+                final LuceneQuery hitsQuery = new LuceneQuery(queryEscaped);
+                for (KeywordQueryFilter filter : filters) {
+                    hitsQuery.addFilter(filter);
+                }
+                final List<ContentHit> hits = new ArrayList<ContentHit>();
+                hitsQuery.performQuery(true, new LuceneQuery.HitConsumer() {
+                    @Override
+                    public void consume(ContentHit hit) {
+                        hits.add(hit);
+                    }
+                });
+                if (hits.isEmpty()) {
+                    continue;
+                }
+
+                for (Keyword keyword : candidates.get(queryEscaped)) {
+                    Map<String, List<ContentHit>> keywordResults = results.get(keyword);
+                    if (keywordResults == null) {
+                        keywordResults = new LinkedHashMap<String, List<ContentHit>>();
+                        results.put(keyword, keywordResults);
+                    }
+                    //literals are reported by the keyword, regex matches by the term
+                    final String term = keyword.isLiteral() ? keyword.getQuery() : regexTerms.get(queryEscaped);
+                    keywordResults.put(term, hits);
+                }
+            }
+        }
+
+        return results;
+    }
+
+    private static void addCandidate(Map<String, List<Keyword>> candidates, String queryEscaped, Keyword keyword) {
+        List<Keyword> candidateKeywords = candidates.get(queryEscaped);
+        if (candidateKeywords == null) {
+            candidateKeywords = new ArrayList<Keyword>();
+            candidates.put(queryEscaped, candidateKeywords);
+        }
+        if (!candidateKeywords.contains(keyword)) {
+            candidateKeywords.add(keyword);
+        }
+    }
+
+    /**
+     * Check which of the (escaped) queries have any hits in the filtered
+     * documents, using a single request with a facet query per query string
+     *
+     * @param group queries to check
+     * @return queries with hits
+     * @throws NoOpenCoreException
+     */
+    private List<String> queryCandidatesWithHits(List<String> group) throws NoOpenCoreException {
+        final List<String> withHits = new ArrayList<String>();
+
+        final SolrQuery q = new SolrQuery();
+        q.setQuery("*:*");
+        q.setRows(0);
+        for (KeywordQueryFilter filter : filters) {
+            q.addFilterQuery(filter.toString());
+        }
+        q.setFacet(true);
+        final Map<String, String> facetQueries = new HashMap<String, String>();
+        for (String queryEscaped : group) {
+            //same query form as LuceneQuery uses to fetch the hits
+            final String facetQuery = KeywordSearchUtil.quoteQuery(queryEscaped);
+            facetQueries.put(facetQuery, queryEscaped);
+            q.addFacetQuery(facetQuery);
+        }
+
+        try {
+            final QueryResponse response = KeywordSearch.getServer().query(q, METHOD.POST);
+            final Map<String, Integer> counts = response.getFacetQuery();
+            if (counts == null) {
+                return withHits;
+            }
+            for (Map.Entry<String, Integer> count : counts.entrySet()) {
+                final String queryEscaped = facetQueries.get(count.getKey());
+                if (queryEscaped != null && count.getValue() > 0) {
+                    withHits.add(queryEscaped);
+                }
+            }
+        } catch (KeywordSearchModuleException ex) {
+            logger.log(Level.WARNING, "Error executing grouped keyword query, checking the "
+                    + group.size() + " keywords one by one", ex);
+            //let the hits queries find out
+            withHits.addAll(group);
+        }
+
+        return withHits;
+    }
+
+    /**
+     * Enumerate terms matching the regex keywords, combining the regexes into
+     * as few terms requests as possible
+     *
+     * @param regexKeywords regex keywords
+     * @return map of matching terms to the keywords they match
+     * @throws NoOpenCoreException
+     */
+    private Map<String, List<Keyword>> queryRegexTerms(List<Keyword> regexKeywords) throws NoOpenCoreException {
+        final Map<String, List<Keyword>> termMatches = new LinkedHashMap<String, List<Keyword>>();
+
+        final List<Keyword> combinable = new ArrayList<Keyword>();
+        final Map<Keyword, Pattern> patterns = new HashMap<Keyword, Pattern>();
+        for (Keyword keyword : regexKeywords) {
+            final String regex = keyword.getQuery();
+            try {
+                //terms component matches case insensitive regexes against whole terms
+                patterns.put(keyword, Pattern.compile(regex, Pattern.CASE_INSENSITIVE));
+            } catch (PatternSyntaxException ex) {
+                logger.log(Level.WARNING, "Skipping invalid regex keyword: " + regex, ex);
+                continue;
+            }
+            if (BACKREFERENCE.matcher(regex).find()) {
+                //needs its own request
+                addTermMatches(termMatches, matchTerms(queryTerms(regex, MAX_TERMS_RESULTS), patterns.get(keyword)), keyword);
+            } else {
+                combinable.add(keyword);
+            }
+        }
+
+        if (combinable.isEmpty()) {
+            return termMatches;
+        }
+
+        final StringBuilder combined = new StringBuilder();
+        for (Keyword keyword : combinable) {
+            if (combined.length() > 0) {
+                combined.append('|');
+            }
+            combined.append("(?:").append(keyword.getQuery()).append(')');
+        }
+
+        /* The terms are sorted by count, so the first MAX_TERMS_RESULTS terms
+         * of the combined list matching a regex are the terms a request of
+         * the regex alone returns. If the combined list got cut off before a
+         * regex got that many terms, the regex gets its own request, as some
+         * of its terms may be missing. */
+        final int combinedLimit = Math.min(MAX_TERMS_RESULTS * combinable.size(), MAX_COMBINED_TERMS_RESULTS);
+        final List<Term> terms = queryTerms(combined.toString(), combinedLimit);
+        final boolean truncated = terms != null && terms.size() >= combinedLimit;
+        for (Keyword keyword : combinable) {
+            final Pattern pattern = patterns.get(keyword);
+            List<String> matches = terms != null ? matchTerms(terms, pattern) : null;
+            if (matches == null || (truncated && matches.size() < MAX_TERMS_RESULTS)) {
+                //combined request failed or incomplete for this regex
+                matches = matchTerms(queryTerms(keyword.getQuery(), MAX_TERMS_RESULTS), pattern);
+            }
+            addTermMatches(termMatches, matches, keyword);
+        }
+
+        return termMatches;
+    }
+
+    /**
+     * Get the terms matching a regex keyword
+     *
+     * @param terms terms sorted by count, or null
+     * @param pattern pattern of the keyword
+     * @return up to MAX_TERMS_RESULTS matching terms, empty if terms is null
+     */
+    private static List<String> matchTerms(List<Term> terms, Pattern pattern) {
+        final List<String> matches = new ArrayList<String>();
+        if (terms == null) {
+            return matches;
+        }
+        for (Term term : terms) {
+            final String termStr = term.getTerm();
+            if (pattern.matcher(termStr).matches()) {
+                matches.add(termStr);
+                if (matches.size() >= MAX_TERMS_RESULTS) {
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static void addTermMatches(Map<String, List<Keyword>> termMatches, List<String> matches, Keyword keyword) {
+        for (String termStr : matches) {
+            List<Keyword> termKeywords = termMatches.get(termStr);
+            if (termKeywords == null) {
+                termKeywords = new ArrayList<Keyword>();
+                termMatches.put(termStr, termKeywords);
+            }
+            termKeywords.add(keyword);
+        }
+    }
+
+    /**
+     * Execute a terms component request
+     *
+     * @param regex regex to match the terms
+     * @param limit max. number of terms to return
+     * @return list of matching terms, null if the request failed
+     * @throws NoOpenCoreException
+     */
+    private List<Term> queryTerms(String regex, int limit) throws NoOpenCoreException {
+        checkCancelled();
+        final SolrQuery q = new SolrQuery();
+        q.setRequestHandler(TERMS_HANDLER);
+        q.setTerms(true);
+        q.setTermsLimit(limit);
+        q.setTermsRegexFlag("case_insensitive");
+        q.setTermsRegex(regex);
+        q.addTermsField(TERMS_SEARCH_FIELD);
+        q.setTimeAllowed(TERMS_TIMEOUT);
+
+        try {
+            final TermsResponse tr = KeywordSearch.getServer().queryTerms(q);
+            final List<Term> terms = tr.getTerms(TERMS_SEARCH_FIELD);
+            return terms != null ? terms : new ArrayList<Term>();
+        } catch (KeywordSearchModuleException ex) {
+            logger.log(Level.WARNING, "Error executing the regex terms query: " + regex, ex);
+            return null;
+        }
+    }
+
+    private static void checkCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Keyword search interrupted");
+        }
+    }
+}
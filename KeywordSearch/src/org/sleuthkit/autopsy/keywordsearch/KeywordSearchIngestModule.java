@@ -20,13 +20,12 @@
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.Long;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -38,7 +37,6 @@
 import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
 import javax.swing.Timer;
-import org.apache.tika.Tika;
 import org.netbeans.api.progress.aggregate.AggregateProgressFactory;
 import org.netbeans.api.progress.aggregate.AggregateProgressHandle;
 import org.netbeans.api.progress.aggregate.ProgressContributor;
@@ -61,7 +59,6 @@
 import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
 import org.sleuthkit.datamodel.BlackboardAttribute;
 import org.sleuthkit.datamodel.AbstractFile;
-import org.sleuthkit.datamodel.ReadContentInputStream;
 import org.sleuthkit.datamodel.SleuthkitCase;
 import org.sleuthkit.datamodel.TskCoreException;
 import org.sleuthkit.datamodel.TskData;
@@ -114,10 +111,13 @@ int getTime() {
     private Searcher currentSearcher;
     private Searcher finalSearcher;
     private volatile boolean searcherDone = true; //mark as done, until it's inited
-    private Map<Keyword, List<Long>> currentResults;
+    private Map<Keyword, Set<Long>> currentResults;
     //only search images from current ingest, not images previously ingested/indexed
     //accessed read-only by searcher thread
     private Set<Long> curDataSourceIds;
+    //index commit generation up to which the data has been searched, and keywords searched
+    private volatile long searchedGeneration = 0;
+    private volatile Set<Keyword> searchedKeywords = null;
     private static final ReentrantReadWriteLock rwLock = new ReentrantReadWriteLock(true); //use fairness policy
     private static final Lock searcherLock = rwLock.writeLock();
     private volatile int messageID = 0;
@@ -129,7 +129,6 @@ int getTime() {
     private static AbstractFileStringExtract stringExtractor;
     private boolean initialized = false;
     private KeywordSearchConfigurationPanel panel;
-    private Tika tikaFormatDetector;
     
 
     private enum IngestStatus {
@@ -296,6 +295,8 @@ private void cleanup() {
         ingestStatus.clear();
         currentResults.clear();
         curDataSourceIds.clear();
+        searchedGeneration = 0;
+        searchedKeywords = null;
         currentSearcher = null;
         //finalSearcher = null; //do not collect, might be finalizing
 
@@ -312,8 +313,6 @@ private void cleanup() {
         keywordLists.clear();
         keywordToList.clear();
 
-        tikaFormatDetector = null;
-
         initialized = false;
     }
 
@@ -345,8 +344,6 @@ public void init(IngestModuleInit initContext) {
 
         caseHandle = Case.getCurrentCase().getSleuthkitCase();
 
-        tikaFormatDetector = new Tika();
-
         ingester = Server.getIngester();
 
         final Server server = KeywordSearch.getServer();
@@ -404,7 +401,7 @@ public void init(IngestModuleInit initContext) {
         finalSearcherDone = false;
         searcherDone = true; //make sure to start the initial currentSearcher
         //keeps track of all results per run not to repeat reporting the same hits
-        currentResults = new HashMap<Keyword, List<Long>>();
+        currentResults = new HashMap<Keyword, Set<Long>>();
 
         curDataSourceIds = new HashSet<Long>();
 
@@ -489,6 +486,10 @@ private void commit() {
             logger.log(Level.INFO, "Commiting index");
             ingester.commit();
             logger.log(Level.INFO, "Index comitted");
+            //documents are sent to the index asynchronously, record files that failed
+            for (long fileId : ingester.getFailedFileIds()) {
+                ingestStatus.put(fileId, IngestStatus.SKIPPED_ERROR_INDEXING);
+            }
             //signal a potential change in number of text_ingested files
             indexChangeNotify();
         }
@@ -783,28 +784,8 @@ private void indexFile(AbstractFile aFile, boolean indexContent) {
                 return;
             }
 
-            //use Tika to detect the format
-            String detectedFormat = null;
-            InputStream is = null;
-            try {
-                is = new ReadContentInputStream(aFile);
-                detectedFormat = tikaFormatDetector.detect(is, aFile.getName());
-            } 
-            catch (Exception e) {
-                logger.log(Level.WARNING, "Could not detect format using tika for file: " + aFile, e);
-            } 
-            finally {
-                if (is != null) {
-                    try {
-                        is.close();
-                    } catch (IOException ex) {
-                        logger.log(Level.WARNING, "Could not close stream after detecting format using tika for file: "
-                                + aFile, ex);
-                    }
-                }
-            }
-            
-            // @@@ Add file type signature to blackboard here
+            //the type detected by the pipeline with TikaFileTypeDetector
+            String detectedFormat = services.getFileType(aFile);
             
             //logger.log(Level.INFO, "Detected format: " + aFile.getName() + " " + detectedFormat);
 
@@ -935,6 +916,33 @@ public boolean cancel() {
 
                 //updateKeywords();
 
+                //search for all keywords at once, restricted to currently ingested data sources
+                //and to data committed after the last completed search
+                final KeywordSearchGroupedQuery groupedQuery = new KeywordSearchGroupedQuery(keywords);
+                //set up a filter with 1 or more image ids OR'ed
+                final KeywordQueryFilter dataSourceFilter = new KeywordQueryFilter(KeywordQueryFilter.FilterType.DATA_SOURCE, curDataSourceIds);
+                groupedQuery.addFilter(dataSourceFilter);
+                final long searchedGen = getSearchedGeneration(keywords);
+                if (searchedGen > 0) {
+                    groupedQuery.addFilter(new KeywordQueryFilter(KeywordQueryFilter.FilterType.COMMIT_GEN_SINCE, searchedGen + 1));
+                }
+                //data committed up to now will be covered by this search
+                final long searchGeneration = ingester.getCommittedGeneration();
+
+                Map<Keyword, Map<String, List<ContentHit>>> groupedResults = null;
+                try {
+                    groupedResults = groupedQuery.performQuery();
+                } catch (NoOpenCoreException ex) {
+                    logger.log(Level.WARNING, "Error performing keyword queries", ex);
+                    //no reason to continue if recovery failed
+                    //or wait for recovery to kick in and run again later
+                    //likely case has closed and threads are being interrupted
+                    return null;
+                } catch (CancellationException e) {
+                    logger.log(Level.INFO, "Cancel detected, bailing during keyword queries");
+                    return null;
+                }
+
                 for (Keyword keywordQuery : keywords) {
                     if (this.isCancelled()) {
                         logger.log(Level.INFO, "Cancel detected, bailing before new keyword processed: " + keywordQuery.getQuery());
@@ -952,6 +960,7 @@ public boolean cancel() {
                     }
 
 
+                    //query used to write the results
                     KeywordSearchQuery del = null;
 
                     boolean isRegex = !keywordQuery.isLiteral();
@@ -962,27 +971,9 @@ public boolean cancel() {
                         del = new TermComponentQuery(keywordQuery);
                     }
 
-                    //limit search to currently ingested data sources
-                    //set up a filter with 1 or more image ids OR'ed
-                    final KeywordQueryFilter dataSourceFilter = new KeywordQueryFilter(KeywordQueryFilter.FilterType.DATA_SOURCE, curDataSourceIds);
-                    del.addFilter(dataSourceFilter);
-
-                    Map<String, List<ContentHit>> queryResult = null;
-
-                    try {
-                        queryResult = del.performQuery();
-                    } catch (NoOpenCoreException ex) {
-                        logger.log(Level.WARNING, "Error performing query: " + keywordQuery.getQuery(), ex);
-                        //no reason to continue with next query if recovery failed
-                        //or wait for recovery to kick in and run again later
-                        //likely case has closed and threads are being interrupted
-                        return null;
-                    } catch (CancellationException e) {
-                        logger.log(Level.INFO, "Cancel detected, bailing during keyword query: " + keywordQuery.getQuery());
-                        return null;
-                    } catch (Exception e) {
-                        logger.log(Level.WARNING, "Error performing query: " + keywordQuery.getQuery(), e);
-                        continue;
+                    Map<String, List<ContentHit>> queryResult = groupedResults.get(keywordQuery);
+                    if (queryResult == null) {
+                        queryResult = new HashMap<String, List<ContentHit>>();
                     }
 
                     //calculate new results but substracting results already obtained in this ingest
@@ -1014,19 +1005,20 @@ public boolean cancel() {
                             }
 
                             List<ContentHit> contentHitsAll = newResults.get(hitTerm);
-                            Map<AbstractFile, Integer> contentHitsFlattened = ContentHit.flattenResults(contentHitsAll);
+                            //first hit per file, snippets were fetched with the hits
+                            Map<AbstractFile, ContentHit> contentHitsFlattened = new LinkedHashMap<AbstractFile, ContentHit>();
+                            for (ContentHit hit : contentHitsAll) {
+                                if (!contentHitsFlattened.containsKey(hit.getContent())) {
+                                    contentHitsFlattened.put(hit.getContent(), hit);
+                                }
+                            }
                             for (final AbstractFile hitFile : contentHitsFlattened.keySet()) {
-                                String snippet = null;
-                                final String snippetQuery = KeywordSearchUtil.escapeLuceneQuery(hitTerm.getQuery());
-                                int chunkId = contentHitsFlattened.get(hitFile);
-                                try {
-                                    snippet = LuceneQuery.querySnippet(snippetQuery, hitFile.getId(), chunkId, isRegex, true);
-                                } catch (NoOpenCoreException e) {
-                                    logger.log(Level.WARNING, "Error querying snippet: " + snippetQuery, e);
-                                    //no reason to continue
-                                    return null;
-                                } catch (Exception e) {
-                                    logger.log(Level.WARNING, "Error querying snippet: " + snippetQuery, e);
+                                final String snippet = contentHitsFlattened.get(hitFile).getSnippet();
+
+                                if (!list.getIngestMessages()) {
+                                    //no inbox message needs the artifact, let the buffer write it in a batch and fire the event
+                                    services.addArtifact(MODULE_NAME, ARTIFACT_TYPE.TSK_KEYWORD_HIT, hitFile,
+                                            del.getHitAttributes(hitTerm.getQuery(), snippet, listName));
                                     continue;
                                 }
 
@@ -1147,6 +1139,10 @@ public boolean cancel() {
 
                 } //for each keyword
 
+                //next search only needs to look at data committed after this search started
+                searchedGeneration = searchGeneration;
+                searchedKeywords = new HashSet<Keyword>(keywords);
+
             } //end try block
             catch (Exception ex) {
                 logger.log(Level.WARNING, "searcher exception occurred", ex);
@@ -1163,6 +1159,20 @@ public boolean cancel() {
             return null;
         }
 
+        /**
+         * Get the index commit generation up to which data has been searched
+         * by the last completed search, unless keywords were added since.
+         *
+         * @param keywords keywords to be searched
+         * @return searched generation, or 0 if all data needs to be searched
+         */
+        private long getSearchedGeneration(List<Keyword> keywords) {
+            if (searchedKeywords == null || !searchedKeywords.containsAll(keywords)) {
+                return 0;
+            }
+            return searchedGeneration;
+        }
+
         /**
          * Sync-up the updated keywords from the currently used lists in the XML
          */
@@ -1229,30 +1239,22 @@ private Map<Keyword, List<ContentHit>> filterResults(Map<String, List<ContentHit
             for (String termResult : queryResult.keySet()) {
                 List<ContentHit> queryTermResults = queryResult.get(termResult);
 
-                //translate to list of IDs that we keep track of
-                List<Long> queryTermResultsIDs = new ArrayList<Long>();
-                for (ContentHit ch : queryTermResults) {
-                    queryTermResultsIDs.add(ch.getId());
-                }
-
                 Keyword termResultK = new Keyword(termResult, !isRegex);
-                List<Long> curTermResults = currentResults.get(termResultK);
+                Set<Long> curTermResults = currentResults.get(termResultK);
                 if (curTermResults == null) {
-                    currentResults.put(termResultK, queryTermResultsIDs);
-                    newResults.put(termResultK, queryTermResults);
-                } else {
-                    //some AbstractFile hits already exist for this keyword
-                    for (ContentHit res : queryTermResults) {
-                        if (!curTermResults.contains(res.getId())) {
-                            //add to new results
-                            List<ContentHit> newResultsFs = newResults.get(termResultK);
-                            if (newResultsFs == null) {
-                                newResultsFs = new ArrayList<ContentHit>();
-                                newResults.put(termResultK, newResultsFs);
-                            }
-                            newResultsFs.add(res);
-                            curTermResults.add(res.getId());
+                    curTermResults = new HashSet<Long>();
+                    currentResults.put(termResultK, curTermResults);
+                }
+                //keep only AbstractFile hits that do not already exist for this keyword
+                for (ContentHit res : queryTermResults) {
+                    if (curTermResults.add(res.getId())) {
+                        //add to new results
+                        List<ContentHit> newResultsFs = newResults.get(termResultK);
+                        if (newResultsFs == null) {
+                            newResultsFs = new ArrayList<ContentHit>();
+                            newResults.put(termResultK, newResultsFs);
                         }
+                        newResultsFs.add(res);
                     }
                 }
             }
@@ -23,6 +23,7 @@
 import java.util.Map;
 import org.apache.solr.client.solrj.response.TermsResponse.Term;
 import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.BlackboardAttribute;
 
 /**
  * Interface for a search query.  Implemented by various
@@ -107,6 +108,16 @@ public interface KeywordSearchQuery {
      * @return collection of results (with cached bb artifacts/attributes) created and written
      */
     public KeywordWriteResult writeToBlackBoard(String termHit, AbstractFile newFsHit, String snippet, String listName);
+    
+    /**
+     * get the attributes of the keyword hit artifact for a single term hit,
+     * without writing anything, e.g. to post the artifact with IngestServices.addArtifact()
+     * @param termHit term hit
+     * @param snippet snippet preview with hit context, or null if there is no snippet
+     * @param listName listname
+     * @return attributes of the keyword hit artifact
+     */
+    public Collection<BlackboardAttribute> getHitAttributes(String termHit, String snippet, String listName);
        
 }
 
@@ -18,14 +18,13 @@
  */
 package org.sleuthkit.autopsy.keywordsearch;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
 import java.util.logging.Level;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.apache.solr.client.solrj.SolrQuery;
@@ -132,13 +131,42 @@ public Collection<Term> getTerms() {
     @Override
     public Map<String, List<ContentHit>> performQuery() throws NoOpenCoreException {
         Map<String, List<ContentHit>> results = new HashMap<String, List<ContentHit>>();
+        final List<ContentHit> matches = new ArrayList<ContentHit>();
+        performQuery(KeywordSearchSettings.getShowSnippets(), new HitConsumer() {
+            @Override
+            public void consume(ContentHit hit) {
+                matches.add(hit);
+            }
+        });
         //in case of single term literal query there is only 1 term
-        boolean showSnippets = KeywordSearchSettings.getShowSnippets();
-        results.put(keywordString, performLuceneQuery(showSnippets));
+        results.put(keywordString, matches);
 
         return results;
     }
 
+    /**
+     * Consumer of the hits of a query, fed the hits a page at a time, as the
+     * results are fetched
+     */
+    interface HitConsumer {
+
+        void consume(ContentHit hit);
+    }
+
+    /**
+     * Perform the query, passing the hits to the consumer as they are fetched,
+     * rather than collecting all of them first. The snippets of the hits are
+     * fetched in the same request if requested, regardless of the show
+     * snippets setting.
+     *
+     * @param snippets true if hits should have snippets set
+     * @param consumer consumer of the hits, a hit per file
+     * @throws NoOpenCoreException
+     */
+    void performQuery(boolean snippets, HitConsumer consumer) throws NoOpenCoreException {
+        performLuceneQuery(snippets, consumer);
+    }
+
 
     @Override
     public boolean validate() {
@@ -147,10 +175,7 @@ public boolean validate() {
 
     @Override
     public KeywordWriteResult writeToBlackBoard(String termHit, AbstractFile newFsHit, String snippet, String listName) {
-        final String MODULE_NAME = KeywordSearchIngestModule.MODULE_NAME;
-
         KeywordWriteResult writeResult = null;
-        Collection<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
         BlackboardArtifact bba = null;
         try {
             bba = newFsHit.newArtifact(ARTIFACT_TYPE.TSK_KEYWORD_HIT);
@@ -160,6 +185,22 @@ public KeywordWriteResult writeToBlackBoard(String termHit, AbstractFile newFsHi
             return null;
         }
 
+        Collection<BlackboardAttribute> attributes = getHitAttributes(termHit, snippet, listName);
+        try {
+            bba.addAttributes(attributes); //write out to bb
+            writeResult.add(attributes);
+            return writeResult;
+        } catch (TskException e) {
+            logger.log(Level.WARNING, "Error adding bb attributes to artifact", e);
+        }
+        return null;
+    }
+
+    @Override
+    public Collection<BlackboardAttribute> getHitAttributes(String termHit, String snippet, String listName) {
+        final String MODULE_NAME = KeywordSearchIngestModule.MODULE_NAME;
+
+        Collection<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
         if (snippet != null) {
             attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_KEYWORD_PREVIEW.getTypeID(), MODULE_NAME, snippet));
         }
@@ -180,58 +221,81 @@ public KeywordWriteResult writeToBlackBoard(String termHit, AbstractFile newFsHi
                 attributes.add(new BlackboardAttribute(selType.getTypeID(), MODULE_NAME, termHit));
             }
         }
-
-        try {
-            bba.addAttributes(attributes); //write out to bb
-            writeResult.add(attributes);
-            return writeResult;
-        } catch (TskException e) {
-            logger.log(Level.WARNING, "Error adding bb attributes to artifact", e);
-        }
-        return null;
+        return attributes;
     }
 
     
     /**
-     * Perform the query and return result
-     * @return list of ContentHit objects
+     * Perform the query, a page of MAX_RESULTS documents at a time.
+     *
+     * Results are sorted by document id and each page starts after the last
+     * document id of the previous page, so every page costs the same, rather
+     * than Solr collecting and skipping all the earlier rows as with a start
+     * offset. Only the first hit chunk of a file is passed to the consumer.
+     *
+     * @param snippets true if hits should have snippets set
+     * @param consumer consumer of the hits, a hit per file
      * @throws NoOpenCoreException
      */
-    private List<ContentHit> performLuceneQuery(boolean snippets) throws NoOpenCoreException {
-
-        List<ContentHit> matches = new ArrayList<>();
+    private void performLuceneQuery(boolean snippets, HitConsumer consumer) throws NoOpenCoreException {
         boolean allMatchesFetched = false;
         final Server solrServer = KeywordSearch.getServer();
         
         SolrQuery q = createAndConfigureSolrQuery(snippets);
+        final String idField = Server.Schema.ID.toString();
+        q.setSortField(idField, SolrQuery.ORDER.asc);
+        String afterFilter = null;
+        final FileHitFilter fileHitFilter = new FileHitFilter();
 
-        for (int start = 0; !allMatchesFetched; start = start + MAX_RESULTS) {
-            q.setStart(start);
-
+        while (!allMatchesFetched) {
             try {
                 QueryResponse response = solrServer.query(q, METHOD.POST);
                 SolrDocumentList resultList = response.getResults();
                 Map<String, Map<String, List<String>>> highlightResponse = response.getHighlighting();
-                Set<SolrDocument> solrDocumentsWithMatches = filterDuplicateSolrDocuments(resultList);
                 
-                allMatchesFetched = start + MAX_RESULTS >= resultList.getNumFound();
+                allMatchesFetched = resultList.size() < MAX_RESULTS;
+                if (resultList.isEmpty()) {
+                    return;
+                }
+
+                final List<SolrDocument> solrDocumentsWithMatches = fileHitFilter.getFirstFileDocuments(resultList);
+
+                //next page starts after the last document of this one, the
+                //filter is not cached as it is only used once
+                if (afterFilter != null) {
+                    q.removeFilterQuery(afterFilter);
+                }
+                final String lastDocId = resultList.get(resultList.size() - 1).getFieldValue(idField).toString();
+                afterFilter = "{!cache=false}" + idField + ":{\"" + lastDocId + "\" TO *}";
+                q.addFilterQuery(afterFilter);
                 
                 SleuthkitCase sleuthkitCase;
                 try {
                     sleuthkitCase = Case.getCurrentCase().getSleuthkitCase();
                 } catch (IllegalStateException ex) {
                     //no case open, must be just closed
-                    return matches;
+                    return;
                 }
 
+                //resolve the files of the whole page at once
+                final List<Long> fileIds = new ArrayList<>();
                 for (SolrDocument resultDoc : solrDocumentsWithMatches) {
-                    ContentHit contentHit;
-                    try {
-                        contentHit = createContentHitFromQueryResults(resultDoc, highlightResponse, snippets, sleuthkitCase);
-                    } catch (TskException ex) {
-                        return matches;
+                    fileIds.add(getFileId(resultDoc));
+                }
+                final Map<Long, AbstractFile> files;
+                try {
+                    files = AbstractFileResolver.getDefault().getFiles(sleuthkitCase, fileIds);
+                } catch (TskException ex) {
+                    logger.log(Level.WARNING, "Could not get the AbstractFiles for keyword hits, ", ex);
+                    //something wrong with case/db
+                    return;
+                }
+
+                for (SolrDocument resultDoc : solrDocumentsWithMatches) {
+                    ContentHit contentHit = createContentHitFromQueryResults(resultDoc, highlightResponse, snippets, files);
+                    if (contentHit != null) {
+                        consumer.consume(contentHit);
                     }
-                    matches.add(contentHit);
                 }
                 
             } catch (NoOpenCoreException ex) {
@@ -239,10 +303,60 @@ private List<ContentHit> performLuceneQuery(boolean snippets) throws NoOpenCoreE
                 throw ex;
             } catch (KeywordSearchModuleException ex) {
                 logger.log(Level.WARNING, "Error executing Lucene Solr Query: " + keywordString, ex);
+                return;
+            }
+
+        }
+    }
+
+    /**
+     * Keeps the first result document of each file, of the pages of results
+     * sorted by document id.
+     *
+     * The ids sort as strings, so the chunks of a file are not necessarily
+     * next to each other, e.g. 1230_1 sorts between 123 and 123_1. But the
+     * separator sorts after the digits, so all the documents of file 123 are
+     * among the ids starting with 123, and once an id does not start with 123
+     * no more documents of the file follow. Only the files whose ids are
+     * prefixes of the current id are remembered, a file id and the shorter
+     * file ids that are its prefixes, rather than all the files seen.
+     */
+    static class FileHitFilter {
+
+        //file ids that are prefixes of the last document id, shortest first
+        private final Deque<String> openFileIds = new ArrayDeque<>();
+
+        /**
+         * Get the documents of a page of results that are the first hit of
+         * their file, i.e. of files not seen in this page or the earlier ones
+         *
+         * @param resultList next page of result documents, sorted by id
+         * @return documents of the files first seen in this page
+         */
+        List<SolrDocument> getFirstFileDocuments(List<SolrDocument> resultList) {
+            final List<SolrDocument> firstDocuments = new ArrayList<>();
+            for (SolrDocument resultDoc : resultList) {
+                final String resultID = resultDoc.getFieldValue(Server.Schema.ID.toString()).toString();
+                final int sepIndex = resultID.indexOf(Server.ID_CHUNK_SEP);
+                final String fileId = sepIndex != -1 ? resultID.substring(0, sepIndex) : resultID;
+                //files past their last possible document
+                while (!openFileIds.isEmpty() && !resultID.startsWith(openFileIds.peekLast())) {
+                    openFileIds.removeLast();
+                }
+                if (!fileId.equals(openFileIds.peekLast())) {
+                    openFileIds.addLast(fileId);
+                    firstDocuments.add(resultDoc);
+                }
             }
+            return firstDocuments;
+        }
 
+        /**
+         * @return number of files remembered
+         */
+        int getNumOpenFiles() {
+            return openFileIds.size();
         }
-        return matches;
     }
     
     private SolrQuery createAndConfigureSolrQuery(boolean snippets) {
@@ -294,13 +408,23 @@ private SolrQuery createAndConfigureSolrQuery(boolean snippets) {
         return q;
     }
 
-    private Set<SolrDocument> filterDuplicateSolrDocuments(SolrDocumentList resultList) {
-        Set<SolrDocument> solrDocumentsWithMatches = new TreeSet<>(new SolrDocumentComparator());
-        solrDocumentsWithMatches.addAll(resultList);
-        return solrDocumentsWithMatches;
+    /**
+     * Get the id of the file of a result document, the document id is the
+     * file id, or the file id and chunk id of a file chunk
+     */
+    private static long getFileId(SolrDocument resultDoc) {
+        final String resultID = resultDoc.getFieldValue(Server.Schema.ID.toString()).toString();
+        final int sepIndex = resultID.indexOf(Server.ID_CHUNK_SEP);
+        return Long.parseLong(sepIndex != -1 ? resultID.substring(0, sepIndex) : resultID);
     }
 
-    private ContentHit createContentHitFromQueryResults(SolrDocument resultDoc, Map<String, Map<String, List<String>>> highlightResponse, boolean snippets, SleuthkitCase sc) throws TskException {
+    /**
+     * Create a hit for a result document
+     *
+     * @param files resolved files of the result documents, by file id
+     * @return the hit, or null if the file of the document was not found
+     */
+    private ContentHit createContentHitFromQueryResults(SolrDocument resultDoc, Map<String, Map<String, List<String>>> highlightResponse, boolean snippets, Map<Long, AbstractFile> files) {
         ContentHit chit;
         final String resultID = resultDoc.getFieldValue(Server.Schema.ID.toString()).toString();
         final int sepIndex = resultID.indexOf(Server.ID_CHUNK_SEP);
@@ -312,38 +436,23 @@ private ContentHit createContentHitFromQueryResults(SolrDocument resultDoc, Map<
                 snippet = EscapeUtil.unEscapeHtml(snippetList.get(0)).trim();
             }
         }
+
+        final long fileID = getFileId(resultDoc);
+        final AbstractFile resultAbstractFile = files.get(fileID);
+        if (resultAbstractFile == null) {
+            logger.log(Level.WARNING, "Could not get the AbstractFile for keyword hit, file id: " + fileID);
+            return null;
+        }
+
         if (sepIndex != -1) {
             //file chunk result
-            final long fileID = Long.parseLong(resultID.substring(0, sepIndex));
             final int chunkId = Integer.parseInt(resultID.substring(sepIndex + 1));
-            //logger.log(Level.INFO, "file id: " + fileID + ", chunkID: " + chunkId);
-
-            try {
-                AbstractFile resultAbstractFile = sc.getAbstractFileById(fileID);
-                chit = new ContentHit(resultAbstractFile, chunkId);
-                if (snippet.isEmpty() == false) {
-                    chit.setSnippet(snippet);
-                }
-            } catch (TskException ex) {
-                logger.log(Level.WARNING, "Could not get the AbstractFile for keyword hit, ", ex);
-                //something wrong with case/db
-                throw ex;
-            }
-
+            chit = new ContentHit(resultAbstractFile, chunkId);
         } else {
-            final long fileID = Long.parseLong(resultID);
-
-            try {
-                AbstractFile resultAbstractFile = sc.getAbstractFileById(fileID);
-                chit = new ContentHit(resultAbstractFile);
-                if (snippet.isEmpty() == false) {
-                    chit.setSnippet(snippet);
-                }
-            } catch (TskException ex) {
-                logger.log(Level.WARNING, "Could not get the AbstractFile for keyword hit, ", ex);
-                //something wrong with case/db
-                throw ex;
-            }
+            chit = new ContentHit(resultAbstractFile);
+        }
+        if (snippet.isEmpty() == false) {
+            chit.setSnippet(snippet);
         }
         return chit;
     }
@@ -457,28 +566,4 @@ public static String querySnippet(String query, long contentID, int chunkID, boo
             return "";
         }
     }
-    
-    /**
-     * Compares SolrDocuments based on their ID's. Two SolrDocuments with
-     * different chunk numbers are considered equal.
-     */
-    private class SolrDocumentComparator implements Comparator<SolrDocument> {
-        @Override
-        public int compare(SolrDocument left, SolrDocument right) {
-            String idName = Server.Schema.ID.toString();
-            String leftID = left.getFieldValue(idName).toString();
-            int index = leftID.indexOf(Server.ID_CHUNK_SEP);
-            if (index != -1) {
-                leftID = leftID.substring(0, index);
-            }
-
-            String rightID = right.getFieldValue(idName).toString();
-            index = rightID.indexOf(Server.ID_CHUNK_SEP);
-            if (index != -1) {
-                rightID = rightID.substring(0, index);
-            }
-
-            return leftID.compareTo(rightID);
-        }
-    }
 }
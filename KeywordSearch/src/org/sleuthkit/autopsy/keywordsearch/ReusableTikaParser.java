@@ -0,0 +1,112 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.tika.Tika;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.ParseContext;
+
+/**
+ * Initialized Tika instance reused across files by the Tika text extractor,
+ * and the threads that run the parses.
+ *
+ * Creating a Tika instance loads the configuration and all the parsers, which
+ * is too slow to do for every file. The instance is reused, but replaced
+ * after MAX_PARSES_PER_PARSER parses, as parsers can hold on to memory across
+ * parses, and replaced right away after a parse that failed or timed out.
+ * The replacement is created when the parser is next used.
+ *
+ * The keyword search module indexes one file at a time, so there is one
+ * parser, used by one parse at a time. Not thread-safe.
+ *
+ * Parses run on threads created as needed. A parse that hangs can not be
+ * stopped: its thread is abandoned after the timeout, along with the parser,
+ * and a new thread runs the next parse. Idle threads are ended after a while.
+ */
+class ReusableTikaParser {
+
+    private static final int MAX_PARSES_PER_PARSER = 1000;
+    private final ExecutorService parseExecutor;
+    private final Set<MediaType> supportedTypes;
+    private Tika tika = null;
+    private int numParses = 0;
+
+    ReusableTikaParser() {
+        supportedTypes = getTika().getParser().getSupportedTypes(new ParseContext());
+        parseExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger(0);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "tika-parse-worker-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * @return media types supported by the parser
+     */
+    Set<MediaType> getSupportedTypes() {
+        return supportedTypes;
+    }
+
+    /**
+     * Get the Tika instance for the next parse, created if it was replaced
+     *
+     * @return the Tika instance, to pass to parseDone() after the parse
+     */
+    Tika getTika() {
+        if (tika == null) {
+            tika = new Tika();
+            numParses = 0;
+        }
+        return tika;
+    }
+
+    /**
+     * Record the end of a parse, replacing the Tika instance if needed
+     *
+     * @param reusable false if the parse failed or timed out, to replace the
+     * Tika instance with a new one
+     */
+    void parseDone(boolean reusable) {
+        if (!reusable || ++numParses >= MAX_PARSES_PER_PARSER) {
+            tika = null;
+        }
+    }
+
+    /**
+     * Run a parse task on a parse thread, a new one if the others are busy
+     * with hung parses
+     *
+     * @param task task to run
+     * @return future of the task, to wait for it with a timeout
+     */
+    Future<?> submit(Runnable task) {
+        return parseExecutor.submit(task);
+    }
+}
@@ -38,6 +38,7 @@
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.logging.Level;
@@ -60,7 +61,6 @@
 import org.sleuthkit.autopsy.coreutils.Version;
 import org.sleuthkit.datamodel.Content;
 import org.apache.solr.common.SolrInputDocument;
-import org.apache.solr.client.solrj.impl.XMLResponseParser;
 
 /**
  * Handles for keeping track of a Solr server and its cores
@@ -133,6 +133,12 @@ public String toString() {
                 return "num_chunks";
             }
         },
+        COMMIT_GEN {
+            @Override
+            public String toString() {
+                return "commit_gen";
+            }
+        },
     };
     public static final String HL_ANALYZE_CHARS_UNLIMITED = "500000"; //max 1MB in a chunk. use -1 for unlimited, but -1 option may not be supported (not documented)
     //max content size we can send to Solr
@@ -603,6 +609,16 @@ void addDocument(SolrInputDocument doc) throws KeywordSearchModuleException {
         currentCore.addDocument(doc);
     }
 
+    /**
+     * Add multiple documents to the index in a single update request
+     *
+     * @param docs documents to add
+     * @throws KeywordSearchModuleException if the update request failed
+     */
+    void addDocuments(Collection<SolrInputDocument> docs) throws KeywordSearchModuleException {
+        currentCore.addDocuments(docs);
+    }
+
     /**
      * Get index dir location for the case
      *
@@ -916,7 +932,8 @@ private Core(String name) {
             // Server side must support gzip or deflate for this to have any effect.
             solrCore.setAllowCompression(true);
             solrCore.setMaxRetries(1); // defaults to 0.  > 1 not recommended.
-            solrCore.setParser(new XMLResponseParser()); // binary parser is used by default
+            // the default binary (javabin) response parser is used, it is much
+            // faster to parse and smaller on the wire than XML for large results
 
 
         }
@@ -966,6 +983,18 @@ void addDocument(SolrInputDocument doc) throws KeywordSearchModuleException {
             }
         }
 
+        void addDocuments(Collection<SolrInputDocument> docs) throws KeywordSearchModuleException {
+            try {
+                solrCore.add(docs);
+            } catch (SolrServerException ex) {
+                logger.log(Level.SEVERE, "Could not add batch of " + docs.size() + " documents to index via update handler", ex);
+                throw new KeywordSearchModuleException("Could not add batch of " + docs.size() + " documents to index via update handler", ex);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "Could not add batch of " + docs.size() + " documents to index via update handler", ex);
+                throw new KeywordSearchModuleException("Could not add batch of " + docs.size() + " documents to index via update handler", ex);
+            }
+        }
+
         /**
          * get the text from the content field for the given file
          * @param contentID
@@ -168,12 +168,9 @@ public Collection<Term> getTerms() {
 
     @Override
     public KeywordWriteResult writeToBlackBoard(String termHit, AbstractFile newFsHit, String snippet, String listName) {
-        final String MODULE_NAME = KeywordSearchIngestModule.MODULE_NAME;
-
         //there is match actually in this file, create artifact only then
         BlackboardArtifact bba = null;
         KeywordWriteResult writeResult = null;
-        Collection<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
         try {
             bba = newFsHit.newArtifact(ARTIFACT_TYPE.TSK_KEYWORD_HIT);
             writeResult = new KeywordWriteResult(bba);
@@ -182,7 +179,24 @@ public KeywordWriteResult writeToBlackBoard(String termHit, AbstractFile newFsHi
             return null;
         }
 
+        Collection<BlackboardAttribute> attributes = getHitAttributes(termHit, snippet, listName);
+        try {
+            bba.addAttributes(attributes);
+            writeResult.add(attributes);
+            return writeResult;
+        } catch (TskException e) {
+            logger.log(Level.WARNING, "Error adding bb attributes for terms search artifact", e);
+        }
+
+        return null;
 
+    }
+
+    @Override
+    public Collection<BlackboardAttribute> getHitAttributes(String termHit, String snippet, String listName) {
+        final String MODULE_NAME = KeywordSearchIngestModule.MODULE_NAME;
+
+        Collection<BlackboardAttribute> attributes = new ArrayList<BlackboardAttribute>();
         //regex match
         attributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_KEYWORD.getTypeID(), MODULE_NAME, termHit));
         //list
@@ -207,17 +221,7 @@ public KeywordWriteResult writeToBlackBoard(String termHit, AbstractFile newFsHi
         attributes.add(selAttr);
         }
         } */
-
-        try {
-            bba.addAttributes(attributes);
-            writeResult.add(attributes);
-            return writeResult;
-        } catch (TskException e) {
-            logger.log(Level.WARNING, "Error adding bb attributes for terms search artifact", e);
-        }
-
-        return null;
-
+        return attributes;
     }
 
     @Override
@@ -244,13 +248,14 @@ public Map<String, List<ContentHit>> performQuery() throws NoOpenCoreException {
                 filesQuery.addFilter(filter);
             }
             try {
-                Map<String, List<ContentHit>> subResults = filesQuery.performQuery();
-                Set<ContentHit> filesResults = new HashSet<ContentHit>();
-                for (String key : subResults.keySet()) {
-                    List<ContentHit> keyRes = subResults.get(key);
-                    resultSize += keyRes.size();
-                    filesResults.addAll(keyRes);
-                }
+                final Set<ContentHit> filesResults = new HashSet<ContentHit>();
+                filesQuery.performQuery(KeywordSearchSettings.getShowSnippets(), new LuceneQuery.HitConsumer() {
+                    @Override
+                    public void consume(ContentHit hit) {
+                        filesResults.add(hit);
+                    }
+                });
+                resultSize += filesResults.size();
                 results.put(term.getTerm(), new ArrayList<ContentHit>(filesResults));
             } catch (NoOpenCoreException e) {
                 logger.log(Level.WARNING, "Error executing Solr query,", e);
@@ -0,0 +1,80 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
+import org.apache.tika.Tika;
+import org.openide.util.lookup.ServiceProvider;
+import org.sleuthkit.autopsy.coreutils.Logger;
+import org.sleuthkit.autopsy.ingest.FileTypeDetector;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.ReadContentInputStream;
+
+/**
+ * Detects the type of the files for the file ingest pipeline with Tika.
+ *
+ * The header bytes are enough for most formats, but container formats (e.g.
+ * zip based office documents), and formats with their magic past the header,
+ * are detected from the file stream.
+ */
+@ServiceProvider(service = FileTypeDetector.class)
+public class TikaFileTypeDetector implements FileTypeDetector {
+
+    private static final Logger logger = Logger.getLogger(TikaFileTypeDetector.class.getName());
+    //generic types Tika reports for containers it could not look into
+    private static final String TIKA_CONTAINER_TYPE_PREFIX = "application/x-tika-";
+    private static final String UNKNOWN_MIME_TYPE = "application/octet-stream";
+    private final Tika tika = new Tika();
+
+    @Override
+    public String detect(AbstractFile file, byte[] header) {
+        String detectedFormat = null;
+        try {
+            detectedFormat = tika.detect(header, file.getName());
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not detect format using tika for file: " + file, e);
+        }
+        final boolean wholeFileInHeader = header.length == file.getSize();
+        if (detectedFormat != null && !AbstractFileExtract.ARCHIVE_MIME_TYPES.contains(detectedFormat)
+                && !detectedFormat.startsWith(TIKA_CONTAINER_TYPE_PREFIX)
+                && (wholeFileInHeader || !detectedFormat.equals(UNKNOWN_MIME_TYPE))) {
+            return detectedFormat;
+        }
+
+        InputStream is = null;
+        try {
+            is = new ReadContentInputStream(file);
+            detectedFormat = tika.detect(is, file.getName());
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not detect format using tika for file: " + file, e);
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException ex) {
+                    logger.log(Level.WARNING, "Could not close stream after detecting format using tika for file: "
+                            + file, ex);
+                }
+            }
+        }
+        return detectedFormat;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.keywordsearch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import junit.framework.TestCase;
+import org.apache.solr.common.SolrDocument;
+
+/**
+ * Tests the paging of the hits of a LuceneQuery to a hit per file
+ */
+public class LuceneQueryTest extends TestCase {
+
+    private static SolrDocument doc(String id) {
+        SolrDocument doc = new SolrDocument();
+        doc.setField(Server.Schema.ID.toString(), id);
+        return doc;
+    }
+
+    private static List<String> ids(List<SolrDocument> docs) {
+        List<String> ids = new ArrayList<String>();
+        for (SolrDocument doc : docs) {
+            ids.add(doc.getFieldValue(Server.Schema.ID.toString()).toString());
+        }
+        return ids;
+    }
+
+    public void testFirstChunkOfEachFile() {
+        List<SolrDocument> page = Arrays.asList(doc("5"), doc("5_1"), doc("5_2"), doc("7_3"), doc("7_4"));
+        LuceneQuery.FileHitFilter filter = new LuceneQuery.FileHitFilter();
+        assertEquals(Arrays.asList("5", "7_3"), ids(filter.getFirstFileDocuments(page)));
+        //5 has no more documents once past 5_
+        assertEquals(1, filter.getNumOpenFiles());
+    }
+
+    public void testChunksNotNextToEachOther() {
+        //the ids sort as strings, as Solr sorts them
+        List<String> sorted = new ArrayList<String>(Arrays.asList("123", "123_1", "1230_1", "123_2", "1230", "1231", "12_1", "1"));
+        Collections.sort(sorted);
+        assertEquals(Arrays.asList("1", "123", "1230", "1230_1", "1231", "123_1", "123_2", "12_1"), sorted);
+
+        List<SolrDocument> page = new ArrayList<SolrDocument>();
+        for (String id : sorted) {
+            page.add(doc(id));
+        }
+        assertEquals(Arrays.asList("1", "123", "1230", "1231", "12_1"),
+                ids(new LuceneQuery.FileHitFilter().getFirstFileDocuments(page)));
+    }
+
+    public void testFileSeenInEarlierPage() {
+        LuceneQuery.FileHitFilter filter = new LuceneQuery.FileHitFilter();
+        List<SolrDocument> first = Arrays.asList(doc("10"), doc("100_1"));
+        List<SolrDocument> second = Arrays.asList(doc("100_2"), doc("10_9"), doc("11"));
+        assertEquals(Arrays.asList("10", "100_1"), ids(filter.getFirstFileDocuments(first)));
+        assertEquals(Arrays.asList("11"), ids(filter.getFirstFileDocuments(second)));
+    }
+
+    public void testFilesAreForgotten() {
+        //only the files that can still have documents are remembered
+        LuceneQuery.FileHitFilter filter = new LuceneQuery.FileHitFilter();
+        List<String> sorted = new ArrayList<String>();
+        for (int id = 1; id <= 10000; ++id) {
+            sorted.add(Integer.toString(id));
+            sorted.add(id + "_1");
+        }
+        Collections.sort(sorted);
+        List<SolrDocument> page = new ArrayList<SolrDocument>();
+        for (String id : sorted) {
+            page.add(doc(id));
+        }
+        assertEquals(10000, filter.getFirstFileDocuments(page).size());
+        assertTrue(filter.getNumOpenFiles() <= 5);
+    }
+}
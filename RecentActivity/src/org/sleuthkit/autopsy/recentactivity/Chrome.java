@@ -160,8 +160,6 @@ private void getHistory(Content dataSource, IngestDataSourceWorkerController con
             }
             dbFile.delete();
         }
-
-        services.fireModuleDataEvent(new ModuleDataEvent("Recent Activity", BlackboardArtifact.ARTIFACT_TYPE.TSK_WEB_HISTORY));
     }
 
     /**
@@ -350,8 +348,6 @@ private void getCookie(Content dataSource, IngestDataSourceWorkerController cont
 
             dbFile.delete();
         }
-
-        services.fireModuleDataEvent(new ModuleDataEvent("Recent Activity", BlackboardArtifact.ARTIFACT_TYPE.TSK_WEB_COOKIE));
     }
 
     /**
@@ -430,8 +426,6 @@ private void getDownload(Content dataSource, IngestDataSourceWorkerController co
 
             dbFile.delete();
         }
-
-        services.fireModuleDataEvent(new ModuleDataEvent("Recent Activity", BlackboardArtifact.ARTIFACT_TYPE.TSK_WEB_DOWNLOAD));
     }
 
     /**
@@ -497,8 +491,6 @@ private void getLogin(Content dataSource, IngestDataSourceWorkerController contr
 
             dbFile.delete();
         }
-
-        services.fireModuleDataEvent(new ModuleDataEvent("Recent Activity", BlackboardArtifact.ARTIFACT_TYPE.TSK_WEB_HISTORY));
     }
 
     @Override
@@ -0,0 +1,182 @@
+/*
+ *
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.recentactivity;
+
+import isi.pasco2.io.IndexFile;
+import isi.pasco2.util.StructConverter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.sleuthkit.autopsy.datamodel.ContentUtils;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * pasco2 index.dat file read straight from the image content, for the parser
+ * to seek over without loading the whole file in memory as FastReadIndexFile
+ * does.
+ *
+ * The pages read are kept in a small cache of the most recently read pages.
+ * The values are decoded as FastReadIndexFile decodes them, so the parser
+ * sees the same records.
+ */
+class ContentIndexFile implements IndexFile {
+
+    private static final int PAGE_SIZE = 64 * 1024;
+    private static final int MAX_CACHED_PAGES = 16;
+    private final AbstractFile file;
+    private final long size;
+    private long position = 0;
+    private final Map<Long, byte[]> pages = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    /**
+     * @param file index.dat file of the image
+     */
+    ContentIndexFile(AbstractFile file) {
+        this.file = file;
+        this.size = file.getSize();
+    }
+
+    @Override
+    public void seek(long offset) throws IOException {
+        if (offset < 0 || offset > size) {
+            throw new IOException("Seek out of index file " + file.getName() + " to offset " + offset);
+        }
+        position = offset;
+    }
+
+    @Override
+    public int readLittleEndianInt() throws IOException {
+        return StructConverter.bytesIntoInt(readBytes(4), 0);
+    }
+
+    @Override
+    public long readLittleEndianUInt() throws IOException {
+        return StructConverter.bytesIntoUInt(readBytes(4), 0);
+    }
+
+    @Override
+    public int readLittleEndianShort() throws IOException {
+        return StructConverter.bytesIntoShort(readBytes(2), 0);
+    }
+
+    @Override
+    public int read(byte[] buf, int offset, int length) throws IOException {
+        byte[] bytes = readBytes(length);
+        System.arraycopy(bytes, 0, buf, offset, length);
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        // signed, as FastReadIndexFile returns it
+        return readBytes(1)[0];
+    }
+
+    @Override
+    public char readAsciiChar() throws IOException {
+        return (char) readBytes(1)[0];
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        // signed, as FastReadIndexFile returns it
+        return readBytes(1)[0];
+    }
+
+    @Override
+    public void close() throws IOException {
+        pages.clear();
+    }
+
+    @Override
+    public String readStringAtOffset(long offset, int length) throws IOException {
+        seek(offset);
+        byte[] bytes = readBytes(length);
+        if (bytes.length == 0 || bytes[0] == 0) {
+            return new String();
+        }
+        return new String(bytes);
+    }
+
+    @Override
+    public int readIntAtOffset(long offset) throws IOException {
+        seek(offset);
+        return readLittleEndianInt();
+    }
+
+    @Override
+    public long readUIntAtOffset(long offset) throws IOException {
+        seek(offset);
+        return readLittleEndianUInt();
+    }
+
+    @Override
+    public int readShortAtOffset(long offset) throws IOException {
+        seek(offset);
+        return readLittleEndianShort();
+    }
+
+    private byte[] readBytes(int length) throws IOException {
+        if (length < 0 || position + length > size) {
+            throw new IOException("Read past the end of index file " + file.getName() + " at offset " + position);
+        }
+        byte[] buf = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long pageStart = ((position + copied) / PAGE_SIZE) * PAGE_SIZE;
+            byte[] page = getPage(pageStart);
+            int pageOffset = (int) (position + copied - pageStart);
+            int toCopy = Math.min(length - copied, page.length - pageOffset);
+            if (toCopy <= 0) {
+                throw new IOException("Read past the end of index file " + file.getName());
+            }
+            System.arraycopy(page, pageOffset, buf, copied, toCopy);
+            copied += toCopy;
+        }
+        position += length;
+        return buf;
+    }
+
+    private byte[] getPage(long pageStart) throws IOException {
+        byte[] page = pages.get(pageStart);
+        if (page == null) {
+            int pageLength = (int) Math.min(PAGE_SIZE, size - pageStart);
+            page = new byte[Math.max(pageLength, 0)];
+            int read;
+            try {
+                read = ContentUtils.readFully(file, page, 0, pageStart, page.length);
+            } catch (TskCoreException ex) {
+                throw new IOException("Error reading index file " + file.getName(), ex);
+            }
+            if (read < page.length) {
+                page = Arrays.copyOf(page, read);
+            }
+            pages.put(pageStart, page);
+        }
+        return page;
+    }
+}
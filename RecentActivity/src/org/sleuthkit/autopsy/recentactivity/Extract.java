@@ -30,6 +30,7 @@
 import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.ingest.IngestModuleDataSource;
+import org.sleuthkit.autopsy.ingest.IngestServices;
 import org.sleuthkit.autopsy.report.SQLiteDBConnect;
 import org.sleuthkit.datamodel.*;
 
@@ -41,6 +42,8 @@ abstract public class Extract extends IngestModuleDataSource{
     protected final ArrayList<String> errorMessages = new ArrayList<>();
     protected String moduleName = "";
     protected boolean dataFound = false;
+    //module name of the data events fired for the artifacts
+    private static final String ARTIFACT_MODULE_NAME = "Recent Activity";
     
     //hide public constructor to prevent from instantiation by ingest module loader
     Extract() {
@@ -66,7 +69,9 @@ protected void addErrorMessage(String message) {
     
 
     /**
-     * Generic method for adding a blackboard artifact to the blackboard
+     * Generic method for adding a blackboard artifact to the blackboard.
+     * The artifact is buffered and written in a batch with other artifacts,
+     * which also fires the data event for it.
      *
      * @param type is a blackboard.artifact_type enum to determine which type
      * the artifact should be
@@ -76,13 +81,7 @@ protected void addErrorMessage(String message) {
      * to be added to the artifact after the artifact has been created
      */
     public void addArtifact(BlackboardArtifact.ARTIFACT_TYPE type, AbstractFile content, Collection<BlackboardAttribute> bbattributes) {
-
-        try {
-            BlackboardArtifact bbart = content.newArtifact(type);
-            bbart.addAttributes(bbattributes);
-        } catch (TskException ex) {
-            logger.log(Level.SEVERE, "Error while trying to add an artifact: " + ex);
-        }
+        IngestServices.getDefault().addArtifact(ARTIFACT_MODULE_NAME, type, content, bbattributes);
     }
 
      /**
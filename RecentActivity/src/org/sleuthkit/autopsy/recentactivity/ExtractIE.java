@@ -24,36 +24,30 @@
 
 //IO imports
 import java.io.BufferedReader;
-import org.sleuthkit.autopsy.coreutils.ExecUtil;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.io.Writer;
 
 //Util Imports
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Level;
 import org.sleuthkit.autopsy.coreutils.Logger;
 import java.util.Collection;
-import java.util.Scanner;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+// pasco2 Imports
+import isi.pasco2.handler.HistoryAccessHandler;
+import isi.pasco2.io.IndexFile;
+import isi.pasco2.parser.DateTime;
+import isi.pasco2.parser.IEHistoryFileParser;
+
 // TSK Imports
-import org.openide.modules.InstalledFileLocator;
-import org.sleuthkit.autopsy.casemodule.Case;
 import org.sleuthkit.autopsy.coreutils.JLNK;
 import org.sleuthkit.autopsy.coreutils.JLnkParser;
 import org.sleuthkit.autopsy.coreutils.JLnkParserException;
-import org.sleuthkit.autopsy.datamodel.ContentUtils;
 import org.sleuthkit.autopsy.ingest.IngestDataSourceWorkerController;
 import org.sleuthkit.autopsy.ingest.IngestServices;
 import org.sleuthkit.autopsy.ingest.ModuleDataEvent;
@@ -62,7 +56,6 @@
 import org.sleuthkit.datamodel.BlackboardAttribute;
 import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
 import org.sleuthkit.datamodel.Content;
-import org.sleuthkit.autopsy.coreutils.PlatformUtil;
 import org.sleuthkit.autopsy.ingest.PipelineContext;
 import org.sleuthkit.autopsy.ingest.IngestModuleDataSource;
 import org.sleuthkit.autopsy.ingest.IngestModuleInit;
@@ -72,21 +65,11 @@ public class ExtractIE extends Extract {
     private static final Logger logger = Logger.getLogger(ExtractIE.class.getName());
     private IngestServices services;
     
-    //paths set in init()
-    private String moduleTempResultsDir;
-    private String PASCO_LIB_PATH;
-    private String JAVA_PATH;
-    
     final public static String MODULE_VERSION = "1.0";
-    private static final SimpleDateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
-    
-    private  ExecUtil execPasco;
 
     //hide public constructor to prevent from instantiation by ingest module loader
     ExtractIE() {
         moduleName = "Internet Explorer";
-        moduleTempResultsDir = RAImageIngestModule.getRATempPath(Case.getCurrentCase(), "IE") + File.separator + "results";
-        JAVA_PATH = PlatformUtil.getJavaPath();
     }
 
     @Override
@@ -151,7 +134,6 @@ private void getBookmark(Content dataSource, IngestDataSourceWorkerController co
             bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DOMAIN.getTypeID(), "RecentActivity", domain));
             this.addArtifact(ARTIFACT_TYPE.TSK_WEB_BOOKMARK, fav, bbattributes);
         }
-        services.fireModuleDataEvent(new ModuleDataEvent("Recent Activity", BlackboardArtifact.ARTIFACT_TYPE.TSK_WEB_BOOKMARK));
     }
     
     private String getURLFromIEBookmarkFile(AbstractFile fav) {
@@ -240,7 +222,6 @@ private void getCookie(Content dataSource, IngestDataSourceWorkerController cont
             bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DOMAIN.getTypeID(), "RecentActivity", domain));
             this.addArtifact(ARTIFACT_TYPE.TSK_WEB_COOKIE, cookiesFile, bbattributes);
         }
-        services.fireModuleDataEvent(new ModuleDataEvent("Recent Activity", BlackboardArtifact.ARTIFACT_TYPE.TSK_WEB_COOKIE));
     }
 
     /**
@@ -296,34 +277,17 @@ private void getRecentDocuments(Content dataSource, IngestDataSourceWorkerContro
             bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID(), "RecentActivity", recentFile.getCrtime()));
             this.addArtifact(ARTIFACT_TYPE.TSK_RECENT_OBJECT, recentFile, bbattributes);
         }
-        services.fireModuleDataEvent(new ModuleDataEvent("Recent Activity", BlackboardArtifact.ARTIFACT_TYPE.TSK_RECENT_OBJECT));
     }
             
     /**
-     * Locates index.dat files, runs Pasco on them, and creates artifacts. 
+     * Locates index.dat files, parses them with pasco2, and creates artifacts. 
+     * The files are parsed in-process, straight from the image content.
      * @param dataSource
      * @param controller 
      */
     private void getHistory(Content dataSource, IngestDataSourceWorkerController controller) {
-        logger.log(Level.INFO, "Pasco results path: " + moduleTempResultsDir);
         boolean foundHistory = false;
 
-        final File pascoRoot = InstalledFileLocator.getDefault().locate("pasco2", ExtractIE.class.getPackage().getName(), false);
-        if (pascoRoot == null) {
-            this.addErrorMessage(this.getName() + ": Unable to get IE History: pasco not found");
-            logger.log(Level.SEVERE, "Error finding pasco program ");
-            return;
-        } 
-       
-        final String pascoHome = pascoRoot.getAbsolutePath();
-        logger.log(Level.INFO, "Pasco2 home: " + pascoHome);
-
-        PASCO_LIB_PATH = pascoHome + File.separator + "pasco2.jar" + File.pathSeparator
-                + pascoHome + File.separator + "*";
-
-        File resultsDir = new File(moduleTempResultsDir);
-        resultsDir.mkdirs();
-     
         // get index.dat files
         org.sleuthkit.autopsy.casemodule.services.FileManager fileManager = currentCase.getServices().getFileManager();
         List<AbstractFile> indexFiles = null;
@@ -342,42 +306,17 @@ private void getHistory(Content dataSource, IngestDataSourceWorkerController con
         }
         
         dataFound = true;
-        String temps;
-        String indexFileName;
         for (AbstractFile indexFile : indexFiles) {
-            // Since each result represent an index.dat file,
-            // just create these files with the following notation:
-            // index<Number>.dat (i.e. index0.dat, index1.dat,..., indexN.dat)
-            // Write each index.dat file to a temp directory.
-            //BlackboardArtifact bbart = fsc.newArtifact(ARTIFACT_TYPE.TSK_WEB_HISTORY);
-            indexFileName = "index" + Integer.toString((int) indexFile.getId()) + ".dat";
-            //indexFileName = "index" + Long.toString(bbart.getArtifactID()) + ".dat";
-            temps = RAImageIngestModule.getRATempPath(currentCase, "IE") + File.separator + indexFileName;
-            File datFile = new File(temps);
             if (controller.isCancelled()) {
                 break;
             }
-            try {
-                ContentUtils.writeToFile(indexFile, datFile);
-            } catch (IOException e) {
-                logger.log(Level.SEVERE, "Error while trying to write index.dat file " + datFile.getAbsolutePath(), e);
-                this.addErrorMessage(this.getName() + ": Error while trying to write file:" + datFile.getAbsolutePath());
+            if (indexFile.getSize() == 0) {
                 continue;
             }
 
-            String filename = "pasco2Result." + indexFile.getId() + ".txt";
-            boolean bPascProcSuccess = executePasco(temps, filename);
-
-            //At this point pasco2 proccessed the index files.
-            //Now fetch the results, parse them and the delete the files.
-            if (bPascProcSuccess) {
-                parsePascoOutput(indexFile, filename);
+            if (parseHistoryFile(indexFile)) {
                 foundHistory = true;
-                
-                //Delete index<n>.dat file since it was succcessfully by Pasco
-                datFile.delete();
             } else {
-                logger.log(Level.WARNING, "pasco execution failed on: " + this.getName());
                 this.addErrorMessage(this.getName() + ": Error processing Internet Explorer history.");
             }
         }
@@ -388,152 +327,131 @@ private void getHistory(Content dataSource, IngestDataSourceWorkerController con
     }
 
     /**
-     * Execute pasco on a single file that has been saved to disk. 
-     * @param indexFilePath Path to local index.dat file to analyze
-     * @param outputFileName Name of file to save output to
+     * Parse a single index.dat file with pasco2 and create an artifact for each 
+     * URL record, as the records are parsed.
+     * @param indexFile index.dat file to parse
      * @return false on error
      */
-    private boolean executePasco(String indexFilePath, String outputFileName) {
-        boolean success = true;
-
-        Writer writer = null;
+    private boolean parseHistoryFile(AbstractFile indexFile) {
         try {
-            final String outputFileFullPath = moduleTempResultsDir + File.separator + outputFileName;
-            logger.log(Level.INFO, "Writing pasco results to: " + outputFileFullPath);
-            writer = new FileWriter(outputFileFullPath);
-            execPasco = new ExecUtil();
-            execPasco.execute(writer, JAVA_PATH, 
-                    "-cp", PASCO_LIB_PATH, 
-                    "isi.pasco2.Main", "-T", "history", indexFilePath );
-            // @@@ Investigate use of history versus cache as type.
+            // The parser seeks all over the file, it is read page by page rather than loaded whole.
+            IndexFile indexContent = new ContentIndexFile(indexFile);
+            IEHistoryFileParser parser = new IEHistoryFileParser(indexFile.getName(), indexContent, new HistoryRecordHandler(indexFile));
+            parser.parseFile();
+            return true;
         } catch (IOException ex) {
-            success = false;
-            logger.log(Level.SEVERE, "Unable to execute Pasco to process Internet Explorer web history.", ex);
-        } catch (InterruptedException ex) {
-            success = false;
-            logger.log(Level.SEVERE, "Pasco has been interrupted, failed to extract some web history from Internet Explorer.", ex);
-        }
-        finally {
-            if (writer != null) {
-                try {
-                    writer.flush();
-                    writer.close();
-                } catch (IOException ex) {
-                    logger.log(Level.WARNING, "Error closing writer stream after for Pasco result", ex);
-                }
-            }
+            logger.log(Level.SEVERE, "Unable to parse Internet Explorer web history file " + indexFile.getName(), ex);
+        } catch (RuntimeException ex) {
+            // pasco2 reports corrupt files by reading past the end of the buffer
+            logger.log(Level.SEVERE, "Error parsing Internet Explorer web history file " + indexFile.getName(), ex);
         }
-        return success;
+        return false;
     }
 
     /**
-     * parse Pasco output and create artifacts
-     * @param origFile Original index.dat file that was analyzed to get this output
-     * @param pascoOutputFileName name of pasco output file
+     * Creates an artifact for each URL record of an index.dat file
      */
-    private void parsePascoOutput(AbstractFile origFile, String pascoOutputFileName) {
-        
-        String fnAbs = moduleTempResultsDir + File.separator + pascoOutputFileName;
+    private class HistoryRecordHandler implements HistoryAccessHandler {
+        private final AbstractFile origFile;
 
-        File file = new File(fnAbs);
-        if (file.exists() == false) {
-            this.addErrorMessage(this.getName() + ": Pasco output not found: " + file.getName());
-            logger.log(Level.WARNING, "Pasco Output not found: " + file.getPath());
-            return;
+        HistoryRecordHandler(AbstractFile origFile) {
+            this.origFile = origFile;
         }
 
-        // Make sure the file the is not empty or the Scanner will
-        // throw a "No Line found" Exception
-        if (file.length() == 0) {
-            return;
+        @Override
+        public void URLRecord(DateTime localAccessTime, DateTime accessTime, DateTime modTime, String url) {
+            addHistoryArtifact(origFile, url, accessTime);
         }
 
-        Scanner fileScanner;
-        try {
-            fileScanner = new Scanner(new FileInputStream(file.toString()));
-        } catch (FileNotFoundException ex) {
-            this.addErrorMessage(this.getName() + ": Error parsing IE history entry " + file.getName());
-            logger.log(Level.WARNING, "Unable to find the Pasco file at " + file.getPath(), ex);
-            return;
+        @Override
+        public void URLRecord(DateTime localAccessTime, DateTime accessTime, DateTime modTime, String url, int numberOfAccesses) {
+            addHistoryArtifact(origFile, url, accessTime);
         }
 
-        while (fileScanner.hasNext()) {
-            String line = fileScanner.nextLine();
-            if (!line.startsWith("URL")) {  
-                continue;
-            }
+        @Override
+        public void startDocument(String fileName, float version) {
+        }
 
-            String[] lineBuff = line.split("\\t");
+        @Override
+        public void endDocument() {
+        }
 
-            if (lineBuff.length < 4) {
-                logger.log(Level.INFO, "Found unrecognized IE history format.");
-                continue;
-            }
+        @Override
+        public void unknownRecord(String type, int offset, byte[] record) {
+        }
 
-            String ddtime = lineBuff[2];
-            String actime = lineBuff[3];
-            Long ftime = (long) 0;
-            String user = "";
-            String realurl = "";
-            String domain = "";
-
-            /* We've seen two types of lines: 
-             * URL  http://XYZ.com ....
-             * URL  Visited: Joe@http://XYZ.com ....
-             */
-            if (lineBuff[1].contains("@")) {
-                String url[] = lineBuff[1].split("@", 2);
-                user = url[0];
-                user = user.replace("Visited:", "");
-                user = user.replace(":Host:", "");
-                user = user.replaceAll("(:)(.*?)(:)", "");
-                user = user.trim();
-                realurl = url[1];
-                realurl = realurl.replace("Visited:", "");
-                realurl = realurl.replaceAll(":(.*?):", "");
-                realurl = realurl.replace(":Host:", "");
-                realurl = realurl.trim();
-            } else {
-                user = "";
-                realurl = lineBuff[1].trim();
-            }
+        @Override
+        public void unusedRecord(int offset) {
+        }
 
-            domain = Util.extractDomain(realurl);
+        @Override
+        public void invalidRecord(int offset) {
+        }
 
-            if (!ddtime.isEmpty()) {
-                ddtime = ddtime.replace("T", " ");
-                ddtime = ddtime.substring(ddtime.length() - 5);
-            }
+        @Override
+        public void record(int currentOffset, byte[] rec) {
+        }
 
-            if (!actime.isEmpty()) {
-                try {
-                    Long epochtime = dateFormatter.parse(actime).getTime();
-                    ftime = epochtime.longValue();
-                    ftime = ftime / 1000;
-                } catch (ParseException e) {
-                    this.addErrorMessage(this.getName() + ": Error parsing Internet Explorer History entry.");
-                    logger.log(Level.SEVERE, "Error parsing Pasco results.", e);
-                }
-            }
+        @Override
+        public void REDRRecord(String url) {
+        }
+    }
 
-            try {
-                BlackboardArtifact bbart = origFile.newArtifact(ARTIFACT_TYPE.TSK_WEB_HISTORY);
-                Collection<BlackboardAttribute> bbattributes = new ArrayList<>();
-                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_URL.getTypeID(), "RecentActivity", realurl));
-                //bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_URL_DECODED.getTypeID(), "RecentActivity", EscapeUtil.decodeURL(realurl)));
-
-                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED.getTypeID(), "RecentActivity", ftime));
-                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_REFERRER.getTypeID(), "RecentActivity", ""));
-                // @@@ NOte that other browser modules are adding TITLE in hre for the title
-                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID(), "RecentActivity", "Internet Explorer"));
-                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DOMAIN.getTypeID(), "RecentActivity", domain));
-                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_USER_NAME.getTypeID(), "RecentActivity", user));
-                bbart.addAttributes(bbattributes);
-            } catch (TskCoreException ex) {
-                logger.log(Level.SEVERE, "Error writing Internet Explorer web history artifact to the blackboard.", ex);
-            }                                    
+    /**
+     * Create a web history artifact for a URL record of an index.dat file
+     * @param origFile Original index.dat file the record is from
+     * @param url URL of the record
+     * @param accessTime last access time of the record
+     */
+    private void addHistoryArtifact(AbstractFile origFile, String url, DateTime accessTime) {
+        String user = "";
+        String realurl = "";
+        String domain = "";
+
+        /* We've seen two types of lines: 
+         * URL  http://XYZ.com ....
+         * URL  Visited: Joe@http://XYZ.com ....
+         */
+        if (url.contains("@")) {
+            String urlParts[] = url.split("@", 2);
+            user = urlParts[0];
+            user = user.replace("Visited:", "");
+            user = user.replace(":Host:", "");
+            user = user.replaceAll("(:)(.*?)(:)", "");
+            user = user.trim();
+            realurl = urlParts[1];
+            realurl = realurl.replace("Visited:", "");
+            realurl = realurl.replaceAll(":(.*?):", "");
+            realurl = realurl.replace(":Host:", "");
+            realurl = realurl.trim();
+        } else {
+            user = "";
+            realurl = url.trim();
+        }
+
+        domain = Util.extractDomain(realurl);
+
+        long ftime = 0;
+        if (accessTime != null) {
+            ftime = accessTime.asDate().getTime() / 1000;
         }
-        fileScanner.close();        
+
+        try {
+            BlackboardArtifact bbart = origFile.newArtifact(ARTIFACT_TYPE.TSK_WEB_HISTORY);
+            Collection<BlackboardAttribute> bbattributes = new ArrayList<>();
+            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_URL.getTypeID(), "RecentActivity", realurl));
+            //bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_URL_DECODED.getTypeID(), "RecentActivity", EscapeUtil.decodeURL(realurl)));
+
+            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED.getTypeID(), "RecentActivity", ftime));
+            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_REFERRER.getTypeID(), "RecentActivity", ""));
+            // @@@ NOte that other browser modules are adding TITLE in hre for the title
+            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID(), "RecentActivity", "Internet Explorer"));
+            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DOMAIN.getTypeID(), "RecentActivity", domain));
+            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_USER_NAME.getTypeID(), "RecentActivity", user));
+            bbart.addAttributes(bbattributes);
+        } catch (TskCoreException ex) {
+            logger.log(Level.SEVERE, "Error writing Internet Explorer web history artifact to the blackboard.", ex);
+        }                                    
     }
 
     @Override
@@ -547,11 +465,6 @@ public void complete() {
 
     @Override
     public void stop() {
-        if (execPasco != null) {
-            execPasco.stop();
-            execPasco = null;
-        }
-        
         //call regular cleanup from complete() method
         complete();
     }
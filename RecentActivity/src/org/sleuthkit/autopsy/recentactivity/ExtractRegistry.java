@@ -24,13 +24,8 @@
 
 import java.io.*;
 import java.io.File;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.logging.Level;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import org.openide.modules.InstalledFileLocator;
 import org.sleuthkit.autopsy.coreutils.ExecUtil;
 import org.sleuthkit.autopsy.coreutils.Logger;
@@ -44,53 +39,29 @@
 import org.sleuthkit.datamodel.*;
 import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
 import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
 
 /**
- * Extract windows registry data using regripper.
- * Runs two versions of regripper. One is the generally available set of plug-ins 
- * and the second is a set that were customized for Autopsy to produce a more structured
- * output of XML so that we can parse and turn into blackboard artifacts. 
+ * Extract windows registry data.
+ * The data turned into blackboard artifacts (USB devices, installed programs, 
+ * Windows version, recent documents) is read from the hives in-process with 
+ * RegistryHive, straight from the image. The full set of regripper plug-ins is 
+ * also run on each hive, and its text output saved as a tool output artifact.
  */
 public class ExtractRegistry extends Extract {
 
     public Logger logger = Logger.getLogger(this.getClass().getName());
-    private String RR_PATH;
     private String RR_FULL_PATH;
-    boolean rrFound = false;    // true if we found the Autopsy-specific version of regripper
     boolean rrFullFound = false; // true if we found the full version of regripper
     final public static String MODULE_VERSION = "1.0";
     private ExecUtil execRR;
 
     //hide public constructor to prevent from instantiation by ingest module loader
     ExtractRegistry() {
-        final File rrRoot = InstalledFileLocator.getDefault().locate("rr", ExtractRegistry.class.getPackage().getName(), false);
-        if (rrRoot == null) {
-            logger.log(Level.SEVERE, "RegRipper not found");
-            rrFound = false;
-            return;
-        } else {
-            rrFound = true;
-        }
-        
-        final String rrHome = rrRoot.getAbsolutePath();
-        logger.log(Level.INFO, "RegRipper home: " + rrHome);
-
-        if (PlatformUtil.isWindowsOS()) {
-            RR_PATH = rrHome + File.separator + "rip.exe";
-        } else {
-            RR_PATH = "perl " + rrHome + File.separator + "rip.pl";
-        }
-        
         final File rrFullRoot = InstalledFileLocator.getDefault().locate("rr-full", ExtractRegistry.class.getPackage().getName(), false);
         if (rrFullRoot == null) {
             logger.log(Level.SEVERE, "RegRipper Full not found");
             rrFullFound = false;
+            return;
         } else {
             rrFullFound = true;
         }
@@ -144,7 +115,7 @@ private List<AbstractFile> findRegistryFiles(Content dataSource) {
     }
     
     /**
-     * Identifies registry files in the database by mtimeItem, runs regripper on them, and parses the output.
+     * Identifies registry files in the database by mtimeItem, parses them, and runs regripper on them.
      * 
      * @param dataSource
      * @param controller 
@@ -165,16 +136,7 @@ private void analyzeRegistryFiles(Content dataSource, IngestDataSourceWorkerCont
         int j = 0;
         for (AbstractFile regFile : allRegistryFiles) {
             String regFileName = regFile.getName();
-            String regFileNameLocal = RAImageIngestModule.getRATempPath(currentCase, "reg") + File.separator + regFileName;
             String outputPathBase = RAImageIngestModule.getRAOutputPath(currentCase, "reg") + File.separator + regFileName + "-regripper-" + Integer.toString(j++);
-            File regFileNameLocalFile = new File(regFileNameLocal);
-            try {
-                ContentUtils.writeToFile(regFile, regFileNameLocalFile);
-            } catch (IOException ex) {
-                logger.log(Level.SEVERE, "Error writing the temp registry file. {0}", ex);
-                this.addErrorMessage(this.getName() + ": Error analyzing registry file " + regFileName);
-                continue;
-            }
             
             if (controller.isCancelled()) {
                 break;
@@ -189,28 +151,26 @@ private void analyzeRegistryFiles(Content dataSource, IngestDataSourceWorkerCont
                 java.util.logging.Logger.getLogger(ExtractRegistry.class.getName()).log(Level.SEVERE, null, ex);
             }
             
-            logger.log(Level.INFO, moduleName + "- Now getting registry information from " + regFileNameLocal);
-            RegOutputFiles regOutputFiles = executeRegRip(regFileNameLocal, outputPathBase);
+            logger.log(Level.INFO, moduleName + "- Now getting registry information from " + regFileName);
             
-            if (controller.isCancelled()) {
-                break;
+            // parse the hive for the data turned into artifacts
+            if (parseHive(regFile, extrctr) == false) {
+                this.addErrorMessage(this.getName() + ": Failed parsing registry file results " + regFileName);
             }
             
-            // parse the autopsy-specific output
-            if (regOutputFiles.autopsyPlugins.isEmpty() == false) {
-                if (parseAutopsyPluginOutput(regOutputFiles.autopsyPlugins, regFile.getId(), extrctr) == false) {
-                    this.addErrorMessage(this.getName() + ": Failed parsing registry file results " + regFileName);
-                }
+            if (controller.isCancelled()) {
+                break;
             }
 
             // create a RAW_TOOL artifact for the full output
-            if (regOutputFiles.fullPlugins.isEmpty() == false) {
+            String fullPlugins = executeRegRipFull(regFile, outputPathBase);
+            if (fullPlugins.isEmpty() == false) {
                 try {
                     BlackboardArtifact art = regFile.newArtifact(ARTIFACT_TYPE.TSK_TOOL_OUTPUT.getTypeID());
                     BlackboardAttribute att = new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID(), "RecentActivity", "RegRipper");
                     art.addAttribute(att);
 
-                    FileReader fread = new FileReader(regOutputFiles.fullPlugins);
+                    FileReader fread = new FileReader(fullPlugins);
                     BufferedReader input = new BufferedReader(fread);
 
                     StringBuilder sb = new StringBuilder();
@@ -234,16 +194,13 @@ private void analyzeRegistryFiles(Content dataSource, IngestDataSourceWorkerCont
                     att = new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_TEXT.getTypeID(), "RecentActivity", sb.toString());
                     art.addAttribute(att);
                 } catch (FileNotFoundException ex) {
-                    this.addErrorMessage(this.getName() + ": Error reading registry file - " + regOutputFiles.fullPlugins);
+                    this.addErrorMessage(this.getName() + ": Error reading registry file - " + fullPlugins);
                     java.util.logging.Logger.getLogger(ExtractRegistry.class.getName()).log(Level.SEVERE, null, ex);
                 } catch (TskCoreException ex) {
                     // TODO - add error message here?
                     java.util.logging.Logger.getLogger(ExtractRegistry.class.getName()).log(Level.SEVERE, null, ex);
                 }
             }
-            
-            // delete the hive
-            regFileNameLocalFile.delete();
         }
         
         try {
@@ -254,284 +211,353 @@ private void analyzeRegistryFiles(Content dataSource, IngestDataSourceWorkerCont
             java.util.logging.Logger.getLogger(ExtractRegistry.class.getName()).log(Level.SEVERE, null, ex);
         }
     }
-    
-    private class RegOutputFiles {
-        public String autopsyPlugins = "";
-        public String fullPlugins = "";
-    }
 
     /**
-     * Execute regripper on the given registry.
-     * @param regFilePath Path to local copy of registry
+     * Execute the full set of regripper plug-ins on the given registry.
+     * The hive is written to a temp file for regripper, and deleted afterwards.
+     * @param regFile registry hive
      * @param outFilePathBase  Path to location to save output file to.  Base mtimeItem that will be extended on
+     * @return path of the output file, empty if regripper was not run
      */
-    private RegOutputFiles executeRegRip(String regFilePath, String outFilePathBase) {
-        String autopsyType = "";    // Type argument for rr for autopsy-specific modules
-        String fullType = "";   // Type argument for rr for full set of modules
-
-        RegOutputFiles regOutputFiles = new RegOutputFiles();
-        
-        if (regFilePath.toLowerCase().contains("system")) {
-            autopsyType = "autopsysystem";
+    private String executeRegRipFull(AbstractFile regFile, String outFilePathBase) {
+        String fullType;   // Type argument for rr for full set of modules
+        String regFileName = regFile.getName().toLowerCase();
+        if (regFileName.contains("system")) {
             fullType = "system";
         } 
-        else if (regFilePath.toLowerCase().contains("software")) {
-            autopsyType = "autopsysoftware";
+        else if (regFileName.contains("software")) {
             fullType = "software";
         } 
-        else if (regFilePath.toLowerCase().contains("ntuser")) {
-            autopsyType = "autopsyntuser";
+        else if (regFileName.contains("ntuser")) {
             fullType = "ntuser";
         }  
-        else if (regFilePath.toLowerCase().contains("sam")) {
+        else if (regFileName.contains("sam")) {
             fullType = "sam";
         } 
-        else if (regFilePath.toLowerCase().contains("security")) {
+        else if (regFileName.contains("security")) {
             fullType = "security";
         } 
         else {
-            return regOutputFiles;
+            return "";
         }
         
-        // run the autopsy-specific set of modules
-        if (!autopsyType.isEmpty() && rrFound) {
-            // TODO - add error messages
-            Writer writer = null;
-            try {
-                regOutputFiles.autopsyPlugins = outFilePathBase + "-autopsy.txt";
-                logger.log(Level.INFO, "Writing RegRipper results to: " + regOutputFiles.autopsyPlugins);
-                writer = new FileWriter(regOutputFiles.autopsyPlugins);
-                execRR = new ExecUtil();
-                execRR.execute(writer, RR_PATH,
-                        "-r", regFilePath, "-f", autopsyType);
-            } catch (IOException ex) {
-                logger.log(Level.SEVERE, "Unable to RegRipper and process parse some registry files.", ex);
-                this.addErrorMessage(this.getName() + ": Failed to analyze registry file");
-            } catch (InterruptedException ex) {
-                logger.log(Level.SEVERE, "RegRipper has been interrupted, failed to parse registry.", ex);
-                this.addErrorMessage(this.getName() + ": Failed to analyze registry file");
-            } finally {
-                if (writer != null) {
-                    try {
-                        writer.close();
-                    } catch (IOException ex) {
-                        logger.log(Level.SEVERE, "Error closing output writer after running RegRipper", ex);
-                    }
-                }
-            }
+        if (!rrFullFound) {
+            return "";
+        }
+        
+        String regFileNameLocal = RAImageIngestModule.getRATempPath(currentCase, "reg") + File.separator + regFile.getName();
+        File regFileNameLocalFile = new File(regFileNameLocal);
+        try {
+            ContentUtils.writeToFile(regFile, regFileNameLocalFile);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Error writing the temp registry file. {0}", ex);
+            this.addErrorMessage(this.getName() + ": Error analyzing registry file " + regFile.getName());
+            return "";
         }
         
         // run the full set of rr modules
-        if (!fullType.isEmpty() && rrFullFound) {
-            Writer writer = null;
-            try {
-                regOutputFiles.fullPlugins = outFilePathBase + "-full.txt";
-                logger.log(Level.INFO, "Writing Full RegRipper results to: " + regOutputFiles.fullPlugins);
-                writer = new FileWriter(regOutputFiles.fullPlugins);
-                execRR = new ExecUtil();
-                execRR.execute(writer, RR_FULL_PATH,
-                        "-r", regFilePath, "-f", fullType);
-            } catch (IOException ex) {
-                logger.log(Level.SEVERE, "Unable to run full RegRipper and process parse some registry files.", ex);
-                this.addErrorMessage(this.getName() + ": Failed to analyze registry file");
-            } catch (InterruptedException ex) {
-                logger.log(Level.SEVERE, "RegRipper full has been interrupted, failed to parse registry.", ex);
-                this.addErrorMessage(this.getName() + ": Failed to analyze registry file");
-            } finally {
-                if (writer != null) {
-                    try {
-                        writer.close();
-                    } catch (IOException ex) {
-                        logger.log(Level.SEVERE, "Error closing output writer after running RegRipper full", ex);
-                    }
+        String fullPlugins = "";
+        Writer writer = null;
+        try {
+            fullPlugins = outFilePathBase + "-full.txt";
+            logger.log(Level.INFO, "Writing Full RegRipper results to: " + fullPlugins);
+            writer = new FileWriter(fullPlugins);
+            execRR = new ExecUtil();
+            execRR.execute(writer, RR_FULL_PATH,
+                    "-r", regFileNameLocal, "-f", fullType);
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Unable to run full RegRipper and process parse some registry files.", ex);
+            this.addErrorMessage(this.getName() + ": Failed to analyze registry file");
+        } catch (InterruptedException ex) {
+            logger.log(Level.SEVERE, "RegRipper full has been interrupted, failed to parse registry.", ex);
+            this.addErrorMessage(this.getName() + ": Failed to analyze registry file");
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ex) {
+                    logger.log(Level.SEVERE, "Error closing output writer after running RegRipper full", ex);
                 }
             }
+            // delete the hive
+            regFileNameLocalFile.delete();
         }
         
-        return regOutputFiles;
+        return fullPlugins;
     }
     
+    /**
+     * Parse a hive and create the artifacts for its type of hive.
+     * @param regFile registry hive
+     * @param extrctr USB vendor and product lookup
+     * @return false on error
+     */
     // @@@ VERIFY that we are doing the right thing when we parse multiple NTUSER.DAT
-    private boolean parseAutopsyPluginOutput(String regRecord, long orgId, ExtractUSB extrctr) {
-        FileInputStream fstream = null;
+    private boolean parseHive(AbstractFile regFile, ExtractUSB extrctr) {
+        String regFileName = regFile.getName().toLowerCase();
         try {
-            SleuthkitCase tempDb = currentCase.getSleuthkitCase();
-     
-            // Read the file in and create a Document and elements
-            File regfile = new File(regRecord);
-            fstream = new FileInputStream(regfile);
-            
-            String regString = new Scanner(fstream, "UTF-8").useDelimiter("\\Z").next();
-            String startdoc = "<?xml version=\"1.0\"?><document>";
-            String result = regString.replaceAll("----------------------------------------", "");
-            result = result.replaceAll("\\n", "");
-            result = result.replaceAll("\\r", "");
-            result = result.replaceAll("'", "&apos;");
-            result = result.replaceAll("&", "&amp;");
-            String enddoc = "</document>";
-            String stringdoc = startdoc + result + enddoc;
-            DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document doc = builder.parse(new InputSource(new StringReader(stringdoc)));
-            
-            // cycle through the elements in the doc
-            Element oroot = doc.getDocumentElement();
-            NodeList children = oroot.getChildNodes();
-            int len = children.getLength();
-            for (int i = 0; i < len; i++) {
-                Element tempnode = (Element) children.item(i);
-                
-                String dataType = tempnode.getNodeName();
-
-                NodeList timenodes = tempnode.getElementsByTagName("mtime");
-                Long mtime = null;
-                if (timenodes.getLength() > 0) {
-                    Element timenode = (Element) timenodes.item(0);
-                    String etime = timenode.getTextContent();
-                    try {
-                        Long epochtime = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy").parse(etime).getTime();
-                        mtime = epochtime.longValue();
-                        String Tempdate = mtime.toString();
-                        mtime = Long.valueOf(Tempdate) / 1000;
-                    } catch (ParseException ex) {
-                        logger.log(Level.WARNING, "Failed to parse epoch time when parsing the registry.");
+            RegistryHive hive = new RegistryHive(regFile);
+            if (regFileName.contains("system")) {
+                getUsbDevices(hive, regFile, extrctr);
+            } 
+            else if (regFileName.contains("software")) {
+                getWinVersion(hive, regFile);
+                getInstalledPrograms(hive, regFile);
+            } 
+            else if (regFileName.contains("ntuser")) {
+                getRecentDocs(hive, regFile);
+                getOfficeDocs(hive, regFile);
+            }
+            return true;
+        } catch (IOException ex) {
+            logger.log(Level.SEVERE, "Error parsing the registry hive " + regFile.getName(), ex);
+        } catch (RuntimeException ex) {
+            // corrupt hives can have offsets outside of their cells
+            logger.log(Level.SEVERE, "Error parsing the registry hive " + regFile.getName(), ex);
+        }
+        return false;
+    }
+    
+    /**
+     * Create device attached artifacts for the USB devices of the current control set 
+     * of a SYSTEM hive, as the autopsyusb regripper plug-in lists them.
+     */
+    private void getUsbDevices(RegistryHive hive, AbstractFile regFile, ExtractUSB extrctr) throws IOException {
+        RegistryHive.Key select = hive.getKey("Select");
+        if (select == null) {
+            return;
+        }
+        RegistryHive.Value current = select.getValue("Current");
+        if (current == null) {
+            return;
+        }
+        RegistryHive.Key usbKey = hive.getKey(String.format("ControlSet%03d\\Enum\\USB", current.getLong()));
+        if (usbKey == null) {
+            return;
+        }
+        for (RegistryHive.Key devKey : usbKey.getSubkeys()) {
+            String dev = devKey.getName();
+            for (RegistryHive.Key serialKey : devKey.getSubkeys()) {
+                Collection<BlackboardAttribute> bbattributes = new ArrayList<>();
+                try {
+                    BlackboardArtifact bbart = regFile.newArtifact(ARTIFACT_TYPE.TSK_DEVICE_ATTACHED);
+                    bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID(), "RecentActivity", serialKey.getLastWritten()));
+                    String model = dev; 
+                    if (dev.toLowerCase().contains("vid")) {
+                        USBInfo info = extrctr.get(dev);
+                        if(info.getVendor()!=null)
+                            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DEVICE_MAKE.getTypeID(), "RecentActivity", info.getVendor()));
+                        if(info.getProduct() != null)
+                            model = info.getProduct();
                     }
+                    bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DEVICE_MODEL.getTypeID(), "RecentActivity", model));
+                    bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DEVICE_ID.getTypeID(), "RecentActivity", serialKey.getName()));
+                    bbart.addAttributes(bbattributes);
+                } catch (TskCoreException ex) {
+                    logger.log(Level.SEVERE, "Error adding device attached artifact to blackboard.");
                 }
-
-                NodeList artroots = tempnode.getElementsByTagName("artifacts");
-                if (artroots.getLength() == 0) {
-                    // If there isn't an artifact node, skip this entry
-                    continue;
-                }
-                
-                Element artroot = (Element) artroots.item(0);
-                NodeList myartlist = artroot.getChildNodes();
-                String winver = "";
-                for (int j = 0; j < myartlist.getLength(); j++) {
-                    Node artchild = myartlist.item(j);
-                    // If it has attributes, then it is an Element (based off API)
-                    if (artchild.hasAttributes()) {
-                        Element artnode = (Element) artchild;
-                        
-                        String value = artnode.getTextContent().trim();
-                        Collection<BlackboardAttribute> bbattributes = new ArrayList<BlackboardAttribute>();
-
-                        if ("recentdocs".equals(dataType)) {
-                            //               BlackboardArtifact bbart = tempDb.getContentById(orgId).newArtifact(ARTIFACT_TYPE.TSK_RECENT_OBJECT);
-                            //               bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_LAST_ACCESSED.getTypeID(), "RecentActivity", dataType, mtime));
-                            //               bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_NAME.getTypeID(), "RecentActivity", dataType, mtimeItem));
-                            //               bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_VALUE.getTypeID(), "RecentActivity", dataType, value));
-                            //               bbart.addAttributes(bbattributes);
-                            // @@@ BC: Why are we ignoring this...
-                        } 
-                        else if ("usb".equals(dataType)) {
-                            try {      
-                                Long usbMtime = Long.parseLong(artnode.getAttribute("mtime"));
-                                usbMtime = Long.valueOf(usbMtime.toString());
-
-                                BlackboardArtifact bbart = tempDb.getContentById(orgId).newArtifact(ARTIFACT_TYPE.TSK_DEVICE_ATTACHED);
-                                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID(), "RecentActivity", usbMtime));
-                                String dev = artnode.getAttribute("dev");       
-                                String model = dev; 
-                                if (dev.toLowerCase().contains("vid")) {
-                                    USBInfo info = extrctr.get(dev);
-                                    if(info.getVendor()!=null)
-                                        bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DEVICE_MAKE.getTypeID(), "RecentActivity", info.getVendor()));
-                                    if(info.getProduct() != null)
-                                        model = info.getProduct();
-                                }
-                                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DEVICE_MODEL.getTypeID(), "RecentActivity", model));
-                                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DEVICE_ID.getTypeID(), "RecentActivity", value));
-                                bbart.addAttributes(bbattributes);
-                            } catch (TskCoreException ex) {
-                                logger.log(Level.SEVERE, "Error adding device attached artifact to blackboard.");
-                            }
-                        } 
-                        else if ("uninstall".equals(dataType)) {
-                            Long itemMtime = null;
-                            try {
-                                Long epochtime = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy").parse(artnode.getAttribute("mtime")).getTime();
-                                itemMtime = epochtime.longValue();
-                                itemMtime = itemMtime / 1000;
-                            } catch (ParseException e) {
-                                logger.log(Level.WARNING, "Failed to parse epoch time for installed program artifact.");
-                            }
-
-                            try {
-                                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID(), "RecentActivity", value));
-                                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID(), "RecentActivity", itemMtime));
-                                BlackboardArtifact bbart = tempDb.getContentById(orgId).newArtifact(ARTIFACT_TYPE.TSK_INSTALLED_PROG);
-                                bbart.addAttributes(bbattributes);
-                            } catch (TskCoreException ex) {
-                                logger.log(Level.SEVERE, "Error adding installed program artifact to blackboard.");
-                            }
-                        } 
-                        else if ("WinVersion".equals(dataType)) {
-                            String name = artnode.getAttribute("name");
-
-                            if (name.contains("ProductName")) {
-                                winver = value;
-                            }
-                            if (name.contains("CSDVersion")) {
-                                winver = winver + " " + value;
-                            }
-                            if (name.contains("InstallDate")) {
-                                Long installtime = null;
-                                try {
-                                    Long epochtime = new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy").parse(value).getTime();
-                                    installtime = epochtime.longValue();
-                                    String Tempdate = installtime.toString();
-                                    installtime = Long.valueOf(Tempdate) / 1000;
-                                } catch (ParseException e) {
-                                    logger.log(Level.SEVERE, "RegRipper::Conversion on DateTime -> ", e);
-                                }
-                                try {
-                                    bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID(), "RecentActivity", winver));
-                                    bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID(), "RecentActivity", installtime));
-                                    BlackboardArtifact bbart = tempDb.getContentById(orgId).newArtifact(ARTIFACT_TYPE.TSK_INSTALLED_PROG);
-                                    bbart.addAttributes(bbattributes);
-                                } catch (TskCoreException ex) {
-                                    logger.log(Level.SEVERE, "Error adding installed program artifact to blackboard.");
-                                }
-                            }
-                        } 
-                        else if ("office".equals(dataType)) {
-                            String name = artnode.getAttribute("name");
-                            
-                            try {
-                                BlackboardArtifact bbart = tempDb.getContentById(orgId).newArtifact(ARTIFACT_TYPE.TSK_RECENT_OBJECT);
-                                // @@@ BC: Consider removing this after some more testing. It looks like an Mtime associated with the root key and not the individual item
-                                if (mtime != null) {
-                                    bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED.getTypeID(), "RecentActivity", mtime));
-                                }
-                                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_NAME.getTypeID(), "RecentActivity", name));
-                                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_VALUE.getTypeID(), "RecentActivity", value));
-                                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID(), "RecentActivity", artnode.getNodeName()));
-                                bbart.addAttributes(bbattributes);
-                            } catch (TskCoreException ex) {
-                                logger.log(Level.SEVERE, "Error adding recent object artifact to blackboard.");
-                            }
-                        }
+            }
+        }
+    }
+    
+    /**
+     * Create an installed program artifact for the Windows version of a SOFTWARE hive,
+     * as the autopsywinver regripper plug-in reports it.
+     */
+    private void getWinVersion(RegistryHive hive, AbstractFile regFile) throws IOException {
+        RegistryHive.Key key = hive.getKey("Microsoft\\Windows NT\\CurrentVersion");
+        if (key == null) {
+            return;
+        }
+        RegistryHive.Value installDate = key.getValue("InstallDate");
+        if (installDate == null) {
+            return;
+        }
+        String winver = "";
+        RegistryHive.Value productName = key.getValue("ProductName");
+        if (productName != null) {
+            winver = productName.getString();
+        }
+        RegistryHive.Value csdVersion = key.getValue("CSDVersion");
+        if (csdVersion != null) {
+            winver = winver + " " + csdVersion.getString();
+        }
+        
+        Collection<BlackboardAttribute> bbattributes = new ArrayList<>();
+        try {
+            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID(), "RecentActivity", winver));
+            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID(), "RecentActivity", installDate.getLong()));
+            BlackboardArtifact bbart = regFile.newArtifact(ARTIFACT_TYPE.TSK_INSTALLED_PROG);
+            bbart.addAttributes(bbattributes);
+        } catch (TskCoreException ex) {
+            logger.log(Level.SEVERE, "Error adding installed program artifact to blackboard.");
+        }
+    }
+    
+    /**
+     * Create installed program artifacts for the uninstall entries of a SOFTWARE hive,
+     * as the autopsyuninstall regripper plug-in lists them.
+     */
+    private void getInstalledPrograms(RegistryHive hive, AbstractFile regFile) throws IOException {
+        RegistryHive.Key key = hive.getKey("Microsoft\\Windows\\CurrentVersion\\Uninstall");
+        if (key == null) {
+            return;
+        }
+        for (RegistryHive.Key progKey : key.getSubkeys()) {
+            String display = "";
+            RegistryHive.Value displayName = progKey.getValue("DisplayName");
+            if (displayName != null) {
+                display = displayName.getString();
+            }
+            if (display.isEmpty()) {
+                display = progKey.getName();
+            }
+            RegistryHive.Value displayVersion = progKey.getValue("DisplayVersion");
+            if (displayVersion != null) {
+                display = display + " v." + displayVersion.getString();
+            }
+            
+            Collection<BlackboardAttribute> bbattributes = new ArrayList<>();
+            try {
+                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID(), "RecentActivity", display));
+                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME.getTypeID(), "RecentActivity", progKey.getLastWritten()));
+                BlackboardArtifact bbart = regFile.newArtifact(ARTIFACT_TYPE.TSK_INSTALLED_PROG);
+                bbart.addAttributes(bbattributes);
+            } catch (TskCoreException ex) {
+                logger.log(Level.SEVERE, "Error adding installed program artifact to blackboard.");
+            }
+        }
+    }
+    
+    /**
+     * Create recent object artifacts for the documents of the RecentDocs key of an
+     * NTUSER.DAT hive, most recent first, as the autopsyrecentdocs regripper plug-in
+     * lists them.
+     */
+    private void getRecentDocs(RegistryHive hive, AbstractFile regFile) throws IOException {
+        RegistryHive.Key key = hive.getKey("Software\\Microsoft\\Windows\\CurrentVersion\\Explorer\\RecentDocs");
+        if (key == null) {
+            return;
+        }
+        Map<String, String> docs = new HashMap<>();
+        List<String> mruList = new ArrayList<>();
+        for (RegistryHive.Value value : key.getValues()) {
+            String name = value.getName();
+            if (name.equals("MRUListEx")) {
+                // list of 32 bit value numbers, ending with -1
+                byte[] data = value.getData();
+                for (int i = 0; i + 4 <= data.length; i += 4) {
+                    int item = (data[i] & 0xFF) | ((data[i + 1] & 0xFF) << 8) | ((data[i + 2] & 0xFF) << 16) | ((data[i + 3] & 0xFF) << 24);
+                    if (item == -1) {
+                        break;
                     }
+                    mruList.add(Integer.toString(item));
+                }
+            } else if (name.equals("MRUList")) {
+                // one letter per value name
+                mruList.clear();
+                for (char c : value.getString().toCharArray()) {
+                    mruList.add(Character.toString(c));
                 }
+            } else {
+                docs.put(name, value.getString());
             }
-            return true;
-        } catch (FileNotFoundException ex) {
-            logger.log(Level.SEVERE, "Error finding the registry file.");
-        } catch (SAXException ex) {
-            logger.log(Level.SEVERE, "Error parsing the registry XML: {0}", ex);
-        } catch (IOException ex) {
-            logger.log(Level.SEVERE, "Error building the document parser: {0}", ex);
-        } catch (ParserConfigurationException ex) {
-            logger.log(Level.SEVERE, "Error configuring the registry parser: {0}", ex);
-        } finally {
+        }
+        
+        boolean mostRecent = true;
+        for (String item : mruList) {
+            String doc = docs.get(item);
+            if (doc == null || doc.isEmpty()) {
+                continue;
+            }
+            Collection<BlackboardAttribute> bbattributes = new ArrayList<>();
             try {
-                if (fstream != null) {
-                    fstream.close();
+                BlackboardArtifact bbart = regFile.newArtifact(ARTIFACT_TYPE.TSK_RECENT_OBJECT);
+                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PATH.getTypeID(), "RecentActivity", doc));
+                // the key was last written when its most recent document was opened
+                if (mostRecent) {
+                    bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED.getTypeID(), "RecentActivity", key.getLastWritten()));
                 }
-            } catch (IOException ex) {
+                bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID(), "RecentActivity", "Windows"));
+                bbart.addAttributes(bbattributes);
+            } catch (TskCoreException ex) {
+                logger.log(Level.SEVERE, "Error adding recent object artifact to blackboard.");
             }
+            mostRecent = false;
+        }
+    }
+    
+    /**
+     * Create recent object artifacts for the recent files of Office 97 to 2007 in an
+     * NTUSER.DAT hive, as the officedocs regripper plug-in lists them.
+     */
+    private void getOfficeDocs(RegistryHive hive, AbstractFile regFile) throws IOException {
+        // the last version with an Open Find key, as the plug-in does
+        RegistryHive.Key officeKey = null;
+        for (String version : new String[] {"7.0", "8.0", "9.0", "10.0", "11.0", "12.0"}) {
+            RegistryHive.Key versionKey = hive.getKey("Software\\Microsoft\\Office\\" + version);
+            if (versionKey != null && versionKey.getSubkey("Common\\Open Find") != null) {
+                officeKey = versionKey;
+            }
+        }
+        if (officeKey == null) {
+            return;
+        }
+        // @@@ BC: Consider removing this after some more testing. It looks like an Mtime associated with the root key and not the individual item
+        long mtime = officeKey.getLastWritten();
+        
+        for (String func : new String[] {"Open", "Save As", "File Save"}) {
+            RegistryHive.Key wordKey = officeKey.getSubkey("Common\\Open Find\\Microsoft Office Word\\Settings\\" + func + "\\File Name MRU");
+            if (wordKey == null) {
+                continue;
+            }
+            RegistryHive.Value value = wordKey.getValue("Value");
+            if (value == null) {
+                continue;
+            }
+            for (String doc : value.getStrings()) {
+                addOfficeDoc(regFile, mtime, "Word", func, doc);
+            }
+        }
+        addOfficeDocs(officeKey.getSubkey("Excel\\Recent Files"), regFile, mtime, "Excel", "File");
+        addOfficeDocs(officeKey.getSubkey("PowerPoint\\Recent File List"), regFile, mtime, "PowerPoint", "File");
+    }
+    
+    /**
+     * Create recent object artifacts for the values of an Office recent files key,
+     * in the order of the numbers of the value names.
+     */
+    private void addOfficeDocs(RegistryHive.Key key, AbstractFile regFile, long mtime, String progName, String namePrefix) throws IOException {
+        if (key == null) {
+            return;
+        }
+        TreeMap<Integer, RegistryHive.Value> ordered = new TreeMap<>();
+        for (RegistryHive.Value value : key.getValues()) {
+            String name = value.getName();
+            int index = name.indexOf(namePrefix);
+            try {
+                ordered.put(Integer.parseInt(name.substring(index + namePrefix.length()).trim()), value);
+            } catch (NumberFormatException | IndexOutOfBoundsException ex) {
+                // not a recent file value
+            }
+        }
+        for (RegistryHive.Value value : ordered.values()) {
+            addOfficeDoc(regFile, mtime, progName, value.getName(), value.getString());
+        }
+    }
+    
+    private void addOfficeDoc(AbstractFile regFile, long mtime, String progName, String name, String value) {
+        Collection<BlackboardAttribute> bbattributes = new ArrayList<>();
+        try {
+            BlackboardArtifact bbart = regFile.newArtifact(ARTIFACT_TYPE.TSK_RECENT_OBJECT);
+            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED.getTypeID(), "RecentActivity", mtime));
+            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_NAME.getTypeID(), "RecentActivity", name));
+            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_VALUE.getTypeID(), "RecentActivity", value));
+            bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID(), "RecentActivity", progName));
+            bbart.addAttributes(bbattributes);
+        } catch (TskCoreException ex) {
+            logger.log(Level.SEVERE, "Error adding recent object artifact to blackboard.");
         }
-        return false;
     }
 
     @Override
@@ -562,7 +588,7 @@ public String getName() {
 
     @Override
     public String getDescription() {
-        return "Extracts activity from the Windows registry utilizing RegRipper.";
+        return "Extracts activity from the Windows registry, and runs RegRipper on the registry hives.";
     }
 
     @Override
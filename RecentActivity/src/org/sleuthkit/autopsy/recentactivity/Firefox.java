@@ -143,8 +143,6 @@ private void getHistory(Content dataSource, IngestDataSourceWorkerController con
             ++j;
             dbFile.delete();
         }
-
-        services.fireModuleDataEvent(new ModuleDataEvent("Recent Activity", BlackboardArtifact.ARTIFACT_TYPE.TSK_WEB_HISTORY));
     }
 
     /**
@@ -209,8 +207,6 @@ private void getBookmark(Content dataSource, IngestDataSourceWorkerController co
             ++j;
             dbFile.delete();
         }
-
-        services.fireModuleDataEvent(new ModuleDataEvent("Recent Activity", BlackboardArtifact.ARTIFACT_TYPE.TSK_WEB_BOOKMARK));
     }
 
     /**
@@ -285,8 +281,6 @@ private void getCookie(Content dataSource, IngestDataSourceWorkerController cont
             ++j;
             dbFile.delete();
         }
-
-        services.fireModuleDataEvent(new ModuleDataEvent("Recent Activity", BlackboardArtifact.ARTIFACT_TYPE.TSK_WEB_COOKIE));
     }
     
     /**
@@ -385,8 +379,6 @@ private void getDownloadPreVersion24(Content dataSource, IngestDataSourceWorkerC
             dbFile.delete();
             break;
         }
-        
-        services.fireModuleDataEvent(new ModuleDataEvent("Recent Activity", BlackboardArtifact.ARTIFACT_TYPE.TSK_WEB_DOWNLOAD));
     }
     
     /**
@@ -475,8 +467,6 @@ private void getDownloadVersion24(Content dataSource, IngestDataSourceWorkerCont
             dbFile.delete();
             break;
         }
-        
-        services.fireModuleDataEvent(new ModuleDataEvent("Recent Activity", BlackboardArtifact.ARTIFACT_TYPE.TSK_WEB_DOWNLOAD));
     }
 
     @Override
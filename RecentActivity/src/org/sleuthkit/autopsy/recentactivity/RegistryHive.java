@@ -0,0 +1,494 @@
+/*
+ *
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.recentactivity;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.sleuthkit.autopsy.datamodel.ContentUtils;
+import org.sleuthkit.datamodel.AbstractFile;
+import org.sleuthkit.datamodel.TskCoreException;
+
+/**
+ * Reader of Windows registry hive (REGF) files, straight from the image content.
+ *
+ * The hive is not copied out of the image nor loaded whole: the cells of the
+ * keys and values are read as they are visited, through a cache of the most
+ * recently read pages of the hive.
+ *
+ * Based on the REGF format as documented by the libregf and Parse::Win32Registry
+ * projects: a 4096 byte base block, followed by hive bins of cells. Each cell
+ * starts with its size, negative when allocated, and cell offsets are relative
+ * to the end of the base block.
+ */
+class RegistryHive {
+
+    static final int REG_SZ = 1;
+    static final int REG_EXPAND_SZ = 2;
+    static final int REG_BINARY = 3;
+    static final int REG_DWORD = 4;
+    static final int REG_DWORD_BIG_ENDIAN = 5;
+    static final int REG_MULTI_SZ = 7;
+    static final int REG_QWORD = 11;
+    private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+    private static final Charset ASCII = Charset.forName("ISO-8859-1");
+    private static final int BASE_BLOCK_SIZE = 0x1000;
+    private static final int PAGE_SIZE = 64 * 1024;
+    private static final int MAX_CACHED_PAGES = 64;
+    // bigger cells are corrupt, hive bins are at most a few MB
+    private static final int MAX_CELL_SIZE = 16 * 1024 * 1024;
+    // data bytes of each segment of a big data value, the segment cells are padded
+    private static final int BIG_DATA_SEGMENT_SIZE = 16344;
+    // difference between the FILETIME (1601) and the unix epochs, in 100ns units
+    private static final long FILETIME_EPOCH_DIFF = 116444736000000000L;
+    private final String name;
+    private final long size;
+    private final Reader reader;
+    private final int rootCellOffset;
+    private final Map<Long, byte[]> pages = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    /**
+     * Open a hive file of the image
+     * @param file registry hive file
+     * @throws IOException if the file is not a hive or could not be read
+     */
+    RegistryHive(final AbstractFile file) throws IOException {
+        this(file.getName(), file.getSize(), new Reader() {
+            @Override
+            public int read(byte[] buf, long offset, int length) throws TskCoreException {
+                return ContentUtils.readFully(file, buf, 0, offset, length);
+            }
+        });
+    }
+
+    /**
+     * Open a hive read by a reader
+     * @param name name of the hive, for the error messages
+     * @param size size of the hive in bytes
+     * @param reader reader of the bytes of the hive
+     * @throws IOException if the content is not a hive or could not be read
+     */
+    RegistryHive(String name, long size, Reader reader) throws IOException {
+        this.name = name;
+        this.size = size;
+        this.reader = reader;
+        if (size < BASE_BLOCK_SIZE) {
+            throw new IOException("Registry hive too small: " + name);
+        }
+        byte[] baseBlock = read(0, 0x30);
+        if (baseBlock[0] != 'r' || baseBlock[1] != 'e' || baseBlock[2] != 'g' || baseBlock[3] != 'f') {
+            throw new IOException("Not a registry hive: " + name);
+        }
+        rootCellOffset = getInt(baseBlock, 0x24);
+    }
+
+    /**
+     * Reader of the bytes of a hive
+     */
+    interface Reader {
+
+        /**
+         * Read bytes of the hive into the start of a buffer
+         * @param buf buffer to read into
+         * @param offset offset in the hive to read from
+         * @param length number of bytes to read
+         * @return number of bytes read, less than length only at the end of
+         * the hive
+         * @throws TskCoreException if the bytes could not be read
+         */
+        int read(byte[] buf, long offset, int length) throws TskCoreException;
+    }
+
+    /**
+     * @return the root key of the hive
+     * @throws IOException if the key could not be read
+     */
+    Key getRootKey() throws IOException {
+        return new Key(rootCellOffset);
+    }
+
+    /**
+     * Get a key by its path from the root key
+     * @param path key names separated by backslashes, e.g. "Microsoft\\Windows NT\\CurrentVersion"
+     * @return the key, or null if not found
+     * @throws IOException if a key could not be read
+     */
+    Key getKey(String path) throws IOException {
+        return getRootKey().getSubkey(path);
+    }
+
+    /**
+     * Convert a FILETIME to seconds since the unix epoch
+     * @param filetime 100ns intervals since 1601
+     * @return seconds since 1970
+     */
+    static long filetimeToEpochSeconds(long filetime) {
+        return (filetime - FILETIME_EPOCH_DIFF) / 10000000L;
+    }
+
+    /**
+     * Registry key, read from its nk cell.
+     */
+    class Key {
+        private final String name;
+        private final long lastWritten;
+        private final int numSubkeys;
+        private final int subkeysListOffset;
+        private final int numValues;
+        private final int valuesListOffset;
+
+        private Key(int cellOffset) throws IOException {
+            byte[] nk = readCell(cellOffset);
+            if (nk.length < 0x4C || nk[0] != 'n' || nk[1] != 'k') {
+                throw new IOException("Invalid key cell at offset " + cellOffset + " of hive " + RegistryHive.this.name);
+            }
+            int flags = getShort(nk, 0x2);
+            lastWritten = getLong(nk, 0x4);
+            numSubkeys = getInt(nk, 0x14);
+            subkeysListOffset = getInt(nk, 0x1C);
+            numValues = getInt(nk, 0x24);
+            valuesListOffset = getInt(nk, 0x28);
+            int nameLength = Math.min(getShort(nk, 0x48), nk.length - 0x4C);
+            // compressed names are stored in single bytes
+            name = new String(nk, 0x4C, nameLength, (flags & 0x20) != 0 ? ASCII : UTF_16LE);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return last written time, in seconds since the unix epoch
+         */
+        long getLastWritten() {
+            return filetimeToEpochSeconds(lastWritten);
+        }
+
+        /**
+         * @return the subkeys of the key, in the order of the hive
+         * @throws IOException if a subkey could not be read
+         */
+        List<Key> getSubkeys() throws IOException {
+            List<Key> subkeys = new ArrayList<>();
+            if (numSubkeys > 0 && subkeysListOffset != -1) {
+                for (int offset : getSubkeyOffsets(subkeysListOffset, 0)) {
+                    subkeys.add(new Key(offset));
+                }
+            }
+            return subkeys;
+        }
+
+        /**
+         * Get a subkey by its path from this key, ignoring case as Windows does
+         * @param path key names separated by backslashes
+         * @return the subkey, or null if not found
+         * @throws IOException if a subkey could not be read
+         */
+        Key getSubkey(String path) throws IOException {
+            Key key = this;
+            for (String keyName : path.split("\\\\")) {
+                if (keyName.isEmpty()) {
+                    continue;
+                }
+                Key found = null;
+                for (Key subkey : key.getSubkeys()) {
+                    if (subkey.getName().equalsIgnoreCase(keyName)) {
+                        found = subkey;
+                        break;
+                    }
+                }
+                if (found == null) {
+                    return null;
+                }
+                key = found;
+            }
+            return key;
+        }
+
+        /**
+         * @return the values of the key, in the order of the hive
+         * @throws IOException if a value could not be read
+         */
+        List<Value> getValues() throws IOException {
+            if (numValues <= 0 || valuesListOffset == -1) {
+                return Collections.emptyList();
+            }
+            byte[] list = readCell(valuesListOffset);
+            int count = Math.min(numValues, list.length / 4);
+            List<Value> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                values.add(new Value(getInt(list, i * 4)));
+            }
+            return values;
+        }
+
+        /**
+         * Get a value by its name, ignoring case
+         * @param valueName name of the value, empty for the default value
+         * @return the value, or null if not found
+         * @throws IOException if a value could not be read
+         */
+        Value getValue(String valueName) throws IOException {
+            for (Value value : getValues()) {
+                if (value.getName().equalsIgnoreCase(valueName)) {
+                    return value;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Registry value, read from its vk cell. The data is read when asked for.
+     */
+    class Value {
+        private final String name;
+        private final int type;
+        private final int dataSize;
+        private final int dataOffset;
+
+        private Value(int cellOffset) throws IOException {
+            byte[] vk = readCell(cellOffset);
+            if (vk.length < 0x14 || vk[0] != 'v' || vk[1] != 'k') {
+                throw new IOException("Invalid value cell at offset " + cellOffset + " of hive " + RegistryHive.this.name);
+            }
+            int nameLength = Math.min(getShort(vk, 0x2), vk.length - 0x14);
+            dataSize = getInt(vk, 0x4);
+            dataOffset = getInt(vk, 0x8);
+            type = getInt(vk, 0xC);
+            int flags = getShort(vk, 0x10);
+            name = new String(vk, 0x14, nameLength, (flags & 0x1) != 0 ? ASCII : UTF_16LE);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        int getType() {
+            return type;
+        }
+
+        /**
+         * @return raw data of the value
+         * @throws IOException if the data could not be read
+         */
+        byte[] getData() throws IOException {
+            int length = dataSize & 0x7FFFFFFF;
+            if ((dataSize & 0x80000000) != 0) {
+                // small data is stored in the offset field itself
+                byte[] data = new byte[Math.min(length, 4)];
+                for (int i = 0; i < data.length; i++) {
+                    data[i] = (byte) (dataOffset >>> (8 * i));
+                }
+                return data;
+            }
+            if (length == 0) {
+                return new byte[0];
+            }
+            byte[] cell = readCell(dataOffset);
+            if (cell.length >= 8 && cell[0] == 'd' && cell[1] == 'b' && length > cell.length) {
+                return readBigData(cell, length);
+            }
+            byte[] data = new byte[Math.min(length, cell.length)];
+            System.arraycopy(cell, 0, data, 0, data.length);
+            return data;
+        }
+
+        /**
+         * Get the data of a string value
+         * @return the string, up to the first null character, or the data as
+         * a number for DWORD and QWORD values
+         * @throws IOException if the data could not be read
+         */
+        String getString() throws IOException {
+            switch (type) {
+                case REG_DWORD:
+                case REG_DWORD_BIG_ENDIAN:
+                case REG_QWORD:
+                    return Long.toString(getLong());
+                default:
+                    return toString(getData());
+            }
+        }
+
+        /**
+         * @return the strings of a REG_MULTI_SZ value, or of any value holding
+         * null separated UTF-16 strings
+         * @throws IOException if the data could not be read
+         */
+        List<String> getStrings() throws IOException {
+            List<String> strings = new ArrayList<>();
+            for (String s : new String(getData(), UTF_16LE).split("\u0000")) {
+                if (!s.isEmpty()) {
+                    strings.add(s);
+                }
+            }
+            return strings;
+        }
+
+        /**
+         * @return the data of a DWORD or QWORD value
+         * @throws IOException if the data could not be read
+         */
+        long getLong() throws IOException {
+            byte[] data = getData();
+            if (type == REG_DWORD_BIG_ENDIAN && data.length >= 4) {
+                return ((data[0] & 0xFFL) << 24) | ((data[1] & 0xFFL) << 16) | ((data[2] & 0xFFL) << 8) | (data[3] & 0xFFL);
+            }
+            if (type == REG_QWORD && data.length >= 8) {
+                return RegistryHive.getLong(data, 0);
+            }
+            if (data.length >= 4) {
+                return getInt(data, 0) & 0xFFFFFFFFL;
+            }
+            return 0;
+        }
+
+        private String toString(byte[] data) {
+            String s = new String(data, UTF_16LE);
+            int end = s.indexOf('\u0000');
+            return end >= 0 ? s.substring(0, end) : s;
+        }
+    }
+
+    /**
+     * Collect the offsets of the keys of a subkeys list, following index roots
+     */
+    private List<Integer> getSubkeyOffsets(int listOffset, int depth) throws IOException {
+        List<Integer> offsets = new ArrayList<>();
+        byte[] list = readCell(listOffset);
+        if (list.length < 4 || depth > 8) {
+            return offsets;
+        }
+        int count = getShort(list, 0x2);
+        if ((list[0] == 'l' && (list[1] == 'f' || list[1] == 'h'))) {
+            // offset and hash pairs
+            for (int i = 0; i < count && 4 + i * 8 + 4 <= list.length; i++) {
+                offsets.add(getInt(list, 4 + i * 8));
+            }
+        } else if (list[0] == 'l' && list[1] == 'i') {
+            for (int i = 0; i < count && 4 + i * 4 + 4 <= list.length; i++) {
+                offsets.add(getInt(list, 4 + i * 4));
+            }
+        } else if (list[0] == 'r' && list[1] == 'i') {
+            // index root, list of subkeys lists
+            for (int i = 0; i < count && 4 + i * 4 + 4 <= list.length; i++) {
+                offsets.addAll(getSubkeyOffsets(getInt(list, 4 + i * 4), depth + 1));
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Read the data of a big data (db) value, stored in segments of
+     * BIG_DATA_SEGMENT_SIZE bytes, the last one holding the rest
+     */
+    private byte[] readBigData(byte[] db, int length) throws IOException {
+        int numSegments = getShort(db, 0x2);
+        byte[] segmentsList = readCell(getInt(db, 0x4));
+        byte[] data = new byte[length];
+        int copied = 0;
+        for (int i = 0; i < numSegments && i * 4 + 4 <= segmentsList.length && copied < length; i++) {
+            byte[] segment = readCell(getInt(segmentsList, i * 4));
+            int toCopy = Math.min(Math.min(BIG_DATA_SEGMENT_SIZE, segment.length), length - copied);
+            System.arraycopy(segment, 0, data, copied, toCopy);
+            copied += toCopy;
+        }
+        return copied == length ? data : Arrays.copyOf(data, copied);
+    }
+
+    /**
+     * Read the data of a cell, without its size field
+     * @param cellOffset offset of the cell, relative to the first hive bin
+     */
+    private byte[] readCell(int cellOffset) throws IOException {
+        long offset = BASE_BLOCK_SIZE + (cellOffset & 0xFFFFFFFFL);
+        if (cellOffset == -1 || offset + 4 > size) {
+            throw new IOException("Invalid cell offset " + cellOffset + " in hive " + name);
+        }
+        int cellSize = Math.abs(getInt(read(offset, 4), 0));
+        if (cellSize < 4 || cellSize > MAX_CELL_SIZE || offset + cellSize > size) {
+            throw new IOException("Invalid cell size " + cellSize + " at offset " + cellOffset + " in hive " + name);
+        }
+        return read(offset + 4, cellSize - 4);
+    }
+
+    /**
+     * Read bytes of the hive through the page cache
+     */
+    private byte[] read(long offset, int length) throws IOException {
+        byte[] buf = new byte[length];
+        int copied = 0;
+        while (copied < length) {
+            long pageStart = ((offset + copied) / PAGE_SIZE) * PAGE_SIZE;
+            byte[] page = getPage(pageStart);
+            int pageOffset = (int) (offset + copied - pageStart);
+            int toCopy = Math.min(length - copied, page.length - pageOffset);
+            if (toCopy <= 0) {
+                throw new IOException("Read past the end of hive " + RegistryHive.this.name);
+            }
+            System.arraycopy(page, pageOffset, buf, copied, toCopy);
+            copied += toCopy;
+        }
+        return buf;
+    }
+
+    private byte[] getPage(long pageStart) throws IOException {
+        byte[] page = pages.get(pageStart);
+        if (page == null) {
+            int pageLength = (int) Math.min(PAGE_SIZE, size - pageStart);
+            page = new byte[Math.max(pageLength, 0)];
+            int read;
+            try {
+                read = Math.max(reader.read(page, pageStart, page.length), 0);
+            } catch (TskCoreException ex) {
+                throw new IOException("Error reading hive " + name, ex);
+            }
+            if (read < page.length) {
+                page = Arrays.copyOf(page, read);
+            }
+            pages.put(pageStart, page);
+        }
+        return page;
+    }
+
+    private static int getShort(byte[] buf, int offset) {
+        return (buf[offset] & 0xFF) | ((buf[offset + 1] & 0xFF) << 8);
+    }
+
+    private static int getInt(byte[] buf, int offset) {
+        return (buf[offset] & 0xFF) | ((buf[offset + 1] & 0xFF) << 8)
+                | ((buf[offset + 2] & 0xFF) << 16) | ((buf[offset + 3] & 0xFF) << 24);
+    }
+
+    private static long getLong(byte[] buf, int offset) {
+        return (getInt(buf, offset) & 0xFFFFFFFFL) | ((long) getInt(buf, offset + 4) << 32);
+    }
+}
@@ -24,15 +24,21 @@
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import org.sleuthkit.autopsy.coreutils.Logger;
 import org.sleuthkit.autopsy.coreutils.PlatformUtil;
 import org.sleuthkit.autopsy.coreutils.XMLUtil;
 import org.sleuthkit.autopsy.ingest.PipelineContext;
@@ -40,9 +46,7 @@
 import org.sleuthkit.autopsy.ingest.IngestModuleDataSource;
 import org.sleuthkit.autopsy.ingest.IngestModuleInit;
 import org.sleuthkit.autopsy.ingest.IngestServices;
-import org.sleuthkit.autopsy.ingest.ModuleDataEvent;
 import org.sleuthkit.datamodel.AbstractFile;
-import org.sleuthkit.datamodel.BlackboardArtifact;
 import org.sleuthkit.datamodel.BlackboardArtifact.ARTIFACT_TYPE;
 import org.sleuthkit.datamodel.BlackboardAttribute;
 import org.sleuthkit.datamodel.BlackboardAttribute.ATTRIBUTE_TYPE;
@@ -77,6 +81,8 @@ public class SearchEngineURLQueryAnalyzer extends Extract {
     private static SearchEngineURLQueryAnalyzer.SearchEngine[] engines;
     private static Document xmlinput;
     private static final SearchEngineURLQueryAnalyzer.SearchEngine NullEngine = new SearchEngineURLQueryAnalyzer.SearchEngine("NONE", "NONE", new HashMap<String,String>());
+    //search engine of each URL host seen, so that the engines are scanned once per host
+    private final Map<String, SearchEngineURLQueryAnalyzer.SearchEngine> hostEngines = new HashMap<String, SearchEngineURLQueryAnalyzer.SearchEngine>();
 
     
     //hide public constructor to prevent from instantiation by ingest module loader
@@ -88,12 +94,27 @@ private static class SearchEngine   {
         private  String _engineName;
         private  String _domainSubstring;
         private  Map<String,String> _splits;
+        //compiled split regex for each plain token
+        private  Map<String,Pattern> _splitPatterns;
         private  int _count;
         
         SearchEngine(String engineName, String domainSubstring, Map<String, String> splits){
             _engineName = engineName;
             _domainSubstring = domainSubstring;
             _splits = splits;
+            _splitPatterns = new LinkedHashMap<String,Pattern>();
+            for (Map.Entry<String,String> kvp : splits.entrySet()) {
+                //want to determine if string contains a string based on splitkey, but we want to split the string on splitKeyConverted due to regex
+                String v = kvp.getValue();
+                if (v.contains("\\?")) {
+                    v = v.replace("\\?", "?");
+                }
+                try {
+                    _splitPatterns.put(kvp.getKey(), Pattern.compile(v));
+                } catch (PatternSyntaxException ex) {
+                    Logger.getLogger(SearchEngine.class.getName()).log(Level.WARNING, "Invalid split token " + kvp.getValue() + " for search engine " + engineName, ex);
+                }
+            }
             _count = 0;
         }
         
@@ -117,6 +138,10 @@ Set<Map.Entry<String,String>> getSplits(){
             return this._splits.entrySet();
         }
         
+        Set<Map.Entry<String,Pattern>> getSplitPatterns(){
+            return this._splitPatterns.entrySet();
+        }
+        
         @Override
         public String toString(){
             String split = " ";
@@ -153,24 +178,53 @@ private void createEngines(){
     }
     
     /**
-     * Returns which of the supported SearchEngines, if any, the given string
-     * belongs to.
+     * Returns which of the supported SearchEngines, if any, the given URL
+     * belongs to. The engine is determined by the host of the URL, and
+     * remembered for the host.
      *
-     * @param domain domain as part of the URL
-     * @return supported search engine the domain belongs to, if any
+     * @param url the URL
+     * @return supported search engine the URL host belongs to, if any
      *
      */
     
-    private static SearchEngineURLQueryAnalyzer.SearchEngine getSearchEngine(String domain){     
+    private SearchEngineURLQueryAnalyzer.SearchEngine getSearchEngine(String url){     
         if (engines == null) {
             return SearchEngineURLQueryAnalyzer.NullEngine;
         }
-        for(int i = 0; i < engines.length; i++){
-            if(domain.contains(engines[i].getDomainSubstring())){
-                return engines[i];
+        final String host = getHost(url);
+        SearchEngineURLQueryAnalyzer.SearchEngine engine = hostEngines.get(host);
+        if (engine == null) {
+            engine = SearchEngineURLQueryAnalyzer.NullEngine;
+            for(int i = 0; i < engines.length; i++){
+                if(host.contains(engines[i].getDomainSubstring())){
+                    engine = engines[i];
+                    break;
+                }
             }
+            hostEngines.put(host, engine);
         }
-        return SearchEngineURLQueryAnalyzer.NullEngine;
+        return engine;
+    }
+    
+    /**
+     * Get the host part of a URL, including the scheme separator if any, so
+     * that domain substrings match it the same way as the full URL
+     *
+     * @param url the URL
+     * @return URL up to the start of the path, query or fragment
+     */
+    private static String getHost(String url) {
+        final int schemeEnd = url.indexOf("://");
+        final int hostStart = schemeEnd == -1 ? 0 : schemeEnd + 3;
+        int hostEnd = url.length();
+        for (int i = hostStart; i < url.length(); i++) {
+            final char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                hostEnd = i;
+                break;
+            }
+        }
+        return url.substring(0, hostEnd);
     }
     
    
@@ -193,10 +247,9 @@ private void getSearchEngineNames(){
      */
        
 
-    private String extractSearchEngineQuery(String url){
+    private String extractSearchEngineQuery(SearchEngineURLQueryAnalyzer.SearchEngine eng, String url){
         String x = "NoQuery";
-        SearchEngineURLQueryAnalyzer.SearchEngine eng = getSearchEngine(url);
-        for(Map.Entry<String,String> kvp : eng.getSplits()){
+        for(Map.Entry<String,Pattern> kvp : eng.getSplitPatterns()){
             if(url.contains(kvp.getKey())){
                 x = split2(url, kvp.getValue());
                 break;
@@ -215,19 +268,14 @@ private String extractSearchEngineQuery(String url){
      * Splits URLs based on a delimeter (key). .contains() and .split()
      *
      * @param url The URL to be split
-     * @param value the delimeter value used to split the URL into its
+     * @param value the compiled delimeter regex used to split the URL into its
      * search token, extracted from the xml.
      * @return The extracted search query
      *
      */
-    private String split2(String url, String value) {
+    private String split2(String url, Pattern value) {
         String basereturn = "NoQuery";
-        String v = value;
-        //Want to determine if string contains a string based on splitkey, but we want to split the string on splitKeyConverted due to regex
-        if (value.contains("\\?")) {
-            v = value.replace("\\?", "?");
-        }
-        String[] sp = url.split(v);
+        String[] sp = value.split(url);
         if (sp.length >= 2) {
             if (sp[sp.length - 1].contains("&")) {
                 basereturn = sp[sp.length - 1].split("&")[0];
@@ -238,83 +286,141 @@ private String split2(String url, String value) {
         return basereturn;
     }
 
+    @SuppressWarnings("deprecation")
     private void getURLs(Content dataSource, IngestDataSourceWorkerController controller) {
         int totalQueries = 0;
+        ResultSet rs = null;
         try {
-            //from blackboard_artifacts
-            Collection<BlackboardArtifact> listArtifacts = currentCase.getSleuthkitCase().getMatchingArtifacts("WHERE (`artifact_type_id` = '" + ARTIFACT_TYPE.TSK_WEB_BOOKMARK.getTypeID()
-                    + "' OR `artifact_type_id` = '" + ARTIFACT_TYPE.TSK_WEB_HISTORY.getTypeID() + "') ");  //List of every 'web_history' and 'bookmark' artifact
-            logger.info("Processing " + listArtifacts.size() + " blackboard artifacts.");
-            getAll:
-            for (BlackboardArtifact artifact : listArtifacts) {
-                //initializing default attributes
-                String query = "";
-                String searchEngineDomain = "";
-                String browser = "";
-                long last_accessed = -1;
-
-                long fileId = artifact.getObjectID();
-                boolean isFromSource = tskCase.isFileFromSource(dataSource, fileId);
-                if (!isFromSource) {
-                    //File was from a different dataSource. Skipping.
-                    continue;
-                }
-                
-                AbstractFile file = tskCase.getAbstractFileById(fileId);
-                if (file == null ) {
-                    continue; 
-                }
+            //make sure the artifacts posted by the other extractors are written
+            services.flushArtifacts();
+            //attributes of interest of every 'web_history' and 'bookmark' artifact, grouped by artifact
+            rs = tskCase.runQuery("SELECT art.artifact_id, art.obj_id, attr.attribute_type_id, attr.value_text, attr.value_int64 "
+                    + "FROM blackboard_artifacts AS art INNER JOIN blackboard_attributes AS attr ON art.artifact_id = attr.artifact_id "
+                    + "WHERE art.artifact_type_id IN (" + ARTIFACT_TYPE.TSK_WEB_BOOKMARK.getTypeID()
+                    + ", " + ARTIFACT_TYPE.TSK_WEB_HISTORY.getTypeID() + ") "
+                    + "AND attr.attribute_type_id IN (" + ATTRIBUTE_TYPE.TSK_URL.getTypeID()
+                    + ", " + ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID()
+                    + ", " + ATTRIBUTE_TYPE.TSK_DOMAIN.getTypeID()
+                    + ", " + ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED.getTypeID() + ") "
+                    + "ORDER BY art.artifact_id");
 
-                SearchEngineURLQueryAnalyzer.SearchEngine se = NullEngine;
-                //from blackboard_attributes
-                Collection<BlackboardAttribute> listAttributes = currentCase.getSleuthkitCase().getMatchingAttributes("Where `artifact_id` = " + artifact.getArtifactID());
-                getAttributes:
-                for (BlackboardAttribute attribute : listAttributes) {
-                    if (controller.isCancelled()) {
-                        break getAll;       //User cancled the process.
-                    }
-                    if (attribute.getAttributeTypeID() == BlackboardAttribute.ATTRIBUTE_TYPE.TSK_URL.getTypeID()) {
-                        final String urlString = attribute.getValueString();
-                        se = getSearchEngine(urlString);
-                        if (!se.equals(NullEngine)) {
-                            query = extractSearchEngineQuery(attribute.getValueString());
-                            if (query.equals("NoQuery") || query.equals("")) {   //False positive match, artifact was not a query.
-                                break getAttributes;
-                            }
-                        } else if (se.equals(NullEngine)) {
-                            break getAttributes;    //could not determine type. Will move onto next artifact
-                        }
-                    } else if (attribute.getAttributeTypeID() == BlackboardAttribute.ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID()) {
-                        browser = attribute.getValueString();
-                    } else if (attribute.getAttributeTypeID() == BlackboardAttribute.ATTRIBUTE_TYPE.TSK_DOMAIN.getTypeID()) {
-                        searchEngineDomain = attribute.getValueString();
-                    } else if (attribute.getAttributeTypeID() == BlackboardAttribute.ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED.getTypeID()) {
-                        last_accessed = attribute.getValueLong();
+            //source files of the artifacts, null if the file is from a different data source
+            final Map<Long, AbstractFile> files = new HashMap<Long, AbstractFile>();
+            WebArtifact current = null;
+            int numArtifacts = 0;
+            while (rs.next()) {
+                if (controller.isCancelled()) {
+                    break;       //User cancled the process.
+                }
+                final long artifactId = rs.getLong("artifact_id");
+                if (current == null || current.artifactId != artifactId) {
+                    if (current != null && addSearchQuery(current, files, dataSource)) {
+                        ++totalQueries;
                     }
+                    current = new WebArtifact(artifactId, rs.getLong("obj_id"));
+                    ++numArtifacts;
                 }
 
-                if (!se.equals(NullEngine) && !query.equals("NoQuery") && !query.equals("")) {
-                        Collection<BlackboardAttribute> bbattributes = new ArrayList<BlackboardAttribute>();
-                        bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DOMAIN.getTypeID(), MODULE_NAME, searchEngineDomain));
-                        bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_TEXT.getTypeID(), MODULE_NAME, query));
-                        bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID(), MODULE_NAME, browser));
-                        bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED.getTypeID(), MODULE_NAME, last_accessed));
-                        this.addArtifact(ARTIFACT_TYPE.TSK_WEB_SEARCH_QUERY, file, bbattributes);
-                        se.increment();
-                        ++totalQueries;
+                final int attrTypeId = rs.getInt("attribute_type_id");
+                if (attrTypeId == ATTRIBUTE_TYPE.TSK_URL.getTypeID()) {
+                    current.url = rs.getString("value_text");
+                } else if (attrTypeId == ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID()) {
+                    current.browser = rs.getString("value_text");
+                } else if (attrTypeId == ATTRIBUTE_TYPE.TSK_DOMAIN.getTypeID()) {
+                    current.domain = rs.getString("value_text");
+                } else if (attrTypeId == ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED.getTypeID()) {
+                    current.lastAccessed = rs.getLong("value_int64");
                 }
             }
+            if (current != null && !controller.isCancelled() && addSearchQuery(current, files, dataSource)) {
+                ++totalQueries;
+            }
+            logger.info("Processed " + numArtifacts + " blackboard artifacts.");
+        } catch (SQLException e) {
+            logger.log(Level.SEVERE, "Encountered error retrieving artifacts for search engine queries", e);
         } catch (TskException e) {
             logger.log(Level.SEVERE, "Encountered error retrieving artifacts for search engine queries", e);
         } finally {
+            if (rs != null) {
+                try {
+                    tskCase.closeRunQuery(rs);
+                } catch (SQLException e) {
+                    logger.log(Level.WARNING, "Error closing the web artifacts query", e);
+                }
+            }
             if (controller.isCancelled()) {
                 logger.info("Operation terminated by user.");
             }
-            services.fireModuleDataEvent(new ModuleDataEvent("RecentActivity", BlackboardArtifact.ARTIFACT_TYPE.TSK_WEB_SEARCH_QUERY));
             logger.info("Extracted " + totalQueries + " queries from the blackboard");
         }
     }
 
+    /**
+     * Add a search query artifact for a web artifact, if its URL is a search
+     * engine query and its file is from the data source being analyzed
+     *
+     * @param artifact web history or bookmark artifact attributes
+     * @param files source files already looked up, by id
+     * @param dataSource data source being analyzed
+     * @return true if a query was added
+     * @throws TskException
+     */
+    private boolean addSearchQuery(WebArtifact artifact, Map<Long, AbstractFile> files, Content dataSource) throws TskException {
+        if (artifact.url == null) {
+            return false;
+        }
+        final SearchEngineURLQueryAnalyzer.SearchEngine se = getSearchEngine(artifact.url);
+        if (se.equals(NullEngine)) {
+            return false;   //could not determine type
+        }
+        final String query = extractSearchEngineQuery(se, artifact.url);
+        if (query.equals("NoQuery") || query.equals("")) {   //False positive match, artifact was not a query.
+            return false;
+        }
+
+        AbstractFile file;
+        if (files.containsKey(artifact.fileId)) {
+            file = files.get(artifact.fileId);
+        } else {
+            file = null;
+            if (tskCase.isFileFromSource(dataSource, artifact.fileId)) {
+                file = tskCase.getAbstractFileById(artifact.fileId);
+            }
+            //File may be from a different dataSource, remember to skip it.
+            files.put(artifact.fileId, file);
+        }
+        if (file == null) {
+            return false;
+        }
+
+        Collection<BlackboardAttribute> bbattributes = new ArrayList<BlackboardAttribute>();
+        bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DOMAIN.getTypeID(), MODULE_NAME, artifact.domain));
+        bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_TEXT.getTypeID(), MODULE_NAME, query));
+        bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_PROG_NAME.getTypeID(), MODULE_NAME, artifact.browser));
+        bbattributes.add(new BlackboardAttribute(ATTRIBUTE_TYPE.TSK_DATETIME_ACCESSED.getTypeID(), MODULE_NAME, artifact.lastAccessed));
+        this.addArtifact(ARTIFACT_TYPE.TSK_WEB_SEARCH_QUERY, file, bbattributes);
+        se.increment();
+        return true;
+    }
+
+    /**
+     * Attributes of a web history or bookmark artifact used for the analysis
+     */
+    private static class WebArtifact {
+
+        private final long artifactId;
+        private final long fileId;
+        private String url = null;
+        private String domain = "";
+        private String browser = "";
+        private long lastAccessed = -1;
+
+        WebArtifact(long artifactId, long fileId) {
+            this.artifactId = artifactId;
+            this.fileId = fileId;
+        }
+    }
+
    private String getTotals() {
         String total = "";
         if (engines == null) {
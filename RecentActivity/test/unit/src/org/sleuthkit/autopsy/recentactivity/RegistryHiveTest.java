@@ -0,0 +1,217 @@
+/*
+ * Autopsy Forensic Browser
+ *
+ * Copyright 2013 Basis Technology Corp.
+ * Contact: carrier <at> sleuthkit <dot> org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sleuthkit.autopsy.recentactivity;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests the reading of keys and values of a registry hive built in memory
+ */
+public class RegistryHiveTest extends TestCase {
+
+    private static final Charset UTF_16LE = Charset.forName("UTF-16LE");
+    private static final Charset ASCII = Charset.forName("ISO-8859-1");
+    private static final int BASE_BLOCK_SIZE = 0x1000;
+    private static final int SEGMENT_SIZE = 16344;
+    // seconds since the unix epoch of 2013-01-01
+    private static final long LAST_WRITTEN = 1356998400L;
+    private static final long FILETIME_EPOCH_DIFF = 116444736000000000L;
+
+    /**
+     * Writes the cells of a hive after its base block
+     */
+    private static class HiveBuilder {
+
+        private byte[] hive = new byte[BASE_BLOCK_SIZE];
+
+        HiveBuilder() {
+            hive[0] = 'r';
+            hive[1] = 'e';
+            hive[2] = 'g';
+            hive[3] = 'f';
+        }
+
+        /**
+         * Add an allocated cell, 8 byte aligned
+         * @return offset of the cell, relative to the first hive bin
+         */
+        int cell(byte[] data) {
+            int cellSize = (data.length + 4 + 7) & ~7;
+            int offset = hive.length;
+            hive = Arrays.copyOf(hive, offset + cellSize);
+            putInt(hive, offset, -cellSize);
+            System.arraycopy(data, 0, hive, offset + 4, data.length);
+            return offset - BASE_BLOCK_SIZE;
+        }
+
+        int key(String name, int numSubkeys, int subkeysListOffset, int numValues, int valuesListOffset) {
+            byte[] nameBytes = name.getBytes(ASCII);
+            byte[] nk = new byte[0x4C + nameBytes.length];
+            nk[0] = 'n';
+            nk[1] = 'k';
+            putShort(nk, 0x2, 0x20);
+            putLong(nk, 0x4, LAST_WRITTEN * 10000000L + FILETIME_EPOCH_DIFF);
+            putInt(nk, 0x14, numSubkeys);
+            putInt(nk, 0x1C, subkeysListOffset);
+            putInt(nk, 0x24, numValues);
+            putInt(nk, 0x28, valuesListOffset);
+            putShort(nk, 0x48, nameBytes.length);
+            System.arraycopy(nameBytes, 0, nk, 0x4C, nameBytes.length);
+            return cell(nk);
+        }
+
+        int value(String name, int type, int dataSize, int dataOffset) {
+            byte[] nameBytes = name.getBytes(ASCII);
+            byte[] vk = new byte[0x14 + nameBytes.length];
+            vk[0] = 'v';
+            vk[1] = 'k';
+            putShort(vk, 0x2, nameBytes.length);
+            putInt(vk, 0x4, dataSize);
+            putInt(vk, 0x8, dataOffset);
+            putInt(vk, 0xC, type);
+            putShort(vk, 0x10, 0x1);
+            System.arraycopy(nameBytes, 0, vk, 0x14, nameBytes.length);
+            return cell(vk);
+        }
+
+        int offsets(String signature, int... offsets) {
+            int entrySize = signature.equals("lf") ? 8 : 4;
+            byte[] list = new byte[4 + offsets.length * entrySize];
+            list[0] = (byte) signature.charAt(0);
+            list[1] = (byte) signature.charAt(1);
+            putShort(list, 0x2, offsets.length);
+            for (int i = 0; i < offsets.length; i++) {
+                putInt(list, 4 + i * entrySize, offsets[i]);
+            }
+            return cell(list);
+        }
+
+        int valuesList(int... offsets) {
+            byte[] list = new byte[offsets.length * 4];
+            for (int i = 0; i < offsets.length; i++) {
+                putInt(list, i * 4, offsets[i]);
+            }
+            return cell(list);
+        }
+
+        RegistryHive build(int rootCellOffset) throws IOException {
+            putInt(hive, 0x24, rootCellOffset);
+            final byte[] content = hive;
+            return new RegistryHive("test", content.length, new RegistryHive.Reader() {
+                @Override
+                public int read(byte[] buf, long offset, int length) {
+                    int count = (int) Math.min(length, content.length - offset);
+                    System.arraycopy(content, (int) offset, buf, 0, count);
+                    return count;
+                }
+            });
+        }
+    }
+
+    private static void putShort(byte[] buf, int offset, int value) {
+        buf[offset] = (byte) value;
+        buf[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putInt(byte[] buf, int offset, int value) {
+        putShort(buf, offset, value);
+        putShort(buf, offset + 2, value >>> 16);
+    }
+
+    private static void putLong(byte[] buf, int offset, long value) {
+        putInt(buf, offset, (int) value);
+        putInt(buf, offset + 4, (int) (value >>> 32));
+    }
+
+    private static byte[] utf16z(String s) {
+        return (s + "\u0000").getBytes(UTF_16LE);
+    }
+
+    public void testKeysAndValues() throws IOException {
+        HiveBuilder builder = new HiveBuilder();
+        byte[] productName = utf16z("Windows 7");
+        byte[] paths = "C:\\a\u0000D:\\b\u0000\u0000".getBytes(UTF_16LE);
+        int nameValue = builder.value("ProductName", RegistryHive.REG_SZ, productName.length, builder.cell(productName));
+        // data of 4 bytes or less is stored in the data offset
+        int dwordValue = builder.value("InstallDate", RegistryHive.REG_DWORD, 0x80000004, 1356998400);
+        int multiValue = builder.value("Paths", RegistryHive.REG_MULTI_SZ, paths.length, builder.cell(paths));
+        int versionKey = builder.key("CurrentVersion", 0, -1, 3, builder.valuesList(nameValue, dwordValue, multiValue));
+        int softwareKey = builder.key("Microsoft", 1, builder.offsets("lf", versionKey), 0, -1);
+        int root = builder.key("ROOT", 1, builder.offsets("li", softwareKey), 0, -1);
+        RegistryHive hive = builder.build(root);
+
+        assertEquals("ROOT", hive.getRootKey().getName());
+        RegistryHive.Key key = hive.getKey("microsoft\\CURRENTVERSION");
+        assertNotNull(key);
+        assertEquals("CurrentVersion", key.getName());
+        assertEquals(LAST_WRITTEN, key.getLastWritten());
+        assertNull(hive.getKey("Microsoft\\Missing"));
+
+        assertEquals(3, key.getValues().size());
+        assertEquals("Windows 7", key.getValue("productname").getString());
+        assertEquals(1356998400L, key.getValue("InstallDate").getLong());
+        assertEquals("1356998400", key.getValue("InstallDate").getString());
+        assertEquals(Arrays.asList("C:\\a", "D:\\b"), key.getValue("Paths").getStrings());
+        assertNull(key.getValue("Missing"));
+    }
+
+    public void testBigData() throws IOException {
+        HiveBuilder builder = new HiveBuilder();
+        byte[] data = new byte[SEGMENT_SIZE + 100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 251);
+        }
+        // the first segment cell holds padding after its SEGMENT_SIZE data bytes
+        byte[] first = Arrays.copyOf(Arrays.copyOf(data, SEGMENT_SIZE), SEGMENT_SIZE + 4);
+        Arrays.fill(first, SEGMENT_SIZE, first.length, (byte) 0x7F);
+        byte[] second = Arrays.copyOfRange(data, SEGMENT_SIZE, data.length);
+        int segments = builder.valuesList(builder.cell(first), builder.cell(second));
+        byte[] db = new byte[8];
+        db[0] = 'd';
+        db[1] = 'b';
+        putShort(db, 0x2, 2);
+        putInt(db, 0x4, segments);
+        int bigValue = builder.value("Big", RegistryHive.REG_BINARY, data.length, builder.cell(db));
+        int root = builder.key("ROOT", 0, -1, 1, builder.valuesList(bigValue));
+        RegistryHive hive = builder.build(root);
+
+        List<RegistryHive.Value> values = hive.getRootKey().getValues();
+        assertEquals(1, values.size());
+        assertTrue(Arrays.equals(data, values.get(0).getData()));
+    }
+
+    public void testNotAHive() {
+        byte[] content = new byte[BASE_BLOCK_SIZE];
+        try {
+            new RegistryHive("test", content.length, new RegistryHive.Reader() {
+                @Override
+                public int read(byte[] buf, long offset, int length) {
+                    return length;
+                }
+            });
+            fail("Read a hive without the regf signature");
+        } catch (IOException ex) {
+            //expected
+        }
+    }
+}
@@ -92,7 +92,6 @@ public final class SevenZipIngestModule extends IngestModuleAbstractFile {
     private ArchiveDepthCountTree archiveDepthCountTree;
     //buffer for checking file headers and signatures
     private static final int readHeaderSize = 4;
-    private final byte[] fileHeaderBuffer = new byte[readHeaderSize];
     private static final int ZIP_SIGNATURE_BE = 0x504B0304;
 
     //private constructor to ensure singleton instance 
@@ -622,7 +621,6 @@ private boolean isSupported(AbstractFile file) {
         }
 
         //if no extension match, check for zip signature
-        //(note, in near future, we will use pre-detected content type)
         return isZipFileHeader(file);
     }
 
@@ -637,18 +635,13 @@ private boolean isZipFileHeader(AbstractFile file) {
             return false;
         }
 
-        int bytesRead = 0;
-        try {
-            bytesRead = file.read(fileHeaderBuffer, 0, readHeaderSize);
-        } catch (TskCoreException ex) {
-            //ignore if can't read the first few bytes, not a ZIP
-            return false;
-        }
-        if (bytesRead != readHeaderSize) {
+        //the local file header signature starts the zip file
+        final byte[] fileHeader = services.getFileHeader(file);
+        if (fileHeader.length < readHeaderSize) {
             return false;
         }
 
-        ByteBuffer bytes = ByteBuffer.wrap(fileHeaderBuffer);
+        ByteBuffer bytes = ByteBuffer.wrap(fileHeader, 0, readHeaderSize);
         int signature = bytes.getInt();
 
         return signature == ZIP_SIGNATURE_BE;
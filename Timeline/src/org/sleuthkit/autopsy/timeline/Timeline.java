@@ -30,6 +30,8 @@
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.text.DateFormat;
 import java.text.DateFormatSymbols;
 import java.text.ParseException;
@@ -37,8 +39,10 @@
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.Stack;
 import java.util.logging.Level;
@@ -941,6 +945,7 @@ private List<YearEpoch> parseMacTime(java.io.File f) {
      *
      * @return absolute path string or null if error
      */
+    @SuppressWarnings("deprecation")
     private String makeBodyFile() {
         // Setup timestamp
         DateFormat dateFormat = new SimpleDateFormat("MM-dd-yyyy-HH-mm-ss");
@@ -953,17 +958,6 @@ private String makeBodyFile() {
         String bodyFilePath = moduleDir.getAbsolutePath()
                 + java.io.File.separator + currentCase.getName() + "-" + datenotime + ".txt";
 
-        // Run query to get all files
-        final String filesAndDirs = "name != '.' "
-                + "AND name != '..'";
-        List<Long> fileIds = null;
-        try {
-            fileIds = skCase.findAllFileIdsWhere(filesAndDirs);
-        } catch (TskCoreException ex) {
-            logger.log(Level.SEVERE, "Error querying image files to make a body file: " + bodyFilePath, ex);
-            return null;
-        }
-
         // Loop files and write info to report
         FileWriter fileWriter = null;
         try {
@@ -973,58 +967,84 @@ private String makeBodyFile() {
             return null;
         }
 
+        // Run a single query to get all files, streamed through the result set
+        final String filesAndDirs = "SELECT obj_id, fs_obj_id, name, parent_path, meta_addr, meta_type, mode, gid, size, "
+                + "atime, mtime, ctime, crtime, md5 FROM tsk_files WHERE name != '.' "
+                + "AND name != '..'";
+        // unique path prefix of the file systems, the path of a file is the prefix + parent path + name
+        final Map<Long, String> fsPathPrefixes = new HashMap<Long, String>();
         BufferedWriter out = null;
+        ResultSet rs = null;
         try {
             out = new BufferedWriter(fileWriter);
-            for (long fileId : fileIds) {
-                AbstractFile file = skCase.getAbstractFileById(fileId);
-                // try {
+            rs = skCase.runQuery(filesAndDirs);
+            while (rs.next()) {
+                final long fileId = rs.getLong("obj_id");
                 // MD5|name|inode|mode_as_string|ObjId|GID|size|atime|mtime|ctime|crtime
-                if (file.getMd5Hash() != null) {
-                    out.write(file.getMd5Hash());
+                final String md5 = rs.getString("md5");
+                if (md5 != null) {
+                    out.write(md5);
                 }
                 out.write("|");
                 String path = null;
-                try {
-                    path = file.getUniquePath();
-                } catch (TskCoreException e) {
-                    logger.log(Level.SEVERE, "Failed to get the unique path of: " + file + " and writing body file.", e);
-                    return null;
+                final long fsObjId = rs.getLong("fs_obj_id");
+                if (!rs.wasNull()) {
+                    String prefix = fsPathPrefixes.get(fsObjId);
+                    if (prefix == null) {
+                        prefix = skCase.getContentById(fsObjId).getUniquePath();
+                        fsPathPrefixes.put(fsObjId, prefix);
+                    }
+                    final String parentPath = rs.getString("parent_path");
+                    path = prefix + (parentPath != null ? parentPath : "") + rs.getString("name");
+                } else {
+                    // not in a file system (e.g. layout, derived or local file), get the path from the object
+                    try {
+                        path = skCase.getAbstractFileById(fileId).getUniquePath();
+                    } catch (TskCoreException e) {
+                        logger.log(Level.SEVERE, "Failed to get the unique path of file: " + fileId + " and writing body file.", e);
+                        return null;
+                    }
                 }
 
                 out.write(path);
 
                 out.write("|");
-                out.write(Long.toString(file.getMetaAddr()));
+                out.write(Long.toString(rs.getLong("meta_addr")));
                 out.write("|");
-                String modeString = file.getModesAsString();
-                if (modeString != null) {
-                    out.write(modeString);
-                }
+                out.write(getModesAsString(rs.getShort("meta_type"), rs.getInt("mode")));
                 out.write("|");
-                out.write(Long.toString(file.getId()));
+                out.write(Long.toString(fileId));
                 out.write("|");
-                out.write(Long.toString(file.getGid()));
+                out.write(Long.toString(rs.getLong("gid")));
                 out.write("|");
-                out.write(Long.toString(file.getSize()));
+                out.write(Long.toString(rs.getLong("size")));
                 out.write("|");
-                out.write(Long.toString(file.getAtime()));
+                out.write(Long.toString(rs.getLong("atime")));
                 out.write("|");
-                out.write(Long.toString(file.getMtime()));
+                out.write(Long.toString(rs.getLong("mtime")));
                 out.write("|");
-                out.write(Long.toString(file.getCtime()));
+                out.write(Long.toString(rs.getLong("ctime")));
                 out.write("|");
-                out.write(Long.toString(file.getCrtime()));
+                out.write(Long.toString(rs.getLong("crtime")));
                 out.write("\n");
             }
+        } catch (SQLException ex) {
+            logger.log(Level.SEVERE, "Error querying image files to make a body file: " + bodyFilePath, ex);
+            return null;
         } catch (TskCoreException ex) {
-            logger.log(Level.SEVERE, "Error querying file by id", ex);
+            logger.log(Level.SEVERE, "Error getting the path of a file system to make a body file", ex);
             return null;
-
         } catch (IOException ex) {
             logger.log(Level.WARNING, "Error while trying to write data to the body file.", ex);
             return null;
         } finally {
+            if (rs != null) {
+                try {
+                    skCase.closeRunQuery(rs);
+                } catch (SQLException ex) {
+                    logger.log(Level.WARNING, "Could not close the files query.", ex);
+                }
+            }
             if (out != null) {
                 try {
                     out.flush();
@@ -1035,10 +1055,56 @@ private String makeBodyFile() {
             }
         }
 
-
         return bodyFilePath;
     }
 
+    /**
+     * Labels of the file meta types, by meta_type value, as used in mode
+     * strings
+     */
+    private static final String[] META_TYPE_LABELS = {"-", "r", "d", "p", "c", "b", "l", "s", "h", "w", "v"};
+
+    /**
+     * Makes the mode string of a file from the meta_type and mode columns, in
+     * the same format as AbstractFile.getModesAsString()
+     *
+     * @param metaType meta_type column value
+     * @param mode mode column value
+     * @return mode string, e.g. rrwxr-xr-x
+     */
+    private static String getModesAsString(short metaType, int mode) {
+        StringBuilder result = new StringBuilder(10);
+        result.append(metaType >= 0 && metaType < META_TYPE_LABELS.length ? META_TYPE_LABELS[metaType] : "-");
+
+        // user permissions, with set uid
+        result.append((mode & 0400) != 0 ? 'r' : '-');
+        result.append((mode & 0200) != 0 ? 'w' : '-');
+        if ((mode & 04000) != 0) {
+            result.append((mode & 0100) != 0 ? 's' : 'S');
+        } else {
+            result.append((mode & 0100) != 0 ? 'x' : '-');
+        }
+
+        // group permissions, with set gid
+        result.append((mode & 040) != 0 ? 'r' : '-');
+        result.append((mode & 020) != 0 ? 'w' : '-');
+        if ((mode & 02000) != 0) {
+            result.append((mode & 010) != 0 ? 's' : 'S');
+        } else {
+            result.append((mode & 010) != 0 ? 'x' : '-');
+        }
+
+        // other permissions, with sticky bit
+        result.append((mode & 04) != 0 ? 'r' : '-');
+        result.append((mode & 02) != 0 ? 'w' : '-');
+        if ((mode & 01000) != 0) {
+            result.append((mode & 01) != 0 ? 't' : 'T');
+        } else {
+            result.append((mode & 01) != 0 ? 'x' : '-');
+        }
+        return result.toString();
+    }
+
     private String makeMacTime(String pathToBodyFile) {
         String cmdpath = "";
         String macpath = "";
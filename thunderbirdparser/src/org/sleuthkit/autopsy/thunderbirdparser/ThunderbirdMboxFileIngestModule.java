@@ -21,6 +21,7 @@
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -43,7 +44,6 @@
 import org.sleuthkit.datamodel.ReadContentInputStream;
 import org.sleuthkit.datamodel.TskCoreException;
 import org.sleuthkit.datamodel.TskData;
-import org.sleuthkit.datamodel.TskException;
 import org.xml.sax.SAXException;
 
 /**
@@ -94,16 +94,12 @@ public ProcessResult process(PipelineContext<IngestModuleAbstractFile>ingestCont
         
         // check its signature
         boolean isMbox = false;
-        try {
-            byte[] t = new byte[64];
-            if (abstractFile.getSize() > 64) {
-                int byteRead = abstractFile.read(t, 0, 64);
-                if (byteRead > 0) {
-                    isMbox = ThunderbirdEmailParser.isValidMimeTypeMbox(t);
-                }
+        if (abstractFile.getSize() > 64) {
+            //an mbox starts with a "From " line, the first 64 bytes are enough to tell
+            byte[] header = services.getFileHeader(abstractFile);
+            if (header.length > 0) {
+                isMbox = ThunderbirdEmailParser.isValidMimeTypeMbox(Arrays.copyOf(header, 64));
             }
-        } catch (TskException ex) {
-            logger.log(Level.WARNING, null, ex);
         }
         
         if (isMbox == false) {